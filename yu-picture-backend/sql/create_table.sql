@@ -120,3 +120,91 @@ create table if not exists space_user
 
 
 
+-- 游标分页：按空间 + 审核状态过滤后按时间 / id 顺序扫描（InnoDB 二级索引自带主键 id）
+CREATE INDEX idx_spaceId_reviewStatus_createTime ON picture (spaceId, reviewStatus, createTime);
+CREATE INDEX idx_spaceId_reviewStatus_editTime ON picture (spaceId, reviewStatus, editTime);
+
+-- 图片标签关联表（由 picture.tags 拆分而来，便于按标签索引查询和统计）
+create table if not exists picture_tag
+(
+    id         bigint auto_increment comment 'id' primary key,
+    pictureId  bigint                             not null comment '图片 id',
+    spaceId    bigint                             null comment '空间 id（冗余，为空表示公共图库）',
+    tag        varchar(64)                        not null comment '标签',
+    createTime datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    -- 索引设计
+    UNIQUE KEY uk_pictureId_tag (pictureId, tag), -- 同一张图片的标签不重复
+    INDEX idx_tag_pictureId (tag, pictureId),     -- 按标签筛选图片
+    INDEX idx_spaceId_tag (spaceId, tag)          -- 按空间筛选和统计标签
+) comment '图片标签关联' collate = utf8mb4_unicode_ci;
+
+-- 图片调色板（多个主色及占比，用于以色搜图）
+ALTER TABLE picture
+    ADD COLUMN picPalette varchar(512) null comment '图片调色板（JSON 数组：color、weight）';
+
+-- 图片感知哈希（64 位 dHash，用于站内以图搜图）
+ALTER TABLE picture
+    ADD COLUMN picHash bigint null comment '图片感知哈希';
+
+-- 图片内容哈希（SHA-256，相同内容的上传复用已存储的对象）
+ALTER TABLE picture
+    ADD COLUMN contentHash char(64) null comment '图片内容哈希（SHA-256）';
+
+CREATE INDEX idx_contentHash ON picture (contentHash);
+
+-- 图片存储对象表（按内容哈希去重，引用数归零时删除对象存储中的文件）
+create table if not exists picture_object
+(
+    id           bigint auto_increment comment 'id' primary key,
+    contentHash  char(64)                           not null comment '原图内容哈希（SHA-256）',
+    url          varchar(512)                       not null comment '图片 url',
+    thumbnailUrl varchar(512)                       null comment '缩略图 url',
+    picSize      bigint                             null comment '图片体积',
+    picWidth     int                                null comment '图片宽度',
+    picHeight    int                                null comment '图片高度',
+    picFormat    varchar(32)                        null comment '图片格式',
+    picColor     varchar(16)                        null comment '图片主色调',
+    picPalette   varchar(512)                       null comment '图片调色板（JSON 数组：color、weight）',
+    picHash      bigint                             null comment '图片感知哈希',
+    refCount     int      default 0                 not null comment '引用该对象的图片数',
+    createTime   datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    updateTime   datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    UNIQUE KEY uk_contentHash (contentHash) -- 相同内容只保存一份
+) comment '图片存储对象' collate = utf8mb4_unicode_ci;
+
+-- 响应式副本（多种宽度和格式，上传后异步生成）
+ALTER TABLE picture
+    ADD COLUMN renditions varchar(2048) null comment '响应式副本（JSON 数组：width、height、format、url、size）';
+
+ALTER TABLE picture_object
+    ADD COLUMN renditions varchar(2048) null comment '响应式副本（JSON 数组：width、height、format、url、size）';
+
+-- 图片后台任务表（上传后的特征提取、生成副本等，多节点通过租约领取，失败后退避重试）
+create table if not exists picture_job
+(
+    id              bigint auto_increment comment 'id' primary key,
+    pictureId       bigint                             not null comment '图片 id',
+    spaceId         bigint                             null comment '空间 id（为空表示公共图库）',
+    jobType         varchar(32)                        not null comment '任务类型：feature/rendition',
+    status          int      default 0                 not null comment '状态：0-待执行 1-执行中 2-失败',
+    attempts        int      default 0                 not null comment '已执行次数',
+    nextRunTime     datetime default CURRENT_TIMESTAMP not null comment '下次可执行时间',
+    leaseOwner      varchar(64)                        null comment '租约持有者',
+    leaseExpireTime datetime                           null comment '租约到期时间',
+    lastError       varchar(512)                       null comment '最近一次失败的原因',
+    createTime      datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    updateTime      datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    UNIQUE KEY uk_pictureId_jobType (pictureId, jobType), -- 同一图片的同类任务只保留一条
+    INDEX idx_status_nextRunTime (status, nextRunTime),   -- 领取待执行任务
+    INDEX idx_status_leaseExpireTime (status, leaseExpireTime), -- 领取租约已过期的任务
+    INDEX idx_leaseOwner (leaseOwner)                     -- 查询本批次领取的任务
+) comment '图片后台任务' collate = utf8mb4_unicode_ci;
+
+-- 全文索引追赶：节点重启后查询停机期间更新过的图片
+CREATE INDEX idx_updateTime ON picture (updateTime);
+
+-- 存储对象引用数归零后保留 1 小时再删除文件，期间仍可被新的上传复用
+ALTER TABLE picture_object
+    COMMENT '图片存储对象（按内容哈希去重，引用数归零超过宽限期后删除对象存储中的文件）';
+
+CREATE INDEX idx_refCount_updateTime ON picture_object (refCount, updateTime);
@@ -0,0 +1,31 @@
+package com.yupi.yupicturebackend.api.imagesearch;
+
+import com.yupi.yupicturebackend.api.imagesearch.model.ImageSearchResult;
+import com.yupi.yupicturebackend.api.imagesearch.sub.GetImageFirstUrlApi;
+import com.yupi.yupicturebackend.api.imagesearch.sub.GetImageListApi;
+import com.yupi.yupicturebackend.api.imagesearch.sub.GetImagePageUrlApi;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 百度识图
+ */
+@Component
+public class BaiduImageSearchUpstream implements ImageSearchUpstream {
+
+    @Override
+    public String getImagePageUrl(String imageUrl, int timeoutMillis) {
+        return GetImagePageUrlApi.getImagePageUrl(imageUrl, timeoutMillis);
+    }
+
+    @Override
+    public String getImageFirstUrl(String imagePageUrl, int timeoutMillis) {
+        return GetImageFirstUrlApi.getImageFirstUrl(imagePageUrl, timeoutMillis);
+    }
+
+    @Override
+    public List<ImageSearchResult> getImageList(String imageFirstUrl, int timeoutMillis) {
+        return GetImageListApi.getImageList(imageFirstUrl, timeoutMillis);
+    }
+}
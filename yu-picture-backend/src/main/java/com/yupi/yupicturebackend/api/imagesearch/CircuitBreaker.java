@@ -0,0 +1,81 @@
+package com.yupi.yupicturebackend.api.imagesearch;
+
+/**
+ * 简单的熔断器
+ * <p>
+ * 连续失败达到阈值后熔断（OPEN），熔断期间直接拒绝请求；熔断时间过后放行一个试探请求（HALF_OPEN），
+ * 试探成功则恢复（CLOSED），失败则继续熔断。
+ */
+public class CircuitBreaker {
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 连续失败多少次后熔断
+     */
+    private final int failureThreshold;
+
+    /**
+     * 熔断持续时间
+     */
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openedAt;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 是否允许本次请求
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt >= openMillis) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                // 试探请求还没有结果
+                return false;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            consecutiveFailures = 0;
+        }
+    }
+
+    /**
+     * 请求没有到达上游（如本地线程池已满），不计入统计；如果是试探请求，恢复为熔断状态，下一个请求可以重新试探
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+}
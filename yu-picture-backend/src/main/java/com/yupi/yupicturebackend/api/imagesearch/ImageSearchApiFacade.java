@@ -1,30 +1,202 @@
 package com.yupi.yupicturebackend.api.imagesearch;
 
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.yupi.yupicturebackend.api.imagesearch.model.ImageSearchResult;
-import com.yupi.yupicturebackend.api.imagesearch.sub.GetImageFirstUrlApi;
-import com.yupi.yupicturebackend.api.imagesearch.sub.GetImageListApi;
-import com.yupi.yupicturebackend.api.imagesearch.sub.GetImagePageUrlApi;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
+/**
+ * 以图搜图门面（异步执行）
+ * <p>
+ * 三步调用在独立的有界线程池中执行，不占用 Web 容器线程；每一步都有超时时间，
+ * 上游连续失败时熔断，熔断期间直接失败；同一图片地址的结果缓存一段时间，并发的相同请求只调用一次上游。
+ */
 @Slf4j
+@Component
 public class ImageSearchApiFacade {
 
+    /**
+     * 每一步调用的超时时间
+     */
+    private static final int DEFAULT_STAGE_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * 连续失败多少次后熔断
+     */
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    /**
+     * 熔断持续时间
+     */
+    private static final long DEFAULT_OPEN_MILLIS = 30_000L;
+
+    private final ImageSearchUpstream imageSearchUpstream;
+
+    private final int stageTimeoutMillis;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            4, 8, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(100),
+            ThreadFactoryBuilder.create().setNamePrefix("imageSearch").build());
+
+    /**
+     * 用于触发每一步的超时
+     */
+    private final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("imageSearchTimeout").setDaemon(true).build());
+
+    /**
+     * 搜索结果缓存（key 为图片地址），只缓存成功的结果
+     */
+    private final Cache<String, List<ImageSearchResult>> resultCache = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(Duration.ofMinutes(30))
+            .build();
+
+    /**
+     * 正在进行的搜索，并发的相同请求共用一次上游调用
+     */
+    private final ConcurrentMap<String, CompletableFuture<List<ImageSearchResult>>> inFlightSearchMap =
+            new ConcurrentHashMap<>();
+
+    @Autowired
+    public ImageSearchApiFacade(ImageSearchUpstream imageSearchUpstream) {
+        this(imageSearchUpstream, DEFAULT_STAGE_TIMEOUT_MILLIS, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS);
+    }
+
+    ImageSearchApiFacade(ImageSearchUpstream imageSearchUpstream, int stageTimeoutMillis,
+                         int failureThreshold, long openMillis) {
+        this.imageSearchUpstream = imageSearchUpstream;
+        this.stageTimeoutMillis = stageTimeoutMillis;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openMillis);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+        timeoutScheduler.shutdownNow();
+    }
+
     /**
      * 搜索图片
+     *
      * @param imageUrl
-     * @return
+     * @return 失败时以 BusinessException 结束
      */
-    public static List<ImageSearchResult> searchImage(String imageUrl) {
-        String imagePageUrl = GetImagePageUrlApi.getImagePageUrl(imageUrl);
-        String imageFirstUrl = GetImageFirstUrlApi.getImageFirstUrl(imagePageUrl);
-        List<ImageSearchResult> imageList = GetImageListApi.getImageList(imageFirstUrl);
-        return imageList;
+    public CompletableFuture<List<ImageSearchResult>> searchImage(String imageUrl) {
+        List<ImageSearchResult> cachedList = resultCache.getIfPresent(imageUrl);
+        if (cachedList != null) {
+            return CompletableFuture.completedFuture(cachedList);
+        }
+        CompletableFuture<List<ImageSearchResult>> future = new CompletableFuture<>();
+        CompletableFuture<List<ImageSearchResult>> inFlightFuture = inFlightSearchMap.putIfAbsent(imageUrl, future);
+        if (inFlightFuture != null) {
+            return inFlightFuture;
+        }
+        doSearchImage(imageUrl).whenComplete((imageList, throwable) -> {
+            // 先写缓存再移除，避免两者之间的请求重复调用上游
+            if (throwable == null) {
+                resultCache.put(imageUrl, imageList);
+            }
+            inFlightSearchMap.remove(imageUrl, future);
+            if (throwable == null) {
+                future.complete(imageList);
+            } else {
+                future.completeExceptionally(throwable);
+            }
+        });
+        return future;
+    }
+
+    private CompletableFuture<List<ImageSearchResult>> doSearchImage(String imageUrl) {
+        // 熔断期间直接失败，不再请求上游
+        if (!circuitBreaker.tryAcquire()) {
+            return failedFuture(new BusinessException(ErrorCode.OPERATION_ERROR, "以图搜图服务暂不可用，请稍后重试"));
+        }
+        CompletableFuture<List<ImageSearchResult>> resultFuture = new CompletableFuture<>();
+        runStage("获取以图搜图页面地址", () -> imageSearchUpstream.getImagePageUrl(imageUrl, stageTimeoutMillis))
+                .thenCompose(imagePageUrl -> runStage("获取图片列表接口地址",
+                        () -> imageSearchUpstream.getImageFirstUrl(imagePageUrl, stageTimeoutMillis)))
+                .thenCompose(imageFirstUrl -> runStage("获取图片列表",
+                        () -> imageSearchUpstream.getImageList(imageFirstUrl, stageTimeoutMillis)))
+                .whenComplete((imageList, throwable) -> {
+                    if (throwable == null) {
+                        circuitBreaker.onSuccess();
+                        resultFuture.complete(imageList);
+                        return;
+                    }
+                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                            ? throwable.getCause() : throwable;
+                    // 线程池已满是本地的问题，不计入上游失败
+                    if (cause instanceof RejectedExecutionException) {
+                        circuitBreaker.onIgnored();
+                    } else {
+                        circuitBreaker.onFailure();
+                    }
+                    resultFuture.completeExceptionally(toBusinessException(cause));
+                });
+        return resultFuture;
+    }
+
+    /**
+     * 在线程池中执行一步调用，超时后直接失败
+     */
+    private <T> CompletableFuture<T> runStage(String stageName, Supplier<T> stage) {
+        CompletableFuture<T> stageFuture;
+        try {
+            stageFuture = CompletableFuture.supplyAsync(stage, executor);
+        } catch (RejectedExecutionException e) {
+            return failedFuture(e);
+        }
+        ScheduledFuture<?> timeoutFuture = timeoutScheduler.schedule(
+                () -> stageFuture.completeExceptionally(new TimeoutException(stageName + "超时")),
+                stageTimeoutMillis, TimeUnit.MILLISECONDS);
+        stageFuture.whenComplete((result, throwable) -> timeoutFuture.cancel(false));
+        return stageFuture;
+    }
+
+    private static BusinessException toBusinessException(Throwable cause) {
+        if (cause instanceof BusinessException) {
+            return (BusinessException) cause;
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return new BusinessException(ErrorCode.OPERATION_ERROR, "搜索请求过多，请稍后重试");
+        }
+        if (cause instanceof TimeoutException) {
+            log.warn("以图搜图超时：{}", cause.getMessage());
+            return new BusinessException(ErrorCode.OPERATION_ERROR, "搜索超时");
+        }
+        log.error("以图搜图失败", cause);
+        return new BusinessException(ErrorCode.OPERATION_ERROR, "搜索失败");
     }
 
-    public static void main(String[] args) {
-        List<ImageSearchResult> imageList = searchImage("https://www.codefather.cn/logo.png");
-        System.out.println("结果列表" + imageList);
+    private static <T> CompletableFuture<T> failedFuture(Throwable throwable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
     }
 }
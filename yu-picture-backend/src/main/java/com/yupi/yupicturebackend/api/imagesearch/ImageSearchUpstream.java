@@ -0,0 +1,38 @@
+package com.yupi.yupicturebackend.api.imagesearch;
+
+import com.yupi.yupicturebackend.api.imagesearch.model.ImageSearchResult;
+
+import java.util.List;
+
+/**
+ * 以图搜图上游接口（三步调用，每一步都有独立的超时时间）
+ */
+public interface ImageSearchUpstream {
+
+    /**
+     * 获取以图搜图页面地址（step 1）
+     *
+     * @param imageUrl
+     * @param timeoutMillis
+     * @return
+     */
+    String getImagePageUrl(String imageUrl, int timeoutMillis);
+
+    /**
+     * 获取图片列表接口地址（step 2）
+     *
+     * @param imagePageUrl
+     * @param timeoutMillis
+     * @return
+     */
+    String getImageFirstUrl(String imagePageUrl, int timeoutMillis);
+
+    /**
+     * 获取图片列表（step 3）
+     *
+     * @param imageFirstUrl
+     * @param timeoutMillis
+     * @return
+     */
+    List<ImageSearchResult> getImageList(String imageFirstUrl, int timeoutMillis);
+}
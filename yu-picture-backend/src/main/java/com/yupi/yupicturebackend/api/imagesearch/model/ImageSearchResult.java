@@ -17,4 +17,9 @@ public class ImageSearchResult {
      * 来源地址
      */
     private String fromUrl;
+
+    /**
+     * 图库中的图片 id（仅站内搜索结果有值）
+     */
+    private Long pictureId;
 }
\ No newline at end of file
@@ -24,10 +24,21 @@ public class GetImageFirstUrlApi {
      * @return
      */
     public static String getImageFirstUrl(String url) {
+        return getImageFirstUrl(url, 5000);
+    }
+
+    /**
+     * 获取图片列表页面地址
+     *
+     * @param url
+     * @param timeoutMillis 超时时间
+     * @return
+     */
+    public static String getImageFirstUrl(String url, int timeoutMillis) {
         try {
             // 使用 Jsoup 获取 HTML 内容
             Document document = Jsoup.connect(url)
-                    .timeout(5000)
+                    .timeout(timeoutMillis)
                     .get();
 
             // 获取所有 <script> 标签
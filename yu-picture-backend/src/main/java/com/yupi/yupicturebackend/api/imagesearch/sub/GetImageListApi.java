@@ -25,9 +25,20 @@ public class GetImageListApi {
      * @return
      */
     public static List<ImageSearchResult> getImageList(String url) {
+        return getImageList(url, 5000);
+    }
+
+    /**
+     * 获取图片列表
+     *
+     * @param url
+     * @param timeoutMillis 超时时间
+     * @return
+     */
+    public static List<ImageSearchResult> getImageList(String url, int timeoutMillis) {
         try {
             // 发起GET请求
-            HttpResponse response = HttpUtil.createGet(url).execute();
+            HttpResponse response = HttpUtil.createGet(url).timeout(timeoutMillis).execute();
 
             // 获取响应内容
             int statusCode = response.getStatus();
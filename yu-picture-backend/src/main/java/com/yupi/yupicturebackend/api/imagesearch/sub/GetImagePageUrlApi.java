@@ -27,6 +27,17 @@ public class GetImagePageUrlApi {
      * @return
      */
     public static String getImagePageUrl(String imageUrl) {
+        return getImagePageUrl(imageUrl, 5000);
+    }
+
+    /**
+     * 获取以图搜图页面地址
+     *
+     * @param imageUrl
+     * @param timeoutMillis 超时时间
+     * @return
+     */
+    public static String getImagePageUrl(String imageUrl, int timeoutMillis) {
         // image: https%3A%2F%2Fwww.codefather.cn%2Flogo.png
         //tn: pc
         //from: pc
@@ -46,7 +57,7 @@ public class GetImagePageUrlApi {
             // 2. 发送请求
             HttpResponse httpResponse = HttpRequest.post(url)
                     .form(formData)
-                    .timeout(5000)
+                    .timeout(timeoutMillis)
                     .execute();
             if (httpResponse.getStatus() != HttpStatus.HTTP_OK) {
                 throw new BusinessException(ErrorCode.OPERATION_ERROR, "接口调用失败");
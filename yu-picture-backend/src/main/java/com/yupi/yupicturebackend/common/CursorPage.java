@@ -0,0 +1,36 @@
+package com.yupi.yupicturebackend.common;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 通用的游标分页结果类
+ */
+@Data
+public class CursorPage<T> implements Serializable {
+
+    /**
+     * 当前页数据
+     */
+    private List<T> records = new ArrayList<>();
+
+    /**
+     * 下一页的游标（没有更多数据时为空）
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有更多数据
+     */
+    private boolean hasMore;
+
+    /**
+     * 总条数（仅在请求时显式要求时才会查询）
+     */
+    private Long total;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,34 @@
+package com.yupi.yupicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对象存储分块上传配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cos.multipart")
+@Data
+public class MultipartUploadConfig {
+
+    /**
+     * 文件超过该大小时自动使用分块上传
+     */
+    private long threshold = 8 * 1024 * 1024;
+
+    /**
+     * 分块大小（除最后一块外不能小于 1MB）
+     */
+    private long partSize = 2 * 1024 * 1024;
+
+    /**
+     * 单个文件同时上传的分块数
+     */
+    private int concurrency = 4;
+
+    /**
+     * 单个分块的最大重试次数
+     */
+    private int maxRetries = 3;
+}
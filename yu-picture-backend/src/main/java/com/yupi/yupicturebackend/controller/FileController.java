@@ -1,7 +1,5 @@
 package com.yupi.yupicturebackend.controller;
 
-import com.qcloud.cos.model.COSObject;
-import com.qcloud.cos.model.COSObjectInputStream;
 import com.qcloud.cos.utils.IOUtils;
 import com.yupi.yupicturebackend.annotation.AuthCheck;
 import com.yupi.yupicturebackend.common.BaseResponse;
@@ -9,7 +7,7 @@ import com.yupi.yupicturebackend.common.ResultUtils;
 import com.yupi.yupicturebackend.constant.UserConstant;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
-import com.yupi.yupicturebackend.manager.CosManager;
+import com.yupi.yupicturebackend.manager.storage.ObjectStorage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -19,6 +17,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 @Slf4j
 @RestController
@@ -26,7 +25,7 @@ import java.io.IOException;
 public class FileController {
 
     @Resource
-    private CosManager cosManager;
+    private ObjectStorage objectStorage;
 
     /**
      * 测试文件上传
@@ -45,7 +44,7 @@ public class FileController {
             // 上传文件
             file = File.createTempFile(filepath, null);
             multipartFile.transferTo(file);
-            cosManager.putObject(filepath, file);
+            objectStorage.putObject(filepath, file);
             // 返回可访问的地址
             return ResultUtils.success(filepath);
         } catch (Exception e) {
@@ -71,11 +70,10 @@ public class FileController {
     @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
     @GetMapping("/test/download/")
     public void testDownloadFile(String filepath, HttpServletResponse response) throws IOException {
-        COSObjectInputStream cosObjectInput = null;
+        InputStream objectInput = null;
         try {
-            COSObject cosObject = cosManager.getObject(filepath);
-            cosObjectInput = cosObject.getObjectContent();
-            byte[] bytes = IOUtils.toByteArray(cosObjectInput);
+            objectInput = objectStorage.getObject(filepath);
+            byte[] bytes = IOUtils.toByteArray(objectInput);
             // 设置响应头
             response.setContentType("application/octet-stream;charset=UTF-8");
             response.setHeader("Content-Disposition", "attachment; filename=" + filepath);
@@ -87,8 +85,8 @@ public class FileController {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "下载失败");
         } finally {
             // 释放流
-            if (cosObjectInput != null) {
-                cosObjectInput.close();
+            if (objectInput != null) {
+                objectInput.close();
             }
         }
 
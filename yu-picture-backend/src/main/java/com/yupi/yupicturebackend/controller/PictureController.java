@@ -10,9 +10,9 @@ import com.yupi.yupicturebackend.annotation.AuthCheck;
 import com.yupi.yupicturebackend.api.aliyunai.AliYunAiApi;
 import com.yupi.yupicturebackend.api.aliyunai.model.CreateOutPaintingTaskResponse;
 import com.yupi.yupicturebackend.api.aliyunai.model.GetOutPaintingTaskResponse;
-import com.yupi.yupicturebackend.api.imagesearch.ImageSearchApiFacade;
 import com.yupi.yupicturebackend.api.imagesearch.model.ImageSearchResult;
 import com.yupi.yupicturebackend.common.BaseResponse;
+import com.yupi.yupicturebackend.common.CursorPage;
 import com.yupi.yupicturebackend.common.DeleteRequest;
 import com.yupi.yupicturebackend.common.ResultUtils;
 import com.yupi.yupicturebackend.constant.UserConstant;
@@ -23,14 +23,24 @@ import com.yupi.yupicturebackend.manager.auth.SpaceUserAuthManager;
 import com.yupi.yupicturebackend.manager.auth.StpKit;
 import com.yupi.yupicturebackend.manager.auth.annotation.SaSpaceCheckPermission;
 import com.yupi.yupicturebackend.manager.auth.model.SpaceUserPermissionConstant;
+import com.yupi.yupicturebackend.manager.cache.PictureFeedCacheManager;
+import com.yupi.yupicturebackend.manager.hash.PictureHashIndexManager;
+import com.yupi.yupicturebackend.manager.search.PictureSearchIndexSyncer;
+import com.yupi.yupicturebackend.manager.upload.BatchPictureUploader;
+import com.yupi.yupicturebackend.manager.upload.PictureUploadSession;
+import com.yupi.yupicturebackend.manager.upload.PictureUploadSessionManager;
 import com.yupi.yupicturebackend.model.dto.picture.*;
 import com.yupi.yupicturebackend.model.entity.Picture;
 import com.yupi.yupicturebackend.model.entity.Space;
 import com.yupi.yupicturebackend.model.entity.User;
 import com.yupi.yupicturebackend.model.enums.PictureReviewStatusEnum;
 import com.yupi.yupicturebackend.model.vo.PictureTagCategory;
+import com.yupi.yupicturebackend.model.vo.PictureUploadBatchProgressVO;
+import com.yupi.yupicturebackend.model.vo.PictureUploadPresignVO;
+import com.yupi.yupicturebackend.model.vo.PictureUploadSessionVO;
 import com.yupi.yupicturebackend.model.vo.PictureVO;
 import com.yupi.yupicturebackend.service.PictureService;
+import com.yupi.yupicturebackend.service.PictureTagService;
 import com.yupi.yupicturebackend.service.SpaceService;
 import com.yupi.yupicturebackend.service.UserService;
 import lombok.extern.slf4j.Slf4j;
@@ -38,16 +48,21 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -76,6 +91,27 @@ public class PictureController {
     @Resource
     private SpaceUserAuthManager spaceUserAuthManager;
 
+    @Resource
+    private PictureFeedCacheManager pictureFeedCacheManager;
+
+    @Resource
+    private PictureSearchIndexSyncer pictureSearchIndexSyncer;
+
+    @Resource
+    private PictureTagService pictureTagService;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private PictureHashIndexManager pictureHashIndexManager;
+
+    @Resource
+    private BatchPictureUploader batchPictureUploader;
+
+    @Resource
+    private PictureUploadSessionManager pictureUploadSessionManager;
+
     /**
      * 本地缓存
      */
@@ -115,6 +151,103 @@ public class PictureController {
         return ResultUtils.success(pictureVO);
     }
 
+    /**
+     * 获取预签名直传地址（可重新上传），客户端使用 PUT 直接上传到对象存储后调用 /upload/complete
+     */
+    @PostMapping("/upload/presign")
+    @SaSpaceCheckPermission(value = SpaceUserPermissionConstant.PICTURE_UPLOAD)
+    public BaseResponse<PictureUploadPresignVO> createPresignedUpload(
+            @RequestBody PictureUploadPresignRequest pictureUploadPresignRequest,
+            HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(pictureService.createPresignedUpload(pictureUploadPresignRequest, loginUser));
+    }
+
+    /**
+     * 完成预签名直传
+     * <p>
+     * 空间权限在签发地址时已经校验，这里只允许签发对象完成上传。
+     */
+    @PostMapping("/upload/complete")
+    public BaseResponse<PictureVO> completePresignedUpload(
+            @RequestBody PictureUploadCompleteRequest pictureUploadCompleteRequest,
+            HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(pictureService.completePresignedUpload(pictureUploadCompleteRequest, loginUser));
+    }
+
+    /**
+     * 创建分片上传会话（可重新上传）
+     */
+    @PostMapping("/upload/session/init")
+    @SaSpaceCheckPermission(value = SpaceUserPermissionConstant.PICTURE_UPLOAD)
+    public BaseResponse<PictureUploadSessionVO> initUploadSession(
+            @RequestBody PictureUploadSessionInitRequest initRequest,
+            HttpServletRequest request) {
+        ThrowUtils.throwIf(initRequest == null, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        PictureUploadSession session = new PictureUploadSession();
+        BeanUtils.copyProperties(initRequest, session);
+        session.setPictureId(initRequest.getId());
+        session = pictureUploadSessionManager.createSession(session, loginUser.getId(),
+                spaceService.getMaxPictureSize(session.getSpaceId()));
+        return ResultUtils.success(PictureUploadSessionVO.objToVo(session, Collections.emptyList()));
+    }
+
+    /**
+     * 上传一个分片（可以乱序、重复上传）
+     *
+     * @param checksum 分片内容的 MD5
+     */
+    @PostMapping("/upload/session/chunk")
+    public BaseResponse<Boolean> uploadChunk(@RequestPart("file") MultipartFile multipartFile,
+                                             @RequestParam("uploadId") String uploadId,
+                                             @RequestParam("index") Integer index,
+                                             @RequestParam("checksum") String checksum,
+                                             HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        PictureUploadSession session = pictureUploadSessionManager.getSession(uploadId, loginUser.getId());
+        try {
+            pictureUploadSessionManager.putChunk(session, index, checksum, multipartFile.getInputStream());
+        } catch (IOException e) {
+            log.error("读取上传分片失败", e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "分片上传失败");
+        }
+        return ResultUtils.success(true);
+    }
+
+    /**
+     * 查询分片上传会话（断点续传时获取已上传的分片）
+     */
+    @GetMapping("/upload/session/get")
+    public BaseResponse<PictureUploadSessionVO> getUploadSession(String uploadId, HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        PictureUploadSession session = pictureUploadSessionManager.getSession(uploadId, loginUser.getId());
+        List<Integer> uploadedChunkList = pictureUploadSessionManager.listUploadedChunks(session);
+        return ResultUtils.success(PictureUploadSessionVO.objToVo(session, uploadedChunkList));
+    }
+
+    /**
+     * 完成分片上传，合并分片并创建（或更新）图片
+     * <p>
+     * 空间权限在创建会话时已经校验，这里只允许会话的创建者完成上传。
+     */
+    @PostMapping("/upload/session/complete")
+    public BaseResponse<PictureVO> completeUploadSession(@RequestBody PictureUploadSessionCompleteRequest completeRequest,
+                                                         HttpServletRequest request) {
+        ThrowUtils.throwIf(completeRequest == null, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        PictureUploadSession session = pictureUploadSessionManager.getSession(completeRequest.getUploadId(), loginUser.getId());
+        PictureUploadRequest pictureUploadRequest = new PictureUploadRequest();
+        pictureUploadRequest.setId(session.getPictureId());
+        pictureUploadRequest.setPicName(session.getPicName());
+        pictureUploadRequest.setSpaceId(session.getSpaceId());
+        PictureVO pictureVO = pictureService.uploadPicture(session, pictureUploadRequest, loginUser);
+        // 上传成功后才删除会话，失败时可以补传分片后重试
+        pictureUploadSessionManager.removeSession(session);
+        return ResultUtils.success(pictureVO);
+    }
+
     @PostMapping("/delete")
     @SaSpaceCheckPermission(value = SpaceUserPermissionConstant.PICTURE_DELETE)
     public BaseResponse<Boolean> deletePicture(@RequestBody DeleteRequest deleteRequest
@@ -143,7 +276,10 @@ public class PictureController {
         }
         // 将实体类和 DTO 进行转换
         Picture picture = new Picture();
-        BeanUtils.copyProperties(pictureUpdateRequest, picture);
+        picture.setId(pictureUpdateRequest.getId());
+        picture.setName(pictureUpdateRequest.getName());
+        picture.setIntroduction(pictureUpdateRequest.getIntroduction());
+        picture.setCategory(pictureUpdateRequest.getCategory());
         // 注意将 list 转为 string
         picture.setTags(JSONUtil.toJsonStr(pictureUpdateRequest.getTags()));
         // 数据校验
@@ -155,9 +291,51 @@ public class PictureController {
         // 补充审核参数
         User loginUser = userService.getLoginUser(request);
         pictureService.fillReviewParams(oldPicture, loginUser);
-        // 操作数据库
-        boolean result = pictureService.updateById(picture);
-        ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 操作数据库，同步更新标签关联
+        transactionTemplate.execute(status -> {
+            boolean result = pictureService.updateById(picture);
+            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+            if (pictureUpdateRequest.getTags() != null) {
+                picture.setSpaceId(oldPicture.getSpaceId());
+                pictureTagService.syncPictureTags(Collections.singletonList(picture));
+            }
+            return true;
+        });
+        if (oldPicture.getSpaceId() == null) {
+            pictureFeedCacheManager.invalidate();
+        }
+        pictureSearchIndexSyncer.syncPicture(id);
+        return ResultUtils.success(true);
+    }
+
+    /**
+     * 从数据库重建图片全文索引（仅管理员可用）
+     */
+    @PostMapping("/search/index/rebuild")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Boolean> rebuildPictureSearchIndex() {
+        boolean submitted = pictureSearchIndexSyncer.rebuildAsync();
+        ThrowUtils.throwIf(!submitted, ErrorCode.OPERATION_ERROR, "索引正在重建中");
+        return ResultUtils.success(true);
+    }
+
+    /**
+     * 根据图片表的标签字段回填图片标签关联表（仅管理员可用，异步执行）
+     */
+    @PostMapping("/tag/backfill")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Boolean> backfillPictureTags() {
+        pictureTagService.backfillPictureTags();
+        return ResultUtils.success(true);
+    }
+
+    /**
+     * 为没有感知哈希的历史图片补充哈希（仅管理员可用，异步执行）
+     */
+    @PostMapping("/hash/backfill")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Boolean> backfillPictureHashes() {
+        pictureHashIndexManager.backfillPictureHashes();
         return ResultUtils.success(true);
     }
 
@@ -193,7 +371,7 @@ public class PictureController {
             // 已经改为使用注解鉴权
             // User loginUser = userService.getLoginUser(request);
             // pictureService.checkPictureAuth(loginUser, picture);
-            space = spaceService.getById(spaceId);
+            space = spaceService.getCachedSpaceMetaById(spaceId);
             ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
         }
         // 获取权限列表
@@ -211,11 +389,8 @@ public class PictureController {
     @PostMapping("/list/page")
     @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
     public BaseResponse<Page<Picture>> listPictureByPage(@RequestBody PictureQueryRequest pictureQueryRequest) {
-        long current = pictureQueryRequest.getCurrent();
-        long size = pictureQueryRequest.getPageSize();
         // 查询数据库
-        Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
-                pictureService.getQueryWrapper(pictureQueryRequest));
+        Page<Picture> picturePage = pictureService.listPictureByPage(pictureQueryRequest);
         return ResultUtils.success(picturePage);
     }
 
@@ -225,7 +400,6 @@ public class PictureController {
     @PostMapping("/list/page/vo")
     public BaseResponse<Page<PictureVO>> listPictureVOByPage(@RequestBody PictureQueryRequest pictureQueryRequest,
                                                              HttpServletRequest request) {
-        long current = pictureQueryRequest.getCurrent();
         long size = pictureQueryRequest.getPageSize();
         // 限制爬虫
         ThrowUtils.throwIf(size > 20, ErrorCode.PARAMS_ERROR);
@@ -248,13 +422,44 @@ public class PictureController {
 //                throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间权限");
 //            }
         }
+        if (spaceId == null) {
+            // 公共图库走多级缓存
+            Page<PictureVO> pictureVOPage = pictureFeedCacheManager.getPictureVOPage(pictureQueryRequest, () -> {
+                Page<Picture> picturePage = pictureService.listPictureByPage(pictureQueryRequest);
+                return pictureService.getPictureVOPage(picturePage, request);
+            });
+            return ResultUtils.success(pictureVOPage);
+        }
         // 查询数据库
-        Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
-                pictureService.getQueryWrapper(pictureQueryRequest));
+        Page<Picture> picturePage = pictureService.listPictureByPage(pictureQueryRequest);
         // 获取封装类
         return ResultUtils.success(pictureService.getPictureVOPage(picturePage, request));
     }
 
+    /**
+     * 游标分页获取图片列表（封装类，适用于无限滚动，不查询总数）
+     */
+    @PostMapping("/list/cursor/vo")
+    public BaseResponse<CursorPage<PictureVO>> listPictureVOByCursor(@RequestBody PictureQueryRequest pictureQueryRequest,
+                                                                     HttpServletRequest request) {
+        ThrowUtils.throwIf(pictureQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        long size = pictureQueryRequest.getPageSize();
+        // 限制爬虫
+        ThrowUtils.throwIf(size > 20, ErrorCode.PARAMS_ERROR);
+        // 空间权限校验
+        Long spaceId = pictureQueryRequest.getSpaceId();
+        if (spaceId == null) {
+            // 公开图库
+            // 普通用户默认只能看到审核通过的数据
+            pictureQueryRequest.setReviewStatus(PictureReviewStatusEnum.PASS.getValue());
+            pictureQueryRequest.setNullSpaceId(true);
+        } else {
+            boolean hasPermission = StpKit.SPACE.hasPermission(SpaceUserPermissionConstant.PICTURE_VIEW);
+            ThrowUtils.throwIf(!hasPermission, ErrorCode.NO_AUTH_ERROR);
+        }
+        return ResultUtils.success(pictureService.listPictureVOByCursor(pictureQueryRequest, request));
+    }
+
     /**
      * 分页获取图片列表（封装类，有缓存）
      */
@@ -262,7 +467,6 @@ public class PictureController {
     @PostMapping("/list/page/vo/cache")
     public BaseResponse<Page<PictureVO>> listPictureVOByPageWithCache(@RequestBody PictureQueryRequest pictureQueryRequest,
                                                                       HttpServletRequest request) {
-        long current = pictureQueryRequest.getCurrent();
         long size = pictureQueryRequest.getPageSize();
         // 限制爬虫
         ThrowUtils.throwIf(size > 20, ErrorCode.PARAMS_ERROR);
@@ -290,8 +494,7 @@ public class PictureController {
             return ResultUtils.success(cachedPage);
         }
         // 3. 查询数据库
-        Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
-                pictureService.getQueryWrapper(pictureQueryRequest));
+        Page<Picture> picturePage = pictureService.listPictureByPage(pictureQueryRequest);
         Page<PictureVO> pictureVOPage = pictureService.getPictureVOPage(picturePage, request);
         // 4. 更新缓存
         // 更新 Redis 缓存
@@ -355,18 +558,61 @@ public class PictureController {
         return ResultUtils.success(uploadCount);
     }
 
+    /**
+     * 批量抓取并创建图片（通过 SSE 流式返回每张图片的处理进度）
+     */
+    @PostMapping("/upload/batch/stream")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public SseEmitter uploadPictureByBatchStream(@RequestBody PictureUploadByBatchRequest pictureUploadByBatchRequest,
+                                                 HttpServletRequest request) {
+        ThrowUtils.throwIf(pictureUploadByBatchRequest == null, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        // 额外留出抓取页面和入库的时间
+        SseEmitter emitter = new SseEmitter(TimeUnit.SECONDS.toMillis(BatchPictureUploader.BATCH_TIMEOUT_SECONDS + 60));
+        batchPictureUploader.submit(() -> pictureService.uploadPictureByBatch(pictureUploadByBatchRequest, loginUser,
+                        progressVO -> sendProgress(emitter, progressVO)))
+                .whenComplete((uploadCount, throwable) -> {
+                    if (throwable != null) {
+                        Throwable cause = throwable.getCause() != null ? throwable.getCause() : throwable;
+                        if (!(cause instanceof BusinessException)) {
+                            log.error("批量导入图片失败", cause);
+                        }
+                        String message = cause instanceof BusinessException ? cause.getMessage() : "导入失败";
+                        sendProgress(emitter, PictureUploadBatchProgressVO.error(message));
+                    }
+                    emitter.complete();
+                });
+        return emitter;
+    }
+
+    private void sendProgress(SseEmitter emitter, PictureUploadBatchProgressVO progressVO) {
+        try {
+            emitter.send(SseEmitter.event().name(progressVO.getType()).data(progressVO));
+        } catch (Exception e) {
+            // 客户端断开后继续导入，只是不再推送进度
+            log.debug("推送批量导入进度失败：{}", e.getMessage());
+        }
+    }
+
     /**
      * 以图搜图
      */
     @PostMapping("/search/picture")
-    public BaseResponse<List<ImageSearchResult>> searchPictureByPicture(@RequestBody SearchPictureByPictureRequest searchPictureByPictureRequest) {
+    public CompletableFuture<BaseResponse<List<ImageSearchResult>>> searchPictureByPicture(@RequestBody SearchPictureByPictureRequest searchPictureByPictureRequest) {
         ThrowUtils.throwIf(searchPictureByPictureRequest == null, ErrorCode.PARAMS_ERROR);
         Long pictureId = searchPictureByPictureRequest.getPictureId();
         ThrowUtils.throwIf(pictureId == null || pictureId <= 0, ErrorCode.PARAMS_ERROR);
         Picture picture = pictureService.getById(pictureId);
         ThrowUtils.throwIf(picture == null, ErrorCode.NOT_FOUND_ERROR);
-        List<ImageSearchResult> resultList = ImageSearchApiFacade.searchImage(picture.getUrl());
-        return ResultUtils.success(resultList);
+        // 空间权限校验，结果来自图片所在的空间
+        if (picture.getSpaceId() != null) {
+            boolean hasPermission = StpKit.SPACE.hasPermission(SpaceUserPermissionConstant.PICTURE_VIEW);
+            ThrowUtils.throwIf(!hasPermission, ErrorCode.NO_AUTH_ERROR);
+        }
+        boolean external = Boolean.TRUE.equals(searchPictureByPictureRequest.getExternal());
+        // 外部搜索不占用 Web 容器线程，结果就绪后再写回响应
+        return pictureService.searchPictureByPicture(picture, external)
+                .thenApply(ResultUtils::success);
     }
 
     /**
@@ -379,7 +625,8 @@ public class PictureController {
         String picColor = searchPictureByColorRequest.getPicColor();
         Long spaceId = searchPictureByColorRequest.getSpaceId();
         User loginUser = userService.getLoginUser(request);
-        List<PictureVO> pictureVOList = pictureService.searchPictureByColor(spaceId, picColor, loginUser);
+        List<PictureVO> pictureVOList = pictureService.searchPictureByColor(spaceId, picColor,
+                searchPictureByColorRequest.getColorDistanceMode(), searchPictureByColorRequest.getColorMatchMode(), loginUser);
         return ResultUtils.success(pictureVOList);
     }
 
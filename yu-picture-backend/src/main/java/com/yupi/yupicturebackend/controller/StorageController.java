@@ -0,0 +1,66 @@
+package com.yupi.yupicturebackend.controller;
+
+import cn.hutool.core.io.FileUtil;
+import com.yupi.yupicturebackend.manager.storage.LocalObjectStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 本地对象存储的文件访问和预签名直传（仅 storage.type=local 时启用）
+ */
+@Slf4j
+@RestController
+@RequestMapping("/storage")
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+public class StorageController {
+
+    private static final String PATH_PREFIX = "/storage/";
+
+    @Resource
+    private LocalObjectStorage localObjectStorage;
+
+    /**
+     * 读取对象（内存映射，直接写入响应）
+     */
+    @GetMapping("/**")
+    public void getObject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String key = path.substring(PATH_PREFIX.length());
+        MappedByteBuffer buffer = localObjectStorage.mapObject(key);
+        response.setContentType(MediaTypeFactory.getMediaType(FileUtil.getName(key))
+                .map(Object::toString).orElse("application/octet-stream"));
+        response.setContentLengthLong(buffer.capacity());
+        // 唯一键不会复用，可以长期缓存
+        response.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+        WritableByteChannel channel = Channels.newChannel(response.getOutputStream());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * 通过预签名地址直传对象
+     */
+    @PutMapping("/**")
+    public void putObject(@RequestParam("expires") Long expires, @RequestParam("signature") String signature,
+                          HttpServletRequest request) throws IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String key = path.substring(PATH_PREFIX.length());
+        localObjectStorage.checkPresignedPut(key, expires, signature);
+        localObjectStorage.putObject(key, request.getInputStream());
+    }
+}
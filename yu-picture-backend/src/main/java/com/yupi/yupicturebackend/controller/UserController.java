@@ -12,6 +12,7 @@ import com.yupi.yupicturebackend.constant.UserConstant;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
 import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.manager.cache.UserCacheManager;
 import com.yupi.yupicturebackend.model.dto.user.*;
 import com.yupi.yupicturebackend.model.entity.User;
 import com.yupi.yupicturebackend.model.vo.LoginUserVO;
@@ -32,6 +33,9 @@ public class UserController {
     @Resource
     private UserService userService;
 
+    @Resource
+    private UserCacheManager userCacheManager;
+
     /**
      * 用户注册
      */
@@ -127,6 +131,7 @@ public class UserController {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
         boolean b = userService.removeById(deleteRequest.getId());
+        userCacheManager.invalidate(deleteRequest.getId());
         return ResultUtils.success(b);
     }
 
@@ -143,6 +148,7 @@ public class UserController {
         BeanUtils.copyProperties(userUpdateRequest, user);
         boolean result = userService.updateById(user);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        userCacheManager.invalidate(user.getId());
         return ResultUtils.success(true);
     }
 
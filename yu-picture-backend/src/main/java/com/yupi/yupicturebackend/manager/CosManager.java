@@ -1,19 +1,36 @@
 package com.yupi.yupicturebackend.manager;
 
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
 import com.qcloud.cos.COSClient;
+import com.qcloud.cos.exception.CosServiceException;
+import com.qcloud.cos.http.HttpMethodName;
 import com.qcloud.cos.model.COSObject;
 import com.qcloud.cos.model.GetObjectRequest;
+import com.qcloud.cos.model.ObjectMetadata;
 import com.qcloud.cos.model.PutObjectRequest;
 import com.qcloud.cos.model.PutObjectResult;
+import com.qcloud.cos.model.ciModel.common.ImageProcessRequest;
+import com.qcloud.cos.model.ciModel.persistence.CIUploadResult;
 import com.qcloud.cos.model.ciModel.persistence.PicOperations;
 import com.yupi.yupicturebackend.config.CosClientConfig;
+import com.yupi.yupicturebackend.config.MultipartUploadConfig;
+import com.yupi.yupicturebackend.manager.multipart.CosMultipartUploadClient;
+import com.yupi.yupicturebackend.manager.multipart.MultipartUploader;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class CosManager {
@@ -24,6 +41,31 @@ public class CosManager {
     @Resource
     private COSClient cosClient;
 
+    @Resource
+    private MultipartUploadConfig multipartUploadConfig;
+
+    /**
+     * 分块上传线程池（单个文件的并发数由 MultipartUploader 控制）
+     */
+    private ThreadPoolExecutor multipartExecutor;
+
+    private MultipartUploader multipartUploader;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = multipartUploadConfig.getConcurrency() * 2;
+        multipartExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(256),
+                ThreadFactoryBuilder.create().setNamePrefix("cosMultipart").build());
+        multipartUploader = new MultipartUploader(multipartUploadConfig.getPartSize(),
+                multipartUploadConfig.getConcurrency(), multipartUploadConfig.getMaxRetries(), multipartExecutor);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        multipartExecutor.shutdownNow();
+    }
+
     /**
      * 上传对象
      *
@@ -31,11 +73,33 @@ public class CosManager {
      * @param file 文件
      */
     public PutObjectResult putObject(String key, File file) {
+        // 大文件自动使用分块上传
+        if (file.length() > multipartUploadConfig.getThreshold()) {
+            return multipartUploader.upload(buildMultipartUploadClient(null), key, file);
+        }
         PutObjectRequest putObjectRequest = new PutObjectRequest(cosClientConfig.getBucket(), key,
                 file);
         return cosClient.putObject(putObjectRequest);
     }
 
+    /**
+     * 上传对象（直接读取输入流）
+     *
+     * @param key           唯一键
+     * @param inputStream   输入流
+     * @param contentLength 内容长度
+     */
+    public PutObjectResult putObject(String key, InputStream inputStream, long contentLength) {
+        if (contentLength > multipartUploadConfig.getThreshold()) {
+            return multipartUploader.upload(buildMultipartUploadClient(null), key, inputStream, contentLength);
+        }
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setContentLength(contentLength);
+        PutObjectRequest putObjectRequest = new PutObjectRequest(cosClientConfig.getBucket(), key,
+                inputStream, objectMetadata);
+        return cosClient.putObject(putObjectRequest);
+    }
+
     /**
      * 下载对象
      *
@@ -53,8 +117,102 @@ public class CosManager {
      * @param file 文件
      */
     public PutObjectResult putPictureObject(String key, File file) {
+        if (file.length() > multipartUploadConfig.getThreshold()) {
+            return multipartUploader.upload(buildMultipartUploadClient(buildPicOperations(key, file.length())),
+                    key, file);
+        }
         PutObjectRequest putObjectRequest = new PutObjectRequest(cosClientConfig.getBucket(), key,
                 file);
+        putObjectRequest.setPicOperations(buildPicOperations(key, file.length()));
+        return cosClient.putObject(putObjectRequest);
+    }
+
+    /**
+     * 上传对象（附带图片信息），直接读取输入流，不落盘
+     *
+     * @param key           唯一键
+     * @param inputStream   输入流
+     * @param contentLength 内容长度
+     */
+    public PutObjectResult putPictureObject(String key, InputStream inputStream, long contentLength) {
+        if (contentLength > multipartUploadConfig.getThreshold()) {
+            return multipartUploader.upload(buildMultipartUploadClient(buildPicOperations(key, contentLength)),
+                    key, inputStream, contentLength);
+        }
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setContentLength(contentLength);
+        PutObjectRequest putObjectRequest = new PutObjectRequest(cosClientConfig.getBucket(), key,
+                inputStream, objectMetadata);
+        putObjectRequest.setPicOperations(buildPicOperations(key, contentLength));
+        return cosClient.putObject(putObjectRequest);
+    }
+
+    /**
+     * 对已存储的图片执行数据万象持久化处理
+     *
+     * @param key           唯一键
+     * @param picOperations 处理规则
+     */
+    public CIUploadResult processPictureObject(String key, PicOperations picOperations) {
+        ImageProcessRequest imageProcessRequest = new ImageProcessRequest(cosClientConfig.getBucket(), key);
+        imageProcessRequest.setPicOperations(picOperations);
+        return cosClient.processImage(imageProcessRequest);
+    }
+
+    /**
+     * 对客户端直传的图片执行与上传时相同的处理（获取图片信息、压缩、缩略图）
+     *
+     * @param key         唯一键
+     * @param contentSize 原图大小
+     */
+    public CIUploadResult processPictureObject(String key, long contentSize) {
+        return processPictureObject(key, buildPicOperations(key, contentSize));
+    }
+
+    /**
+     * 生成预签名地址
+     *
+     * @param key        唯一键
+     * @param expiration 过期时间
+     * @param method     允许的请求方法
+     */
+    public URL generatePresignedUrl(String key, Date expiration, HttpMethodName method) {
+        return cosClient.generatePresignedUrl(cosClientConfig.getBucket(), key, expiration, method);
+    }
+
+    /**
+     * 获取对象元信息
+     *
+     * @param key 唯一键
+     * @return 对象不存在时返回 null
+     */
+    public ObjectMetadata getObjectMetadata(String key) {
+        try {
+            return cosClient.getObjectMetadata(cosClientConfig.getBucket(), key);
+        } catch (CosServiceException e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 分块上传客户端
+     *
+     * @param picOperations 合并分块时执行的图片处理，可以为空
+     */
+    private CosMultipartUploadClient buildMultipartUploadClient(PicOperations picOperations) {
+        return new CosMultipartUploadClient(cosClient, cosClientConfig.getBucket(), picOperations);
+    }
+
+    /**
+     * 构造图片处理参数
+     *
+     * @param key         唯一键
+     * @param contentSize 原图大小
+     */
+    private PicOperations buildPicOperations(String key, long contentSize) {
         // 对图片进行处理（获取基本信息也被视作为一种图片的处理）
         PicOperations picOperations = new PicOperations();
         // 1 表示返回原图信息
@@ -69,7 +227,7 @@ public class CosManager {
         compressRule.setRule("imageMogr2/format/webp");
         rules.add(compressRule);
         // 2. 缩略图处理，仅对 > 20 KB 的图片生成缩略图
-        if (file.length() > 2 * 1024) {
+        if (contentSize > 2 * 1024) {
             PicOperations.Rule thumbnailRule = new PicOperations.Rule();
             // 拼接缩略图的路径
             String thumbnailKey = FileUtil.mainName(key) + "_thumbnail." + FileUtil.getSuffix(key);
@@ -81,8 +239,7 @@ public class CosManager {
         }
         // 构造处理参数
         picOperations.setRules(rules);
-        putObjectRequest.setPicOperations(picOperations);
-        return cosClient.putObject(putObjectRequest);
+        return picOperations;
     }
 
     /**
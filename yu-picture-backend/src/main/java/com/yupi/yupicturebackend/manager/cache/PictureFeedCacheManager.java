@@ -0,0 +1,157 @@
+package com.yupi.yupicturebackend.manager.cache;
+
+import cn.hutool.core.lang.TypeReference;
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yupi.yupicturebackend.model.dto.picture.PictureQueryRequest;
+import com.yupi.yupicturebackend.model.vo.PictureVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 公共图库首页列表多级缓存（本地 Caffeine + Redis）
+ * <p>
+ * 缓存 key 中带有版本号，图片发生上传、编辑、审核、删除时递增版本号，
+ * 并通过 Redis 发布订阅通知所有节点清空本地缓存，旧版本的 Redis 缓存随过期时间自然淘汰。
+ */
+@Slf4j
+@Component
+public class PictureFeedCacheManager implements MessageListener {
+
+    private static final String CACHE_KEY_PREFIX = "yupicture:listPictureVOByPage:";
+
+    /**
+     * 缓存版本号的 key
+     */
+    private static final String VERSION_KEY = CACHE_KEY_PREFIX + "version";
+
+    /**
+     * 缓存失效通知频道
+     */
+    private static final String INVALIDATE_CHANNEL = CACHE_KEY_PREFIX + "invalidate";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 本地缓存
+     */
+    private final Cache<String, Page<PictureVO>> LOCAL_CACHE = Caffeine.newBuilder()
+            .initialCapacity(1024)
+            .maximumSize(10_000L) // 最大 10000 条
+            // 缓存 5 分钟后移除
+            .expireAfterWrite(Duration.ofMinutes(5))
+            .build();
+
+    /**
+     * 当前节点已知的缓存版本号
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+        try {
+            String currentVersion = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+            if (currentVersion != null) {
+                version.set(Long.parseLong(currentVersion));
+            }
+        } catch (Exception e) {
+            log.error("读取图片列表缓存版本号失败", e);
+        }
+    }
+
+    /**
+     * 查询缓存，未命中则调用 loader 查询数据库并写入缓存
+     *
+     * @param pictureQueryRequest 查询条件
+     * @param loader              数据库查询逻辑
+     * @return
+     */
+    public Page<PictureVO> getPictureVOPage(PictureQueryRequest pictureQueryRequest, Supplier<Page<PictureVO>> loader) {
+        // 在查询数据库之前确定版本号，避免查询期间发生的变更被写入新版本的缓存
+        long currentVersion = version.get();
+        String cacheKey = buildCacheKey(pictureQueryRequest, currentVersion);
+        // 1. 先从本地缓存中查询
+        Page<PictureVO> cachedPage = LOCAL_CACHE.getIfPresent(cacheKey);
+        if (cachedPage != null) {
+            return cachedPage;
+        }
+        // 2. 本地缓存未命中，查询 Redis 分布式缓存
+        String cachedValue = stringRedisTemplate.opsForValue().get(cacheKey);
+        if (cachedValue != null) {
+            // 如果缓存命中，更新本地缓存，返回结果
+            cachedPage = JSONUtil.toBean(cachedValue, new TypeReference<Page<PictureVO>>() {
+            }, false);
+            LOCAL_CACHE.put(cacheKey, cachedPage);
+            return cachedPage;
+        }
+        // 3. 查询数据库
+        Page<PictureVO> pictureVOPage = loader.get();
+        // 4. 更新缓存
+        // 设置缓存的过期时间，5 - 10 分钟过期，防止缓存雪崩
+        int cacheExpireTime = 300 + RandomUtil.randomInt(0, 300);
+        stringRedisTemplate.opsForValue().set(cacheKey, JSONUtil.toJsonStr(pictureVOPage), cacheExpireTime, TimeUnit.SECONDS);
+        LOCAL_CACHE.put(cacheKey, pictureVOPage);
+        return pictureVOPage;
+    }
+
+    /**
+     * 使公共图库的列表缓存全部失效（递增版本号并通知所有节点）
+     */
+    public void invalidate() {
+        Long newVersion = stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+        if (newVersion == null) {
+            return;
+        }
+        // 当前节点立即生效，其他节点通过订阅消息生效
+        applyVersion(newVersion);
+        stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, String.valueOf(newVersion));
+    }
+
+    /**
+     * 收到其他节点的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            long newVersion = Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8));
+            applyVersion(newVersion);
+        } catch (NumberFormatException e) {
+            log.error("图片列表缓存失效消息格式错误", e);
+        }
+    }
+
+    private void applyVersion(long newVersion) {
+        long oldVersion = version.getAndAccumulate(newVersion, Math::max);
+        if (newVersion > oldVersion) {
+            LOCAL_CACHE.invalidateAll();
+        }
+    }
+
+    private String buildCacheKey(PictureQueryRequest pictureQueryRequest, long currentVersion) {
+        String queryCondition = JSONUtil.toJsonStr(pictureQueryRequest);
+        String hashKey = DigestUtils.md5DigestAsHex(queryCondition.getBytes(StandardCharsets.UTF_8));
+        return CACHE_KEY_PREFIX + "v" + currentVersion + ":" + hashKey;
+    }
+}
@@ -0,0 +1,184 @@
+package com.yupi.yupicturebackend.manager.cache;
+
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.json.JSONUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yupi.yupicturebackend.manager.quota.SpaceQuotaManager;
+import com.yupi.yupicturebackend.manager.quota.SpaceUsage;
+import com.yupi.yupicturebackend.model.entity.Space;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 空间多级缓存（本地 Caffeine + Redis）
+ * <p>
+ * 空间信息拆成两部分缓存：名称、级别、额度上限等基本信息很少变化，缓存在本地和 Redis 中，空间被修改或删除时清除；
+ * 已用额度（totalSize / totalCount）经常变化，由 {@link SpaceQuotaManager} 保存在 Redis 中并随图片增删原子更新，
+ * 额度变化不会清除基本信息的缓存。
+ */
+@Slf4j
+@Component
+public class SpaceCacheManager implements MessageListener {
+
+    private static final String CACHE_KEY_PREFIX = "yupicture:space:";
+
+    /**
+     * 基本信息的 key 前缀
+     */
+    private static final String META_KEY_PREFIX = CACHE_KEY_PREFIX + "meta:";
+
+    /**
+     * 缓存失效通知频道
+     */
+    private static final String INVALIDATE_CHANNEL = CACHE_KEY_PREFIX + "invalidate";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private SpaceQuotaManager spaceQuotaManager;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 基本信息的本地缓存（不含已用额度）
+     */
+    private final Cache<Long, Space> LOCAL_CACHE = Caffeine.newBuilder()
+            .maximumSize(10_000L)
+            // 即使失效通知丢失，5 分钟后也会重新查询
+            .expireAfterWrite(Duration.ofMinutes(5))
+            .build();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 查询空间，基本信息和已用额度分别从缓存中获取，未命中则调用 loader 查询数据库（空间不存在时不缓存）
+     *
+     * @param spaceId 空间 id
+     * @param loader  数据库查询逻辑
+     * @return 每次返回新的对象，可以修改；空间不存在时返回 null
+     */
+    public Space getSpace(Long spaceId, Function<Long, Space> loader) {
+        Space space = getSpaceMeta(spaceId, loader);
+        if (space == null) {
+            return null;
+        }
+        // 已用额度：Redis => 图片表统计
+        SpaceUsage spaceUsage = spaceQuotaManager.getUsage(spaceId);
+        space.setTotalSize(spaceUsage.getTotalSize());
+        space.setTotalCount(spaceUsage.getTotalCount());
+        return space;
+    }
+
+    /**
+     * 只查询空间基本信息（不含已用额度，totalSize / totalCount 为 null），本地缓存命中时不访问 Redis
+     *
+     * @param spaceId 空间 id
+     * @param loader  数据库查询逻辑
+     * @return 每次返回新的对象，可以修改；空间不存在时返回 null
+     */
+    public Space getSpaceMeta(Long spaceId, Function<Long, Space> loader) {
+        // 本地缓存 => Redis => 数据库
+        Space metaSpace = LOCAL_CACHE.getIfPresent(spaceId);
+        if (metaSpace == null) {
+            String cachedValue = stringRedisTemplate.opsForValue().get(META_KEY_PREFIX + spaceId);
+            if (cachedValue != null) {
+                metaSpace = JSONUtil.toBean(cachedValue, Space.class);
+            } else {
+                Space dbSpace = loader.apply(spaceId);
+                if (dbSpace == null) {
+                    return null;
+                }
+                metaSpace = copyMeta(dbSpace);
+                // 30 - 60 分钟过期，防止缓存雪崩
+                int cacheExpireTime = 1800 + RandomUtil.randomInt(0, 1800);
+                stringRedisTemplate.opsForValue().set(META_KEY_PREFIX + spaceId, JSONUtil.toJsonStr(metaSpace),
+                        cacheExpireTime, TimeUnit.SECONDS);
+            }
+            LOCAL_CACHE.put(spaceId, metaSpace);
+        }
+        return copyMeta(metaSpace);
+    }
+
+    /**
+     * 空间基本信息被修改后清除缓存（已用额度不受影响）
+     *
+     * @param spaceId 空间 id
+     */
+    public void invalidate(Long spaceId) {
+        stringRedisTemplate.delete(META_KEY_PREFIX + spaceId);
+        evictLocal(spaceId);
+    }
+
+    /**
+     * 空间被删除后清除全部缓存
+     *
+     * @param spaceId 空间 id
+     */
+    public void remove(Long spaceId) {
+        stringRedisTemplate.delete(META_KEY_PREFIX + spaceId);
+        spaceQuotaManager.remove(spaceId);
+        evictLocal(spaceId);
+    }
+
+    /**
+     * 收到其他节点的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            LOCAL_CACHE.invalidate(Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8)));
+        } catch (NumberFormatException e) {
+            log.error("空间缓存失效消息格式错误", e);
+        }
+    }
+
+    /**
+     * 清除当前节点的本地缓存，并通知其他节点
+     */
+    private void evictLocal(Long spaceId) {
+        LOCAL_CACHE.invalidate(spaceId);
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, String.valueOf(spaceId));
+        } catch (Exception e) {
+            // 其他节点的本地缓存最多 5 分钟后过期
+            log.error("发送空间缓存失效通知失败, spaceId = {}", spaceId, e);
+        }
+    }
+
+    /**
+     * 复制基本信息（不含已用额度）
+     */
+    private static Space copyMeta(Space source) {
+        Space space = new Space();
+        space.setId(source.getId());
+        space.setSpaceName(source.getSpaceName());
+        space.setSpaceLevel(source.getSpaceLevel());
+        space.setSpaceType(source.getSpaceType());
+        space.setMaxSize(source.getMaxSize());
+        space.setMaxCount(source.getMaxCount());
+        space.setUserId(source.getUserId());
+        space.setCreateTime(source.getCreateTime());
+        space.setEditTime(source.getEditTime());
+        space.setUpdateTime(source.getUpdateTime());
+        space.setIsDelete(source.getIsDelete());
+        return space;
+    }
+}
@@ -0,0 +1,133 @@
+package com.yupi.yupicturebackend.manager.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yupi.yupicturebackend.model.entity.User;
+import com.yupi.yupicturebackend.model.vo.UserVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 用户本地缓存（按 id 缓存，用于解析登录用户和组装各类封装对象中的用户信息）
+ * <p>
+ * 缓存时间很短，用户被修改或删除时清除当前节点的缓存，并通过 Redis 发布订阅通知其他节点。
+ * 脱敏后的 UserVO 在多个请求之间共享，取出后只读，不要修改。
+ */
+@Slf4j
+@Component
+public class UserCacheManager implements MessageListener {
+
+    /**
+     * 缓存失效通知频道
+     */
+    private static final String INVALIDATE_CHANNEL = "yupicture:user:invalidate";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final Cache<Long, User> LOCAL_CACHE = Caffeine.newBuilder()
+            .maximumSize(10_000L)
+            // 即使失效通知丢失，1 分钟后也会重新查询
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .build();
+
+    /**
+     * 脱敏后的用户信息（列表页、WebSocket 广播中的用户信息都从这里取）
+     */
+    private final Cache<Long, UserVO> USER_VO_CACHE = Caffeine.newBuilder()
+            .maximumSize(10_000L)
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .build();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 查询缓存，未命中则调用 loader 查询数据库（用户不存在时不缓存）
+     *
+     * @param userId 用户 id
+     * @param loader 数据库查询逻辑
+     * @return 用户不存在时返回 null
+     */
+    public User getUser(Long userId, Function<Long, User> loader) {
+        return LOCAL_CACHE.get(userId, loader);
+    }
+
+    /**
+     * 批量获取脱敏后的用户信息
+     * <p>
+     * 用户 id 先去重，缓存中没有的用户只调用一次 loader 批量查询，查询结果写入缓存；缓存全部命中时不查询数据库。
+     *
+     * @param userIds 用户 id，可以重复或包含 null
+     * @param loader  批量查询逻辑（入参为未命中的用户 id）
+     * @return 用户 id => 用户信息，不存在的用户不在结果中
+     */
+    public Map<Long, UserVO> getUserVOMap(Collection<Long> userIds,
+                                          Function<Set<Long>, Map<Long, UserVO>> loader) {
+        if (userIds == null || userIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Set<Long> userIdSet = userIds.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (userIdSet.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return USER_VO_CACHE.getAll(userIdSet, missingUserIds -> loader.apply(new HashSet<>(missingUserIds)));
+    }
+
+    /**
+     * 清除用户缓存（当前节点立即生效，其他节点通过订阅消息生效）
+     *
+     * @param userId 用户 id
+     */
+    public void invalidate(Long userId) {
+        invalidateLocal(userId);
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, String.valueOf(userId));
+        } catch (Exception e) {
+            // 其他节点的缓存最多 1 分钟后过期
+            log.error("发送用户缓存失效通知失败, userId = {}", userId, e);
+        }
+    }
+
+    /**
+     * 收到其他节点的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            invalidateLocal(Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8)));
+        } catch (NumberFormatException e) {
+            log.error("用户缓存失效消息格式错误", e);
+        }
+    }
+
+    private void invalidateLocal(Long userId) {
+        LOCAL_CACHE.invalidate(userId);
+        USER_VO_CACHE.invalidate(userId);
+    }
+}
@@ -0,0 +1,210 @@
+package com.yupi.yupicturebackend.manager.color;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.model.dto.file.PaletteColor;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.enums.ColorDistanceModeEnum;
+import com.yupi.yupicturebackend.model.enums.ColorMatchModeEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 空间图片颜色索引管理
+ * <p>
+ * 每个空间的索引在首次查询时从数据库加载（只查询 id 和主色调），之后随图片上传、删除增量更新，
+ * 长时间未访问的空间会被淘汰，下次查询时重新加载。
+ * 增量更新通过 Redis 发布订阅广播到所有节点。
+ */
+@Slf4j
+@Component
+public class PictureColorIndexManager implements MessageListener {
+
+    /**
+     * 颜色索引同步频道，消息格式：spaceId,pictureId,picColor,picPalette（picColor 为空表示删除，picPalette 为 JSON 可以包含逗号，放在最后）
+     */
+    private static final String SYNC_CHANNEL = "yupicture:picture:color:sync";
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final Cache<Long, SpaceColorIndex> SPACE_INDEX_CACHE = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(SYNC_CHANNEL));
+    }
+
+    /**
+     * 查询空间内与目标颜色最相似的图片
+     *
+     * @param spaceId
+     * @param targetRgb 0xRRGGBB
+     * @param k
+     * @param mode      色差算法
+     * @param matchMode 匹配方式
+     * @return 图片 id，按相似度从高到低排列
+     */
+    public long[] searchTopK(long spaceId, int targetRgb, int k, ColorDistanceModeEnum mode, ColorMatchModeEnum matchMode) {
+        SpaceColorIndex spaceColorIndex = SPACE_INDEX_CACHE.get(spaceId, this::loadSpaceColorIndex);
+        return spaceColorIndex.topK(targetRgb, k, mode, matchMode);
+    }
+
+    /**
+     * 图片上传后更新索引
+     *
+     * @param spaceId
+     * @param pictureId
+     * @param picColor
+     * @param picPalette 调色板 JSON
+     */
+    public void upsert(Long spaceId, Long pictureId, String picColor, String picPalette) {
+        if (spaceId == null || pictureId == null) {
+            return;
+        }
+        publish(spaceId, pictureId, StrUtil.nullToEmpty(picColor), StrUtil.nullToEmpty(picPalette));
+    }
+
+    /**
+     * 图片删除后更新索引
+     *
+     * @param spaceId
+     * @param pictureId
+     */
+    public void remove(Long spaceId, Long pictureId) {
+        if (spaceId == null || pictureId == null) {
+            return;
+        }
+        publish(spaceId, pictureId, "", "");
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(",", 4);
+        if (parts.length < 3) {
+            log.error("颜色索引同步消息格式错误");
+            return;
+        }
+        String picPalette = parts.length > 3 ? parts[3] : "";
+        apply(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2], picPalette);
+    }
+
+    private void publish(long spaceId, long pictureId, String picColor, String picPalette) {
+        try {
+            stringRedisTemplate.convertAndSend(SYNC_CHANNEL, spaceId + "," + pictureId + "," + picColor + "," + picPalette);
+        } catch (Exception e) {
+            // 广播失败时至少保证当前节点的索引是新的
+            log.error("广播颜色索引同步消息失败", e);
+            apply(spaceId, pictureId, picColor, picPalette);
+        }
+    }
+
+    /**
+     * 更新本地索引（空间索引未加载时无需处理，下次查询会从数据库加载）
+     */
+    private void apply(long spaceId, long pictureId, String picColor, String picPalette) {
+        Integer rgb = parseColor(picColor);
+        SpaceColorIndex.Palette palette = parsePalette(picPalette);
+        // computeIfPresent 会等待正在进行的加载完成，避免加载过程中的更新丢失
+        SPACE_INDEX_CACHE.asMap().computeIfPresent(spaceId, (key, spaceColorIndex) -> {
+            if (rgb == null) {
+                spaceColorIndex.remove(pictureId);
+            } else {
+                spaceColorIndex.upsert(pictureId, rgb, palette);
+            }
+            return spaceColorIndex;
+        });
+    }
+
+    /**
+     * 解析颜色字符串（如 0xRRGGBB、#RRGGBB）
+     *
+     * @param color
+     * @return 0xRRGGBB，格式错误时返回 null
+     */
+    public static Integer parseColor(String color) {
+        if (StrUtil.isBlank(color)) {
+            return null;
+        }
+        try {
+            return Integer.decode(color.trim()) & 0xFFFFFF;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解析调色板 JSON，忽略格式错误的颜色
+     *
+     * @param picPalette
+     * @return 为空或格式错误时返回 null
+     */
+    private static SpaceColorIndex.Palette parsePalette(String picPalette) {
+        if (StrUtil.isBlank(picPalette)) {
+            return null;
+        }
+        List<PaletteColor> paletteColorList;
+        try {
+            paletteColorList = JSONUtil.toList(picPalette, PaletteColor.class);
+        } catch (Exception e) {
+            log.warn("图片调色板格式错误：{}", picPalette);
+            return null;
+        }
+        int[] rgbArray = new int[paletteColorList.size()];
+        float[] weightArray = new float[paletteColorList.size()];
+        int count = 0;
+        for (PaletteColor paletteColor : paletteColorList) {
+            Integer rgb = parseColor(paletteColor.getColor());
+            if (rgb == null || paletteColor.getWeight() == null) {
+                continue;
+            }
+            rgbArray[count] = rgb;
+            weightArray[count] = paletteColor.getWeight().floatValue();
+            count++;
+        }
+        if (count == 0) {
+            return null;
+        }
+        return new SpaceColorIndex.Palette(Arrays.copyOf(rgbArray, count), Arrays.copyOf(weightArray, count));
+    }
+
+    private SpaceColorIndex loadSpaceColorIndex(Long spaceId) {
+        List<Picture> pictureList = pictureMapper.selectList(new LambdaQueryWrapper<Picture>()
+                .select(Picture::getId, Picture::getPicColor, Picture::getPicPalette)
+                .eq(Picture::getSpaceId, spaceId)
+                .isNotNull(Picture::getPicColor));
+        SpaceColorIndex spaceColorIndex = new SpaceColorIndex(pictureList.size());
+        for (Picture picture : pictureList) {
+            Integer rgb = parseColor(picture.getPicColor());
+            if (rgb != null) {
+                spaceColorIndex.append(picture.getId(), rgb, parsePalette(picture.getPicPalette()));
+            }
+        }
+        return spaceColorIndex;
+    }
+}
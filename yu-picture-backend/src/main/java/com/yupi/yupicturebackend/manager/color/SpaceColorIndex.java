@@ -0,0 +1,379 @@
+package com.yupi.yupicturebackend.manager.color;
+
+import com.yupi.yupicturebackend.model.enums.ColorDistanceModeEnum;
+import com.yupi.yupicturebackend.model.enums.ColorMatchModeEnum;
+import com.yupi.yupicturebackend.utils.ColorLabUtils;
+import com.yupi.yupicturebackend.utils.ColorPaletteUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 单个空间的图片颜色索引
+ * <p>
+ * 颜色以 0xRRGGBB 的形式存放在 int 数组中，与图片 id 数组一一对应，同时预先计算好 CIELAB 坐标，
+ * 查询时对整个数组批量打分，再用大小为 K 的堆保留最相似的图片，不需要读取数据库的整行数据。
+ * <p>
+ * 每张图片另外占用固定 {@link #PALETTE_SLOTS} 个调色板槽位（第 i 张图片对应 [i * PALETTE_SLOTS, (i + 1) * PALETTE_SLOTS)），
+ * 按调色板匹配时图片得分为 min(ΔE + 占比惩罚)，没有调色板的历史图片用主色调作为唯一的调色板颜色。
+ */
+public class SpaceColorIndex {
+
+    /**
+     * 每张图片的调色板槽位数
+     */
+    static final int PALETTE_SLOTS = ColorPaletteUtils.DEFAULT_PALETTE_SIZE;
+
+    /**
+     * 调色板颜色占比的惩罚系数（ΔE 单位），占比最高的颜色不惩罚，占比越低惩罚越大
+     */
+    private static final float PALETTE_WEIGHT_PENALTY = 10f;
+
+    private int[] rgbArray;
+
+    private long[] idArray;
+
+    /**
+     * 预计算的 CIELAB 坐标和彩度
+     */
+    private float[] lArray;
+
+    private float[] aArray;
+
+    private float[] bArray;
+
+    private float[] chromaArray;
+
+    /**
+     * 调色板槽位的 CIELAB 坐标、彩度和占比惩罚（未使用的槽位惩罚为正无穷）
+     */
+    private float[] paletteLArray;
+
+    private float[] paletteAArray;
+
+    private float[] paletteBArray;
+
+    private float[] paletteChromaArray;
+
+    private float[] palettePenaltyArray;
+
+    private int size;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SpaceColorIndex(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        this.rgbArray = new int[capacity];
+        this.idArray = new long[capacity];
+        this.lArray = new float[capacity];
+        this.aArray = new float[capacity];
+        this.bArray = new float[capacity];
+        this.chromaArray = new float[capacity];
+        this.paletteLArray = new float[capacity * PALETTE_SLOTS];
+        this.paletteAArray = new float[capacity * PALETTE_SLOTS];
+        this.paletteBArray = new float[capacity * PALETTE_SLOTS];
+        this.paletteChromaArray = new float[capacity * PALETTE_SLOTS];
+        this.palettePenaltyArray = new float[capacity * PALETTE_SLOTS];
+    }
+
+    /**
+     * 新增或更新图片颜色
+     *
+     * @param pictureId
+     * @param rgb       0xRRGGBB
+     * @param palette   调色板，可以为 null
+     */
+    public void upsert(long pictureId, int rgb, Palette palette) {
+        lock.writeLock().lock();
+        try {
+            int index = indexOf(pictureId);
+            if (index < 0) {
+                ensureCapacity(size + 1);
+                index = size++;
+                idArray[index] = pictureId;
+            }
+            set(index, rgb, palette);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 追加图片颜色（仅用于从数据库批量加载，调用方保证 id 不重复）
+     *
+     * @param pictureId
+     * @param rgb       0xRRGGBB
+     * @param palette   调色板，可以为 null
+     */
+    void append(long pictureId, int rgb, Palette palette) {
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(size + 1);
+            idArray[size] = pictureId;
+            set(size, rgb, palette);
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除图片（用最后一个元素填补空位）
+     *
+     * @param pictureId
+     */
+    public void remove(long pictureId) {
+        lock.writeLock().lock();
+        try {
+            int index = indexOf(pictureId);
+            if (index < 0) {
+                return;
+            }
+            int last = --size;
+            idArray[index] = idArray[last];
+            rgbArray[index] = rgbArray[last];
+            lArray[index] = lArray[last];
+            aArray[index] = aArray[last];
+            bArray[index] = bArray[last];
+            chromaArray[index] = chromaArray[last];
+            int from = last * PALETTE_SLOTS;
+            int to = index * PALETTE_SLOTS;
+            System.arraycopy(paletteLArray, from, paletteLArray, to, PALETTE_SLOTS);
+            System.arraycopy(paletteAArray, from, paletteAArray, to, PALETTE_SLOTS);
+            System.arraycopy(paletteBArray, from, paletteBArray, to, PALETTE_SLOTS);
+            System.arraycopy(paletteChromaArray, from, paletteChromaArray, to, PALETTE_SLOTS);
+            System.arraycopy(palettePenaltyArray, from, palettePenaltyArray, to, PALETTE_SLOTS);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询与目标颜色最相似的 K 张图片
+     *
+     * @param targetRgb 0xRRGGBB
+     * @param k
+     * @param mode      色差算法
+     * @param matchMode 匹配方式（主色调 / 调色板）
+     * @return 图片 id，按相似度从高到低排列
+     */
+    public long[] topK(int targetRgb, int k, ColorDistanceModeEnum mode, ColorMatchModeEnum matchMode) {
+        float[] targetLab = new float[3];
+        ColorLabUtils.rgbToLab(targetRgb, targetLab);
+        lock.readLock().lock();
+        try {
+            int limit = Math.min(k, size);
+            if (limit <= 0) {
+                return new long[0];
+            }
+            // 1. 批量计算距离（主色调匹配时 ΔE76 比较平方即可，不需要开方）
+            float[] distanceArray;
+            if (matchMode == ColorMatchModeEnum.PALETTE) {
+                distanceArray = paletteDistance(targetLab, mode);
+            } else {
+                distanceArray = new float[size];
+                if (mode == ColorDistanceModeEnum.DE76) {
+                    ColorLabUtils.batchDeltaE76Squared(lArray, aArray, bArray, size, targetLab, distanceArray);
+                } else {
+                    ColorLabUtils.batchDeltaE2000(lArray, aArray, bArray, chromaArray, size, targetLab, distanceArray);
+                }
+            }
+            // 2. 大顶堆，堆顶是当前 K 个结果中距离最大的
+            float[] heapDistance = new float[limit];
+            long[] heapId = new long[limit];
+            int heapSize = 0;
+            for (int i = 0; i < size; i++) {
+                float distance = distanceArray[i];
+                if (heapSize < limit) {
+                    heapDistance[heapSize] = distance;
+                    heapId[heapSize] = idArray[i];
+                    siftUp(heapDistance, heapId, heapSize++);
+                } else if (distance < heapDistance[0]) {
+                    heapDistance[0] = distance;
+                    heapId[0] = idArray[i];
+                    siftDown(heapDistance, heapId, heapSize);
+                }
+            }
+            // 3. 依次弹出堆顶，倒序填充即为距离从小到大
+            long[] result = new long[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                result[i] = heapId[0];
+                heapDistance[0] = heapDistance[i];
+                heapId[0] = heapId[i];
+                siftDown(heapDistance, heapId, i);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按调色板计算每张图片的距离：min(ΔE + 占比惩罚)
+     */
+    private float[] paletteDistance(float[] targetLab, ColorDistanceModeEnum mode) {
+        int slotCount = size * PALETTE_SLOTS;
+        float[] slotDistance = new float[slotCount];
+        if (mode == ColorDistanceModeEnum.DE76) {
+            ColorLabUtils.batchDeltaE76Squared(paletteLArray, paletteAArray, paletteBArray, slotCount, targetLab, slotDistance);
+            // 需要和惩罚项相加，这里要开方还原成 ΔE
+            for (int i = 0; i < slotCount; i++) {
+                slotDistance[i] = (float) Math.sqrt(slotDistance[i]);
+            }
+        } else {
+            ColorLabUtils.batchDeltaE2000(paletteLArray, paletteAArray, paletteBArray, paletteChromaArray, slotCount,
+                    targetLab, slotDistance);
+        }
+        float[] distanceArray = new float[size];
+        for (int i = 0; i < size; i++) {
+            int base = i * PALETTE_SLOTS;
+            float min = Float.POSITIVE_INFINITY;
+            for (int j = base; j < base + PALETTE_SLOTS; j++) {
+                float score = slotDistance[j] + palettePenaltyArray[j];
+                if (score < min) {
+                    min = score;
+                }
+            }
+            distanceArray[i] = min;
+        }
+        return distanceArray;
+    }
+
+    private void set(int index, int rgb, Palette palette) {
+        float[] lab = new float[3];
+        ColorLabUtils.rgbToLab(rgb, lab);
+        rgbArray[index] = rgb;
+        lArray[index] = lab[0];
+        aArray[index] = lab[1];
+        bArray[index] = lab[2];
+        chromaArray[index] = (float) Math.sqrt(lab[1] * lab[1] + lab[2] * lab[2]);
+        // 调色板槽位，没有调色板时用主色调代替
+        int base = index * PALETTE_SLOTS;
+        int paletteSize = palette == null ? 0 : Math.min(palette.size(), PALETTE_SLOTS);
+        float maxWeight = 0f;
+        for (int i = 0; i < paletteSize; i++) {
+            maxWeight = Math.max(maxWeight, palette.weightArray[i]);
+        }
+        for (int i = 0; i < PALETTE_SLOTS; i++) {
+            int slot = base + i;
+            if (paletteSize == 0 && i == 0) {
+                paletteLArray[slot] = lab[0];
+                paletteAArray[slot] = lab[1];
+                paletteBArray[slot] = lab[2];
+                paletteChromaArray[slot] = chromaArray[index];
+                palettePenaltyArray[slot] = 0f;
+            } else if (i < paletteSize) {
+                float[] paletteLab = new float[3];
+                ColorLabUtils.rgbToLab(palette.rgbArray[i], paletteLab);
+                paletteLArray[slot] = paletteLab[0];
+                paletteAArray[slot] = paletteLab[1];
+                paletteBArray[slot] = paletteLab[2];
+                paletteChromaArray[slot] = (float) Math.sqrt(paletteLab[1] * paletteLab[1] + paletteLab[2] * paletteLab[2]);
+                float relativeWeight = maxWeight > 0 ? palette.weightArray[i] / maxWeight : 1f;
+                palettePenaltyArray[slot] = PALETTE_WEIGHT_PENALTY * (1f - relativeWeight);
+            } else {
+                paletteLArray[slot] = 0f;
+                paletteAArray[slot] = 0f;
+                paletteBArray[slot] = 0f;
+                paletteChromaArray[slot] = 0f;
+                palettePenaltyArray[slot] = Float.POSITIVE_INFINITY;
+            }
+        }
+    }
+
+    private int indexOf(long pictureId) {
+        for (int i = 0; i < size; i++) {
+            if (idArray[i] == pictureId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= idArray.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, idArray.length + (idArray.length >> 1));
+        idArray = Arrays.copyOf(idArray, newCapacity);
+        rgbArray = Arrays.copyOf(rgbArray, newCapacity);
+        lArray = Arrays.copyOf(lArray, newCapacity);
+        aArray = Arrays.copyOf(aArray, newCapacity);
+        bArray = Arrays.copyOf(bArray, newCapacity);
+        chromaArray = Arrays.copyOf(chromaArray, newCapacity);
+        paletteLArray = Arrays.copyOf(paletteLArray, newCapacity * PALETTE_SLOTS);
+        paletteAArray = Arrays.copyOf(paletteAArray, newCapacity * PALETTE_SLOTS);
+        paletteBArray = Arrays.copyOf(paletteBArray, newCapacity * PALETTE_SLOTS);
+        paletteChromaArray = Arrays.copyOf(paletteChromaArray, newCapacity * PALETTE_SLOTS);
+        palettePenaltyArray = Arrays.copyOf(palettePenaltyArray, newCapacity * PALETTE_SLOTS);
+    }
+
+    private static void siftUp(float[] distance, long[] id, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (distance[parent] >= distance[index]) {
+                break;
+            }
+            swap(distance, id, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(float[] distance, long[] id, int heapSize) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= heapSize) {
+                break;
+            }
+            int largest = left;
+            int right = left + 1;
+            if (right < heapSize && distance[right] > distance[left]) {
+                largest = right;
+            }
+            if (distance[index] >= distance[largest]) {
+                break;
+            }
+            swap(distance, id, index, largest);
+            index = largest;
+        }
+    }
+
+    /**
+     * 图片调色板（颜色和占比一一对应）
+     */
+    public static class Palette {
+
+        private final int[] rgbArray;
+
+        private final float[] weightArray;
+
+        public Palette(int[] rgbArray, float[] weightArray) {
+            this.rgbArray = rgbArray;
+            this.weightArray = weightArray;
+        }
+
+        public int size() {
+            return Math.min(rgbArray.length, weightArray.length);
+        }
+    }
+
+    private static void swap(float[] distance, long[] id, int i, int j) {
+        float tmpDistance = distance[i];
+        distance[i] = distance[j];
+        distance[j] = tmpDistance;
+        long tmpId = id[i];
+        id[i] = id[j];
+        id[j] = tmpId;
+    }
+}
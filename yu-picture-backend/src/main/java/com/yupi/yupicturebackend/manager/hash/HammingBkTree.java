@@ -0,0 +1,219 @@
+package com.yupi.yupicturebackend.manager.hash;
+
+import com.yupi.yupicturebackend.utils.ImageHashUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于汉明距离的 BK 树，用于查找感知哈希相近的图片
+ * <p>
+ * 查询半径为 r 时只需要访问与当前节点距离在 [d - r, d + r] 内的子树，半径较小时只会访问很少的节点。
+ * BK 树不便于删除节点，删除时只做标记，被删除的节点超过一半时重建整棵树。
+ */
+public class HammingBkTree {
+
+    private Node root;
+
+    /**
+     * 图片 id 到有效节点的映射
+     */
+    private final Map<Long, Node> nodeMap = new HashMap<>();
+
+    /**
+     * 已标记删除的节点数
+     */
+    private int deletedCount;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 新增或更新图片哈希
+     *
+     * @param pictureId
+     * @param hash
+     */
+    public void upsert(long pictureId, long hash) {
+        lock.writeLock().lock();
+        try {
+            Node oldNode = nodeMap.get(pictureId);
+            if (oldNode != null) {
+                if (oldNode.hash == hash) {
+                    return;
+                }
+                markDeleted(oldNode);
+            }
+            insert(new Node(pictureId, hash));
+            rebuildIfNecessary();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除图片
+     *
+     * @param pictureId
+     */
+    public void remove(long pictureId) {
+        lock.writeLock().lock();
+        try {
+            Node node = nodeMap.get(pictureId);
+            if (node == null) {
+                return;
+            }
+            markDeleted(node);
+            rebuildIfNecessary();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeMap.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询汉明距离不超过 maxDistance 的图片
+     *
+     * @param hash
+     * @param maxDistance 最大汉明距离
+     * @param limit       最多返回条数
+     * @return 按距离从近到远排列
+     */
+    public List<Match> search(long hash, int maxDistance, int limit) {
+        List<Match> matchList = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (root == null) {
+                return matchList;
+            }
+            Deque<Node> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                Node node = stack.pop();
+                int distance = ImageHashUtils.hammingDistance(hash, node.hash);
+                if (distance <= maxDistance && !node.deleted) {
+                    matchList.add(new Match(node.pictureId, distance));
+                }
+                // 三角不等式：只有与当前节点距离在 [distance - maxDistance, distance + maxDistance] 内的子树可能命中
+                for (Node child = node.firstChild; child != null; child = child.nextSibling) {
+                    if (Math.abs(child.distanceToParent - distance) <= maxDistance) {
+                        stack.push(child);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matchList.sort((o1, o2) -> o1.distance != o2.distance
+                ? Integer.compare(o1.distance, o2.distance)
+                : Long.compare(o2.pictureId, o1.pictureId));
+        return matchList.size() > limit ? new ArrayList<>(matchList.subList(0, limit)) : matchList;
+    }
+
+    private void insert(Node newNode) {
+        nodeMap.put(newNode.pictureId, newNode);
+        if (root == null) {
+            root = newNode;
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = ImageHashUtils.hammingDistance(newNode.hash, node.hash);
+            Node child = node.firstChild;
+            while (child != null && child.distanceToParent != distance) {
+                child = child.nextSibling;
+            }
+            if (child == null) {
+                newNode.distanceToParent = distance;
+                newNode.nextSibling = node.firstChild;
+                node.firstChild = newNode;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    private void markDeleted(Node node) {
+        node.deleted = true;
+        nodeMap.remove(node.pictureId);
+        deletedCount++;
+    }
+
+    /**
+     * 被删除的节点超过有效节点时，用有效节点重建整棵树
+     */
+    private void rebuildIfNecessary() {
+        if (deletedCount <= nodeMap.size()) {
+            return;
+        }
+        List<Node> liveNodeList = new ArrayList<>(nodeMap.values());
+        root = null;
+        nodeMap.clear();
+        deletedCount = 0;
+        for (Node liveNode : liveNodeList) {
+            insert(new Node(liveNode.pictureId, liveNode.hash));
+        }
+    }
+
+    /**
+     * 查询结果
+     */
+    public static class Match {
+
+        private final long pictureId;
+
+        private final int distance;
+
+        Match(long pictureId, int distance) {
+            this.pictureId = pictureId;
+            this.distance = distance;
+        }
+
+        public long getPictureId() {
+            return pictureId;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    private static class Node {
+
+        private final long pictureId;
+
+        private final long hash;
+
+        /**
+         * 与父节点的汉明距离
+         */
+        private int distanceToParent;
+
+        /**
+         * 子节点以链表形式存储，一个节点最多 65 个子节点，大多数远少于此
+         */
+        private Node firstChild;
+
+        private Node nextSibling;
+
+        private boolean deleted;
+
+        Node(long pictureId, long hash) {
+            this.pictureId = pictureId;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.yupi.yupicturebackend.manager.hash;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.http.HttpResponse;
+import cn.hutool.http.HttpUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.enums.PictureReviewStatusEnum;
+import com.yupi.yupicturebackend.utils.ImageHashUtils;
+import com.yupi.yupicturebackend.utils.ImageSampleUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 图片感知哈希索引管理（以图搜图）
+ * <p>
+ * 每个空间以及公共图库各自维护一棵 BK 树，首次查询时从数据库加载（只查询 id 和哈希），之后随图片上传、审核、删除增量更新，
+ * 长时间未访问的索引会被淘汰，下次查询时重新加载。公共图库只收录审核通过的图片。
+ * 增量更新通过 Redis 发布订阅广播到所有节点。
+ */
+@Slf4j
+@Component
+public class PictureHashIndexManager implements MessageListener {
+
+    /**
+     * 哈希索引同步频道，消息格式：spaceKey,pictureId,picHash（picHash 为空表示删除）
+     */
+    private static final String SYNC_CHANNEL = "yupicture:picture:hash:sync";
+
+    /**
+     * 公共图库在索引缓存中的 key（空间 id 都是正数）
+     */
+    private static final long PUBLIC_SPACE_KEY = 0L;
+
+    /**
+     * 计算历史图片哈希时使用的对象存储缩略图参数（数据万象）
+     */
+    private static final String HASH_THUMBNAIL_PARAM = "?imageMogr2/thumbnail/256x256/format/png";
+
+    private static final int BACKFILL_BATCH_SIZE = 200;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final Cache<Long, HammingBkTree> SPACE_INDEX_CACHE = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(SYNC_CHANNEL));
+    }
+
+    /**
+     * 查询空间（或公共图库）内哈希相近的图片
+     *
+     * @param spaceId     空间 id，为空表示公共图库
+     * @param hash
+     * @param maxDistance 最大汉明距离
+     * @param limit       最多返回条数
+     * @return 按距离从近到远排列
+     */
+    public List<HammingBkTree.Match> searchSimilar(Long spaceId, long hash, int maxDistance, int limit) {
+        HammingBkTree bkTree = SPACE_INDEX_CACHE.get(toSpaceKey(spaceId), this::loadSpaceHashIndex);
+        return bkTree.search(hash, maxDistance, limit);
+    }
+
+    /**
+     * 图片上传、审核后更新索引
+     *
+     * @param spaceId   空间 id，为空表示公共图库
+     * @param pictureId
+     * @param picHash   为空时从索引中删除
+     */
+    public void upsert(Long spaceId, Long pictureId, Long picHash) {
+        if (pictureId == null) {
+            return;
+        }
+        publish(toSpaceKey(spaceId), pictureId, picHash == null ? "" : String.valueOf(picHash));
+    }
+
+    /**
+     * 图片删除、公共图库图片审核不通过后更新索引
+     *
+     * @param spaceId   空间 id，为空表示公共图库
+     * @param pictureId
+     */
+    public void remove(Long spaceId, Long pictureId) {
+        if (pictureId == null) {
+            return;
+        }
+        publish(toSpaceKey(spaceId), pictureId, "");
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(",", -1);
+        if (parts.length != 3) {
+            log.error("哈希索引同步消息格式错误");
+            return;
+        }
+        apply(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]);
+    }
+
+    /**
+     * 通过对象存储的缩略图计算图片哈希（用于上传时未能提取哈希的历史图片）
+     *
+     * @param url 图片地址
+     * @return 无法下载或解码时返回 null
+     */
+    public Long computeRemoteHash(String url) {
+        if (StrUtil.isBlank(url)) {
+            return null;
+        }
+        try (HttpResponse response = HttpUtil.createGet(url + HASH_THUMBNAIL_PARAM).timeout(5000).execute()) {
+            if (!response.isOk()) {
+                return null;
+            }
+            BufferedImage image = ImageSampleUtils.readSubsampled(response.bodyBytes(), ImageSampleUtils.DEFAULT_MAX_EDGE);
+            return image == null ? null : ImageHashUtils.dHash(image);
+        } catch (Exception e) {
+            log.warn("计算图片哈希失败，url = {}", url, e);
+            return null;
+        }
+    }
+
+    /**
+     * 为没有哈希的历史图片补充哈希（异步执行）
+     */
+    @Async
+    public void backfillPictureHashes() {
+        long lastId = 0;
+        long total = 0;
+        long success = 0;
+        while (true) {
+            List<Picture> pictureList = pictureMapper.selectList(new LambdaQueryWrapper<Picture>()
+                    .select(Picture::getId, Picture::getUrl, Picture::getSpaceId, Picture::getReviewStatus)
+                    .isNull(Picture::getPicHash)
+                    .gt(Picture::getId, lastId)
+                    .orderByAsc(Picture::getId)
+                    .last("limit " + BACKFILL_BATCH_SIZE));
+            if (pictureList.isEmpty()) {
+                break;
+            }
+            for (Picture picture : pictureList) {
+                Long picHash = computeRemoteHash(picture.getUrl());
+                if (picHash == null) {
+                    continue;
+                }
+                pictureMapper.update(null, new LambdaUpdateWrapper<Picture>()
+                        .set(Picture::getPicHash, picHash)
+                        .eq(Picture::getId, picture.getId()));
+                if (picture.getSpaceId() != null
+                        || Objects.equals(PictureReviewStatusEnum.PASS.getValue(), picture.getReviewStatus())) {
+                    upsert(picture.getSpaceId(), picture.getId(), picHash);
+                }
+                success++;
+            }
+            total += pictureList.size();
+            lastId = pictureList.get(pictureList.size() - 1).getId();
+        }
+        log.info("图片哈希回填完成，共处理 {} 张图片，成功 {} 张", total, success);
+    }
+
+    private void publish(long spaceKey, long pictureId, String picHash) {
+        try {
+            stringRedisTemplate.convertAndSend(SYNC_CHANNEL, spaceKey + "," + pictureId + "," + picHash);
+        } catch (Exception e) {
+            // 广播失败时至少保证当前节点的索引是新的
+            log.error("广播哈希索引同步消息失败", e);
+            apply(spaceKey, pictureId, picHash);
+        }
+    }
+
+    /**
+     * 更新本地索引（索引未加载时无需处理，下次查询会从数据库加载）
+     */
+    private void apply(long spaceKey, long pictureId, String picHash) {
+        // computeIfPresent 会等待正在进行的加载完成，避免加载过程中的更新丢失
+        SPACE_INDEX_CACHE.asMap().computeIfPresent(spaceKey, (key, bkTree) -> {
+            if (StrUtil.isBlank(picHash)) {
+                bkTree.remove(pictureId);
+            } else {
+                bkTree.upsert(pictureId, Long.parseLong(picHash));
+            }
+            return bkTree;
+        });
+    }
+
+    private static long toSpaceKey(Long spaceId) {
+        return spaceId == null ? PUBLIC_SPACE_KEY : spaceId;
+    }
+
+    private HammingBkTree loadSpaceHashIndex(Long spaceKey) {
+        LambdaQueryWrapper<Picture> queryWrapper = new LambdaQueryWrapper<Picture>()
+                .select(Picture::getId, Picture::getPicHash)
+                .isNotNull(Picture::getPicHash);
+        if (spaceKey == PUBLIC_SPACE_KEY) {
+            queryWrapper.isNull(Picture::getSpaceId)
+                    .eq(Picture::getReviewStatus, PictureReviewStatusEnum.PASS.getValue());
+        } else {
+            queryWrapper.eq(Picture::getSpaceId, spaceKey);
+        }
+        List<Picture> pictureList = pictureMapper.selectList(queryWrapper);
+        HammingBkTree bkTree = new HammingBkTree();
+        for (Picture picture : pictureList) {
+            bkTree.upsert(picture.getId(), picture.getPicHash());
+        }
+        return bkTree;
+    }
+}
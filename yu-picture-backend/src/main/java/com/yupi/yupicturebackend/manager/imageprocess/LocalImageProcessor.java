@@ -0,0 +1,388 @@
+package com.yupi.yupicturebackend.manager.imageprocess;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.manager.storage.ObjectStorage;
+import com.yupi.yupicturebackend.manager.storage.StoredPicture;
+import com.yupi.yupicturebackend.model.dto.file.PictureRendition;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 本地图片处理（代替数据万象的压缩和缩略图）
+ * <p>
+ * 图片只完整解码一次，在同一次处理中得到压缩图、缩略图以及宽高、格式、平均色，规则与数据万象保持一致：
+ * 压缩图优先转为 WebP（需要 classpath 中有 WebP 的 ImageIO 插件，否则不透明的图片转为 JPEG、透明的转为 PNG），
+ * 压缩后没有变小则使用原图；大于 2KB 的图片生成最大 256x256 的缩略图。
+ * 解码和编码都是 CPU 密集型操作，在独立的有界线程池中执行。
+ */
+@Slf4j
+@Component
+public class LocalImageProcessor {
+
+    /**
+     * 缩略图最大边长
+     */
+    private static final int THUMBNAIL_SIZE = 256;
+
+    /**
+     * 超过该大小才生成缩略图
+     */
+    private static final long THUMBNAIL_MIN_BYTES = 2 * 1024;
+
+    /**
+     * JPEG 压缩质量
+     */
+    private static final float JPEG_QUALITY = 0.8f;
+
+    /**
+     * 等待处理结果的最长时间
+     */
+    private static final long PROCESS_TIMEOUT_SECONDS = 30;
+
+    private final ThreadPoolExecutor executor;
+
+    @Autowired
+    public LocalImageProcessor() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public LocalImageProcessor(int poolSize) {
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(64),
+                ThreadFactoryBuilder.create().setNamePrefix("imageProcess").build());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 处理图片并把原图、压缩图、缩略图写入对象存储
+     *
+     * @param objectStorage 对象存储
+     * @param key           原图的唯一键
+     * @param bytes         原图数据
+     * @return
+     */
+    public StoredPicture processAndStore(ObjectStorage objectStorage, String key, byte[] bytes) {
+        ProcessedPicture processedPicture = process(bytes);
+        objectStorage.putObject(key, new ByteArrayInputStream(bytes), bytes.length);
+        return storeDerived(objectStorage, key, bytes, processedPicture);
+    }
+
+    /**
+     * 处理已经在对象存储中的图片，只写入压缩图和缩略图
+     *
+     * @param objectStorage 对象存储
+     * @param key           原图的唯一键
+     * @param bytes         原图数据
+     * @return
+     */
+    public StoredPicture processStored(ObjectStorage objectStorage, String key, byte[] bytes) {
+        return storeDerived(objectStorage, key, bytes, process(bytes));
+    }
+
+    private StoredPicture storeDerived(ObjectStorage objectStorage, String key, byte[] bytes,
+                                       ProcessedPicture processedPicture) {
+        String compressedKey = key;
+        long picSize = bytes.length;
+        String picFormat = processedPicture.getFormat();
+        if (processedPicture.getCompressedBytes() != null) {
+            // 与数据万象一致，压缩图和原图在同一目录
+            compressedKey = siblingKey(key, FileUtil.mainName(key) + "." + processedPicture.getCompressedFormat());
+            byte[] compressedBytes = processedPicture.getCompressedBytes();
+            objectStorage.putObject(compressedKey, new ByteArrayInputStream(compressedBytes), compressedBytes.length);
+            picSize = compressedBytes.length;
+            picFormat = processedPicture.getCompressedFormat();
+        }
+        String thumbnailKey = compressedKey;
+        if (processedPicture.getThumbnailBytes() != null) {
+            thumbnailKey = siblingKey(key, FileUtil.mainName(key) + "_thumbnail." + FileUtil.getSuffix(key));
+            byte[] thumbnailBytes = processedPicture.getThumbnailBytes();
+            objectStorage.putObject(thumbnailKey, new ByteArrayInputStream(thumbnailBytes), thumbnailBytes.length);
+        }
+        StoredPicture storedPicture = new StoredPicture();
+        storedPicture.setUrl(buildUrl(objectStorage, compressedKey));
+        storedPicture.setThumbnailUrl(buildUrl(objectStorage, thumbnailKey));
+        storedPicture.setPicSize(picSize);
+        storedPicture.setPicWidth(processedPicture.getWidth());
+        storedPicture.setPicHeight(processedPicture.getHeight());
+        storedPicture.setPicFormat(picFormat);
+        storedPicture.setPicColor(processedPicture.getColor());
+        return storedPicture;
+    }
+
+    /**
+     * 生成多种宽度的响应式副本并写入对象存储，副本与原图在同一目录
+     *
+     * @param objectStorage 对象存储
+     * @param key           原图的唯一键
+     * @param bytes         原图数据
+     * @param widthList     需要生成的宽度
+     * @return
+     */
+    public List<PictureRendition> processRenditions(ObjectStorage objectStorage, String key, byte[] bytes,
+                                                    List<Integer> widthList) {
+        List<byte[]> renditionBytesList = new ArrayList<>();
+        List<PictureRendition> renditionList = execute(() -> {
+            BufferedImage image = decode(bytes).getImage();
+            String format = chooseCompressedFormat(image);
+            List<PictureRendition> resultList = new ArrayList<>();
+            for (Integer width : widthList) {
+                int height = Math.max(1, (int) Math.round(image.getHeight() * width * 1.0 / image.getWidth()));
+                byte[] renditionBytes = encode(scale(image, width, height), format);
+                renditionBytesList.add(renditionBytes);
+                String renditionKey = siblingKey(key, String.format("%s_w%d.%s", FileUtil.mainName(key), width, format));
+                resultList.add(new PictureRendition(width, height, format, buildUrl(objectStorage, renditionKey),
+                        (long) renditionBytes.length));
+            }
+            return resultList;
+        });
+        // 写入对象存储是 IO 操作，不占用处理线程
+        for (int i = 0; i < renditionList.size(); i++) {
+            byte[] renditionBytes = renditionBytesList.get(i);
+            String renditionKey = objectStorage.getKeyByUrl(renditionList.get(i).getUrl());
+            objectStorage.putObject(renditionKey, new ByteArrayInputStream(renditionBytes), renditionBytes.length);
+        }
+        return renditionList;
+    }
+
+    /**
+     * 在处理线程池中处理图片
+     *
+     * @param bytes 原图数据
+     * @return
+     */
+    public ProcessedPicture process(byte[] bytes) {
+        return execute(() -> doProcess(bytes));
+    }
+
+    /**
+     * 在处理线程池中执行任务并等待结果
+     */
+    private <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "图片处理繁忙，请稍后重试");
+        }
+        try {
+            return future.get(PROCESS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BusinessException) {
+                throw (BusinessException) e.getCause();
+            }
+            log.error("图片处理失败", e.getCause());
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "图片处理失败");
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "图片处理超时");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "图片处理被中断");
+        }
+    }
+
+    static ProcessedPicture doProcess(byte[] bytes) throws IOException {
+        // 1. 解码（只解码一次）
+        DecodedImage decodedImage = decode(bytes);
+        String format = decodedImage.getFormat();
+        BufferedImage image = decodedImage.getImage();
+        ProcessedPicture processedPicture = new ProcessedPicture();
+        processedPicture.setWidth(image.getWidth());
+        processedPicture.setHeight(image.getHeight());
+        processedPicture.setFormat(format);
+        // 2. 缩略图（不超过 256x256 时保持原样），平均色也从缩小后的图片计算
+        BufferedImage smallImage = scaleToFit(image, THUMBNAIL_SIZE);
+        processedPicture.setColor(averageColor(smallImage));
+        if (bytes.length > THUMBNAIL_MIN_BYTES) {
+            processedPicture.setThumbnailBytes(smallImage == image ? bytes : encode(smallImage, format));
+        }
+        // 3. 压缩图，没有变小就使用原图
+        String compressedFormat = chooseCompressedFormat(image);
+        byte[] compressedBytes = encode(image, compressedFormat);
+        if (compressedBytes != null && compressedBytes.length < bytes.length) {
+            processedPicture.setCompressedBytes(compressedBytes);
+            processedPicture.setCompressedFormat(compressedFormat);
+        }
+        return processedPicture;
+    }
+
+    private static DecodedImage decode(byte[] bytes) throws IOException {
+        try (ImageInputStream imageInputStream = new MemoryCacheImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            if (!readers.hasNext()) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "不支持的图片格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                return new DecodedImage(normalizeFormat(reader.getFormatName()), reader.read(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static String chooseCompressedFormat(BufferedImage image) {
+        if (ImageIO.getImageWritersByFormatName("webp").hasNext()) {
+            return "webp";
+        }
+        return image.getColorModel().hasAlpha() ? "png" : "jpg";
+    }
+
+    /**
+     * 编码图片，没有对应的编码器时返回 null
+     */
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            return null;
+        }
+        ImageWriter writer = writers.next();
+        BufferedImage outputImage = image;
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if ("jpg".equals(format)) {
+            // JPEG 不支持透明通道
+            outputImage = toRgb(image);
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream(outputStream)) {
+            writer.setOutput(imageOutputStream);
+            writer.write(null, new IIOImage(outputImage, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 等比缩小到不超过 maxEdge，分多次减半缩放保证质量；不需要缩小时返回原图
+     */
+    static BufferedImage scaleToFit(BufferedImage image, int maxEdge) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (width <= maxEdge && height <= maxEdge) {
+            return image;
+        }
+        double scale = Math.min(maxEdge * 1.0 / width, maxEdge * 1.0 / height);
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        return scale(image, targetWidth, targetHeight);
+    }
+
+    /**
+     * 缩小到指定尺寸，分多次减半缩放保证质量
+     */
+    static BufferedImage scale(BufferedImage image, int targetWidth, int targetHeight) {
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = Math.max(targetWidth, currentWidth / 2);
+            currentHeight = Math.max(targetHeight, currentHeight / 2);
+            int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+            BufferedImage scaled = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = scaled.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            graphics.dispose();
+            current = scaled;
+        } while (currentWidth != targetWidth || currentHeight != targetHeight);
+        return current;
+    }
+
+    private static BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        BufferedImage rgbImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgbImage.createGraphics();
+        graphics.drawImage(image, 0, 0, Color.WHITE, null);
+        graphics.dispose();
+        return rgbImage;
+    }
+
+    private static String averageColor(BufferedImage image) {
+        long red = 0, green = 0, blue = 0;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int rgb : row) {
+                red += (rgb >> 16) & 0xFF;
+                green += (rgb >> 8) & 0xFF;
+                blue += rgb & 0xFF;
+            }
+        }
+        long pixels = (long) width * height;
+        return String.format("0x%02x%02x%02x", red / pixels, green / pixels, blue / pixels);
+    }
+
+    private static String normalizeFormat(String formatName) {
+        String format = formatName.toLowerCase(Locale.ROOT);
+        return "jpeg".equals(format) ? "jpg" : format;
+    }
+
+    private static String siblingKey(String key, String fileName) {
+        int slashIndex = key.lastIndexOf('/');
+        return slashIndex < 0 ? fileName : key.substring(0, slashIndex + 1) + fileName;
+    }
+
+    private static String buildUrl(ObjectStorage objectStorage, String key) {
+        return objectStorage.getHost() + "/" + key.replaceFirst("^/+", "");
+    }
+
+    /**
+     * 解码后的图片
+     */
+    @Data
+    @AllArgsConstructor
+    private static class DecodedImage {
+
+        private String format;
+
+        private BufferedImage image;
+    }
+}
@@ -0,0 +1,55 @@
+package com.yupi.yupicturebackend.manager.imageprocess;
+
+import lombok.Data;
+
+/**
+ * 本地图片处理结果
+ */
+@Data
+public class ProcessedPicture {
+
+    /**
+     * 原图宽度
+     */
+    private int width;
+
+    /**
+     * 原图高度
+     */
+    private int height;
+
+    /**
+     * 原图格式
+     */
+    private String format;
+
+    /**
+     * 平均色（0xRRGGBB）
+     */
+    private String color;
+
+    /**
+     * 压缩图，为空表示压缩后没有变小，直接使用原图
+     */
+    private byte[] compressedBytes;
+
+    /**
+     * 压缩图格式
+     */
+    private String compressedFormat;
+
+    /**
+     * 压缩图宽度（等于原图宽度）
+     */
+    private int compressedWidth;
+
+    /**
+     * 压缩图高度（等于原图高度）
+     */
+    private int compressedHeight;
+
+    /**
+     * 缩略图，为空表示不生成缩略图
+     */
+    private byte[] thumbnailBytes;
+}
@@ -0,0 +1,109 @@
+package com.yupi.yupicturebackend.manager.job;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.yupi.yupicturebackend.manager.cache.PictureFeedCacheManager;
+import com.yupi.yupicturebackend.manager.color.PictureColorIndexManager;
+import com.yupi.yupicturebackend.manager.hash.PictureHashIndexManager;
+import com.yupi.yupicturebackend.manager.storage.ObjectStorage;
+import com.yupi.yupicturebackend.manager.upload.PictureFeatureExtractor;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.mapper.PictureObjectMapper;
+import com.yupi.yupicturebackend.model.dto.file.PictureFeature;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.entity.PictureJob;
+import com.yupi.yupicturebackend.model.entity.PictureObject;
+import com.yupi.yupicturebackend.model.enums.PictureJobTypeEnum;
+import com.yupi.yupicturebackend.model.enums.PictureReviewStatusEnum;
+import com.yupi.yupicturebackend.utils.ImageSampleUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * 提取调色板和感知哈希的后台任务（上传接口不提取特征，复用已有对象的图片除外）
+ * <p>
+ * 从对象存储读取缩略图（与原图格式相同，数据万象的压缩图是 WebP，无法解码）提取特征，
+ * 更新图片和存储对象，再同步以色搜图和以图搜图的索引。
+ */
+@Slf4j
+@Component
+public class PictureFeatureJobHandler implements PictureJobHandler {
+
+    @Resource
+    private ObjectStorage objectStorage;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private PictureObjectMapper pictureObjectMapper;
+
+    @Resource
+    private PictureColorIndexManager pictureColorIndexManager;
+
+    @Resource
+    private PictureHashIndexManager pictureHashIndexManager;
+
+    @Resource
+    private PictureFeedCacheManager pictureFeedCacheManager;
+
+    @Override
+    public String getJobType() {
+        return PictureJobTypeEnum.FEATURE.getValue();
+    }
+
+    @Override
+    public void handle(PictureJob pictureJob) throws Exception {
+        Picture picture = pictureMapper.selectById(pictureJob.getPictureId());
+        if (picture == null) {
+            return;
+        }
+        String url = StrUtil.blankToDefault(picture.getThumbnailUrl(), picture.getUrl());
+        String key = objectStorage.getKeyByUrl(url);
+        if (key == null) {
+            log.warn("不是当前对象存储的地址，跳过提取特征：{}", url);
+            return;
+        }
+        BufferedImage image;
+        try (InputStream inputStream = objectStorage.getObject(key)) {
+            image = ImageSampleUtils.readSubsampled(inputStream, ImageSampleUtils.DEFAULT_MAX_EDGE);
+        }
+        if (image == null) {
+            // 不支持解码的格式，重试也没有结果
+            log.warn("无法解码图片，跳过提取特征：{}", url);
+            return;
+        }
+        PictureFeature pictureFeature = PictureFeatureExtractor.extract(image);
+        String picPalette = CollUtil.isEmpty(pictureFeature.getPalette())
+                ? null : JSONUtil.toJsonStr(pictureFeature.getPalette());
+        Long picHash = pictureFeature.getHash();
+        pictureMapper.update(null, new LambdaUpdateWrapper<Picture>()
+                .eq(Picture::getId, picture.getId())
+                .set(Picture::getPicPalette, picPalette)
+                .set(Picture::getPicHash, picHash));
+        if (StrUtil.isNotBlank(picture.getContentHash())) {
+            // 之后复用该对象的上传直接带上特征
+            pictureObjectMapper.update(null, new LambdaUpdateWrapper<PictureObject>()
+                    .eq(PictureObject::getContentHash, picture.getContentHash())
+                    .set(PictureObject::getPicPalette, picPalette)
+                    .set(PictureObject::getPicHash, picHash));
+        }
+        pictureColorIndexManager.upsert(picture.getSpaceId(), picture.getId(), picture.getPicColor(), picPalette);
+        // 公共图库只收录审核通过的图片
+        if (picture.getSpaceId() != null
+                || Objects.equals(PictureReviewStatusEnum.PASS.getValue(), picture.getReviewStatus())) {
+            pictureHashIndexManager.upsert(picture.getSpaceId(), picture.getId(), picHash);
+        }
+        // 公共图库首页列表缓存中的图片还没有调色板
+        if (picture.getSpaceId() == null) {
+            pictureFeedCacheManager.invalidate();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.yupi.yupicturebackend.manager.job;
+
+import com.yupi.yupicturebackend.model.entity.PictureJob;
+
+/**
+ * 图片后台任务处理器
+ * <p>
+ * 任务可能因超时、节点宕机而重复执行，处理逻辑需要幂等；抛出异常表示失败，稍后重试。
+ */
+public interface PictureJobHandler {
+
+    /**
+     * 处理的任务类型
+     *
+     * @return {@link com.yupi.yupicturebackend.model.enums.PictureJobTypeEnum} 的 value
+     */
+    String getJobType();
+
+    /**
+     * 执行任务
+     *
+     * @param pictureJob
+     */
+    void handle(PictureJob pictureJob) throws Exception;
+}
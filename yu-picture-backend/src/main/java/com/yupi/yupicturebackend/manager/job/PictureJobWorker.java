@@ -0,0 +1,149 @@
+package com.yupi.yupicturebackend.manager.job;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.IdUtil;
+import com.yupi.yupicturebackend.model.entity.PictureJob;
+import com.yupi.yupicturebackend.service.PictureJobService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 图片后台任务执行器
+ * <p>
+ * 单个线程定时从任务表领取任务（租约方式，多节点不会重复领取），交给有界的线程池执行；
+ * 图片入库后调用 {@link #wakeUp()} 立即领取一次，不必等到下次轮询。
+ */
+@Slf4j
+@Component
+public class PictureJobWorker {
+
+    /**
+     * 执行任务的线程数
+     */
+    private static final int WORKER_COUNT = 4;
+
+    /**
+     * 轮询间隔
+     */
+    private static final long POLL_INTERVAL_MILLIS = 2000;
+
+    /**
+     * 租约时长，超过该时间未完成的任务会被重新领取
+     */
+    private static final int LEASE_SECONDS = 300;
+
+    /**
+     * 当前节点的标识
+     */
+    private final String workerId = IdUtil.fastSimpleUUID();
+
+    @Resource
+    private PictureJobService pictureJobService;
+
+    @Resource
+    private List<PictureJobHandler> pictureJobHandlerList;
+
+    private final Map<String, PictureJobHandler> handlerMap = new HashMap<>();
+
+    /**
+     * 执行任务的线程池，队列和线程数之和就是最多领取的任务数，不会拒绝
+     */
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            WORKER_COUNT, WORKER_COUNT, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(WORKER_COUNT),
+            ThreadFactoryBuilder.create().setNamePrefix("pictureJob").build());
+
+    /**
+     * 领取任务的线程（只有这一个线程领取，不需要额外加锁）
+     */
+    private final ScheduledExecutorService pollScheduler = Executors.newSingleThreadScheduledExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("pictureJobPoll").setDaemon(true).build());
+
+    /**
+     * 已领取还未结束的任务数
+     */
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        for (PictureJobHandler pictureJobHandler : pictureJobHandlerList) {
+            handlerMap.put(pictureJobHandler.getJobType(), pictureJobHandler);
+        }
+        pollScheduler.scheduleWithFixedDelay(this::poll, POLL_INTERVAL_MILLIS, POLL_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // 未完成的任务等租约过期后由其他节点重新领取
+        pollScheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * 立即领取一次任务（在登记任务的事务提交后调用）
+     */
+    public void wakeUp() {
+        try {
+            pollScheduler.execute(this::poll);
+        } catch (RejectedExecutionException e) {
+            // 正在关闭，忽略
+        }
+    }
+
+    private void poll() {
+        try {
+            int capacity = WORKER_COUNT * 2 - inFlightCount.get();
+            if (capacity <= 0) {
+                return;
+            }
+            List<PictureJob> pictureJobList = pictureJobService.claim(workerId, capacity, LEASE_SECONDS);
+            for (PictureJob pictureJob : pictureJobList) {
+                inFlightCount.incrementAndGet();
+                try {
+                    executor.execute(() -> run(pictureJob));
+                } catch (RejectedExecutionException e) {
+                    inFlightCount.decrementAndGet();
+                }
+            }
+        } catch (Exception e) {
+            log.error("领取图片后台任务失败", e);
+        }
+    }
+
+    private void run(PictureJob pictureJob) {
+        try {
+            PictureJobHandler pictureJobHandler = handlerMap.get(pictureJob.getJobType());
+            if (pictureJobHandler == null) {
+                pictureJobService.fail(pictureJob, "未知的任务类型");
+                return;
+            }
+            pictureJobHandler.handle(pictureJob);
+            pictureJobService.complete(pictureJob);
+        } catch (Exception e) {
+            log.warn("图片后台任务执行失败，jobId = {}，pictureId = {}，jobType = {}，第 {} 次",
+                    pictureJob.getId(), pictureJob.getPictureId(), pictureJob.getJobType(), pictureJob.getAttempts(), e);
+            try {
+                pictureJobService.fail(pictureJob, e.getMessage());
+            } catch (Exception ex) {
+                log.error("记录图片后台任务失败状态出错，jobId = {}", pictureJob.getId(), ex);
+            }
+        } finally {
+            inFlightCount.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.yupi.yupicturebackend.manager.job;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.yupi.yupicturebackend.manager.cache.PictureFeedCacheManager;
+import com.yupi.yupicturebackend.manager.storage.ObjectStorage;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.mapper.PictureObjectMapper;
+import com.yupi.yupicturebackend.model.dto.file.PictureRendition;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.entity.PictureJob;
+import com.yupi.yupicturebackend.model.entity.PictureObject;
+import com.yupi.yupicturebackend.model.enums.PictureJobTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 生成响应式副本的后台任务
+ * <p>
+ * 生成多种宽度的副本（数据万象为 AVIF + WebP，本地处理为压缩图的格式），
+ * 结果记录在存储对象和所有引用该对象的图片上，相同内容只生成一次。
+ */
+@Slf4j
+@Component
+public class PictureRenditionJobHandler implements PictureJobHandler {
+
+    /**
+     * 副本宽度（小于原图宽度的才生成）
+     */
+    static final int[] RENDITION_WIDTHS = {320, 640, 1280};
+
+    @Resource
+    private ObjectStorage objectStorage;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private PictureObjectMapper pictureObjectMapper;
+
+    @Resource
+    private PictureFeedCacheManager pictureFeedCacheManager;
+
+    @Override
+    public String getJobType() {
+        return PictureJobTypeEnum.RENDITION.getValue();
+    }
+
+    @Override
+    public void handle(PictureJob pictureJob) {
+        Picture picture = pictureMapper.selectById(pictureJob.getPictureId());
+        // 图片已删除
+        if (picture == null) {
+            return;
+        }
+        generate(picture);
+    }
+
+    private void generate(Picture picture) {
+        String contentHash = picture.getContentHash();
+        String renditions = null;
+        if (StrUtil.isNotBlank(contentHash)) {
+            PictureObject pictureObject = pictureObjectMapper.selectOne(new LambdaQueryWrapper<PictureObject>()
+                    .eq(PictureObject::getContentHash, contentHash));
+            if (pictureObject != null) {
+                renditions = pictureObject.getRenditions();
+            }
+        }
+        if (renditions == null) {
+            String key = objectStorage.getKeyByUrl(picture.getUrl());
+            if (key == null) {
+                log.warn("不是当前对象存储的地址，跳过生成响应式副本：{}", picture.getUrl());
+                return;
+            }
+            List<Integer> widthList = IntStream.of(RENDITION_WIDTHS)
+                    .filter(width -> picture.getPicWidth() != null && width < picture.getPicWidth())
+                    .boxed()
+                    .collect(Collectors.toList());
+            List<PictureRendition> renditionList = widthList.isEmpty()
+                    ? Collections.emptyList() : objectStorage.putRenditions(key, widthList);
+            renditions = JSONUtil.toJsonStr(renditionList);
+            if (StrUtil.isNotBlank(contentHash)) {
+                pictureObjectMapper.update(null, new LambdaUpdateWrapper<PictureObject>()
+                        .eq(PictureObject::getContentHash, contentHash)
+                        .set(PictureObject::getRenditions, renditions));
+            }
+        }
+        // 同一内容的其他还没有副本的图片（例如同一批次中重复的图片）一起更新
+        pictureMapper.update(null, new LambdaUpdateWrapper<Picture>()
+                .set(Picture::getRenditions, renditions)
+                .and(wrapper -> wrapper.eq(Picture::getId, picture.getId())
+                        .or(StrUtil.isNotBlank(contentHash), orWrapper -> orWrapper
+                                .eq(Picture::getContentHash, contentHash)
+                                .isNull(Picture::getRenditions))));
+        // 公共图库首页列表缓存中的图片还没有副本
+        if (picture.getSpaceId() == null) {
+            pictureFeedCacheManager.invalidate();
+        }
+    }
+}
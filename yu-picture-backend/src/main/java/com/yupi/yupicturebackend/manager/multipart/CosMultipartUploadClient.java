@@ -0,0 +1,96 @@
+package com.yupi.yupicturebackend.manager.multipart;
+
+import com.qcloud.cos.COSClient;
+import com.qcloud.cos.model.AbortMultipartUploadRequest;
+import com.qcloud.cos.model.CompleteMultipartUploadRequest;
+import com.qcloud.cos.model.CompleteMultipartUploadResult;
+import com.qcloud.cos.model.InitiateMultipartUploadRequest;
+import com.qcloud.cos.model.ListPartsRequest;
+import com.qcloud.cos.model.PartETag;
+import com.qcloud.cos.model.PartListing;
+import com.qcloud.cos.model.PartSummary;
+import com.qcloud.cos.model.PutObjectResult;
+import com.qcloud.cos.model.UploadPartRequest;
+import com.qcloud.cos.model.ciModel.persistence.PicOperations;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 腾讯云 COS 分块上传
+ * <p>
+ * 图片处理参数在合并分块时提交，合并结果转换为 {@link PutObjectResult}，与简单上传的处理逻辑保持一致。
+ */
+public class CosMultipartUploadClient implements MultipartUploadClient<PutObjectResult> {
+
+    private final COSClient cosClient;
+
+    private final String bucket;
+
+    /**
+     * 图片处理参数，可以为空
+     */
+    private final PicOperations picOperations;
+
+    public CosMultipartUploadClient(COSClient cosClient, String bucket, PicOperations picOperations) {
+        this.cosClient = cosClient;
+        this.bucket = bucket;
+        this.picOperations = picOperations;
+    }
+
+    @Override
+    public String initiateMultipartUpload(String key) {
+        return cosClient.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, key)).getUploadId();
+    }
+
+    @Override
+    public PartETag uploadPart(String key, String uploadId, int partNumber, InputStream inputStream, long partSize) {
+        UploadPartRequest uploadPartRequest = new UploadPartRequest();
+        uploadPartRequest.setBucketName(bucket);
+        uploadPartRequest.setKey(key);
+        uploadPartRequest.setUploadId(uploadId);
+        uploadPartRequest.setPartNumber(partNumber);
+        uploadPartRequest.setInputStream(inputStream);
+        uploadPartRequest.setPartSize(partSize);
+        return cosClient.uploadPart(uploadPartRequest).getPartETag();
+    }
+
+    @Override
+    public List<PartETag> listParts(String key, String uploadId) {
+        List<PartETag> partETags = new ArrayList<>();
+        ListPartsRequest listPartsRequest = new ListPartsRequest(bucket, key, uploadId);
+        PartListing partListing;
+        do {
+            partListing = cosClient.listParts(listPartsRequest);
+            for (PartSummary partSummary : partListing.getParts()) {
+                partETags.add(new PartETag(partSummary.getPartNumber(), partSummary.getETag()));
+            }
+            listPartsRequest.setPartNumberMarker(partListing.getNextPartNumberMarker());
+        } while (partListing.isTruncated());
+        return partETags;
+    }
+
+    @Override
+    public PutObjectResult completeMultipartUpload(String key, String uploadId, List<PartETag> partETags) {
+        CompleteMultipartUploadRequest completeRequest = new CompleteMultipartUploadRequest(bucket, key, uploadId,
+                partETags);
+        if (picOperations != null) {
+            completeRequest.setPicOperations(picOperations);
+        }
+        CompleteMultipartUploadResult completeResult = cosClient.completeMultipartUpload(completeRequest);
+        PutObjectResult putObjectResult = new PutObjectResult();
+        putObjectResult.setRequestId(completeResult.getRequestId());
+        putObjectResult.setDateStr(completeResult.getDateStr());
+        putObjectResult.setETag(completeResult.getETag());
+        putObjectResult.setVersionId(completeResult.getVersionId());
+        putObjectResult.setCrc64Ecma(completeResult.getCrc64Ecma());
+        putObjectResult.setCiUploadResult(completeResult.getCiUploadResult());
+        return putObjectResult;
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) {
+        cosClient.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+    }
+}
@@ -0,0 +1,148 @@
+package com.yupi.yupicturebackend.manager.multipart;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.qcloud.cos.model.PartETag;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于本地文件系统的分块上传（用于离线开发和测试）
+ * <p>
+ * 分块保存在 baseDir/.multipart/{uploadId}/ 下，合并后写入 baseDir/{key}。
+ */
+public class LocalMultipartUploadClient implements MultipartUploadClient<File> {
+
+    private static final String MULTIPART_DIR = ".multipart";
+
+    private final Path baseDir;
+
+    public LocalMultipartUploadClient(File baseDir) {
+        this.baseDir = baseDir.toPath().toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String initiateMultipartUpload(String key) {
+        resolveObject(key);
+        String uploadId = IdUtil.fastSimpleUUID();
+        FileUtil.mkdir(uploadDir(uploadId));
+        return uploadId;
+    }
+
+    @Override
+    public PartETag uploadPart(String key, String uploadId, int partNumber, InputStream inputStream, long partSize) {
+        File uploadDir = existingUploadDir(uploadId);
+        byte[] bytes = IoUtil.readBytes(inputStream, (int) partSize);
+        if (bytes.length != partSize) {
+            throw new IllegalArgumentException("分块数据不完整，partNumber = " + partNumber);
+        }
+        // 先写临时文件再重命名，避免读到写了一半的分块
+        Path tempPath = new File(uploadDir, partNumber + ".tmp").toPath();
+        try {
+            Files.write(tempPath, bytes);
+            Files.move(tempPath, new File(uploadDir, String.valueOf(partNumber)).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new PartETag(partNumber, DigestUtil.md5Hex(bytes));
+    }
+
+    @Override
+    public List<PartETag> listParts(String key, String uploadId) {
+        File[] partFiles = existingUploadDir(uploadId).listFiles();
+        List<PartETag> partETags = new ArrayList<>();
+        if (partFiles == null) {
+            return partETags;
+        }
+        for (File partFile : partFiles) {
+            String name = partFile.getName();
+            if (name.matches("\\d+")) {
+                partETags.add(new PartETag(Integer.parseInt(name), DigestUtil.md5Hex(partFile)));
+            }
+        }
+        partETags.sort((a, b) -> Integer.compare(a.getPartNumber(), b.getPartNumber()));
+        return partETags;
+    }
+
+    @Override
+    public File completeMultipartUpload(String key, String uploadId, List<PartETag> partETags) {
+        File uploadDir = existingUploadDir(uploadId);
+        File objectFile = resolveObject(key).toFile();
+        FileUtil.mkParentDirs(objectFile);
+        File tempFile = new File(objectFile.getParentFile(), objectFile.getName() + "." + uploadId + ".tmp");
+        try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+            for (int i = 0; i < partETags.size(); i++) {
+                PartETag partETag = partETags.get(i);
+                if (partETag.getPartNumber() != i + 1) {
+                    throw new IllegalArgumentException("分块编号不连续，partNumber = " + partETag.getPartNumber());
+                }
+                File partFile = new File(uploadDir, String.valueOf(partETag.getPartNumber()));
+                if (!partFile.isFile() || !DigestUtil.md5Hex(partFile).equals(partETag.getETag())) {
+                    throw new IllegalArgumentException("分块不存在或 ETag 不匹配，partNumber = " + partETag.getPartNumber());
+                }
+                Files.copy(partFile.toPath(), outputStream);
+            }
+        } catch (IOException e) {
+            FileUtil.del(tempFile);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            FileUtil.del(tempFile);
+            throw e;
+        }
+        try {
+            Files.move(tempFile.toPath(), objectFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            FileUtil.del(tempFile);
+            throw new UncheckedIOException(e);
+        }
+        FileUtil.del(uploadDir);
+        return objectFile;
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) {
+        FileUtil.del(uploadDir(uploadId));
+    }
+
+    private File uploadDir(String uploadId) {
+        if (!uploadId.matches("[0-9a-zA-Z]+")) {
+            throw new IllegalArgumentException("uploadId 格式错误");
+        }
+        return baseDir.resolve(MULTIPART_DIR).resolve(uploadId).toFile();
+    }
+
+    private File existingUploadDir(String uploadId) {
+        File uploadDir = uploadDir(uploadId);
+        if (!uploadDir.isDirectory()) {
+            throw new IllegalArgumentException("分块上传不存在，uploadId = " + uploadId);
+        }
+        return uploadDir;
+    }
+
+    /**
+     * 对象的本地路径，不允许跳出 baseDir
+     */
+    private Path resolveObject(String key) {
+        String relativeKey = key.startsWith("/") ? key.substring(1) : key;
+        Path objectPath = baseDir.resolve(relativeKey).normalize();
+        if (!objectPath.startsWith(baseDir) || objectPath.equals(baseDir)
+                || objectPath.startsWith(baseDir.resolve(MULTIPART_DIR))) {
+            throw new IllegalArgumentException("对象路径不合法：" + key);
+        }
+        return objectPath;
+    }
+}
@@ -0,0 +1,61 @@
+package com.yupi.yupicturebackend.manager.multipart;
+
+import com.qcloud.cos.model.PartETag;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * 分块上传的存储端操作
+ *
+ * @param <R> 合并分块后的结果
+ */
+public interface MultipartUploadClient<R> {
+
+    /**
+     * 初始化分块上传
+     *
+     * @param key 唯一键
+     * @return uploadId
+     */
+    String initiateMultipartUpload(String key);
+
+    /**
+     * 上传一个分块
+     *
+     * @param key         唯一键
+     * @param uploadId    uploadId
+     * @param partNumber  分块编号（从 1 开始）
+     * @param inputStream 分块数据
+     * @param partSize    分块大小
+     * @return
+     */
+    PartETag uploadPart(String key, String uploadId, int partNumber, InputStream inputStream, long partSize);
+
+    /**
+     * 查询已上传的分块（用于续传）
+     *
+     * @param key      唯一键
+     * @param uploadId uploadId
+     * @return
+     */
+    List<PartETag> listParts(String key, String uploadId);
+
+    /**
+     * 合并分块
+     *
+     * @param key       唯一键
+     * @param uploadId  uploadId
+     * @param partETags 按分块编号排序的全部分块
+     * @return
+     */
+    R completeMultipartUpload(String key, String uploadId, List<PartETag> partETags);
+
+    /**
+     * 取消分块上传，清理已上传的分块
+     *
+     * @param key      唯一键
+     * @param uploadId uploadId
+     */
+    void abortMultipartUpload(String key, String uploadId);
+}
@@ -0,0 +1,281 @@
+package com.yupi.yupicturebackend.manager.multipart;
+
+import com.qcloud.cos.model.PartETag;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 分块并行上传
+ * <p>
+ * 文件按固定大小切分，同一个文件最多同时上传 concurrency 个分块（内存中最多同时持有 concurrency 个分块的数据）。
+ * 单个分块失败时只重试该分块；重试耗尽后查询服务端已有的分块，只续传缺失的部分，仍然失败才取消整个上传。
+ */
+@Slf4j
+public class MultipartUploader {
+
+    /**
+     * 首次重试前的等待时间，之后每次翻倍
+     */
+    private static final long RETRY_BACKOFF_MILLIS = 200;
+
+    private final long partSize;
+
+    private final int concurrency;
+
+    private final int maxRetries;
+
+    private final Executor executor;
+
+    public MultipartUploader(long partSize, int concurrency, int maxRetries, Executor executor) {
+        if (partSize <= 0 || partSize > Integer.MAX_VALUE || concurrency <= 0 || maxRetries < 0) {
+            throw new IllegalArgumentException("分块上传参数错误");
+        }
+        this.partSize = partSize;
+        this.concurrency = concurrency;
+        this.maxRetries = maxRetries;
+        this.executor = executor;
+    }
+
+    /**
+     * 分块上传本地文件
+     *
+     * @param client 存储端
+     * @param key    唯一键
+     * @param file   本地文件
+     * @return 合并结果
+     */
+    public <R> R upload(MultipartUploadClient<R> client, String key, File file) {
+        String uploadId = client.initiateMultipartUpload(key);
+        try {
+            return uploadFileParts(client, key, uploadId, file, Collections.emptyList());
+        } catch (RuntimeException e) {
+            log.warn("分块上传失败，尝试续传，key = {}, uploadId = {}", key, uploadId, e);
+        }
+        try {
+            return resume(client, key, uploadId, file);
+        } catch (RuntimeException e) {
+            abortQuietly(client, key, uploadId);
+            throw e;
+        }
+    }
+
+    /**
+     * 续传：只上传服务端还没有的分块
+     *
+     * @param client   存储端
+     * @param key      唯一键
+     * @param uploadId 之前的 uploadId
+     * @param file     本地文件
+     * @return 合并结果
+     */
+    public <R> R resume(MultipartUploadClient<R> client, String key, String uploadId, File file) {
+        return uploadFileParts(client, key, uploadId, file, client.listParts(key, uploadId));
+    }
+
+    /**
+     * 分块上传输入流（只读取一遍，失败时只能按分块重试，不能续传）
+     *
+     * @param client        存储端
+     * @param key           唯一键
+     * @param inputStream   输入流
+     * @param contentLength 内容长度
+     * @return 合并结果
+     */
+    public <R> R upload(MultipartUploadClient<R> client, String key, InputStream inputStream, long contentLength) {
+        String uploadId = client.initiateMultipartUpload(key);
+        try {
+            int partCount = getPartCount(contentLength);
+            PartETag[] partETags = new PartETag[partCount];
+            PartTaskRunner runner = new PartTaskRunner();
+            for (int i = 0; i < partCount; i++) {
+                int partNumber = i + 1;
+                int size = getPartLength(contentLength, i);
+                // 先取得并发许可再读取，限制内存中的分块数量
+                runner.acquire();
+                byte[] bytes = new byte[size];
+                readFully(inputStream, bytes);
+                runner.submit(() -> partETags[partNumber - 1] = uploadPartWithRetry(client, key, uploadId, partNumber,
+                        () -> new ByteArrayInputStream(bytes), size));
+            }
+            runner.await();
+            return client.completeMultipartUpload(key, uploadId, Arrays.asList(partETags));
+        } catch (IOException e) {
+            abortQuietly(client, key, uploadId);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            abortQuietly(client, key, uploadId);
+            throw e;
+        }
+    }
+
+    private <R> R uploadFileParts(MultipartUploadClient<R> client, String key, String uploadId, File file,
+                                  List<PartETag> uploadedParts) {
+        long contentLength = file.length();
+        int partCount = getPartCount(contentLength);
+        PartETag[] partETags = new PartETag[partCount];
+        for (PartETag uploadedPart : uploadedParts) {
+            int partNumber = uploadedPart.getPartNumber();
+            if (partNumber >= 1 && partNumber <= partCount) {
+                partETags[partNumber - 1] = uploadedPart;
+            }
+        }
+        PartTaskRunner runner = new PartTaskRunner();
+        for (int i = 0; i < partCount; i++) {
+            if (partETags[i] != null) {
+                continue;
+            }
+            int partNumber = i + 1;
+            long offset = i * partSize;
+            int size = getPartLength(contentLength, i);
+            runner.acquire();
+            runner.submit(() -> {
+                // 在上传线程中读取分块，重试时复用同一份数据
+                byte[] bytes = readFilePart(file, offset, size);
+                partETags[partNumber - 1] = uploadPartWithRetry(client, key, uploadId, partNumber,
+                        () -> new ByteArrayInputStream(bytes), size);
+            });
+        }
+        runner.await();
+        return client.completeMultipartUpload(key, uploadId, Arrays.asList(partETags));
+    }
+
+    private PartETag uploadPartWithRetry(MultipartUploadClient<?> client, String key, String uploadId, int partNumber,
+                                         Supplier<InputStream> partSource, long size) {
+        for (int attempt = 0; ; attempt++) {
+            try (InputStream inputStream = partSource.get()) {
+                return client.uploadPart(key, uploadId, partNumber, inputStream, size);
+            } catch (Exception e) {
+                if (attempt >= maxRetries) {
+                    throw e instanceof RuntimeException ? (RuntimeException) e : new IllegalStateException(e);
+                }
+                log.warn("分块上传失败，准备重试，key = {}, partNumber = {}, attempt = {}", key, partNumber, attempt + 1);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(RETRY_BACKOFF_MILLIS << attempt);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("分块上传被中断", interruptedException);
+                }
+            }
+        }
+    }
+
+    private int getPartCount(long contentLength) {
+        // 空文件也需要一个分块
+        return (int) Math.max(1, (contentLength + partSize - 1) / partSize);
+    }
+
+    private int getPartLength(long contentLength, int partIndex) {
+        return (int) Math.min(partSize, contentLength - partIndex * partSize);
+    }
+
+    private static byte[] readFilePart(File file, long offset, int size) {
+        byte[] bytes = new byte[size];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            randomAccessFile.seek(offset);
+            randomAccessFile.readFully(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes;
+    }
+
+    private static void readFully(InputStream inputStream, byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            int n = inputStream.read(bytes, offset, bytes.length - offset);
+            if (n < 0) {
+                throw new EOFException("输入流长度小于 contentLength");
+            }
+            offset += n;
+        }
+    }
+
+    private static void abortQuietly(MultipartUploadClient<?> client, String key, String uploadId) {
+        try {
+            client.abortMultipartUpload(key, uploadId);
+        } catch (Exception e) {
+            log.error("取消分块上传失败，key = {}, uploadId = {}", key, uploadId, e);
+        }
+    }
+
+    /**
+     * 控制同一个文件的分块并发数，任一分块失败后不再提交新的分块
+     */
+    private class PartTaskRunner {
+
+        private final Semaphore permits = new Semaphore(concurrency);
+
+        private final List<CompletableFuture<Void>> futureList = new ArrayList<>();
+
+        private volatile RuntimeException failure;
+
+        private void acquire() {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("分块上传被中断", e);
+            }
+            if (failure != null) {
+                permits.release();
+                await();
+            }
+        }
+
+        /**
+         * 提交分块任务，调用前必须先 acquire
+         */
+        private void submit(Runnable task) {
+            try {
+                futureList.add(CompletableFuture.runAsync(task, executor).whenComplete((result, throwable) -> {
+                    if (throwable != null && failure == null) {
+                        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                                ? throwable.getCause() : throwable;
+                        failure = cause instanceof RuntimeException
+                                ? (RuntimeException) cause : new IllegalStateException(cause);
+                    }
+                    permits.release();
+                }));
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                await();
+                throw e;
+            }
+        }
+
+        /**
+         * 等待已提交的分块全部结束，有失败则抛出
+         */
+        private void await() {
+            for (CompletableFuture<Void> future : futureList) {
+                try {
+                    future.join();
+                } catch (CompletionException | CancellationException e) {
+                    // 失败原因已记录在 failure 中
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
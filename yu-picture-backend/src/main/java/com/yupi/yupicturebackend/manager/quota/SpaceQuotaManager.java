@@ -0,0 +1,590 @@
+package com.yupi.yupicturebackend.manager.quota;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.IdUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.mapper.SpaceMapper;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.entity.Space;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 空间额度管理（Redis 原子预占）
+ * <p>
+ * 已用额度保存在 Redis 的 hash 中，上传前通过 Lua 脚本原子地校验并预占条数和大小（已用 + 预占中 不能超过上限），
+ * 数据库事务提交后按实际大小确认预占，失败时释放预占；超时未确认的预占在下次预占时自动清除。
+ * 上传和删除不再更新空间表的额度字段，避免同一空间的并发上传争用同一行锁；
+ * 发生变化的空间记录在待对账集合中，由定时任务按图片表重新统计后写回空间表，并纠正 Redis 中的计数。
+ * <p>
+ * 数据库事务开始前通过 {@link #prepare} 登记正在提交的变化，确认或释放时移除；
+ * 存在正在提交的变化时不对账，避免事务已提交、Redis 还未确认时被统计进去，确认后又重复记入。
+ */
+@Slf4j
+@Component
+public class SpaceQuotaManager {
+
+    /**
+     * 已用额度（hash），key 中使用 hash tag 保证同一空间的 key 在同一个槽
+     */
+    private static final String USAGE_KEY_PREFIX = "yupicture:space:usage:";
+
+    /**
+     * 预占记录（zset，score 为过期时间）
+     */
+    private static final String RESERVATION_KEY_PREFIX = "yupicture:space:reservation:";
+
+    /**
+     * 正在提交的变化（zset，score 为过期时间），存在时不对账
+     */
+    private static final String APPLYING_KEY_PREFIX = "yupicture:space:applying:";
+
+    /**
+     * 待对账的空间 id
+     */
+    private static final String DIRTY_KEY = "yupicture:space:quota:dirty";
+
+    /**
+     * 额度缓存的过期时间，过期后从图片表重新统计
+     */
+    private static final long USAGE_EXPIRE_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    /**
+     * 单张上传的预占有效期
+     */
+    public static final long SINGLE_RESERVATION_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * 批量导入的预占有效期
+     */
+    public static final long BATCH_RESERVATION_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * 正在提交的变化的有效期（节点宕机时登记无法移除，过期后恢复对账）
+     */
+    private static final long APPLYING_EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final int RECONCILE_BATCH_SIZE = 100;
+
+    /**
+     * 解析预占成员（id:条数:大小）的 Lua 函数
+     */
+    private static final String PARSE_MEMBER_FUNCTION =
+            "local function parse(member)\n" +
+                    "    local _, _, c, s = string.find(member, ':(%-?%d+):(%-?%d+)$')\n" +
+                    "    return tonumber(c), tonumber(s)\n" +
+                    "end\n";
+
+    /**
+     * 初始化已用额度（已存在时不覆盖），预占中的额度按预占记录重新累加，同时返回正在提交的变化数
+     * <p>
+     * KEYS: 已用额度, 预占记录, 正在提交的变化；ARGV: 已用大小, 已用条数, 过期秒数, 当前时间
+     */
+    private static final DefaultRedisScript<List> SEED_SCRIPT = new DefaultRedisScript<>(PARSE_MEMBER_FUNCTION +
+            "if redis.call('EXISTS', KEYS[1]) == 0 then\n" +
+            "    local reservedCount, reservedSize = 0, 0\n" +
+            "    for _, member in ipairs(redis.call('ZRANGE', KEYS[2], 0, -1)) do\n" +
+            "        local c, s = parse(member)\n" +
+            "        reservedCount = reservedCount + c\n" +
+            "        reservedSize = reservedSize + s\n" +
+            "    end\n" +
+            "    redis.call('HMSET', KEYS[1], 'totalSize', ARGV[1], 'totalCount', ARGV[2],\n" +
+            "        'reservedSize', string.format('%d', reservedSize), 'reservedCount', string.format('%d', reservedCount),\n" +
+            "        'version', 0)\n" +
+            "    redis.call('EXPIRE', KEYS[1], ARGV[3])\n" +
+            "end\n" +
+            "local usage = redis.call('HMGET', KEYS[1], 'totalSize', 'totalCount')\n" +
+            "return {usage[1], usage[2], redis.call('ZCOUNT', KEYS[3], ARGV[4], '+inf')}", List.class);
+
+    /**
+     * 预占额度，返回实际预占的条数和大小；{-1} 表示已用额度未初始化，{-2} 表示条数不足，{-3} 表示大小不足
+     * <p>
+     * 允许少占时按申请的平均每条大小折算，条数或大小不足时只预占放得下的条数。
+     * <p>
+     * KEYS: 已用额度, 预占记录；
+     * ARGV: 预占 id, 条数, 大小, 条数上限, 大小上限, 当前时间, 过期时间, 额度不足时是否允许少占（1/0）, 过期秒数
+     */
+    private static final DefaultRedisScript<List> RESERVE_SCRIPT = new DefaultRedisScript<>(PARSE_MEMBER_FUNCTION +
+            "if redis.call('EXISTS', KEYS[1]) == 0 then\n" +
+            "    return {-1}\n" +
+            "end\n" +
+            "for _, member in ipairs(redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', ARGV[6])) do\n" +
+            "    local c, s = parse(member)\n" +
+            "    redis.call('HINCRBY', KEYS[1], 'reservedCount', -c)\n" +
+            "    redis.call('HINCRBY', KEYS[1], 'reservedSize', -s)\n" +
+            "    redis.call('ZREM', KEYS[2], member)\n" +
+            "end\n" +
+            "local usage = redis.call('HMGET', KEYS[1], 'totalSize', 'totalCount', 'reservedSize', 'reservedCount')\n" +
+            "local usedSize = tonumber(usage[1]) + tonumber(usage[3] or 0)\n" +
+            "local usedCount = tonumber(usage[2]) + tonumber(usage[4] or 0)\n" +
+            "local requestCount = tonumber(ARGV[2])\n" +
+            "local count = requestCount\n" +
+            "local size = tonumber(ARGV[3])\n" +
+            "local maxCount = tonumber(ARGV[4])\n" +
+            "local maxSize = tonumber(ARGV[5])\n" +
+            "local partial = ARGV[8] == '1'\n" +
+            "if count > 0 and usedCount >= maxCount then\n" +
+            "    return {-2}\n" +
+            "end\n" +
+            "if count > 0 and usedSize >= maxSize then\n" +
+            "    return {-3}\n" +
+            "end\n" +
+            "if usedCount + count > maxCount then\n" +
+            "    if not partial then\n" +
+            "        return {-2}\n" +
+            "    end\n" +
+            "    count = maxCount - usedCount\n" +
+            "end\n" +
+            "if partial and requestCount > 0 then\n" +
+            "    local itemSize = math.floor(size / requestCount)\n" +
+            "    if itemSize > 0 and usedSize + itemSize * count > maxSize then\n" +
+            "        count = math.floor((maxSize - usedSize) / itemSize)\n" +
+            "    end\n" +
+            "    if count <= 0 then\n" +
+            "        return {-3}\n" +
+            "    end\n" +
+            "    size = itemSize * count\n" +
+            "end\n" +
+            "if usedSize + size > maxSize then\n" +
+            "    return {-3}\n" +
+            "end\n" +
+            "local countValue = string.format('%d', count)\n" +
+            "local sizeValue = string.format('%d', size)\n" +
+            "redis.call('ZADD', KEYS[2], ARGV[7], ARGV[1] .. ':' .. countValue .. ':' .. sizeValue)\n" +
+            "redis.call('HINCRBY', KEYS[1], 'reservedCount', countValue)\n" +
+            "redis.call('HINCRBY', KEYS[1], 'reservedSize', sizeValue)\n" +
+            "redis.call('EXPIRE', KEYS[1], ARGV[9])\n" +
+            "redis.call('EXPIRE', KEYS[2], ARGV[9])\n" +
+            "return {count, size}", List.class);
+
+    /**
+     * 追加预占的大小（先按条数预占、得到实际大小后再追加），返回 1 表示成功；
+     * {-1} 表示已用额度未初始化，{-3} 表示大小不足，{-4} 表示预占已过期
+     * <p>
+     * KEYS: 已用额度, 预占记录；ARGV: 原预占成员, 新预占成员, 追加的大小, 大小上限, 当前时间
+     */
+    private static final DefaultRedisScript<Long> EXTEND_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then\n" +
+                    "    return -1\n" +
+                    "end\n" +
+                    "local expireAt = redis.call('ZSCORE', KEYS[2], ARGV[1])\n" +
+                    "if not expireAt or tonumber(expireAt) < tonumber(ARGV[5]) then\n" +
+                    "    return -4\n" +
+                    "end\n" +
+                    "local usage = redis.call('HMGET', KEYS[1], 'totalSize', 'reservedSize')\n" +
+                    "if tonumber(usage[1]) + tonumber(usage[2] or 0) + tonumber(ARGV[3]) > tonumber(ARGV[4]) then\n" +
+                    "    return -3\n" +
+                    "end\n" +
+                    "redis.call('ZREM', KEYS[2], ARGV[1])\n" +
+                    "redis.call('ZADD', KEYS[2], expireAt, ARGV[2])\n" +
+                    "redis.call('HINCRBY', KEYS[1], 'reservedSize', ARGV[3])\n" +
+                    "return 1", Long.class);
+
+    /**
+     * 确认预占并记入已用额度，同时移除正在提交的登记（没有预占时直接记入，例如删除图片）
+     * <p>
+     * KEYS: 已用额度, 预占记录, 正在提交的变化；ARGV: 预占成员, 条数变化量, 大小变化量, 预占 id
+     */
+    private static final DefaultRedisScript<Long> COMMIT_SCRIPT = new DefaultRedisScript<>(PARSE_MEMBER_FUNCTION +
+            "redis.call('ZREM', KEYS[3], ARGV[4])\n" +
+            "local removed = redis.call('ZREM', KEYS[2], ARGV[1])\n" +
+            "if redis.call('EXISTS', KEYS[1]) == 1 then\n" +
+            "    if removed == 1 then\n" +
+            "        local c, s = parse(ARGV[1])\n" +
+            "        redis.call('HINCRBY', KEYS[1], 'reservedCount', -c)\n" +
+            "        redis.call('HINCRBY', KEYS[1], 'reservedSize', -s)\n" +
+            "    end\n" +
+            "    redis.call('HINCRBY', KEYS[1], 'totalCount', ARGV[2])\n" +
+            "    redis.call('HINCRBY', KEYS[1], 'totalSize', ARGV[3])\n" +
+            "    redis.call('HINCRBY', KEYS[1], 'version', 1)\n" +
+            "end\n" +
+            "return removed", Long.class);
+
+    /**
+     * 释放预占，同时移除正在提交的登记
+     * <p>
+     * KEYS: 已用额度, 预占记录, 正在提交的变化；ARGV: 预占成员, 预占 id
+     */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(PARSE_MEMBER_FUNCTION +
+            "redis.call('ZREM', KEYS[3], ARGV[2])\n" +
+            "local removed = redis.call('ZREM', KEYS[2], ARGV[1])\n" +
+            "if removed == 1 and redis.call('EXISTS', KEYS[1]) == 1 then\n" +
+            "    local c, s = parse(ARGV[1])\n" +
+            "    redis.call('HINCRBY', KEYS[1], 'reservedCount', -c)\n" +
+            "    redis.call('HINCRBY', KEYS[1], 'reservedSize', -s)\n" +
+            "end\n" +
+            "return removed", Long.class);
+
+    /**
+     * 对账：统计期间没有新的变化、也没有正在提交的变化时才覆盖已用额度，否则返回 0 等待下次对账
+     * <p>
+     * KEYS: 已用额度, 正在提交的变化；ARGV: 统计前读到的版本号, 已用大小, 已用条数, 当前时间
+     */
+    private static final DefaultRedisScript<Long> RECONCILE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then\n" +
+                    "    return 1\n" +
+                    "end\n" +
+                    "if redis.call('HGET', KEYS[1], 'version') ~= ARGV[1] then\n" +
+                    "    return 0\n" +
+                    "end\n" +
+                    "if redis.call('ZCOUNT', KEYS[2], ARGV[4], '+inf') > 0 then\n" +
+                    "    return 0\n" +
+                    "end\n" +
+                    "redis.call('HMSET', KEYS[1], 'totalSize', ARGV[2], 'totalCount', ARGV[3])\n" +
+                    "return 1", Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private SpaceMapper spaceMapper;
+
+    /**
+     * 定时对账
+     */
+    private final ScheduledExecutorService reconcileScheduler = Executors.newSingleThreadScheduledExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("spaceQuotaReconcile").setDaemon(true).build());
+
+    @PostConstruct
+    public void init() {
+        reconcileScheduler.scheduleWithFixedDelay(this::reconcileDirtySpaces, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        reconcileScheduler.shutdownNow();
+    }
+
+    /**
+     * 获取已用额度（不含预占中的额度），未初始化时从图片表统计
+     *
+     * @param spaceId 空间 id
+     * @return
+     */
+    public SpaceUsage getUsage(Long spaceId) {
+        List<Object> usageList = stringRedisTemplate.opsForHash()
+                .multiGet(usageKey(spaceId), Arrays.asList("totalSize", "totalCount"));
+        if (usageList.get(0) != null && usageList.get(1) != null) {
+            return new SpaceUsage(Long.parseLong((String) usageList.get(0)), Long.parseLong((String) usageList.get(1)));
+        }
+        return seedUsage(spaceId);
+    }
+
+    /**
+     * 预占额度（上传前调用），额度不足时抛出异常
+     *
+     * @param space         空间（需要额度上限）
+     * @param count         申请的条数，更新已有图片时为 0
+     * @param size          申请的大小（按可能的最大值申请，下载前无法确定时传 0，之后通过 {@link #extend} 追加）
+     * @param partial       额度不足时是否允许只预占放得下的条数（批量导入，按平均每条大小折算）
+     * @param expireMillis  预占有效期，超时未确认自动释放
+     * @return 预占记录
+     */
+    public SpaceQuotaReservation reserve(Space space, long count, long size, boolean partial, long expireMillis) {
+        Long spaceId = space.getId();
+        SpaceQuotaReservation reservation = new SpaceQuotaReservation();
+        reservation.setSpaceId(spaceId);
+        reservation.setReservationId(IdUtil.fastSimpleUUID());
+        long now = System.currentTimeMillis();
+        List<String> keys = Arrays.asList(usageKey(spaceId), reservationKey(spaceId));
+        Long result = null;
+        List<?> resultList = null;
+        // 已用额度未初始化时先从图片表统计，再重试一次
+        for (int i = 0; i < 2; i++) {
+            resultList = stringRedisTemplate.execute(RESERVE_SCRIPT, keys,
+                    reservation.getReservationId(), String.valueOf(count), String.valueOf(size),
+                    String.valueOf(space.getMaxCount()), String.valueOf(space.getMaxSize()),
+                    String.valueOf(now), String.valueOf(now + expireMillis), partial ? "1" : "0",
+                    String.valueOf(USAGE_EXPIRE_SECONDS));
+            result = resultList == null || resultList.isEmpty() ? null : ((Number) resultList.get(0)).longValue();
+            if (result == null || result != -1) {
+                break;
+            }
+            seedUsage(spaceId);
+        }
+        if (result == null || result == -1) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "空间额度读取失败");
+        }
+        if (result == -2) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间条数不足");
+        }
+        if (result == -3) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间大小不足");
+        }
+        reservation.setCount(result);
+        reservation.setSize(((Number) resultList.get(1)).longValue());
+        return reservation;
+    }
+
+    /**
+     * 追加预占的大小（大小在下载完成后才能确定时调用，例如 URL 上传和批量导入），额度不足时抛出异常
+     * <p>
+     * 同一个预占可能被多个线程同时追加（批量导入），按预占记录串行执行
+     *
+     * @param space       空间（需要额度上限）
+     * @param reservation 预占记录，为空时忽略
+     * @param size        追加的大小，不大于 0 时忽略
+     */
+    public void extend(Space space, SpaceQuotaReservation reservation, long size) {
+        if (reservation == null || size <= 0) {
+            return;
+        }
+        Long spaceId = reservation.getSpaceId();
+        List<String> keys = Arrays.asList(usageKey(spaceId), reservationKey(spaceId));
+        synchronized (reservation) {
+            SpaceQuotaReservation extended = new SpaceQuotaReservation();
+            extended.setReservationId(reservation.getReservationId());
+            extended.setCount(reservation.getCount());
+            extended.setSize(reservation.getSize() + size);
+            Long result = null;
+            // 已用额度未初始化时先从图片表统计，再重试一次
+            for (int i = 0; i < 2; i++) {
+                result = stringRedisTemplate.execute(EXTEND_SCRIPT, keys,
+                        reservation.toMember(), extended.toMember(), String.valueOf(size),
+                        String.valueOf(space.getMaxSize()), String.valueOf(System.currentTimeMillis()));
+                if (result == null || result != -1) {
+                    break;
+                }
+                seedUsage(spaceId);
+            }
+            if (result == null || result == -1) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "空间额度读取失败");
+            }
+            if (result == -3) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间大小不足");
+            }
+            if (result == -4) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "上传超时，请重试");
+            }
+            reservation.setSize(extended.getSize());
+        }
+    }
+
+    /**
+     * 登记正在提交的变化（数据库事务开始前调用），确认或释放预占时移除
+     *
+     * @param reservation 预占记录，为空时忽略
+     */
+    public void prepare(SpaceQuotaReservation reservation) {
+        if (reservation == null) {
+            return;
+        }
+        Long spaceId = reservation.getSpaceId();
+        try {
+            stringRedisTemplate.opsForZSet().add(applyingKey(spaceId), reservation.getReservationId(),
+                    System.currentTimeMillis() + APPLYING_EXPIRE_MILLIS);
+        } catch (Exception e) {
+            // 登记失败只影响对账时机，不影响本次操作
+            log.error("登记空间额度变化失败, spaceId = {}", spaceId, e);
+        }
+    }
+
+    /**
+     * 登记不需要预占的变化（例如删除图片，数据库事务开始前调用），事务提交后通过 {@link #commit} 记入已用额度
+     *
+     * @param spaceId 空间 id，为空时返回 null
+     * @return 不占用额度的预占记录
+     */
+    public SpaceQuotaReservation prepareDelta(Long spaceId) {
+        if (spaceId == null) {
+            return null;
+        }
+        SpaceQuotaReservation reservation = new SpaceQuotaReservation();
+        reservation.setSpaceId(spaceId);
+        reservation.setReservationId(IdUtil.fastSimpleUUID());
+        prepare(reservation);
+        return reservation;
+    }
+
+    /**
+     * 确认预占（数据库事务提交后调用），按实际变化量记入已用额度
+     *
+     * @param reservation 预占记录
+     * @param deltaCount  实际的条数变化量
+     * @param deltaSize   实际的大小变化量
+     */
+    public void commit(SpaceQuotaReservation reservation, long deltaCount, long deltaSize) {
+        if (reservation == null) {
+            return;
+        }
+        Long spaceId = reservation.getSpaceId();
+        try {
+            synchronized (reservation) {
+                stringRedisTemplate.execute(COMMIT_SCRIPT,
+                        Arrays.asList(usageKey(spaceId), reservationKey(spaceId), applyingKey(spaceId)),
+                        reservation.toMember(), String.valueOf(deltaCount), String.valueOf(deltaSize),
+                        reservation.getReservationId());
+            }
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, String.valueOf(spaceId));
+        } catch (Exception e) {
+            log.error("更新空间已用额度失败, spaceId = {}", spaceId, e);
+            // 删除已用额度，下次读取时从图片表重新统计
+            try {
+                stringRedisTemplate.delete(usageKey(spaceId));
+            } catch (Exception ex) {
+                log.error("删除空间已用额度失败, spaceId = {}", spaceId, ex);
+            }
+        }
+    }
+
+    /**
+     * 释放预占（上传或数据库操作失败时调用）
+     *
+     * @param reservation 预占记录，为空时忽略
+     */
+    public void release(SpaceQuotaReservation reservation) {
+        if (reservation == null) {
+            return;
+        }
+        Long spaceId = reservation.getSpaceId();
+        try {
+            synchronized (reservation) {
+                stringRedisTemplate.execute(RELEASE_SCRIPT,
+                        Arrays.asList(usageKey(spaceId), reservationKey(spaceId), applyingKey(spaceId)),
+                        reservation.toMember(), reservation.getReservationId());
+            }
+        } catch (Exception e) {
+            // 预占到期后会自动清除
+            log.error("释放空间额度预占失败, spaceId = {}", spaceId, e);
+        }
+    }
+
+    /**
+     * 删除空间的额度缓存
+     *
+     * @param spaceId 空间 id
+     */
+    public void remove(Long spaceId) {
+        stringRedisTemplate.delete(Arrays.asList(usageKey(spaceId), reservationKey(spaceId), applyingKey(spaceId)));
+        stringRedisTemplate.opsForSet().remove(DIRTY_KEY, String.valueOf(spaceId));
+    }
+
+    /**
+     * 对账：按图片表重新统计空间的已用额度，写回空间表并纠正 Redis 中的计数
+     *
+     * @param spaceId 空间 id
+     * @return 统计期间额度又发生变化、或有正在提交的变化时返回 false，需要稍后重试
+     */
+    public boolean reconcile(Long spaceId) {
+        String usageKey = usageKey(spaceId);
+        String applyingKey = applyingKey(spaceId);
+        // 先读版本号再统计，保证统计结果包含版本号对应的所有变化
+        Object version = stringRedisTemplate.opsForHash().get(usageKey, "version");
+        // 有已提交事务但还未确认的变化时，统计结果会与确认时记入的变化重复
+        stringRedisTemplate.opsForZSet().removeRangeByScore(applyingKey, 0, System.currentTimeMillis());
+        Long applyingCount = stringRedisTemplate.opsForZSet().zCard(applyingKey);
+        if (applyingCount != null && applyingCount > 0) {
+            return false;
+        }
+        SpaceUsage spaceUsage = countUsage(spaceId);
+        spaceMapper.update(null, new LambdaUpdateWrapper<Space>()
+                .eq(Space::getId, spaceId)
+                .set(Space::getTotalSize, spaceUsage.getTotalSize())
+                .set(Space::getTotalCount, spaceUsage.getTotalCount()));
+        Long result = stringRedisTemplate.execute(RECONCILE_SCRIPT, Arrays.asList(usageKey, applyingKey),
+                version == null ? "" : (String) version,
+                String.valueOf(spaceUsage.getTotalSize()), String.valueOf(spaceUsage.getTotalCount()),
+                String.valueOf(System.currentTimeMillis()));
+        return result != null && result == 1;
+    }
+
+    /**
+     * 从图片表统计并初始化已用额度
+     * <p>
+     * 统计前后有正在提交的变化时，统计结果可能已包含事务已提交、还未确认的变化（确认时会重复记入），
+     * 也可能漏掉统计后才提交的变化，此时仍然初始化，但放入待对账集合，等正在提交的变化结束后按图片表纠正
+     */
+    private SpaceUsage seedUsage(Long spaceId) {
+        String applyingKey = applyingKey(spaceId);
+        Long applyingCount = stringRedisTemplate.opsForZSet()
+                .count(applyingKey, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+        SpaceUsage spaceUsage = countUsage(spaceId);
+        List<?> usageList = stringRedisTemplate.execute(SEED_SCRIPT,
+                Arrays.asList(usageKey(spaceId), reservationKey(spaceId), applyingKey),
+                String.valueOf(spaceUsage.getTotalSize()), String.valueOf(spaceUsage.getTotalCount()),
+                String.valueOf(USAGE_EXPIRE_SECONDS), String.valueOf(System.currentTimeMillis()));
+        boolean applying = applyingCount != null && applyingCount > 0;
+        if (usageList != null && usageList.size() > 2 && usageList.get(2) != null) {
+            applying = applying || ((Number) usageList.get(2)).longValue() > 0;
+        }
+        if (applying) {
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, String.valueOf(spaceId));
+        }
+        if (usageList == null || usageList.size() < 2 || usageList.get(0) == null || usageList.get(1) == null) {
+            return spaceUsage;
+        }
+        return new SpaceUsage(Long.parseLong(usageList.get(0).toString()), Long.parseLong(usageList.get(1).toString()));
+    }
+
+    /**
+     * 从图片表统计空间的已用额度
+     */
+    private SpaceUsage countUsage(Long spaceId) {
+        QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("count(*) as totalCount", "ifnull(sum(picSize), 0) as totalSize")
+                .eq("spaceId", spaceId);
+        List<Map<String, Object>> resultList = pictureMapper.selectMaps(queryWrapper);
+        if (resultList.isEmpty() || resultList.get(0) == null) {
+            return new SpaceUsage(0, 0);
+        }
+        Map<String, Object> result = resultList.get(0);
+        return new SpaceUsage(((Number) result.get("totalSize")).longValue(),
+                ((Number) result.get("totalCount")).longValue());
+    }
+
+    /**
+     * 对账有变化的空间，失败的空间放回待对账集合
+     */
+    private void reconcileDirtySpaces() {
+        try {
+            List<String> spaceIdList = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, RECONCILE_BATCH_SIZE);
+            if (spaceIdList == null) {
+                return;
+            }
+            for (String spaceId : spaceIdList) {
+                boolean reconciled = false;
+                try {
+                    reconciled = reconcile(Long.parseLong(spaceId));
+                } catch (Exception e) {
+                    log.error("空间额度对账失败, spaceId = {}", spaceId, e);
+                }
+                if (!reconciled) {
+                    stringRedisTemplate.opsForSet().add(DIRTY_KEY, spaceId);
+                }
+            }
+        } catch (Exception e) {
+            log.error("空间额度对账任务执行失败", e);
+        }
+    }
+
+    private static String usageKey(Long spaceId) {
+        return USAGE_KEY_PREFIX + "{" + spaceId + "}";
+    }
+
+    private static String reservationKey(Long spaceId) {
+        return RESERVATION_KEY_PREFIX + "{" + spaceId + "}";
+    }
+
+    private static String applyingKey(Long spaceId) {
+        return APPLYING_KEY_PREFIX + "{" + spaceId + "}";
+    }
+}
@@ -0,0 +1,37 @@
+package com.yupi.yupicturebackend.manager.quota;
+
+import lombok.Data;
+
+/**
+ * 空间额度预占记录
+ */
+@Data
+public class SpaceQuotaReservation {
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+
+    /**
+     * 预占 id
+     */
+    private String reservationId;
+
+    /**
+     * 预占的条数（批量导入时可能少于申请的条数）
+     */
+    private long count;
+
+    /**
+     * 预占的大小（批量导入时按实际预占的条数折算）
+     */
+    private long size;
+
+    /**
+     * 在 Redis 预占集合中的成员（id:条数:大小）
+     */
+    public String toMember() {
+        return reservationId + ":" + count + ":" + size;
+    }
+}
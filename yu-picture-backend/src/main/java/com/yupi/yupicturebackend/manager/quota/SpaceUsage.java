@@ -0,0 +1,22 @@
+package com.yupi.yupicturebackend.manager.quota;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 空间已用额度
+ */
+@Data
+@AllArgsConstructor
+public class SpaceUsage {
+
+    /**
+     * 已用大小
+     */
+    private long totalSize;
+
+    /**
+     * 已用条数
+     */
+    private long totalCount;
+}
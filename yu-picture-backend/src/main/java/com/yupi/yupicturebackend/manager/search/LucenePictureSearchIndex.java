@@ -0,0 +1,708 @@
+package com.yupi.yupicturebackend.manager.search;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import com.yupi.yupicturebackend.model.dto.picture.PictureQueryRequest;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.utils.PictureTagUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.cjk.CJKAnalyzer;
+import org.apache.lucene.analysis.cjk.CJKBigramFilter;
+import org.apache.lucene.analysis.cjk.CJKWidthFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 基于 Lucene 的本地磁盘图片索引
+ * <p>
+ * 名称、简介、标签分词后做全文检索（支持前缀 xxx*、短语 "xxx"，多个词之间为 AND），
+ * 标签另存一份不分词的字段用于精确的多标签 AND 过滤。
+ * 列表页的精确过滤条件（用户、空间、分类、审核状态、尺寸、编辑时间等）和排序字段也写入索引，
+ * 过滤、排序、分页都在索引中完成，数据库只按 id 取当前页的数据。
+ * <p>
+ * 写入后通过 SearcherManager 近实时刷新即可被搜到，落盘（commit）由定时任务完成；
+ * 每次提交时记录已索引的最大 updateTime，节点重启后据此从数据库追赶停机期间错过的变更。
+ */
+@Slf4j
+@Component
+public class LucenePictureSearchIndex implements PictureSearchIndex {
+
+    private static final String FIELD_ID = "id";
+
+    private static final String FIELD_NAME = "name";
+
+    private static final String FIELD_INTRODUCTION = "introduction";
+
+    private static final String FIELD_TAGS_TEXT = "tagsText";
+
+    private static final String FIELD_TAG = "tag";
+
+    private static final String FIELD_SPACE_ID = "spaceId";
+
+    private static final String FIELD_REVIEW_STATUS = "reviewStatus";
+
+    /**
+     * id 的数值字段，用于排序和游标范围查询（FIELD_ID 为精确匹配和按 id 更新用的字符串字段）
+     */
+    private static final String FIELD_ID_VALUE = "idValue";
+
+    private static final String FIELD_USER_ID = "userId";
+
+    private static final String FIELD_CATEGORY = "category";
+
+    private static final String FIELD_REVIEWER_ID = "reviewerId";
+
+    private static final String FIELD_PIC_SIZE = "picSize";
+
+    private static final String FIELD_PIC_WIDTH = "picWidth";
+
+    private static final String FIELD_PIC_HEIGHT = "picHeight";
+
+    private static final String FIELD_PIC_SCALE = "picScale";
+
+    private static final String FIELD_CREATE_TIME = "createTime";
+
+    private static final String FIELD_EDIT_TIME = "editTime";
+
+    private static final String FIELD_UPDATE_TIME = "updateTime";
+
+    /**
+     * 支持的排序字段（除 id 外都是时间，以毫秒数存储）
+     */
+    private static final List<String> SORT_FIELD_LIST = Arrays.asList(
+            "id", FIELD_CREATE_TIME, FIELD_EDIT_TIME, FIELD_UPDATE_TIME);
+
+    /**
+     * 索引结构版本，字段变化后递增，版本不一致的旧索引需要重建
+     */
+    private static final String SCHEMA_VERSION = "3";
+
+    private static final String COMMIT_SCHEMA_VERSION = "schemaVersion";
+
+    /**
+     * 提交数据：已索引的最大 updateTime（毫秒）
+     */
+    private static final String COMMIT_MAX_UPDATE_TIME = "maxUpdateTime";
+
+    /**
+     * 提交数据：当前重建代数
+     */
+    private static final String COMMIT_GENERATION = "generation";
+
+    /**
+     * 文档写入时的重建代数，重建结束后删除不是本代写入的文档
+     */
+    private static final String FIELD_GENERATION = "generation";
+
+    /**
+     * 定时提交的间隔
+     */
+    private static final long COMMIT_INTERVAL_SECONDS = 10;
+
+    /**
+     * 公共图库的 spaceId 取值
+     */
+    private static final String PUBLIC_SPACE = "public";
+
+    private static final String[] SEARCH_FIELDS = {FIELD_NAME, FIELD_INTRODUCTION, FIELD_TAGS_TEXT};
+
+    @Value("${picture.search.index-dir:data/picture-index}")
+    private String indexDir;
+
+    /**
+     * 写入索引：中日韩文本同时输出单字和二元组，单字搜索（如“猫”）也能命中，英文按空格切分并转小写
+     */
+    private final Analyzer indexAnalyzer = new Analyzer() {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer source = new StandardTokenizer();
+            TokenStream result = new CJKWidthFilter(source);
+            result = new LowerCaseFilter(result);
+            result = new CJKBigramFilter(result, CJKBigramFilter.HAN | CJKBigramFilter.HIRAGANA
+                    | CJKBigramFilter.KATAKANA | CJKBigramFilter.HANGUL, true);
+            return new TokenStreamComponents(source, new StopFilter(result, CJKAnalyzer.getDefaultStopSet()));
+        }
+    };
+
+    /**
+     * 解析搜索词：连续的中日韩文本只切成二元组（单个字保留为单字），与索引中的二元组按短语匹配
+     */
+    private final Analyzer queryAnalyzer = new CJKAnalyzer();
+
+    private IndexWriter indexWriter;
+
+    private SearcherManager searcherManager;
+
+    /**
+     * 启动后需要先追赶或重建，完成后才可用
+     */
+    private volatile boolean ready = false;
+
+    /**
+     * 是否正在重建（重建期间不提交，避免崩溃后留下只重建了一半的提交点）
+     */
+    private volatile boolean rebuilding = false;
+
+    /**
+     * 当前重建代数
+     */
+    private volatile long generation;
+
+    /**
+     * 已写入索引的最大 updateTime（毫秒）
+     */
+    private final AtomicLong maxUpdateTime = new AtomicLong();
+
+    /**
+     * 写入索引和重建的每一批互斥，保证重建时读到的数据不会覆盖更新的写入
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final ScheduledExecutorService commitScheduler = Executors.newSingleThreadScheduledExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("pictureIndexCommit").setDaemon(true).build());
+
+    @PostConstruct
+    public void init() {
+        try {
+            IndexWriterConfig config = new IndexWriterConfig(indexAnalyzer);
+            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            // 关闭时由 destroy 显式提交，才能带上提交数据
+            config.setCommitOnClose(false);
+            indexWriter = new IndexWriter(FSDirectory.open(Paths.get(indexDir)), config);
+            searcherManager = new SearcherManager(indexWriter, null);
+            generation = NumberUtil.parseLong(getCommitData(COMMIT_GENERATION), 0L);
+            maxUpdateTime.set(NumberUtil.parseLong(getCommitData(COMMIT_MAX_UPDATE_TIME), 0L));
+            commitScheduler.scheduleWithFixedDelay(this::commitQuietly,
+                    COMMIT_INTERVAL_SECONDS, COMMIT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        } catch (IOException e) {
+            log.error("打开图片索引失败，搜索将回退到数据库查询", e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        commitScheduler.shutdownNow();
+        commitQuietly();
+        try {
+            if (searcherManager != null) {
+                searcherManager.close();
+            }
+            if (indexWriter != null) {
+                indexWriter.close();
+            }
+        } catch (IOException e) {
+            log.error("关闭图片索引失败", e);
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready && indexWriter != null;
+    }
+
+    @Override
+    public void upsert(Picture picture) {
+        if (indexWriter == null || picture == null || picture.getId() == null) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            writeDocument(picture);
+        } catch (IOException e) {
+            log.error("更新图片索引失败，id = {}", picture.getId(), e);
+            return;
+        } finally {
+            writeLock.unlock();
+        }
+        refresh();
+    }
+
+    @Override
+    public void delete(Long pictureId) {
+        if (indexWriter == null || pictureId == null) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            indexWriter.deleteDocuments(new Term(FIELD_ID, String.valueOf(pictureId)));
+        } catch (IOException e) {
+            log.error("删除图片索引失败，id = {}", pictureId, e);
+            return;
+        } finally {
+            writeLock.unlock();
+        }
+        refresh();
+    }
+
+    @Override
+    public Date getHighWaterMark() {
+        if (indexWriter == null || !SCHEMA_VERSION.equals(getCommitData(COMMIT_SCHEMA_VERSION))) {
+            return null;
+        }
+        return new Date(maxUpdateTime.get());
+    }
+
+    @Override
+    public void markReady() {
+        if (indexWriter != null) {
+            ready = true;
+        }
+    }
+
+    @Override
+    public boolean supports(PictureQueryRequest pictureQueryRequest, String sortField) {
+        if (pictureQueryRequest == null) {
+            return false;
+        }
+        if (StrUtil.isNotBlank(sortField) && !SORT_FIELD_LIST.contains(sortField)) {
+            return false;
+        }
+        // 模糊匹配的条件只能交给数据库
+        return StrUtil.isAllBlank(pictureQueryRequest.getName(), pictureQueryRequest.getIntroduction(),
+                pictureQueryRequest.getPicFormat(), pictureQueryRequest.getReviewMessage());
+    }
+
+    @Override
+    public PictureSearchResult search(PictureQueryRequest pictureQueryRequest, String sortField, boolean isAsc,
+                                      long offset, int limit) {
+        if (!isReady() || pictureQueryRequest == null) {
+            return new PictureSearchResult(0, Collections.emptyList());
+        }
+        Query query = buildQuery(pictureQueryRequest);
+        return withSearcher(searcher -> {
+            long total = searcher.count(query);
+            if (limit <= 0 || offset >= total) {
+                return new PictureSearchResult(total, Collections.emptyList());
+            }
+            // 深分页需要取出前 offset + limit 条，与数据库 limit offset 的代价相同
+            int numHits = (int) Math.min(offset + limit, total);
+            TopDocs topDocs = searcher.search(query, numHits, buildSort(sortField, isAsc));
+            return new PictureSearchResult(total, toIdList(searcher, topDocs, (int) offset));
+        }, new PictureSearchResult(0, Collections.emptyList()));
+    }
+
+    @Override
+    public List<Long> searchAfter(PictureQueryRequest pictureQueryRequest, String sortField, boolean isAsc,
+                                  Long lastValue, Long lastId, int limit) {
+        if (!isReady() || pictureQueryRequest == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String field = "id".equals(sortField) ? FIELD_ID_VALUE : sortField;
+        BooleanQuery.Builder builder = new BooleanQuery.Builder()
+                .add(buildQuery(pictureQueryRequest), BooleanClause.Occur.MUST);
+        if (lastId != null) {
+            builder.add(buildAfterQuery(field, isAsc, lastValue == null ? lastId : lastValue, lastId),
+                    BooleanClause.Occur.FILTER);
+        }
+        Query query = builder.build();
+        return withSearcher(searcher -> toIdList(searcher, searcher.search(query, limit, buildSort(sortField, isAsc)), 0),
+                Collections.emptyList());
+    }
+
+    @Override
+    public long count(PictureQueryRequest pictureQueryRequest) {
+        if (!isReady() || pictureQueryRequest == null) {
+            return 0;
+        }
+        Query query = buildQuery(pictureQueryRequest);
+        return withSearcher(searcher -> (long) searcher.count(query), 0L);
+    }
+
+    @Override
+    public long count() {
+        return indexWriter == null ? 0 : indexWriter.getDocStats().numDocs;
+    }
+
+    @Override
+    public synchronized void rebuild(Function<Long, List<Picture>> batchLoader) {
+        if (indexWriter == null) {
+            return;
+        }
+        // 重建期间旧文档继续提供搜索，按 id 覆盖写入，与实时写入不会产生重复文档
+        rebuilding = true;
+        long total = 0;
+        try {
+            long newGeneration;
+            writeLock.lock();
+            try {
+                newGeneration = generation + 1;
+                // 之后的实时写入也属于新一代，不会在重建结束时被删除
+                generation = newGeneration;
+            } finally {
+                writeLock.unlock();
+            }
+            long lastId = 0;
+            while (true) {
+                List<Picture> pictureList;
+                // 每一批的查询和写入在锁内完成，期间的实时写入排在这一批之后
+                writeLock.lock();
+                try {
+                    pictureList = batchLoader.apply(lastId);
+                    if (CollUtil.isEmpty(pictureList)) {
+                        // 删除数据库中已不存在的图片（旧一代的文档）
+                        indexWriter.deleteDocuments(new BooleanQuery.Builder()
+                                .add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST)
+                                .add(LongPoint.newExactQuery(FIELD_GENERATION, newGeneration), BooleanClause.Occur.MUST_NOT)
+                                .build());
+                        break;
+                    }
+                    for (Picture picture : pictureList) {
+                        writeDocument(picture);
+                    }
+                } finally {
+                    writeLock.unlock();
+                }
+                total += pictureList.size();
+                lastId = pictureList.get(pictureList.size() - 1).getId();
+            }
+            rebuilding = false;
+            // 空表重建后也要提交，记录结构版本
+            commit(true);
+            refresh();
+            ready = true;
+            log.info("图片索引重建完成，共 {} 条", total);
+        } catch (Exception e) {
+            log.error("图片索引重建失败", e);
+        } finally {
+            rebuilding = false;
+        }
+    }
+
+    /**
+     * 写入文档，调用方需持有 writeLock
+     */
+    private void writeDocument(Picture picture) throws IOException {
+        indexWriter.updateDocument(new Term(FIELD_ID, String.valueOf(picture.getId())), toDocument(picture));
+        if (picture.getUpdateTime() != null) {
+            maxUpdateTime.accumulateAndGet(picture.getUpdateTime().getTime(), Math::max);
+        }
+    }
+
+    /**
+     * 近实时刷新搜索器，刚写入的文档无需提交即可被搜到
+     */
+    private void refresh() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.error("刷新图片索引搜索器失败", e);
+        }
+    }
+
+    /**
+     * 提交（落盘），同时记录结构版本、重建代数和已索引的最大 updateTime
+     */
+    private void commit(boolean force) throws IOException {
+        if (rebuilding || (!force && !indexWriter.hasUncommittedChanges())) {
+            return;
+        }
+        Map<String, String> commitData = new HashMap<>();
+        commitData.put(COMMIT_SCHEMA_VERSION, SCHEMA_VERSION);
+        commitData.put(COMMIT_GENERATION, String.valueOf(generation));
+        // 先取值再提交，提交时可能多包含几条更新的写入，追赶时会重复应用，不会遗漏
+        commitData.put(COMMIT_MAX_UPDATE_TIME, String.valueOf(maxUpdateTime.get()));
+        indexWriter.setLiveCommitData(commitData.entrySet());
+        indexWriter.commit();
+    }
+
+    private void commitQuietly() {
+        if (indexWriter == null) {
+            return;
+        }
+        try {
+            commit(false);
+        } catch (Exception e) {
+            log.error("提交图片索引失败", e);
+        }
+    }
+
+    /**
+     * 把查询条件转换为索引查询，各条件之间为 AND
+     */
+    private Query buildQuery(PictureQueryRequest pictureQueryRequest) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        String searchText = pictureQueryRequest.getSearchText();
+        if (StrUtil.isNotBlank(searchText)) {
+            builder.add(parseSearchText(searchText.trim()), BooleanClause.Occur.MUST);
+        } else {
+            builder.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+        }
+        // 多个标签之间默认为 AND，也可以指定为 OR
+        List<String> tags = PictureTagUtils.normalizeTags(pictureQueryRequest.getTags());
+        if (CollUtil.isNotEmpty(tags)) {
+            if ("or".equals(pictureQueryRequest.getTagMatchMode())) {
+                BooleanQuery.Builder tagBuilder = new BooleanQuery.Builder();
+                for (String tag : tags) {
+                    tagBuilder.add(new TermQuery(new Term(FIELD_TAG, tag)), BooleanClause.Occur.SHOULD);
+                }
+                builder.add(tagBuilder.build(), BooleanClause.Occur.FILTER);
+            } else {
+                for (String tag : tags) {
+                    builder.add(new TermQuery(new Term(FIELD_TAG, tag)), BooleanClause.Occur.FILTER);
+                }
+            }
+        }
+        Long spaceId = pictureQueryRequest.getSpaceId();
+        if (spaceId != null) {
+            builder.add(new TermQuery(new Term(FIELD_SPACE_ID, String.valueOf(spaceId))), BooleanClause.Occur.FILTER);
+        } else if (pictureQueryRequest.isNullSpaceId()) {
+            builder.add(new TermQuery(new Term(FIELD_SPACE_ID, PUBLIC_SPACE)), BooleanClause.Occur.FILTER);
+        }
+        addTermFilter(builder, FIELD_ID, pictureQueryRequest.getId());
+        addTermFilter(builder, FIELD_USER_ID, pictureQueryRequest.getUserId());
+        addTermFilter(builder, FIELD_REVIEW_STATUS, pictureQueryRequest.getReviewStatus());
+        addTermFilter(builder, FIELD_REVIEWER_ID, pictureQueryRequest.getReviewerId());
+        if (StrUtil.isNotBlank(pictureQueryRequest.getCategory())) {
+            addTermFilter(builder, FIELD_CATEGORY, pictureQueryRequest.getCategory());
+        }
+        if (pictureQueryRequest.getPicSize() != null) {
+            builder.add(LongPoint.newExactQuery(FIELD_PIC_SIZE, pictureQueryRequest.getPicSize()), BooleanClause.Occur.FILTER);
+        }
+        if (pictureQueryRequest.getPicWidth() != null) {
+            builder.add(IntPoint.newExactQuery(FIELD_PIC_WIDTH, pictureQueryRequest.getPicWidth()), BooleanClause.Occur.FILTER);
+        }
+        if (pictureQueryRequest.getPicHeight() != null) {
+            builder.add(IntPoint.newExactQuery(FIELD_PIC_HEIGHT, pictureQueryRequest.getPicHeight()), BooleanClause.Occur.FILTER);
+        }
+        if (pictureQueryRequest.getPicScale() != null) {
+            builder.add(DoublePoint.newExactQuery(FIELD_PIC_SCALE, pictureQueryRequest.getPicScale()), BooleanClause.Occur.FILTER);
+        }
+        // 编辑时间：>= startEditTime 且 < endEditTime
+        Date startEditTime = pictureQueryRequest.getStartEditTime();
+        Date endEditTime = pictureQueryRequest.getEndEditTime();
+        if (startEditTime != null || endEditTime != null) {
+            long lower = startEditTime == null ? Long.MIN_VALUE : startEditTime.getTime();
+            long upper = endEditTime == null ? Long.MAX_VALUE : endEditTime.getTime() - 1;
+            builder.add(LongPoint.newRangeQuery(FIELD_EDIT_TIME, lower, upper), BooleanClause.Occur.FILTER);
+        }
+        return builder.build();
+    }
+
+    private static void addTermFilter(BooleanQuery.Builder builder, String field, Object value) {
+        if (value != null) {
+            builder.add(new TermQuery(new Term(field, String.valueOf(value))), BooleanClause.Occur.FILTER);
+        }
+    }
+
+    /**
+     * 游标条件：(field, id) 严格大于 / 小于 (lastValue, lastId)
+     */
+    private static Query buildAfterQuery(String field, boolean isAsc, long lastValue, long lastId) {
+        Query idAfter = isAsc
+                ? LongPoint.newRangeQuery(FIELD_ID_VALUE, lastId + 1, Long.MAX_VALUE)
+                : LongPoint.newRangeQuery(FIELD_ID_VALUE, Long.MIN_VALUE, lastId - 1);
+        if (FIELD_ID_VALUE.equals(field)) {
+            return idAfter;
+        }
+        Query valueAfter = isAsc
+                ? LongPoint.newRangeQuery(field, lastValue + 1, Long.MAX_VALUE)
+                : LongPoint.newRangeQuery(field, Long.MIN_VALUE, lastValue - 1);
+        Query sameValue = new BooleanQuery.Builder()
+                .add(LongPoint.newExactQuery(field, lastValue), BooleanClause.Occur.FILTER)
+                .add(idAfter, BooleanClause.Occur.FILTER)
+                .build();
+        return new BooleanQuery.Builder()
+                .add(valueAfter, BooleanClause.Occur.SHOULD)
+                .add(sameValue, BooleanClause.Occur.SHOULD)
+                .setMinimumNumberShouldMatch(1)
+                .build();
+    }
+
+    /**
+     * 排序：未指定字段时按相关度，相同时再按 id，保证翻页顺序稳定
+     */
+    private static Sort buildSort(String sortField, boolean isAsc) {
+        if (StrUtil.isBlank(sortField)) {
+            return new Sort(SortField.FIELD_SCORE, new SortField(FIELD_ID_VALUE, SortField.Type.LONG, true));
+        }
+        SortField idSortField = new SortField(FIELD_ID_VALUE, SortField.Type.LONG, !isAsc);
+        if ("id".equals(sortField)) {
+            return new Sort(idSortField);
+        }
+        return new Sort(new SortField(sortField, SortField.Type.LONG, !isAsc), idSortField);
+    }
+
+    private static List<Long> toIdList(IndexSearcher searcher, TopDocs topDocs, int from) throws IOException {
+        ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+        List<Long> idList = new ArrayList<>(Math.max(scoreDocs.length - from, 0));
+        for (int i = from; i < scoreDocs.length; i++) {
+            idList.add(Long.parseLong(searcher.doc(scoreDocs[i].doc).get(FIELD_ID)));
+        }
+        return idList;
+    }
+
+    /**
+     * 借出搜索器执行查询，出错时返回默认值
+     */
+    private <T> T withSearcher(SearcherFunction<T> function, T defaultValue) {
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            return function.apply(searcher);
+        } catch (IOException e) {
+            log.error("检索图片索引失败", e);
+            return defaultValue;
+        } finally {
+            if (searcher != null) {
+                try {
+                    searcherManager.release(searcher);
+                } catch (IOException e) {
+                    log.error("释放索引搜索器失败", e);
+                }
+            }
+        }
+    }
+
+    private interface SearcherFunction<T> {
+
+        T apply(IndexSearcher searcher) throws IOException;
+    }
+
+    /**
+     * 读取最近一次提交时写入的附加数据
+     */
+    private String getCommitData(String key) {
+        for (Map.Entry<String, String> entry : indexWriter.getLiveCommitData()) {
+            if (key.equals(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析用户输入的搜索词，语法错误时按普通文本处理
+     */
+    private Query parseSearchText(String searchText) {
+        MultiFieldQueryParser parser = new MultiFieldQueryParser(SEARCH_FIELDS, queryAnalyzer);
+        parser.setDefaultOperator(QueryParser.Operator.AND);
+        // 中文连续词按短语匹配，避免二元组任意组合造成误命中（要求先按空格切分）
+        parser.setSplitOnWhitespace(true);
+        parser.setAutoGeneratePhraseQueries(true);
+        try {
+            return parser.parse(searchText);
+        } catch (ParseException e) {
+            try {
+                return parser.parse(QueryParser.escape(searchText));
+            } catch (ParseException ex) {
+                // 转义后不会再出现语法错误
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    private Document toDocument(Picture picture) {
+        Document document = new Document();
+        document.add(new StringField(FIELD_ID, String.valueOf(picture.getId()), Field.Store.YES));
+        addLongField(document, FIELD_ID_VALUE, picture.getId());
+        document.add(new LongPoint(FIELD_GENERATION, generation));
+        if (StrUtil.isNotBlank(picture.getName())) {
+            document.add(new TextField(FIELD_NAME, picture.getName(), Field.Store.NO));
+        }
+        if (StrUtil.isNotBlank(picture.getIntroduction())) {
+            document.add(new TextField(FIELD_INTRODUCTION, picture.getIntroduction(), Field.Store.NO));
+        }
+        for (String tag : PictureTagUtils.normalizeTags(PictureTagUtils.parseTags(picture.getTags()))) {
+            document.add(new StringField(FIELD_TAG, tag, Field.Store.NO));
+            document.add(new TextField(FIELD_TAGS_TEXT, tag, Field.Store.NO));
+        }
+        String spaceId = picture.getSpaceId() == null ? PUBLIC_SPACE : String.valueOf(picture.getSpaceId());
+        document.add(new StringField(FIELD_SPACE_ID, spaceId, Field.Store.NO));
+        if (ObjUtil.isNotNull(picture.getReviewStatus())) {
+            document.add(new StringField(FIELD_REVIEW_STATUS, String.valueOf(picture.getReviewStatus()), Field.Store.NO));
+        }
+        if (picture.getUserId() != null) {
+            document.add(new StringField(FIELD_USER_ID, String.valueOf(picture.getUserId()), Field.Store.NO));
+        }
+        if (picture.getReviewerId() != null) {
+            document.add(new StringField(FIELD_REVIEWER_ID, String.valueOf(picture.getReviewerId()), Field.Store.NO));
+        }
+        if (StrUtil.isNotBlank(picture.getCategory())) {
+            document.add(new StringField(FIELD_CATEGORY, picture.getCategory(), Field.Store.NO));
+        }
+        if (picture.getPicSize() != null) {
+            document.add(new LongPoint(FIELD_PIC_SIZE, picture.getPicSize()));
+        }
+        if (picture.getPicWidth() != null) {
+            document.add(new IntPoint(FIELD_PIC_WIDTH, picture.getPicWidth()));
+        }
+        if (picture.getPicHeight() != null) {
+            document.add(new IntPoint(FIELD_PIC_HEIGHT, picture.getPicHeight()));
+        }
+        if (picture.getPicScale() != null) {
+            document.add(new DoublePoint(FIELD_PIC_SCALE, picture.getPicScale()));
+        }
+        addLongField(document, FIELD_CREATE_TIME, toMillis(picture.getCreateTime()));
+        addLongField(document, FIELD_EDIT_TIME, toMillis(picture.getEditTime()));
+        addLongField(document, FIELD_UPDATE_TIME, toMillis(picture.getUpdateTime()));
+        return document;
+    }
+
+    /**
+     * 数值字段同时建点索引（范围查询）和 DocValues（排序）
+     */
+    private static void addLongField(Document document, String field, Long value) {
+        if (value != null) {
+            document.add(new LongPoint(field, value));
+            document.add(new NumericDocValuesField(field, value));
+        }
+    }
+
+    private static Long toMillis(Date date) {
+        return date == null ? null : date.getTime();
+    }
+
+}
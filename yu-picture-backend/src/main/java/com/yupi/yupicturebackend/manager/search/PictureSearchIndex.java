@@ -0,0 +1,105 @@
+package com.yupi.yupicturebackend.manager.search;
+
+import com.yupi.yupicturebackend.model.dto.picture.PictureQueryRequest;
+import com.yupi.yupicturebackend.model.entity.Picture;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 图片全文检索索引（可替换实现）
+ */
+public interface PictureSearchIndex {
+
+    /**
+     * 索引是否可用（未就绪时调用方应回退到数据库查询）
+     *
+     * @return
+     */
+    boolean isReady();
+
+    /**
+     * 已持久化的索引中包含的最大 updateTime，启动时从这个时间点追赶数据库的变更
+     *
+     * @return 索引为空或结构版本过旧、需要全量重建时返回 null
+     */
+    Date getHighWaterMark();
+
+    /**
+     * 追赶完成后标记索引可用
+     */
+    void markReady();
+
+    /**
+     * 新增或更新图片索引
+     *
+     * @param picture
+     */
+    void upsert(Picture picture);
+
+    /**
+     * 删除图片索引
+     *
+     * @param pictureId
+     */
+    void delete(Long pictureId);
+
+    /**
+     * 查询条件和排序是否都能在索引中完成（不能时调用方应回退到数据库查询）
+     *
+     * @param pictureQueryRequest
+     * @param sortField           为空表示按相关度排序
+     * @return
+     */
+    boolean supports(PictureQueryRequest pictureQueryRequest, String sortField);
+
+    /**
+     * 在索引中过滤、排序并分页
+     *
+     * @param pictureQueryRequest
+     * @param sortField           为空表示按相关度排序
+     * @param isAsc
+     * @param offset              跳过的条数
+     * @param limit               最多返回条数
+     * @return
+     */
+    PictureSearchResult search(PictureQueryRequest pictureQueryRequest, String sortField, boolean isAsc,
+                               long offset, int limit);
+
+    /**
+     * 游标分页：返回排在 (lastValue, lastId) 之后的图片 id，按 (sortField, id) 排序
+     *
+     * @param pictureQueryRequest
+     * @param sortField           id / createTime / editTime / updateTime
+     * @param isAsc
+     * @param lastValue           上一页最后一条的排序字段值（时间为毫秒数），首页传 null
+     * @param lastId              上一页最后一条的 id，首页传 null
+     * @param limit               最多返回条数
+     * @return
+     */
+    List<Long> searchAfter(PictureQueryRequest pictureQueryRequest, String sortField, boolean isAsc,
+                           Long lastValue, Long lastId, int limit);
+
+    /**
+     * 满足条件的总条数
+     *
+     * @param pictureQueryRequest
+     * @return
+     */
+    long count(PictureQueryRequest pictureQueryRequest);
+
+    /**
+     * 索引中的文档数
+     *
+     * @return
+     */
+    long count();
+
+    /**
+     * 从数据库重建索引（重建期间旧索引继续可用，完成后删除数据库中已不存在的图片，并标记索引可用）
+     *
+     * @param batchLoader 按 id 分批加载图片，入参为上一批最后一条的 id（首批为 0），返回空列表表示加载完毕
+     */
+    void rebuild(Function<Long, List<Picture>> batchLoader);
+}
@@ -0,0 +1,228 @@
+package com.yupi.yupicturebackend.manager.search;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 图片索引同步器
+ * <p>
+ * 图片写入后广播图片 id，每个节点收到后从数据库读取最新数据更新本地索引；
+ * 启动时从索引记录的最大 updateTime 开始追赶停机期间的变更，索引为空或结构版本过旧则从数据库全量重建。
+ */
+@Slf4j
+@Component
+public class PictureSearchIndexSyncer implements MessageListener, ApplicationRunner {
+
+    /**
+     * 索引同步频道
+     */
+    private static final String SYNC_CHANNEL = "yupicture:picture:search:sync";
+
+    /**
+     * 重建索引时每批加载的条数
+     */
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    /**
+     * 追赶时从最大 updateTime 往前多查的时间，覆盖提交较晚的长事务和节点间的时钟误差
+     */
+    private static final long CATCH_UP_OVERLAP_MILLIS = 5 * 60 * 1000L;
+
+    @Resource
+    private PictureSearchIndex pictureSearchIndex;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 重建索引的线程（同一时间只允许一个重建任务）
+     */
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("pictureIndexRebuild").build());
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(SYNC_CHANNEL));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 启动时追赶停机期间错过的变更，索引为空或结构版本过旧时从数据库重建
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        Date highWaterMark = pictureSearchIndex.getHighWaterMark();
+        if (highWaterMark == null) {
+            rebuildAsync();
+            return;
+        }
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        rebuildExecutor.execute(() -> {
+            try {
+                catchUp(highWaterMark);
+            } catch (Exception e) {
+                log.error("图片索引追赶失败，改为全量重建", e);
+                pictureSearchIndex.rebuild(loadBatch());
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+    }
+
+    /**
+     * 同步单张图片的索引（图片已删除时会删除索引）
+     *
+     * @param pictureId
+     */
+    public void syncPicture(Long pictureId) {
+        if (pictureId == null) {
+            return;
+        }
+        syncPictures(Collections.singletonList(pictureId));
+    }
+
+    /**
+     * 同步多张图片的索引
+     *
+     * @param pictureIdList
+     */
+    public void syncPictures(Collection<Long> pictureIdList) {
+        if (CollUtil.isEmpty(pictureIdList)) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(SYNC_CHANNEL, CollUtil.join(pictureIdList, ","));
+        } catch (Exception e) {
+            // 广播失败时至少保证当前节点的索引是新的
+            log.error("广播图片索引同步消息失败", e);
+            applySync(pictureIdList);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        List<Long> pictureIdList = StrUtil.split(body, ',').stream()
+                .filter(StrUtil::isNotBlank)
+                .map(Long::valueOf)
+                .collect(Collectors.toList());
+        applySync(pictureIdList);
+    }
+
+    /**
+     * 异步重建索引
+     *
+     * @return 是否成功提交（已有重建任务在执行时返回 false）
+     */
+    public boolean rebuildAsync() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuildExecutor.execute(() -> {
+            try {
+                pictureSearchIndex.rebuild(loadBatch());
+            } catch (Exception e) {
+                log.error("图片索引重建失败", e);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 按 (updateTime, id) 顺序应用 highWaterMark 之后更新过的图片，完成后索引可用
+     */
+    private void catchUp(Date highWaterMark) {
+        Date updateTime = new Date(Math.max(highWaterMark.getTime() - CATCH_UP_OVERLAP_MILLIS, 0));
+        long lastId = 0;
+        long total = 0;
+        List<Picture> pictureList = pictureMapper.listUpdatedAfter(updateTime, lastId, REBUILD_BATCH_SIZE);
+        while (CollUtil.isNotEmpty(pictureList)) {
+            for (Picture picture : pictureList) {
+                if (Integer.valueOf(1).equals(picture.getIsDelete())) {
+                    pictureSearchIndex.delete(picture.getId());
+                } else {
+                    pictureSearchIndex.upsert(picture);
+                }
+            }
+            total += pictureList.size();
+            Picture lastPicture = pictureList.get(pictureList.size() - 1);
+            updateTime = lastPicture.getUpdateTime();
+            lastId = lastPicture.getId();
+            pictureList = pictureMapper.listUpdatedAfter(updateTime, lastId, REBUILD_BATCH_SIZE);
+        }
+        pictureSearchIndex.markReady();
+        log.info("图片索引追赶完成，应用 {} 条变更", total);
+    }
+
+    private void applySync(Collection<Long> pictureIdList) {
+        // 已被（逻辑）删除的图片查不到，从索引中删除
+        Map<Long, Picture> pictureMap = pictureMapper.selectByIds(pictureIdList).stream()
+                .collect(Collectors.toMap(Picture::getId, picture -> picture));
+        for (Long pictureId : pictureIdList) {
+            Picture picture = pictureMap.get(pictureId);
+            if (picture == null) {
+                pictureSearchIndex.delete(pictureId);
+            } else {
+                pictureSearchIndex.upsert(picture);
+            }
+        }
+    }
+
+    /**
+     * 按 id 顺序分批加载索引需要的字段
+     */
+    private Function<Long, List<Picture>> loadBatch() {
+        return lastId -> pictureMapper.selectList(new LambdaQueryWrapper<Picture>()
+                .select(Picture::getId, Picture::getName, Picture::getIntroduction, Picture::getCategory,
+                        Picture::getTags, Picture::getPicSize, Picture::getPicWidth, Picture::getPicHeight,
+                        Picture::getPicScale, Picture::getUserId, Picture::getSpaceId, Picture::getReviewStatus,
+                        Picture::getReviewerId, Picture::getCreateTime, Picture::getEditTime, Picture::getUpdateTime)
+                .gt(Picture::getId, lastId)
+                .orderByAsc(Picture::getId)
+                .last("limit " + REBUILD_BATCH_SIZE));
+    }
+}
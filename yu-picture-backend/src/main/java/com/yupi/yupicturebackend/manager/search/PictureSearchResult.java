@@ -0,0 +1,24 @@
+package com.yupi.yupicturebackend.manager.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 索引分页检索结果
+ */
+@Data
+@AllArgsConstructor
+public class PictureSearchResult {
+
+    /**
+     * 满足条件的总条数
+     */
+    private long total;
+
+    /**
+     * 当前页的图片 id（按排序顺序）
+     */
+    private List<Long> idList;
+}
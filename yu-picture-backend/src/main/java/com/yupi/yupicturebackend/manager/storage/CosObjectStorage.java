@@ -0,0 +1,196 @@
+package com.yupi.yupicturebackend.manager.storage;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import com.qcloud.cos.http.HttpMethodName;
+import com.qcloud.cos.model.ObjectMetadata;
+import com.qcloud.cos.model.PutObjectResult;
+import com.qcloud.cos.model.ciModel.persistence.CIObject;
+import com.qcloud.cos.model.ciModel.persistence.CIUploadResult;
+import com.qcloud.cos.model.ciModel.persistence.ImageInfo;
+import com.qcloud.cos.model.ciModel.persistence.PicOperations;
+import com.qcloud.cos.model.ciModel.persistence.ProcessResults;
+import com.yupi.yupicturebackend.config.CosClientConfig;
+import com.yupi.yupicturebackend.manager.CosManager;
+import com.yupi.yupicturebackend.manager.imageprocess.LocalImageProcessor;
+import com.yupi.yupicturebackend.model.dto.file.PictureRendition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 腾讯云对象存储，压缩图和缩略图默认由数据万象在上传时生成，也可以配置为在本地生成后直接上传
+ */
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "cos", matchIfMissing = true)
+public class CosObjectStorage implements ObjectStorage {
+
+    /**
+     * 数据万象生成的副本格式
+     */
+    private static final String[] RENDITION_FORMATS = {"avif", "webp"};
+
+    @Resource
+    private CosClientConfig cosClientConfig;
+
+    @Resource
+    private CosManager cosManager;
+
+    @Resource
+    private LocalImageProcessor localImageProcessor;
+
+    /**
+     * 图片处理引擎：cloud（数据万象）或 local（本地）
+     */
+    @Value("${picture.process.engine:cloud}")
+    private String processEngine;
+
+    @Override
+    public StoredPicture putPicture(String key, File file) {
+        if (isLocalProcess()) {
+            return localImageProcessor.processAndStore(this, key, FileUtil.readBytes(file));
+        }
+        PutObjectResult putObjectResult = cosManager.putPictureObject(key, file);
+        return toStoredPicture(key, file.length(), putObjectResult.getCiUploadResult());
+    }
+
+    @Override
+    public StoredPicture putPicture(String key, InputStream inputStream, long contentLength) {
+        if (isLocalProcess()) {
+            // 本地处理需要完整解码，图片大小已经限制过，直接读入内存
+            return localImageProcessor.processAndStore(this, key, IoUtil.readBytes(inputStream, (int) contentLength));
+        }
+        PutObjectResult putObjectResult = cosManager.putPictureObject(key, inputStream, contentLength);
+        return toStoredPicture(key, contentLength, putObjectResult.getCiUploadResult());
+    }
+
+    @Override
+    public StoredPicture processPicture(String key) {
+        if (isLocalProcess()) {
+            try (InputStream inputStream = getObject(key)) {
+                return localImageProcessor.processStored(this, key, IoUtil.readBytes(inputStream));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        long contentLength = getObjectSize(key);
+        CIUploadResult ciUploadResult = cosManager.processPictureObject(key, contentLength);
+        return toStoredPicture(key, contentLength, ciUploadResult);
+    }
+
+    @Override
+    public String generatePresignedPutUrl(String key, Date expiration) {
+        return cosManager.generatePresignedUrl(key, expiration, HttpMethodName.PUT).toString();
+    }
+
+    @Override
+    public long getObjectSize(String key) {
+        ObjectMetadata objectMetadata = cosManager.getObjectMetadata(key);
+        return objectMetadata == null ? -1 : objectMetadata.getContentLength();
+    }
+
+    @Override
+    public List<PictureRendition> putRenditions(String key, List<Integer> widthList) {
+        if (isLocalProcess()) {
+            try (InputStream inputStream = getObject(key)) {
+                return localImageProcessor.processRenditions(this, key, IoUtil.readBytes(inputStream), widthList);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        List<PictureRendition> renditionList = new ArrayList<>();
+        // 数据万象单次请求最多 5 条规则，每种宽度单独请求
+        for (Integer width : widthList) {
+            List<PicOperations.Rule> rules = new ArrayList<>();
+            for (String format : RENDITION_FORMATS) {
+                PicOperations.Rule rule = new PicOperations.Rule();
+                rule.setFileId(String.format("%s_w%d.%s", FileUtil.mainName(key), width, format));
+                rule.setBucket(cosClientConfig.getBucket());
+                rule.setRule(String.format("imageMogr2/thumbnail/%dx/format/%s", width, format));
+                rules.add(rule);
+            }
+            PicOperations picOperations = new PicOperations();
+            picOperations.setRules(rules);
+            CIUploadResult ciUploadResult = cosManager.processPictureObject(key, picOperations);
+            for (CIObject ciObject : ciUploadResult.getProcessResults().getObjectList()) {
+                renditionList.add(new PictureRendition(ciObject.getWidth(), ciObject.getHeight(),
+                        ciObject.getFormat(), getHost() + "/" + ciObject.getKey(), ciObject.getSize().longValue()));
+            }
+        }
+        return renditionList;
+    }
+
+    @Override
+    public void putObject(String key, File file) {
+        cosManager.putObject(key, file);
+    }
+
+    @Override
+    public void putObject(String key, InputStream inputStream, long contentLength) {
+        cosManager.putObject(key, inputStream, contentLength);
+    }
+
+    @Override
+    public InputStream getObject(String key) {
+        return cosManager.getObject(key).getObjectContent();
+    }
+
+    @Override
+    public void deleteObject(String key) {
+        cosManager.deleteObject(key);
+    }
+
+    @Override
+    public String getHost() {
+        return cosClientConfig.getHost();
+    }
+
+    private boolean isLocalProcess() {
+        return "local".equals(processEngine);
+    }
+
+    /**
+     * 从数据万象的处理结果中取出压缩图、缩略图和图片信息
+     */
+    private StoredPicture toStoredPicture(String key, long contentLength, CIUploadResult ciUploadResult) {
+        ImageInfo imageInfo = ciUploadResult.getOriginalInfo().getImageInfo();
+        // 获取到图片处理结果
+        ProcessResults processResults = ciUploadResult.getProcessResults();
+        List<CIObject> objectList = processResults.getObjectList();
+        StoredPicture storedPicture = new StoredPicture();
+        storedPicture.setPicColor(imageInfo.getAve());
+        if (CollUtil.isNotEmpty(objectList)) {
+            // 获取压缩之后得到的文件信息
+            CIObject compressedCiObject = objectList.get(0);
+            // 缩略图默认等于压缩图
+            CIObject thumbnailCiObject = compressedCiObject;
+            // 有生成缩略图，才获取缩略图
+            if (objectList.size() > 1) {
+                thumbnailCiObject = objectList.get(1);
+            }
+            storedPicture.setUrl(getHost() + "/" + compressedCiObject.getKey());
+            storedPicture.setThumbnailUrl(getHost() + "/" + thumbnailCiObject.getKey());
+            storedPicture.setPicSize(compressedCiObject.getSize().longValue());
+            storedPicture.setPicWidth(compressedCiObject.getWidth());
+            storedPicture.setPicHeight(compressedCiObject.getHeight());
+            storedPicture.setPicFormat(compressedCiObject.getFormat());
+            return storedPicture;
+        }
+        storedPicture.setUrl(getHost() + "/" + key);
+        storedPicture.setPicSize(contentLength);
+        storedPicture.setPicWidth(imageInfo.getWidth());
+        storedPicture.setPicHeight(imageInfo.getHeight());
+        storedPicture.setPicFormat(imageInfo.getFormat());
+        return storedPicture;
+    }
+}
@@ -0,0 +1,425 @@
+package com.yupi.yupicturebackend.manager.storage;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.manager.imageprocess.LocalImageProcessor;
+import com.yupi.yupicturebackend.model.dto.file.PictureRendition;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 本地磁盘对象存储（按内容寻址）
+ * <p>
+ * 对象内容按 SHA-256 保存在 blobs/ 下，相同内容只存一份；keys/ 下每个唯一键对应一个记录内容哈希的小文件，
+ * 每份内容的引用数记录在同目录的 .ref 文件中，引用数归零时删除内容。
+ * 写入使用 FileChannel，读取使用内存映射，对象通过 {@code StorageController} 对外访问。
+ * 压缩图和缩略图由 {@link LocalImageProcessor} 生成。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+public class LocalObjectStorage implements ObjectStorage {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    @Value("${storage.local.dir:data/object-storage}")
+    private String dir;
+
+    @Value("${storage.local.host:http://localhost:8123/api/storage}")
+    private String host;
+
+    /**
+     * 预签名上传地址的签名密钥，为空时每次启动随机生成
+     */
+    @Value("${storage.local.secret:}")
+    private String secret;
+
+    @Resource
+    private LocalImageProcessor localImageProcessor;
+
+    private Path blobDir;
+
+    private Path keyDir;
+
+    private Path tempDir;
+
+    /**
+     * 按内容哈希分段加锁，保护引用数
+     */
+    private final Object[] locks = new Object[64];
+
+    public LocalObjectStorage() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    LocalObjectStorage(String dir, String host, LocalImageProcessor localImageProcessor) {
+        this();
+        this.dir = dir;
+        this.host = host;
+        this.localImageProcessor = localImageProcessor;
+    }
+
+    @PostConstruct
+    public void init() {
+        Path baseDir = Paths.get(dir).toAbsolutePath().normalize();
+        blobDir = baseDir.resolve("blobs");
+        keyDir = baseDir.resolve("keys");
+        tempDir = baseDir.resolve("tmp");
+        FileUtil.mkdir(blobDir.toFile());
+        FileUtil.mkdir(keyDir.toFile());
+        FileUtil.mkdir(tempDir.toFile());
+        if (StrUtil.isBlank(secret)) {
+            secret = RandomUtil.randomString(32);
+        }
+        log.info("使用本地对象存储，目录：{}", baseDir);
+    }
+
+    @Override
+    public StoredPicture putPicture(String key, File file) {
+        return localImageProcessor.processAndStore(this, key, FileUtil.readBytes(file));
+    }
+
+    @Override
+    public StoredPicture putPicture(String key, InputStream inputStream, long contentLength) {
+        return localImageProcessor.processAndStore(this, key, IoUtil.readBytes(inputStream, (int) contentLength));
+    }
+
+    @Override
+    public StoredPicture processPicture(String key) {
+        MappedByteBuffer buffer = mapObject(key);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return localImageProcessor.processStored(this, key, bytes);
+    }
+
+    @Override
+    public String generatePresignedPutUrl(String key, Date expiration) {
+        String relativeKey = key.replaceFirst("^/+", "");
+        long expires = expiration.getTime();
+        return String.format("%s/%s?expires=%d&signature=%s", host, relativeKey, expires, sign(relativeKey, expires));
+    }
+
+    /**
+     * 校验预签名上传地址的签名
+     *
+     * @param key       唯一键
+     * @param expires   过期时间（毫秒）
+     * @param signature 签名
+     */
+    public void checkPresignedPut(String key, long expires, String signature) {
+        String relativeKey = key.replaceFirst("^/+", "");
+        if (System.currentTimeMillis() > expires) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "上传地址已过期");
+        }
+        byte[] expected = sign(relativeKey, expires).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = StrUtil.nullToEmpty(signature).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "上传地址签名错误");
+        }
+    }
+
+    @Override
+    public long getObjectSize(String key) {
+        String hash = readRef(resolveKey(key));
+        if (hash == null) {
+            return -1;
+        }
+        try {
+            return Files.size(blobPath(hash));
+        } catch (NoSuchFileException e) {
+            return -1;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public List<PictureRendition> putRenditions(String key, List<Integer> widthList) {
+        MappedByteBuffer buffer = mapObject(key);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return localImageProcessor.processRenditions(this, key, bytes, widthList);
+    }
+
+    @Override
+    public void putObject(String key, File file) {
+        Path keyPath = resolveKey(key);
+        try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // 映射源文件计算哈希，内容已存在时不再复制
+            MessageDigest digest = newDigest();
+            if (source.size() > 0) {
+                digest.update(source.map(FileChannel.MapMode.READ_ONLY, 0, source.size()));
+            }
+            String hash = HexUtil.encodeHexStr(digest.digest());
+            Path tempPath = null;
+            if (!Files.exists(blobPath(hash))) {
+                tempPath = Files.createTempFile(tempDir, "put_", null);
+                try (FileChannel target = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                    long position = 0;
+                    while (position < source.size()) {
+                        position += source.transferTo(position, source.size() - position, target);
+                    }
+                }
+            }
+            link(keyPath, hash, tempPath);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void putObject(String key, InputStream inputStream, long contentLength) {
+        putObject(key, inputStream);
+    }
+
+    /**
+     * 上传输入流，边写入边计算哈希
+     */
+    public void putObject(String key, InputStream inputStream) {
+        Path keyPath = resolveKey(key);
+        Path tempPath = null;
+        try {
+            tempPath = Files.createTempFile(tempDir, "put_", null);
+            MessageDigest digest = newDigest();
+            ReadableByteChannel source = Channels.newChannel(inputStream);
+            try (FileChannel target = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+                while (source.read(buffer) >= 0) {
+                    buffer.flip();
+                    digest.update(buffer.array(), 0, buffer.limit());
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+            link(keyPath, HexUtil.encodeHexStr(digest.digest()), tempPath);
+            tempPath = null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (tempPath != null) {
+                FileUtil.del(tempPath);
+            }
+        }
+    }
+
+    @Override
+    public InputStream getObject(String key) {
+        return new ByteBufferInputStream(mapObject(key));
+    }
+
+    /**
+     * 内存映射读取对象
+     *
+     * @param key 唯一键
+     * @return 只读的映射缓冲区
+     */
+    public MappedByteBuffer mapObject(String key) {
+        String hash = readRef(resolveKey(key));
+        if (hash == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "对象不存在");
+        }
+        try (FileChannel channel = FileChannel.open(blobPath(hash), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "对象不存在");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void deleteObject(String key) {
+        Path keyPath = resolveKey(key);
+        String hash = readRef(keyPath);
+        if (hash == null) {
+            return;
+        }
+        synchronized (lockFor(hash)) {
+            // 加锁后再确认一次，避免并发删除重复减少引用数
+            if (!hash.equals(readRef(keyPath))) {
+                return;
+            }
+            FileUtil.del(keyPath);
+            addRefCount(hash, -1);
+        }
+    }
+
+    @Override
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * 把唯一键指向内容，tempPath 不为空时是新写入的内容
+     */
+    private void link(Path keyPath, String hash, Path tempPath) throws IOException {
+        String oldHash = readRef(keyPath);
+        synchronized (lockFor(hash)) {
+            Path blobPath = blobPath(hash);
+            if (!Files.exists(blobPath)) {
+                if (tempPath == null) {
+                    // 检查之后内容被删除了，只能由调用方重试
+                    throw new IllegalStateException("对象内容已被删除，请重试");
+                }
+                FileUtil.mkParentDirs(blobPath.toFile());
+                Files.move(tempPath, blobPath, StandardCopyOption.ATOMIC_MOVE);
+            } else if (tempPath != null) {
+                Files.deleteIfExists(tempPath);
+            }
+            if (hash.equals(oldHash)) {
+                return;
+            }
+            writeAtomically(keyPath, hash);
+            addRefCount(hash, 1);
+        }
+        // 覆盖已有的唯一键时，释放旧内容的引用
+        if (oldHash != null) {
+            synchronized (lockFor(oldHash)) {
+                addRefCount(oldHash, -1);
+            }
+        }
+    }
+
+    /**
+     * 修改引用数（调用方持有该哈希的锁），归零时删除内容
+     */
+    private void addRefCount(String hash, int delta) {
+        Path refPath = refPath(hash);
+        try {
+            int refCount = Files.exists(refPath)
+                    ? Integer.parseInt(new String(Files.readAllBytes(refPath), StandardCharsets.US_ASCII).trim()) : 0;
+            refCount += delta;
+            if (refCount <= 0) {
+                Files.deleteIfExists(blobPath(hash));
+                Files.deleteIfExists(refPath);
+                return;
+            }
+            writeAtomically(refPath, String.valueOf(refCount));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeAtomically(Path path, String content) throws IOException {
+        FileUtil.mkParentDirs(path.toFile());
+        Path tempPath = Files.createTempFile(tempDir, "ref_", null);
+        Files.write(tempPath, content.getBytes(StandardCharsets.US_ASCII));
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private String readRef(Path keyPath) {
+        try {
+            return new String(Files.readAllBytes(keyPath), StandardCharsets.US_ASCII).trim();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 唯一键对应的引用文件，不允许跳出 keys 目录
+     */
+    private Path resolveKey(String key) {
+        String relativeKey = key.replaceFirst("^/+", "");
+        Path keyPath = keyDir.resolve(relativeKey).normalize();
+        if (relativeKey.isEmpty() || !keyPath.startsWith(keyDir) || keyPath.equals(keyDir)) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "对象路径不合法");
+        }
+        return keyPath;
+    }
+
+    private String sign(String relativeKey, long expires) {
+        return SecureUtil.hmacSha256(secret).digestHex("PUT\n" + relativeKey + "\n" + expires);
+    }
+
+    private Path blobPath(String hash) {
+        return blobDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private Path refPath(String hash) {
+        return blobDir.resolve(hash.substring(0, 2)).resolve(hash + ".ref");
+    }
+
+    private Object lockFor(String hash) {
+        return locks[(hash.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 读取 ByteBuffer 的输入流
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
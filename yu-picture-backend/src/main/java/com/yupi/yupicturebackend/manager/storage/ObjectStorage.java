@@ -0,0 +1,122 @@
+package com.yupi.yupicturebackend.manager.storage;
+
+import cn.hutool.core.util.StrUtil;
+import com.yupi.yupicturebackend.model.dto.file.PictureRendition;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 对象存储
+ * <p>
+ * 通过 storage.type 选择实现：cos（默认，腾讯云对象存储）或 local（本地磁盘，用于离线开发和压测）。
+ * 压缩图和缩略图通过 picture.process.engine 选择由数据万象（cloud，默认）还是本地（local）生成，本地磁盘存储总是在本地生成。
+ */
+public interface ObjectStorage {
+
+    /**
+     * 上传图片，同时生成压缩图和缩略图
+     *
+     * @param key  唯一键
+     * @param file 本地文件
+     * @return
+     */
+    StoredPicture putPicture(String key, File file);
+
+    /**
+     * 上传图片（直接读取输入流），同时生成压缩图和缩略图
+     *
+     * @param key           唯一键
+     * @param inputStream   输入流
+     * @param contentLength 内容长度
+     * @return
+     */
+    StoredPicture putPicture(String key, InputStream inputStream, long contentLength);
+
+    /**
+     * 处理客户端已经直传到存储中的图片，生成压缩图和缩略图
+     *
+     * @param key 唯一键
+     * @return
+     */
+    StoredPicture processPicture(String key);
+
+    /**
+     * 生成直传对象的预签名上传地址（PUT）
+     *
+     * @param key        唯一键
+     * @param expiration 过期时间
+     * @return
+     */
+    String generatePresignedPutUrl(String key, Date expiration);
+
+    /**
+     * 获取对象大小
+     *
+     * @param key 唯一键
+     * @return 对象不存在时返回 -1
+     */
+    long getObjectSize(String key);
+
+    /**
+     * 根据已存储的图片生成多种宽度的响应式副本，副本与原图在同一目录
+     *
+     * @param key       已存储图片的唯一键
+     * @param widthList 需要生成的宽度（都小于原图宽度）
+     * @return 生成的副本
+     */
+    List<PictureRendition> putRenditions(String key, List<Integer> widthList);
+
+    /**
+     * 上传对象
+     *
+     * @param key  唯一键
+     * @param file 本地文件
+     */
+    void putObject(String key, File file);
+
+    /**
+     * 上传对象（直接读取输入流）
+     *
+     * @param key           唯一键
+     * @param inputStream   输入流
+     * @param contentLength 内容长度
+     */
+    void putObject(String key, InputStream inputStream, long contentLength);
+
+    /**
+     * 下载对象（由调用方关闭输入流）
+     *
+     * @param key 唯一键
+     * @return
+     */
+    InputStream getObject(String key);
+
+    /**
+     * 删除对象，对象不存在时忽略
+     *
+     * @param key 唯一键
+     */
+    void deleteObject(String key);
+
+    /**
+     * 对象的访问域名
+     */
+    String getHost();
+
+    /**
+     * 根据访问地址得到唯一键
+     *
+     * @param url 访问地址
+     * @return 不是当前存储的地址时返回 null
+     */
+    default String getKeyByUrl(String url) {
+        String host = getHost();
+        if (StrUtil.isBlank(url) || StrUtil.isBlank(host) || !url.startsWith(host)) {
+            return null;
+        }
+        return url.substring(host.length()).replaceFirst("^/+", "");
+    }
+}
@@ -0,0 +1,94 @@
+package com.yupi.yupicturebackend.manager.storage;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.yupi.yupicturebackend.model.dto.file.PictureRendition;
+import com.yupi.yupicturebackend.model.entity.PictureObject;
+import com.yupi.yupicturebackend.service.PictureObjectService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 清理不再被引用的存储对象
+ * <p>
+ * 引用数归零时不立即删除文件：上传前按内容哈希复用已有对象与删除之间存在时间差，
+ * 立即删除可能让刚复用该对象的图片指向已删除的文件。归零超过宽限期的对象记录先条件删除，
+ * 删除成功后再删除对象存储中的原图、缩略图和响应式副本。
+ */
+@Slf4j
+@Component
+public class PictureObjectCleaner {
+
+    private static final int CLEAN_BATCH_SIZE = 100;
+
+    @Resource
+    private PictureObjectService pictureObjectService;
+
+    @Resource
+    private ObjectStorage objectStorage;
+
+    private final ScheduledExecutorService cleanScheduler = Executors.newSingleThreadScheduledExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("pictureObjectClean").setDaemon(true).build());
+
+    @PostConstruct
+    public void init() {
+        cleanScheduler.scheduleWithFixedDelay(this::cleanUnreferencedObjects, 10, 10, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        cleanScheduler.shutdownNow();
+    }
+
+    /**
+     * 分批删除宽限期已过的对象，直到没有可删除的对象
+     */
+    public void cleanUnreferencedObjects() {
+        try {
+            List<PictureObject> pictureObjectList = pictureObjectService.removeUnreferenced(CLEAN_BATCH_SIZE);
+            while (!pictureObjectList.isEmpty()) {
+                pictureObjectList.forEach(this::deleteFiles);
+                log.info("清理未被引用的存储对象 {} 个", pictureObjectList.size());
+                pictureObjectList = pictureObjectService.removeUnreferenced(CLEAN_BATCH_SIZE);
+            }
+        } catch (Exception e) {
+            log.error("清理未被引用的存储对象失败", e);
+        }
+    }
+
+    private void deleteFiles(PictureObject pictureObject) {
+        String url = pictureObject.getUrl();
+        deleteObjectByUrl(url);
+        String thumbnailUrl = pictureObject.getThumbnailUrl();
+        if (StrUtil.isNotBlank(thumbnailUrl) && !thumbnailUrl.equals(url)) {
+            deleteObjectByUrl(thumbnailUrl);
+        }
+        if (StrUtil.isNotBlank(pictureObject.getRenditions())) {
+            JSONUtil.toList(pictureObject.getRenditions(), PictureRendition.class)
+                    .forEach(rendition -> deleteObjectByUrl(rendition.getUrl()));
+        }
+    }
+
+    private void deleteObjectByUrl(String url) {
+        String key = objectStorage.getKeyByUrl(url);
+        if (key == null) {
+            log.warn("不是当前对象存储的地址，跳过删除：{}", url);
+            return;
+        }
+        try {
+            objectStorage.deleteObject(key);
+        } catch (Exception e) {
+            // 记录已经删除，文件删除失败只能留下孤儿文件
+            log.error("删除存储对象文件失败：{}", url, e);
+        }
+    }
+}
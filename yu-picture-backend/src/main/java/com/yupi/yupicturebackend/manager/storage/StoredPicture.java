@@ -0,0 +1,45 @@
+package com.yupi.yupicturebackend.manager.storage;
+
+import lombok.Data;
+
+/**
+ * 图片上传到对象存储后的结果（压缩图、缩略图及图片信息）
+ */
+@Data
+public class StoredPicture {
+
+    /**
+     * 图片（压缩后）地址
+     */
+    private String url;
+
+    /**
+     * 缩略图地址
+     */
+    private String thumbnailUrl;
+
+    /**
+     * 图片（压缩后）大小
+     */
+    private Long picSize;
+
+    /**
+     * 图片宽度
+     */
+    private Integer picWidth;
+
+    /**
+     * 图片高度
+     */
+    private Integer picHeight;
+
+    /**
+     * 图片格式
+     */
+    private String picFormat;
+
+    /**
+     * 图片主色调（0xRRGGBB）
+     */
+    private String picColor;
+}
@@ -0,0 +1,354 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.StrUtil;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.model.dto.file.UploadPictureResult;
+import com.yupi.yupicturebackend.model.vo.PictureUploadBatchProgressVO;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 批量导入图片的流水线：抓取 => 校验 => 下载 => 上传到对象存储
+ * <p>
+ * 下载使用异步 HTTP 客户端，下载期间不占用线程，同一个域名的并发连接数由 {@link PictureUrlFetcher} 限制；
+ * 同时最多下载 {@link #MAX_CONCURRENT_DOWNLOADS} 张，上传在独立的有界线程池中执行，
+ * 成功数量达到目标后其余图片直接跳过。入库由调用方在全部完成后一次性批量执行。
+ */
+@Slf4j
+@Component
+public class BatchPictureUploader {
+
+    /**
+     * 一次批量导入同时进行的下载数，达到目标数量后还没开始下载的图片可以直接跳过
+     */
+    private static final int MAX_CONCURRENT_DOWNLOADS = 8;
+
+    /**
+     * 抓取页面的超时时间
+     */
+    private static final int FETCH_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * 一次批量导入的最长处理时间，超时后未完成的图片不再入库
+     */
+    public static final long BATCH_TIMEOUT_SECONDS = 120;
+
+    public static final String STATUS_SUCCESS = "success";
+
+    public static final String STATUS_FAILED = "failed";
+
+    public static final String STATUS_SKIPPED = "skipped";
+
+    @Resource
+    private UrlPictureUpload urlPictureUpload;
+
+    /**
+     * 执行整个批量导入任务（用于流式返回进度的接口），同时最多执行 2 个
+     */
+    private final ThreadPoolExecutor batchExecutor = new ThreadPoolExecutor(
+            2, 2, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(4),
+            ThreadFactoryBuilder.create().setNamePrefix("pictureBatch").build());
+
+    /**
+     * 上传到对象存储
+     */
+    private final ThreadPoolExecutor storeExecutor = new ThreadPoolExecutor(
+            4, 4, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(256),
+            ThreadFactoryBuilder.create().setNamePrefix("pictureBatchStore").build());
+
+    @PreDestroy
+    public void destroy() {
+        batchExecutor.shutdownNow();
+        storeExecutor.shutdownNow();
+    }
+
+    /**
+     * 在后台执行批量导入任务
+     *
+     * @param task 批量导入任务
+     * @return
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, batchExecutor);
+        } catch (RejectedExecutionException e) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "批量导入任务过多，请稍后重试");
+        }
+    }
+
+    /**
+     * 抓取图片地址（已去掉查询参数并去重）
+     *
+     * @param searchText 搜索词
+     * @return
+     */
+    public List<String> fetchImageUrlList(String searchText) {
+        String fetchUrl = String.format("https://cn.bing.com/images/async?q=%s&mmasync=1", searchText);
+        Document document;
+        try {
+            document = Jsoup.connect(fetchUrl).timeout(FETCH_TIMEOUT_MILLIS).get();
+        } catch (IOException e) {
+            log.error("获取页面失败", e);
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取页面失败");
+        }
+        Element div = document.getElementsByClass("dgControl").first();
+        if (div == null) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取元素失败");
+        }
+        Set<String> imageUrlSet = new LinkedHashSet<>();
+        for (Element imgElement : div.select("img.mimg")) {
+            String fileUrl = imgElement.attr("src");
+            if (StrUtil.isBlank(fileUrl)) {
+                continue;
+            }
+            // 处理图片的地址，防止转义或者和对象存储冲突的问题
+            // codefather.cn?yupi=dog，应该只保留 codefather.cn
+            int questionMarkIndex = fileUrl.indexOf("?");
+            if (questionMarkIndex > -1) {
+                fileUrl = fileUrl.substring(0, questionMarkIndex);
+            }
+            imageUrlSet.add(fileUrl);
+        }
+        return new ArrayList<>(imageUrlSet);
+    }
+
+    /**
+     * 并行下载并上传图片，最多成功 count 张
+     *
+     * @param sourceUrlList    图片地址列表（按优先级排序）
+     * @param count            目标数量
+     * @param uploadPathPrefix 上传路径前缀
+     * @param maxPictureSize   图片大小上限
+     * @param sizeListener     每张图片下载完成、上传前按实际大小回调（例如预占额度，抛出异常时该图片失败），可以为空
+     * @param progressListener 每张图片处理完成后回调，可以为空
+     * @return 上传成功的结果，按在列表中的顺序排列
+     */
+    public List<UploadPictureResult> upload(List<String> sourceUrlList, int count, String uploadPathPrefix,
+                                            long maxPictureSize, LongConsumer sizeListener,
+                                            Consumer<PictureUploadBatchProgressVO> progressListener) {
+        BatchContext context = new BatchContext(count, progressListener);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(BATCH_TIMEOUT_SECONDS);
+        List<CompletableFuture<UploadPictureResult>> futureList = new ArrayList<>(sourceUrlList.size());
+        for (int i = 0; i < sourceUrlList.size(); i++) {
+            futureList.add(uploadOne(context, deadline, i, sourceUrlList.get(i), uploadPathPrefix, maxPictureSize,
+                    sizeListener));
+        }
+        try {
+            CompletableFuture.allOf(futureList.toArray(new CompletableFuture[0]))
+                    .get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("批量导入图片超时，未完成的图片不再入库");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // 单张图片的失败已在各自的回调中处理
+        }
+        // 停止还未开始的图片，之后完成的图片不再计入结果
+        context.cancelled.set(true);
+        List<UploadPictureResult> resultList = new ArrayList<>();
+        for (CompletableFuture<UploadPictureResult> future : futureList) {
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                UploadPictureResult result = future.join();
+                if (result != null) {
+                    resultList.add(result);
+                }
+            }
+        }
+        return resultList.size() > count ? resultList.subList(0, count) : resultList;
+    }
+
+    private CompletableFuture<UploadPictureResult> uploadOne(BatchContext context, long deadline, int index,
+                                                             String sourceUrl, String uploadPathPrefix,
+                                                             long maxPictureSize, LongConsumer sizeListener) {
+        BatchItem item = new BatchItem(index, sourceUrl);
+        CompletableFuture<UploadPictureResult> future;
+        if (!context.acquireDownloadPermit(deadline)) {
+            item.skipReason = "导入已结束";
+            future = CompletableFuture.completedFuture(null);
+        } else if (context.shouldSkip(item)) {
+            // 等待许可期间可能已经达到目标数量
+            context.downloadPermits.release();
+            future = CompletableFuture.completedFuture(null);
+        } else {
+            try {
+                urlPictureUpload.validPicture(sourceUrl, maxPictureSize);
+                future = urlPictureUpload.downloadAsync(sourceUrl, maxPictureSize)
+                        .whenComplete((bytes, throwable) -> context.downloadPermits.release())
+                        .thenApplyAsync(bytes -> store(context, item, bytes, uploadPathPrefix, sizeListener),
+                                storeExecutor);
+            } catch (RuntimeException e) {
+                context.downloadPermits.release();
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+        }
+        return future.whenComplete((result, throwable) -> {
+            FileUtil.del(item.file);
+            if (throwable != null) {
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause() : throwable;
+                if (!(cause instanceof BusinessException)) {
+                    log.error("图片导入失败：{}", sourceUrl, cause);
+                }
+                context.report(item, STATUS_FAILED, cause instanceof BusinessException ? cause.getMessage() : "导入失败");
+            } else if (result == null) {
+                context.report(item, STATUS_SKIPPED, item.skipReason);
+            } else {
+                context.report(item, STATUS_SUCCESS, null);
+            }
+        });
+    }
+
+    /**
+     * 上传到对象存储，返回 null 表示跳过
+     */
+    private UploadPictureResult store(BatchContext context, BatchItem item, byte[] bytes, String uploadPathPrefix,
+                                      LongConsumer sizeListener) {
+        if (context.shouldSkip(item) || !context.tryReserve()) {
+            return null;
+        }
+        try {
+            if (sizeListener != null) {
+                sizeListener.accept(bytes.length);
+            }
+            item.file = File.createTempFile("picture_batch_", null);
+            FileUtil.writeBytes(bytes, item.file);
+            String originalFilename = urlPictureUpload.getOriginFilename(item.sourceUrl);
+            String uploadPath = urlPictureUpload.buildUploadPath(originalFilename, uploadPathPrefix);
+            UploadPictureResult result = urlPictureUpload.uploadFile(item.file, originalFilename, uploadPath);
+            context.successCount.incrementAndGet();
+            return result;
+        } catch (Exception e) {
+            // 上传失败，把名额还给后面的图片
+            context.reservedCount.decrementAndGet();
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * 一次批量导入的共享状态
+     */
+    private static class BatchContext {
+
+        private final int count;
+
+        private final Consumer<PictureUploadBatchProgressVO> progressListener;
+
+        /**
+         * 已占用的成功名额（包括正在上传的）
+         */
+        private final AtomicInteger reservedCount = new AtomicInteger();
+
+        private final AtomicInteger successCount = new AtomicInteger();
+
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        private final Semaphore downloadPermits = new Semaphore(MAX_CONCURRENT_DOWNLOADS);
+
+        private BatchContext(int count, Consumer<PictureUploadBatchProgressVO> progressListener) {
+            this.count = count;
+            this.progressListener = progressListener;
+        }
+
+        private boolean shouldSkip(BatchItem item) {
+            if (cancelled.get()) {
+                item.skipReason = "导入已结束";
+                return true;
+            }
+            if (reservedCount.get() >= count) {
+                item.skipReason = "已达到导入数量";
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 等待下载许可，超过批量导入的截止时间后放弃
+         */
+        private boolean acquireDownloadPermit(long deadline) {
+            try {
+                return !cancelled.get() && downloadPermits.tryAcquire(
+                        Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private boolean tryReserve() {
+            if (reservedCount.incrementAndGet() > count) {
+                reservedCount.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        private void report(BatchItem item, String status, String message) {
+            if (progressListener == null || cancelled.get()) {
+                return;
+            }
+            // 回调来自多个线程，串行通知
+            synchronized (this) {
+                try {
+                    progressListener.accept(PictureUploadBatchProgressVO.item(
+                            item.index, item.sourceUrl, status, message, successCount.get()));
+                } catch (Exception e) {
+                    log.warn("批量导入进度通知失败：{}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 单张图片的处理状态
+     */
+    private static class BatchItem {
+
+        private final int index;
+
+        private final String sourceUrl;
+
+        private volatile File file;
+
+        private volatile String skipReason = "已达到导入数量";
+
+        private BatchItem(int index, String sourceUrl) {
+            this.index = index;
+            this.sourceUrl = sourceUrl;
+        }
+    }
+}
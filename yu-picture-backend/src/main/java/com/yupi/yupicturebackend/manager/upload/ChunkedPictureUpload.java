@@ -0,0 +1,46 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.exception.ThrowUtils;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.io.File;
+
+/**
+ * 分片图片上传（输入源为已上传全部分片的会话）
+ */
+@Service
+public class ChunkedPictureUpload extends PictureUploadTemplate {
+
+    @Resource
+    private PictureUploadSessionManager pictureUploadSessionManager;
+
+    @Override
+    protected void validPicture(Object inputSource, long maxPictureSize) {
+        PictureUploadSession session = (PictureUploadSession) inputSource;
+        ThrowUtils.throwIf(session == null, ErrorCode.PARAMS_ERROR, "上传会话不能为空");
+        // 后缀在创建会话时已经校验；空间级别可能在上传期间变化，大小按当前上限再校验一次
+        ThrowUtils.throwIf(session.getFileSize() > maxPictureSize, ErrorCode.PARAMS_ERROR,
+                sizeLimitMessage(maxPictureSize));
+        pictureUploadSessionManager.checkComplete(session);
+    }
+
+    @Override
+    protected String getOriginFilename(Object inputSource) {
+        PictureUploadSession session = (PictureUploadSession) inputSource;
+        return session.getFileName();
+    }
+
+    @Override
+    protected void processFile(Object inputSource, File file, long maxPictureSize) throws Exception {
+        PictureUploadSession session = (PictureUploadSession) inputSource;
+        pictureUploadSessionManager.assemble(session, file);
+    }
+
+    @Override
+    protected PictureStream openPictureStream(Object inputSource, long maxPictureSize) throws Exception {
+        PictureUploadSession session = (PictureUploadSession) inputSource;
+        return new PictureStream(pictureUploadSessionManager.openStream(session), session.getFileSize(), null);
+    }
+}
@@ -17,13 +17,12 @@ import java.util.List;
 public class FilePictureUpload extends PictureUploadTemplate {
 
     @Override
-    protected void validPicture(Object inputSource) {
+    protected void validPicture(Object inputSource, long maxPictureSize) {
         MultipartFile multipartFile = (MultipartFile) inputSource;
         ThrowUtils.throwIf(multipartFile == null, ErrorCode.PARAMS_ERROR, "文件不能为空");
         // 1. 校验文件大小
         long fileSize = multipartFile.getSize();
-        final long ONE_M = 1024 * 1024;
-        ThrowUtils.throwIf(fileSize > 2 * ONE_M, ErrorCode.PARAMS_ERROR, "文件大小不能超过 2MB");
+        ThrowUtils.throwIf(fileSize > maxPictureSize, ErrorCode.PARAMS_ERROR, sizeLimitMessage(maxPictureSize));
         // 2. 校验文件后缀
         String fileSuffix = FileUtil.getSuffix(multipartFile.getOriginalFilename());
         // 允许上传的文件后缀列表（或者集合）
@@ -38,8 +37,14 @@ public class FilePictureUpload extends PictureUploadTemplate {
     }
 
     @Override
-    protected void processFile(Object inputSource, File file) throws Exception {
+    protected void processFile(Object inputSource, File file, long maxPictureSize) throws Exception {
         MultipartFile multipartFile = (MultipartFile) inputSource;
         multipartFile.transferTo(file);
     }
+
+    @Override
+    protected PictureStream openPictureStream(Object inputSource, long maxPictureSize) throws Exception {
+        MultipartFile multipartFile = (MultipartFile) inputSource;
+        return new PictureStream(multipartFile.getInputStream(), multipartFile.getSize(), null);
+    }
 }
@@ -0,0 +1,31 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import com.yupi.yupicturebackend.model.dto.file.PictureFeature;
+import com.yupi.yupicturebackend.utils.ColorPaletteUtils;
+import com.yupi.yupicturebackend.utils.ImageHashUtils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 图片特征提取器（调色板、感知哈希）
+ * <p>
+ * 上传接口不提取特征，由图片后台任务在入库后提取。图片只降采样解码一次，各项特征共用。
+ */
+public class PictureFeatureExtractor {
+
+    private PictureFeatureExtractor() {
+    }
+
+    /**
+     * 同步提取特征
+     *
+     * @param image 已降采样的图片
+     * @return
+     */
+    public static PictureFeature extract(BufferedImage image) {
+        PictureFeature pictureFeature = new PictureFeature();
+        pictureFeature.setPalette(ColorPaletteUtils.extractPalette(image, ColorPaletteUtils.DEFAULT_PALETTE_SIZE));
+        pictureFeature.setHash(ImageHashUtils.dHash(image));
+        return pictureFeature;
+    }
+}
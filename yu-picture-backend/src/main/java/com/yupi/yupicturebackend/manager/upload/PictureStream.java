@@ -0,0 +1,43 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 流式上传的输入流
+ */
+@Getter
+public class PictureStream implements Closeable {
+
+    private final InputStream inputStream;
+
+    /**
+     * 内容长度，未知（chunked）时为 -1
+     */
+    private final long contentLength;
+
+    /**
+     * 需要一起关闭的资源（如 HTTP 响应），可以为空
+     */
+    private final Closeable resource;
+
+    public PictureStream(InputStream inputStream, long contentLength, Closeable resource) {
+        this.inputStream = inputStream;
+        this.contentLength = contentLength;
+        this.resource = resource;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            inputStream.close();
+        } finally {
+            if (resource != null) {
+                resource.close();
+            }
+        }
+    }
+}
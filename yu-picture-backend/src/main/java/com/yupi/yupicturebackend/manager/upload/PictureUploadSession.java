@@ -0,0 +1,71 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 分片上传会话
+ * <p>
+ * 会话信息和已上传的分片都保存在会话目录中，多个节点共享该目录时可以把分片发送到任意节点。
+ */
+@Data
+public class PictureUploadSession implements Serializable {
+
+    /**
+     * 上传 id
+     */
+    private String uploadId;
+
+    /**
+     * 创建用户 id
+     */
+    private Long userId;
+
+    /**
+     * 原始文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件总大小
+     */
+    private Long fileSize;
+
+    /**
+     * 分片大小（最后一片可以更小）
+     */
+    private Integer chunkSize;
+
+    /**
+     * 分片数量
+     */
+    private Integer chunkCount;
+
+    /**
+     * 整个文件的 SHA-256（可选，合并后校验）
+     */
+    private String fileSha256;
+
+    /**
+     * 图片 id（用于修改）
+     */
+    private Long pictureId;
+
+    /**
+     * 图片名称
+     */
+    private String picName;
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+
+    /**
+     * 创建时间（毫秒）
+     */
+    private Long createTime;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,326 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONUtil;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.exception.ThrowUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片分片上传会话管理
+ * <p>
+ * 每个会话对应一个目录，保存会话信息和已上传的分片。分片可以乱序、重复上传，每片带 MD5 校验，
+ * 先写入临时文件、校验通过后再原子地移动到位，失败重试只需要重传这一片。全部分片到齐后
+ * 通过 FileChannel.transferTo 直接拼接到目标文件，不经过用户态缓冲区。
+ */
+@Slf4j
+@Component
+public class PictureUploadSessionManager {
+
+    /**
+     * 默认分片大小
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * 最小分片大小
+     */
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * 会话有效期
+     */
+    private static final long SESSION_EXPIRE_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private static final String SESSION_FILE_NAME = "session.json";
+
+    private static final String CHUNK_FILE_PREFIX = "chunk_";
+
+    /**
+     * 允许上传的文件后缀
+     */
+    private static final List<String> ALLOW_FORMAT_LIST = Arrays.asList("jpeg", "png", "jpg", "webp");
+
+    private final File sessionDir;
+
+    /**
+     * 定时清理过期会话
+     */
+    private final ScheduledExecutorService cleanScheduler = Executors.newSingleThreadScheduledExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("uploadSessionClean").setDaemon(true).build());
+
+    @Autowired
+    public PictureUploadSessionManager(@Value("${picture.upload.session-dir:data/upload-session}") String sessionDir) {
+        this(new File(sessionDir));
+        cleanScheduler.scheduleWithFixedDelay(this::cleanExpiredSessions, 1, 1, TimeUnit.HOURS);
+    }
+
+    PictureUploadSessionManager(File sessionDir) {
+        this.sessionDir = FileUtil.mkdir(sessionDir);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        cleanScheduler.shutdownNow();
+    }
+
+    /**
+     * 创建上传会话
+     *
+     * @param session        会话信息（fileName、fileSize 必填，chunkSize 为空时使用默认值）
+     * @param userId         创建用户 id
+     * @param maxPictureSize 图片大小上限
+     * @return 填充了 uploadId、分片数量的会话
+     */
+    public PictureUploadSession createSession(PictureUploadSession session, Long userId, long maxPictureSize) {
+        ThrowUtils.throwIf(session == null || StrUtil.isBlank(session.getFileName()), ErrorCode.PARAMS_ERROR, "文件名不能为空");
+        String fileSuffix = FileUtil.getSuffix(session.getFileName());
+        ThrowUtils.throwIf(!ALLOW_FORMAT_LIST.contains(fileSuffix), ErrorCode.PARAMS_ERROR, "文件类型错误");
+        Long fileSize = session.getFileSize();
+        ThrowUtils.throwIf(fileSize == null || fileSize <= 0, ErrorCode.PARAMS_ERROR, "文件大小错误");
+        ThrowUtils.throwIf(fileSize > maxPictureSize, ErrorCode.PARAMS_ERROR,
+                PictureUploadTemplate.sizeLimitMessage(maxPictureSize));
+        Integer chunkSize = session.getChunkSize();
+        if (chunkSize == null) {
+            chunkSize = DEFAULT_CHUNK_SIZE;
+        }
+        ThrowUtils.throwIf(chunkSize < MIN_CHUNK_SIZE || chunkSize > maxPictureSize,
+                ErrorCode.PARAMS_ERROR, "分片大小错误");
+        session.setUploadId(IdUtil.fastSimpleUUID());
+        session.setUserId(userId);
+        session.setChunkSize(chunkSize);
+        session.setChunkCount((int) ((fileSize + chunkSize - 1) / chunkSize));
+        session.setCreateTime(System.currentTimeMillis());
+        File dir = FileUtil.mkdir(new File(sessionDir, session.getUploadId()));
+        FileUtil.writeUtf8String(JSONUtil.toJsonStr(session), new File(dir, SESSION_FILE_NAME));
+        return session;
+    }
+
+    /**
+     * 获取上传会话，只有创建者可以访问
+     *
+     * @param uploadId 上传 id
+     * @param userId   当前用户 id
+     * @return
+     */
+    public PictureUploadSession getSession(String uploadId, Long userId) {
+        // uploadId 会拼接到路径中，只允许字母和数字
+        ThrowUtils.throwIf(StrUtil.isBlank(uploadId) || !StrUtil.isAllCharMatch(uploadId, Character::isLetterOrDigit),
+                ErrorCode.PARAMS_ERROR, "上传 id 错误");
+        File sessionFile = new File(new File(sessionDir, uploadId), SESSION_FILE_NAME);
+        ThrowUtils.throwIf(!sessionFile.isFile(), ErrorCode.NOT_FOUND_ERROR, "上传会话不存在或已过期");
+        PictureUploadSession session = JSONUtil.toBean(FileUtil.readString(sessionFile, StandardCharsets.UTF_8),
+                PictureUploadSession.class);
+        ThrowUtils.throwIf(isExpired(session), ErrorCode.NOT_FOUND_ERROR, "上传会话不存在或已过期");
+        ThrowUtils.throwIf(!session.getUserId().equals(userId), ErrorCode.NO_AUTH_ERROR);
+        return session;
+    }
+
+    /**
+     * 上传一个分片（可以乱序，重复上传时覆盖）
+     *
+     * @param session     上传会话
+     * @param index       分片序号（从 0 开始）
+     * @param checksum    分片内容的 MD5（十六进制）
+     * @param inputStream 分片内容
+     */
+    public void putChunk(PictureUploadSession session, int index, String checksum, InputStream inputStream) {
+        ThrowUtils.throwIf(index < 0 || index >= session.getChunkCount(), ErrorCode.PARAMS_ERROR, "分片序号错误");
+        ThrowUtils.throwIf(StrUtil.isBlank(checksum), ErrorCode.PARAMS_ERROR, "分片校验值不能为空");
+        File chunkFile = getChunkFile(session, index);
+        File tempFile = new File(chunkFile.getParentFile(), chunkFile.getName() + "." + IdUtil.fastSimpleUUID() + ".tmp");
+        try {
+            MessageDigest digest = DigestUtil.digester("MD5").getDigest();
+            long size;
+            try (DigestInputStream digestInputStream = new DigestInputStream(inputStream, digest)) {
+                size = Files.copy(digestInputStream, tempFile.toPath());
+            }
+            ThrowUtils.throwIf(size != getChunkLength(session, index), ErrorCode.PARAMS_ERROR, "分片大小错误");
+            ThrowUtils.throwIf(!HexUtil.encodeHexStr(digest.digest()).equalsIgnoreCase(checksum),
+                    ErrorCode.PARAMS_ERROR, "分片校验失败");
+            // 校验通过后再移动到位，并发重传同一片时以最后一次为准，内容相同
+            Files.move(tempFile.toPath(), chunkFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("保存上传分片失败, uploadId = {}, index = {}", session.getUploadId(), index, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "分片上传失败");
+        } finally {
+            FileUtil.del(tempFile);
+        }
+    }
+
+    /**
+     * 获取已上传的分片序号
+     *
+     * @param session 上传会话
+     * @return 升序排列的分片序号
+     */
+    public List<Integer> listUploadedChunks(PictureUploadSession session) {
+        List<Integer> indexList = new ArrayList<>();
+        for (int i = 0; i < session.getChunkCount(); i++) {
+            if (getChunkFile(session, i).isFile()) {
+                indexList.add(i);
+            }
+        }
+        return indexList;
+    }
+
+    /**
+     * 校验分片是否全部上传
+     *
+     * @param session 上传会话
+     */
+    public void checkComplete(PictureUploadSession session) {
+        List<Integer> uploadedList = listUploadedChunks(session);
+        if (uploadedList.size() == session.getChunkCount()) {
+            return;
+        }
+        for (int i = 0; i < session.getChunkCount(); i++) {
+            ThrowUtils.throwIf(!uploadedList.contains(i), ErrorCode.PARAMS_ERROR, "缺少第 " + i + " 个分片");
+        }
+    }
+
+    /**
+     * 把全部分片按顺序拼接到目标文件，并校验文件的 SHA-256（如果创建会话时提供了）
+     *
+     * @param session 上传会话
+     * @param target  目标文件（已存在时覆盖）
+     */
+    public void assemble(PictureUploadSession session, File target) throws IOException {
+        checkComplete(session);
+        try (FileChannel targetChannel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < session.getChunkCount(); i++) {
+                try (FileChannel chunkChannel = FileChannel.open(getChunkFile(session, i).toPath(), StandardOpenOption.READ)) {
+                    long size = chunkChannel.size();
+                    long position = 0;
+                    // transferTo 单次不保证传输全部内容
+                    while (position < size) {
+                        position += chunkChannel.transferTo(position, size - position, targetChannel);
+                    }
+                }
+            }
+            ThrowUtils.throwIf(targetChannel.size() != session.getFileSize(), ErrorCode.PARAMS_ERROR, "文件大小错误");
+        }
+        if (StrUtil.isNotBlank(session.getFileSha256())) {
+            ThrowUtils.throwIf(!DigestUtil.sha256Hex(target).equalsIgnoreCase(session.getFileSha256()),
+                    ErrorCode.PARAMS_ERROR, "文件校验失败");
+        }
+    }
+
+    /**
+     * 按顺序读取全部分片（流式上传使用，长度即 fileSize）
+     *
+     * @param session 上传会话
+     * @return
+     */
+    public InputStream openStream(PictureUploadSession session) {
+        checkComplete(session);
+        Enumeration<InputStream> chunkStreams = new Enumeration<InputStream>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasMoreElements() {
+                return index < session.getChunkCount();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                if (!hasMoreElements()) {
+                    throw new NoSuchElementException();
+                }
+                File chunkFile = getChunkFile(session, index++);
+                try {
+                    return new FileInputStream(chunkFile);
+                } catch (IOException e) {
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取上传分片失败");
+                }
+            }
+        };
+        return new SequenceInputStream(chunkStreams);
+    }
+
+    /**
+     * 删除上传会话
+     *
+     * @param session 上传会话
+     */
+    public void removeSession(PictureUploadSession session) {
+        FileUtil.del(new File(sessionDir, session.getUploadId()));
+    }
+
+    /**
+     * 清理过期的会话
+     */
+    void cleanExpiredSessions() {
+        File[] dirs = sessionDir.listFiles(File::isDirectory);
+        if (dirs == null) {
+            return;
+        }
+        for (File dir : dirs) {
+            try {
+                File sessionFile = new File(dir, SESSION_FILE_NAME);
+                boolean expired;
+                if (sessionFile.isFile()) {
+                    PictureUploadSession session = JSONUtil.toBean(FileUtil.readString(sessionFile, StandardCharsets.UTF_8),
+                            PictureUploadSession.class);
+                    expired = isExpired(session);
+                } else {
+                    // 没有会话信息的目录按修改时间判断
+                    expired = System.currentTimeMillis() - dir.lastModified() > SESSION_EXPIRE_MILLIS;
+                }
+                if (expired) {
+                    FileUtil.del(dir);
+                }
+            } catch (Exception e) {
+                log.error("清理上传会话失败, dir = {}", dir.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    private boolean isExpired(PictureUploadSession session) {
+        return session.getCreateTime() == null
+                || System.currentTimeMillis() - session.getCreateTime() > SESSION_EXPIRE_MILLIS;
+    }
+
+    private long getChunkLength(PictureUploadSession session, int index) {
+        long offset = (long) index * session.getChunkSize();
+        return Math.min(session.getChunkSize(), session.getFileSize() - offset);
+    }
+
+    private File getChunkFile(PictureUploadSession session, int index) {
+        return new File(new File(sessionDir, session.getUploadId()), CHUNK_FILE_PREFIX + index);
+    }
+}
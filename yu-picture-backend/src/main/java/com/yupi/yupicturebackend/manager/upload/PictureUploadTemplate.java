@@ -1,81 +1,86 @@
 package com.yupi.yupicturebackend.manager.upload;
 
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.HexUtil;
 import cn.hutool.core.util.NumberUtil;
 import cn.hutool.core.util.RandomUtil;
-import com.qcloud.cos.model.PutObjectResult;
-import com.qcloud.cos.model.ciModel.persistence.CIObject;
-import com.qcloud.cos.model.ciModel.persistence.ImageInfo;
-import com.qcloud.cos.model.ciModel.persistence.ProcessResults;
-import com.yupi.yupicturebackend.config.CosClientConfig;
+import cn.hutool.crypto.digest.DigestUtil;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
-import com.yupi.yupicturebackend.manager.CosManager;
+import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.manager.storage.ObjectStorage;
+import com.yupi.yupicturebackend.manager.storage.StoredPicture;
 import com.yupi.yupicturebackend.model.dto.file.UploadPictureResult;
+import com.yupi.yupicturebackend.model.entity.PictureObject;
+import com.yupi.yupicturebackend.model.enums.SpaceLevelEnum;
+import com.yupi.yupicturebackend.service.PictureObjectService;
+import com.yupi.yupicturebackend.utils.PictureFormatUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 
 import javax.annotation.Resource;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.Date;
-import java.util.List;
+import java.util.function.LongConsumer;
 
 /**
  * 图片上传模板
+ * <p>
+ * 上传时计算原图的 SHA-256，相同内容已经存储过时直接复用已有的对象和处理结果，不再上传。
  */
 @Slf4j
 public abstract class PictureUploadTemplate {
 
     @Resource
-    private CosClientConfig cosClientConfig;
+    private ObjectStorage objectStorage;
 
     @Resource
-    private CosManager cosManager;
+    private PictureObjectService pictureObjectService;
+
+    /**
+     * 流式上传：直接把输入流写入对象存储，不在本地生成临时文件
+     */
+    @Value("${picture.upload.streaming:false}")
+    private boolean streaming;
 
     /**
      * 上传图片
      *
      * @param inputSource      文件
      * @param uploadPathPrefix 上传路径前缀
+     * @param maxPictureSize   图片大小上限（按空间级别，见 {@link SpaceLevelEnum#getMaxPictureSize}）
+     * @param sizeListener     得到图片的实际大小后、写入对象存储前回调（例如按实际大小预占额度），可以为空
      * @return
      */
-    public UploadPictureResult uploadPicture(Object inputSource, String uploadPathPrefix) {
+    public UploadPictureResult uploadPicture(Object inputSource, String uploadPathPrefix, long maxPictureSize,
+                                             LongConsumer sizeListener) {
         // 1. 校验图片
-        validPicture(inputSource);
+        validPicture(inputSource, maxPictureSize);
+        if (streaming) {
+            return uploadPictureStreaming(inputSource, uploadPathPrefix, maxPictureSize, sizeListener);
+        }
         // 2. 图片上传地址
-        String uuid = RandomUtil.randomString(16);
         String originalFilename = getOriginFilename(inputSource);
-        // 自己拼接文件上传路径，而不是使用原始文件名称，可以增强安全性
-        String uploadFilename = String.format("%s_%s.%s", DateUtil.formatDate(new Date()), uuid,
-                FileUtil.getSuffix(originalFilename));
-        String uploadPath = String.format("/%s/%s", uploadPathPrefix, uploadFilename);
+        String uploadPath = buildUploadPath(originalFilename, uploadPathPrefix);
         File file = null;
         try {
             // 3. 创建临时文件，获取文件到服务器
             file = File.createTempFile(uploadPath, null);
             // 处理文件来源
-            processFile(inputSource, file);
-            // 4. 上传图片到对象存储
-            PutObjectResult putObjectResult = cosManager.putPictureObject(uploadPath, file);
-            // 5. 获取图片信息对象，封装返回结果
-            ImageInfo imageInfo = putObjectResult.getCiUploadResult().getOriginalInfo().getImageInfo();
-            // 获取到图片处理结果
-            ProcessResults processResults = putObjectResult.getCiUploadResult().getProcessResults();
-            List<CIObject> objectList = processResults.getObjectList();
-            if (CollUtil.isNotEmpty(objectList)) {
-                // 获取压缩之后得到的文件信息
-                CIObject compressedCiObject = objectList.get(0);
-                // 缩略图默认等于压缩图
-                CIObject thumbnailCiObject = compressedCiObject;
-                // 有生成缩略图，才获取缩略图
-                if (objectList.size() > 1) {
-                    thumbnailCiObject = objectList.get(1);
-                }
-                // 封装压缩图的返回结果
-                return buildResult(originalFilename, compressedCiObject, thumbnailCiObject, imageInfo);
+            processFile(inputSource, file, maxPictureSize);
+            if (sizeListener != null) {
+                sizeListener.accept(file.length());
             }
-            return buildResult(originalFilename, file, uploadPath, imageInfo);
+            return uploadFile(file, originalFilename, uploadPath);
+        } catch (BusinessException e) {
+            throw e;
         } catch (Exception e) {
             log.error("图片上传到对象存储失败", e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
@@ -86,10 +91,164 @@ public abstract class PictureUploadTemplate {
 
     }
 
+    /**
+     * 流式上传图片
+     * <p>
+     * 只在内存中读取文件头识别格式，之后边读边写入对象存储。长度未知（chunked）的输入在大小上限内读入内存后再上传。
+     * 内容哈希边上传边计算，只有读入内存的输入能在上传前复用已有对象，其余情况由入库时的去重处理。
+     *
+     * @param inputSource      文件
+     * @param uploadPathPrefix 上传路径前缀
+     * @param maxPictureSize   图片大小上限
+     * @param sizeListener     确定内容长度后回调，可以为空
+     * @return
+     */
+    private UploadPictureResult uploadPictureStreaming(Object inputSource, String uploadPathPrefix,
+                                                       long maxPictureSize, LongConsumer sizeListener) {
+        String originalFilename = getOriginFilename(inputSource);
+        try (PictureStream pictureStream = openPictureStream(inputSource, maxPictureSize)) {
+            // 1. 根据文件头识别格式
+            BufferedInputStream inputStream = new BufferedInputStream(pictureStream.getInputStream());
+            inputStream.mark(PictureFormatUtils.HEADER_LENGTH);
+            byte[] header = IoUtil.readBytes(inputStream, PictureFormatUtils.HEADER_LENGTH);
+            inputStream.reset();
+            String picFormat = PictureFormatUtils.sniffFormat(header, header.length);
+            ThrowUtils.throwIf(picFormat == null, ErrorCode.PARAMS_ERROR, "文件类型错误");
+            // 2. 确定内容长度
+            InputStream bodyStream = inputStream;
+            long contentLength = pictureStream.getContentLength();
+            byte[] bytes = null;
+            if (contentLength < 0) {
+                bytes = IoUtil.readBytes(inputStream, (int) maxPictureSize + 1);
+                contentLength = bytes.length;
+                bodyStream = new ByteArrayInputStream(bytes);
+            }
+            ThrowUtils.throwIf(contentLength > maxPictureSize, ErrorCode.PARAMS_ERROR, sizeLimitMessage(maxPictureSize));
+            if (sizeListener != null) {
+                sizeListener.accept(contentLength);
+            }
+            if (bytes != null) {
+                // 内容已经在内存中，先按内容哈希查找可复用的对象
+                String contentHash = DigestUtil.sha256Hex(bytes);
+                PictureObject pictureObject = pictureObjectService.getReusableByContentHash(contentHash);
+                if (pictureObject != null) {
+                    return buildResult(originalFilename, pictureObject);
+                }
+            }
+            MessageDigest digest = DigestUtil.digester("SHA-256").getDigest();
+            bodyStream = new DigestInputStream(bodyStream, digest);
+            // 3. 上传路径使用识别出的格式作为后缀
+            String uploadPath = buildUploadPath(FileUtil.mainName(originalFilename) + "." + picFormat, uploadPathPrefix);
+            // 4. 上传到对象存储，调色板等特征由图片后台任务提取
+            StoredPicture storedPicture = objectStorage.putPicture(uploadPath, bodyStream, contentLength);
+            // 5. 封装返回结果
+            UploadPictureResult uploadPictureResult = buildResult(originalFilename, storedPicture);
+            uploadPictureResult.setContentHash(HexUtil.encodeHexStr(digest.digest()));
+            return uploadPictureResult;
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("图片上传到对象存储失败", e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
+        }
+    }
+
+    /**
+     * 拼接对象存储中的上传路径
+     *
+     * @param originalFilename 原始文件名
+     * @param uploadPathPrefix 上传路径前缀
+     * @return
+     */
+    public String buildUploadPath(String originalFilename, String uploadPathPrefix) {
+        String uuid = RandomUtil.randomString(16);
+        // 自己拼接文件上传路径，而不是使用原始文件名称，可以增强安全性
+        String uploadFilename = String.format("%s_%s.%s", DateUtil.formatDate(new Date()), uuid,
+                FileUtil.getSuffix(originalFilename));
+        return String.format("/%s/%s", uploadPathPrefix, uploadFilename);
+    }
+
+    /**
+     * 上传本地文件到对象存储并解析图片信息（本地文件由调用方清理）
+     *
+     * @param file             本地文件
+     * @param originalFilename 原始文件名
+     * @param uploadPath       上传路径
+     * @return
+     */
+    public UploadPictureResult uploadFile(File file, String originalFilename, String uploadPath) {
+        try {
+            // 相同内容已经存储过，直接复用
+            String contentHash = DigestUtil.sha256Hex(file);
+            PictureObject pictureObject = pictureObjectService.getReusableByContentHash(contentHash);
+            if (pictureObject != null) {
+                return buildResult(originalFilename, pictureObject);
+            }
+            // 4. 上传图片到对象存储，调色板、感知哈希等特征由图片后台任务提取
+            StoredPicture storedPicture = objectStorage.putPicture(uploadPath, file);
+            // 5. 获取图片信息对象，封装返回结果
+            UploadPictureResult uploadPictureResult = buildResult(originalFilename, storedPicture);
+            uploadPictureResult.setContentHash(contentHash);
+            return uploadPictureResult;
+        } catch (Exception e) {
+            log.error("图片上传到对象存储失败", e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
+        }
+    }
+
+    /**
+     * 处理客户端已经直传到对象存储的图片并解析图片信息，图片数据不经过本地磁盘
+     * <p>
+     * 通过 {@link #openPictureStream} 读取已存储的对象计算内容哈希，入库时与其他上传方式一样按内容去重。
+     *
+     * @param inputSource    输入源
+     * @param key            唯一键
+     * @param maxPictureSize 图片大小上限
+     * @param sizeListener   读取到对象大小后回调，可以为空
+     * @return
+     */
+    protected UploadPictureResult uploadStoredObject(Object inputSource, String key, long maxPictureSize,
+                                                     LongConsumer sizeListener) {
+        long picSize = objectStorage.getObjectSize(key);
+        ThrowUtils.throwIf(picSize < 0, ErrorCode.PARAMS_ERROR, "文件未上传");
+        ThrowUtils.throwIf(picSize > maxPictureSize, ErrorCode.PARAMS_ERROR, sizeLimitMessage(maxPictureSize));
+        if (sizeListener != null) {
+            sizeListener.accept(picSize);
+        }
+        try {
+            String contentHash;
+            try (PictureStream pictureStream = openPictureStream(inputSource, maxPictureSize)) {
+                contentHash = DigestUtil.sha256Hex(pictureStream.getInputStream());
+            }
+            StoredPicture storedPicture = objectStorage.processPicture(key);
+            UploadPictureResult uploadPictureResult = buildResult(getOriginFilename(inputSource), storedPicture);
+            uploadPictureResult.setContentHash(contentHash);
+            return uploadPictureResult;
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("处理直传图片失败, key = {}", key, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "图片处理失败，请确认文件是有效的图片");
+        }
+    }
+
+    /**
+     * 超过图片大小上限时的提示
+     *
+     * @param maxPictureSize 图片大小上限
+     */
+    public static String sizeLimitMessage(long maxPictureSize) {
+        long oneMb = 1024 * 1024;
+        if (maxPictureSize % oneMb == 0) {
+            return String.format("文件大小不能超过 %dMB", maxPictureSize / oneMb);
+        }
+        return "文件大小不能超过 " + FileUtil.readableFileSize(maxPictureSize);
+    }
+
     /**
      * 校验输入源（本地文件或 URL）
      */
-    protected abstract void validPicture(Object inputSource);
+    protected abstract void validPicture(Object inputSource, long maxPictureSize);
 
     /**
      * 获取输入源的原始文件名
@@ -97,67 +256,67 @@ public abstract class PictureUploadTemplate {
     protected abstract String getOriginFilename(Object inputSource);
 
     /**
-     * 处理输入源并生成本地临时文件
+     * 处理输入源并生成本地临时文件，默认把 {@link #openPictureStream} 的内容写入文件
      */
-    protected abstract void processFile(Object inputSource, File file) throws Exception;
+    protected void processFile(Object inputSource, File file, long maxPictureSize) throws Exception {
+        try (PictureStream pictureStream = openPictureStream(inputSource, maxPictureSize)) {
+            FileUtil.writeFromStream(pictureStream.getInputStream(), file, false);
+        }
+    }
+
+    /**
+     * 打开输入源的数据流（流式上传）
+     */
+    protected abstract PictureStream openPictureStream(Object inputSource, long maxPictureSize) throws Exception;
 
     /**
      * 封装返回结果
      *
-     * @param originalFilename   原始文件名
-     * @param compressedCiObject 压缩后的对象
-     * @param thumbnailCiObject 缩略图对象
-     * @param imageInfo 图片信息
+     * @param originalFilename 原始文件名
+     * @param storedPicture    对象存储返回的图片信息
      * @return
      */
-    private UploadPictureResult buildResult(String originalFilename, CIObject compressedCiObject, CIObject thumbnailCiObject,
-                                            ImageInfo imageInfo) {
+    private UploadPictureResult buildResult(String originalFilename, StoredPicture storedPicture) {
         // 计算宽高
-        int picWidth = compressedCiObject.getWidth();
-        int picHeight = compressedCiObject.getHeight();
+        int picWidth = storedPicture.getPicWidth();
+        int picHeight = storedPicture.getPicHeight();
         double picScale = NumberUtil.round(picWidth * 1.0 / picHeight, 2).doubleValue();
         // 封装返回结果
         UploadPictureResult uploadPictureResult = new UploadPictureResult();
-        // 设置压缩后的原图地址
-        uploadPictureResult.setUrl(cosClientConfig.getHost() + "/" + compressedCiObject.getKey());
+        uploadPictureResult.setUrl(storedPicture.getUrl());
+        uploadPictureResult.setThumbnailUrl(storedPicture.getThumbnailUrl());
         uploadPictureResult.setPicName(FileUtil.mainName(originalFilename));
-        uploadPictureResult.setPicSize(compressedCiObject.getSize().longValue());
+        uploadPictureResult.setPicSize(storedPicture.getPicSize());
         uploadPictureResult.setPicWidth(picWidth);
         uploadPictureResult.setPicHeight(picHeight);
         uploadPictureResult.setPicScale(picScale);
-        uploadPictureResult.setPicFormat(compressedCiObject.getFormat());
-        uploadPictureResult.setPicColor(imageInfo.getAve());
-        // 设置缩略图地址
-        uploadPictureResult.setThumbnailUrl(cosClientConfig.getHost() + "/" + thumbnailCiObject.getKey());
+        uploadPictureResult.setPicFormat(storedPicture.getPicFormat());
+        uploadPictureResult.setPicColor(storedPicture.getPicColor());
         // 返回可访问的地址
         return uploadPictureResult;
     }
 
     /**
-     * 封装返回结果
+     * 使用已存储的对象封装返回结果
      *
-     * @param originalFilename
-     * @param file
-     * @param uploadPath
-     * @param imageInfo        对象存储返回的图片信息
+     * @param originalFilename 原始文件名
+     * @param pictureObject    已存储的对象
      * @return
      */
-    private UploadPictureResult buildResult(String originalFilename, File file, String uploadPath, ImageInfo imageInfo) {
-        // 计算宽高
-        int picWidth = imageInfo.getWidth();
-        int picHeight = imageInfo.getHeight();
-        double picScale = NumberUtil.round(picWidth * 1.0 / picHeight, 2).doubleValue();
-        // 封装返回结果
-        UploadPictureResult uploadPictureResult = new UploadPictureResult();
-        uploadPictureResult.setUrl(cosClientConfig.getHost() + "/" + uploadPath);
-        uploadPictureResult.setPicName(FileUtil.mainName(originalFilename));
-        uploadPictureResult.setPicSize(FileUtil.size(file));
-        uploadPictureResult.setPicWidth(picWidth);
-        uploadPictureResult.setPicHeight(picHeight);
-        uploadPictureResult.setPicScale(picScale);
-        uploadPictureResult.setPicFormat(imageInfo.getFormat());
-        uploadPictureResult.setPicColor(imageInfo.getAve());
-        // 返回可访问的地址
+    private UploadPictureResult buildResult(String originalFilename, PictureObject pictureObject) {
+        StoredPicture storedPicture = new StoredPicture();
+        storedPicture.setUrl(pictureObject.getUrl());
+        storedPicture.setThumbnailUrl(pictureObject.getThumbnailUrl());
+        storedPicture.setPicSize(pictureObject.getPicSize());
+        storedPicture.setPicWidth(pictureObject.getPicWidth());
+        storedPicture.setPicHeight(pictureObject.getPicHeight());
+        storedPicture.setPicFormat(pictureObject.getPicFormat());
+        storedPicture.setPicColor(pictureObject.getPicColor());
+        UploadPictureResult uploadPictureResult = buildResult(originalFilename, storedPicture);
+        uploadPictureResult.setPicPalette(pictureObject.getPicPalette());
+        uploadPictureResult.setPicHash(pictureObject.getPicHash());
+        uploadPictureResult.setContentHash(pictureObject.getContentHash());
+        uploadPictureResult.setRenditions(pictureObject.getRenditions());
         return uploadPictureResult;
     }
 
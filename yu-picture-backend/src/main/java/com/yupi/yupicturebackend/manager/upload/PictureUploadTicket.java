@@ -0,0 +1,56 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 预签名直传凭证
+ * <p>
+ * 签发预签名上传地址时生成，记录上传路径和上传参数，客户端直传完成后凭 uploadId 完成入库。
+ */
+@Data
+public class PictureUploadTicket implements Serializable {
+
+    /**
+     * 上传 id
+     */
+    private String uploadId;
+
+    /**
+     * 创建用户 id
+     */
+    private Long userId;
+
+    /**
+     * 对象存储中的唯一键
+     */
+    private String key;
+
+    /**
+     * 原始文件名
+     */
+    private String fileName;
+
+    /**
+     * 图片 id（用于修改）
+     */
+    private Long pictureId;
+
+    /**
+     * 图片名称
+     */
+    private String picName;
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+
+    /**
+     * 凭证过期时间（毫秒）
+     */
+    private Long expireTime;
+
+    private static final long serialVersionUID = 1L;
+}
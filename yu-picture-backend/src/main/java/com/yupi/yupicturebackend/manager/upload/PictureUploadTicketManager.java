@@ -0,0 +1,185 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.manager.storage.ObjectStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 预签名直传凭证管理
+ * <p>
+ * 签发凭证时生成上传路径和短时有效的预签名 PUT 地址，客户端直接上传到对象存储，图片数据不经过服务器。
+ * 凭证保存在 Redis 中，只有创建者可以完成上传，同一凭证只能完成一次。
+ * 签发后一直没有完成的上传记录在待完成集合中，凭证过期后由定时任务删除已经直传的对象。
+ */
+@Slf4j
+@Component
+public class PictureUploadTicketManager {
+
+    private static final String TICKET_KEY_PREFIX = "yupicture:upload:ticket:";
+
+    /**
+     * 待完成的上传路径（score 为可以清理的时间）
+     */
+    private static final String PENDING_KEY = "yupicture:upload:pending";
+
+    /**
+     * 预签名地址有效期
+     */
+    private static final long PRESIGN_EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * 凭证有效期（上传完成后还需要调用完成接口）
+     */
+    private static final long TICKET_EXPIRE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * 凭证过期后再等待一段时间才清理，避免与正在进行的完成操作冲突
+     */
+    private static final long CLEAN_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final int CLEAN_BATCH_SIZE = 100;
+
+    /**
+     * 允许上传的文件后缀
+     */
+    private static final List<String> ALLOW_FORMAT_LIST = Arrays.asList("jpeg", "png", "jpg", "webp");
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ObjectStorage objectStorage;
+
+    @Resource
+    private PresignedPictureUpload presignedPictureUpload;
+
+    /**
+     * 定时清理未完成的直传对象
+     */
+    private final ScheduledExecutorService cleanScheduler = Executors.newSingleThreadScheduledExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("uploadTicketClean").setDaemon(true).build());
+
+    @PostConstruct
+    public void init() {
+        cleanScheduler.scheduleWithFixedDelay(this::cleanExpiredUploads, 10, 10, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        cleanScheduler.shutdownNow();
+    }
+
+    /**
+     * 签发直传凭证
+     *
+     * @param ticket           上传参数（fileName 必填）
+     * @param fileSize         客户端声明的文件大小，完成时以实际上传的对象为准再次校验
+     * @param uploadPathPrefix 上传路径前缀
+     * @param userId           创建用户 id
+     * @param maxPictureSize   图片大小上限
+     * @return 预签名上传地址
+     */
+    public String createTicket(PictureUploadTicket ticket, Long fileSize, String uploadPathPrefix, Long userId,
+                               long maxPictureSize) {
+        ThrowUtils.throwIf(StrUtil.isBlank(ticket.getFileName()), ErrorCode.PARAMS_ERROR, "文件名不能为空");
+        String fileSuffix = FileUtil.getSuffix(ticket.getFileName());
+        ThrowUtils.throwIf(!ALLOW_FORMAT_LIST.contains(fileSuffix), ErrorCode.PARAMS_ERROR, "文件类型错误");
+        ThrowUtils.throwIf(fileSize == null || fileSize <= 0, ErrorCode.PARAMS_ERROR, "文件大小错误");
+        ThrowUtils.throwIf(fileSize > maxPictureSize, ErrorCode.PARAMS_ERROR,
+                PictureUploadTemplate.sizeLimitMessage(maxPictureSize));
+        long now = System.currentTimeMillis();
+        ticket.setUploadId(IdUtil.fastSimpleUUID());
+        ticket.setUserId(userId);
+        ticket.setKey(presignedPictureUpload.buildUploadPath(ticket.getFileName(), uploadPathPrefix));
+        ticket.setExpireTime(now + TICKET_EXPIRE_MILLIS);
+        // 先登记待完成，保证签发出去的地址都能被清理
+        stringRedisTemplate.opsForZSet().add(PENDING_KEY, ticket.getKey(), ticket.getExpireTime() + CLEAN_DELAY_MILLIS);
+        stringRedisTemplate.opsForValue().set(TICKET_KEY_PREFIX + ticket.getUploadId(), JSONUtil.toJsonStr(ticket),
+                TICKET_EXPIRE_MILLIS, TimeUnit.MILLISECONDS);
+        return objectStorage.generatePresignedPutUrl(ticket.getKey(), new Date(now + PRESIGN_EXPIRE_MILLIS));
+    }
+
+    /**
+     * 获取直传凭证，只有创建者可以访问
+     *
+     * @param uploadId 上传 id
+     * @param userId   当前用户 id
+     * @return
+     */
+    public PictureUploadTicket getTicket(String uploadId, Long userId) {
+        ThrowUtils.throwIf(StrUtil.isBlank(uploadId), ErrorCode.PARAMS_ERROR, "上传 id 不能为空");
+        String value = stringRedisTemplate.opsForValue().get(TICKET_KEY_PREFIX + uploadId);
+        ThrowUtils.throwIf(value == null, ErrorCode.NOT_FOUND_ERROR, "上传凭证不存在或已过期");
+        PictureUploadTicket ticket = JSONUtil.toBean(value, PictureUploadTicket.class);
+        ThrowUtils.throwIf(!ticket.getUserId().equals(userId), ErrorCode.NO_AUTH_ERROR);
+        return ticket;
+    }
+
+    /**
+     * 完成直传：占用凭证后执行入库逻辑，失败时归还凭证以便重试
+     *
+     * @param ticket   直传凭证
+     * @param uploader 入库逻辑
+     * @return 入库结果
+     */
+    public <T> T complete(PictureUploadTicket ticket, Supplier<T> uploader) {
+        String ticketKey = TICKET_KEY_PREFIX + ticket.getUploadId();
+        // 删除成功的请求才能继续，避免同一对象被入库两次
+        boolean claimed = Boolean.TRUE.equals(stringRedisTemplate.delete(ticketKey));
+        ThrowUtils.throwIf(!claimed, ErrorCode.OPERATION_ERROR, "上传已完成或凭证已过期");
+        T result;
+        try {
+            result = uploader.get();
+        } catch (RuntimeException e) {
+            long ttl = ticket.getExpireTime() - System.currentTimeMillis();
+            if (ttl > 0) {
+                stringRedisTemplate.opsForValue().set(ticketKey, JSONUtil.toJsonStr(ticket), ttl, TimeUnit.MILLISECONDS);
+            }
+            throw e;
+        }
+        stringRedisTemplate.opsForZSet().remove(PENDING_KEY, ticket.getKey());
+        return result;
+    }
+
+    /**
+     * 删除凭证过期但一直没有完成的直传对象
+     */
+    void cleanExpiredUploads() {
+        try {
+            Set<String> keySet = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(PENDING_KEY, 0, System.currentTimeMillis(), 0, CLEAN_BATCH_SIZE);
+            if (keySet == null) {
+                return;
+            }
+            for (String key : keySet) {
+                // 多个节点同时清理时，只有移除成功的节点删除对象
+                Long removed = stringRedisTemplate.opsForZSet().remove(PENDING_KEY, key);
+                if (removed != null && removed > 0) {
+                    objectStorage.deleteObject(key);
+                }
+            }
+        } catch (Exception e) {
+            log.error("清理未完成的直传对象失败", e);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.async.methods.AbstractBinResponseConsumer;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 下载网络图片（异步 HTTP 客户端，连接池复用连接）
+ * <p>
+ * 每张图片只发一次 GET 请求，收到响应头时就校验状态码、Content-Type 和 Content-Length，不合法时立即中止；
+ * 长度未知时边接收边计数，超过大小上限立即中止。同一个域名同时最多占用 {@link #MAX_CONNECTIONS_PER_HOST} 个连接，
+ * 连接、读取和整个下载都有超时时间，下载期间不占用调用方线程。
+ */
+@Slf4j
+@Component
+public class PictureUrlFetcher {
+
+    /**
+     * 同一个域名的最大连接数
+     */
+    private static final int MAX_CONNECTIONS_PER_HOST = 4;
+
+    private static final int MAX_CONNECTIONS_TOTAL = 64;
+
+    private static final long CONNECT_TIMEOUT_MILLIS = 3_000;
+
+    /**
+     * 读取超时（两次收到数据之间的最长间隔）
+     */
+    private static final long READ_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * 等待同域名连接的最长时间
+     */
+    private static final long CONNECTION_REQUEST_TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * 整个下载的最长时间
+     */
+    private static final long DEFAULT_DEADLINE_MILLIS = 30_000;
+
+    /**
+     * 允许的图片类型
+     */
+    private static final List<String> ALLOW_CONTENT_TYPES = Arrays.asList("image/jpeg", "image/jpg", "image/png", "image/webp");
+
+    private final CloseableHttpAsyncClient httpClient;
+
+    private final long deadlineMillis;
+
+    /**
+     * 用于触发整个下载的超时
+     */
+    private final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("pictureFetchTimeout").setDaemon(true).build());
+
+    @Autowired
+    public PictureUrlFetcher() {
+        this(DEFAULT_DEADLINE_MILLIS);
+    }
+
+    PictureUrlFetcher(long deadlineMillis) {
+        this.deadlineMillis = deadlineMillis;
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnPerRoute(MAX_CONNECTIONS_PER_HOST)
+                .setMaxConnTotal(MAX_CONNECTIONS_TOTAL)
+                .build();
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT_MILLIS))
+                .setResponseTimeout(Timeout.ofMilliseconds(READ_TIMEOUT_MILLIS))
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(CONNECTION_REQUEST_TIMEOUT_MILLIS))
+                .build();
+        this.httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                // 中止下载也会被当作可重试的 IO 异常，关闭自动重试，保证每张图片只请求一次
+                .disableAutomaticRetries()
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setSoTimeout(Timeout.ofMilliseconds(READ_TIMEOUT_MILLIS))
+                        .build())
+                .setThreadFactory(ThreadFactoryBuilder.create().setNamePrefix("pictureFetch").setDaemon(true).build())
+                .build();
+        this.httpClient.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        timeoutScheduler.shutdownNow();
+        httpClient.close(CloseMode.IMMEDIATE);
+    }
+
+    /**
+     * 下载图片
+     *
+     * @param fileUrl 图片地址
+     * @param maxSize 大小上限
+     * @return 图片内容，失败时以 BusinessException 结束
+     */
+    public CompletableFuture<byte[]> fetch(String fileUrl, long maxSize) {
+        CompletableFuture<byte[]> resultFuture = new CompletableFuture<>();
+        Future<byte[]> exchangeFuture = httpClient.execute(AsyncRequestBuilder.get(fileUrl).build(),
+                new LimitedBodyConsumer(maxSize), null, new FutureCallback<byte[]>() {
+                    @Override
+                    public void completed(byte[] bytes) {
+                        resultFuture.complete(bytes);
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        resultFuture.completeExceptionally(toBusinessException(fileUrl, e));
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        resultFuture.completeExceptionally(new BusinessException(ErrorCode.OPERATION_ERROR, "文件下载超时"));
+                    }
+                });
+        // 取消请求会关闭连接，回调中以超时结束
+        ScheduledFuture<?> timeoutFuture = timeoutScheduler.schedule(() -> exchangeFuture.cancel(true),
+                deadlineMillis, TimeUnit.MILLISECONDS);
+        resultFuture.whenComplete((bytes, throwable) -> timeoutFuture.cancel(false));
+        return resultFuture;
+    }
+
+    private static BusinessException toBusinessException(String fileUrl, Exception e) {
+        if (e instanceof RejectedResponseException) {
+            return new BusinessException(ErrorCode.PARAMS_ERROR, e.getMessage());
+        }
+        // 连接、读取超时都是 InterruptedIOException，等待连接池超时是 TimeoutException
+        if (e instanceof InterruptedIOException || e instanceof TimeoutException) {
+            return new BusinessException(ErrorCode.OPERATION_ERROR, "文件下载超时");
+        }
+        log.warn("文件下载失败：{}，{}", fileUrl, e.toString());
+        return new BusinessException(ErrorCode.OPERATION_ERROR, "文件下载失败");
+    }
+
+    /**
+     * 响应不符合要求，中止下载
+     */
+    private static class RejectedResponseException extends IOException {
+
+        private RejectedResponseException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 限制大小的响应体接收器
+     */
+    private static class LimitedBodyConsumer extends AbstractBinResponseConsumer<byte[]> {
+
+        private static final int CAPACITY_INCREMENT = 64 * 1024;
+
+        private final long maxSize;
+
+        private ByteArrayOutputStream outputStream;
+
+        private LimitedBodyConsumer(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected void start(HttpResponse response, ContentType contentType) throws IOException {
+            if (response.getCode() != HttpStatus.SC_OK) {
+                throw new IOException("响应状态码 " + response.getCode());
+            }
+            // Content-Type 不为空时才校验，规则相对宽松
+            if (contentType != null && !ALLOW_CONTENT_TYPES.contains(contentType.getMimeType().toLowerCase())) {
+                throw new RejectedResponseException("文件类型错误");
+            }
+            long contentLength = -1;
+            Header contentLengthHeader = response.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+            if (contentLengthHeader != null) {
+                try {
+                    contentLength = Long.parseLong(contentLengthHeader.getValue().trim());
+                } catch (NumberFormatException e) {
+                    throw new RejectedResponseException("文件大小格式异常");
+                }
+            }
+            if (contentLength > maxSize) {
+                throw new RejectedResponseException(PictureUploadTemplate.sizeLimitMessage(maxSize));
+            }
+            outputStream = new ByteArrayOutputStream(contentLength > 0 ? (int) contentLength : CAPACITY_INCREMENT);
+        }
+
+        @Override
+        protected int capacityIncrement() {
+            return CAPACITY_INCREMENT;
+        }
+
+        @Override
+        protected void data(ByteBuffer src, boolean endOfStream) throws IOException {
+            // 长度未知或与声明不符时，超过上限立即中止
+            if (outputStream.size() + src.remaining() > maxSize) {
+                throw new RejectedResponseException(PictureUploadTemplate.sizeLimitMessage(maxSize));
+            }
+            byte[] chunk = new byte[src.remaining()];
+            src.get(chunk);
+            outputStream.write(chunk, 0, chunk.length);
+        }
+
+        @Override
+        protected byte[] buildResult() {
+            return outputStream.toByteArray();
+        }
+
+        @Override
+        public void releaseResources() {
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.manager.storage.ObjectStorage;
+import com.yupi.yupicturebackend.model.dto.file.UploadPictureResult;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.function.LongConsumer;
+
+/**
+ * 预签名直传图片上传（输入源为直传凭证，图片已经由客户端上传到对象存储）
+ */
+@Service
+public class PresignedPictureUpload extends PictureUploadTemplate {
+
+    @Resource
+    private ObjectStorage objectStorage;
+
+    @Override
+    public UploadPictureResult uploadPicture(Object inputSource, String uploadPathPrefix, long maxPictureSize,
+                                             LongConsumer sizeListener) {
+        validPicture(inputSource, maxPictureSize);
+        PictureUploadTicket ticket = (PictureUploadTicket) inputSource;
+        // 上传路径在签发时确定，必须仍在本次上传的目录下
+        ThrowUtils.throwIf(!ticket.getKey().startsWith("/" + uploadPathPrefix + "/"),
+                ErrorCode.NO_AUTH_ERROR, "上传路径与空间不一致");
+        return uploadStoredObject(ticket, ticket.getKey(), maxPictureSize, sizeListener);
+    }
+
+    @Override
+    protected void validPicture(Object inputSource, long maxPictureSize) {
+        PictureUploadTicket ticket = (PictureUploadTicket) inputSource;
+        ThrowUtils.throwIf(ticket == null, ErrorCode.PARAMS_ERROR, "上传凭证不能为空");
+    }
+
+    @Override
+    protected String getOriginFilename(Object inputSource) {
+        PictureUploadTicket ticket = (PictureUploadTicket) inputSource;
+        return ticket.getFileName();
+    }
+
+    @Override
+    protected PictureStream openPictureStream(Object inputSource, long maxPictureSize) {
+        // 读取客户端已经直传到对象存储的对象
+        PictureUploadTicket ticket = (PictureUploadTicket) inputSource;
+        return new PictureStream(objectStorage.getObject(ticket.getKey()),
+                objectStorage.getObjectSize(ticket.getKey()), null);
+    }
+}
@@ -2,29 +2,32 @@ package com.yupi.yupicturebackend.manager.upload;
 
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.http.HttpResponse;
-import cn.hutool.http.HttpStatus;
-import cn.hutool.http.HttpUtil;
-import cn.hutool.http.Method;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
 import com.yupi.yupicturebackend.exception.ThrowUtils;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Arrays;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * URL 图片上传
+ * <p>
+ * 只发一次 GET 请求，类型和大小在收到响应头时校验，见 {@link PictureUrlFetcher}。
  */
 @Service
 public class UrlPictureUpload extends PictureUploadTemplate {
 
+    @Resource
+    private PictureUrlFetcher pictureUrlFetcher;
+
     @Override
-    protected void validPicture(Object inputSource) {
+    protected void validPicture(Object inputSource, long maxPictureSize) {
         String fileUrl = (String) inputSource;
         // 1. 校验非空
         ThrowUtils.throwIf(StrUtil.isBlank(fileUrl), ErrorCode.PARAMS_ERROR, "文件地址为空");
@@ -39,41 +42,6 @@ public class UrlPictureUpload extends PictureUploadTemplate {
         ThrowUtils.throwIf(!fileUrl.startsWith("http://") && !fileUrl.startsWith("https://"),
                 ErrorCode.PARAMS_ERROR, "仅支持 HTTP 或 HTTPS 协议的文件地址"
         );
-        // 4. 发送 HEAD 请求验证文件是否存在
-        HttpResponse httpResponse = null;
-        try {
-            httpResponse = HttpUtil.createRequest(Method.HEAD, fileUrl)
-                    .execute();
-            // 未正常返回，无需执行其他判断
-            if (httpResponse.getStatus() != HttpStatus.HTTP_OK) {
-                return;
-            }
-            // 5. 文件存在，文件类型校验
-            String contentType = httpResponse.header("Content-Type");
-            // 不为空，才校验是否合法，这样校验规则相对宽松
-            if (StrUtil.isNotBlank(contentType)) {
-                // 允许的图片类型
-                final List<String> ALLOW_CONTENT_TYPES = Arrays.asList("image/jpeg", "image/jpg", "image/png", "image/webp");
-                ThrowUtils.throwIf(!ALLOW_CONTENT_TYPES.contains(contentType.toLowerCase()),
-                        ErrorCode.PARAMS_ERROR, "文件类型错误");
-            }
-            // 6. 文件存在，文件大小校验
-            String contentLengthStr = httpResponse.header("Content-Length");
-            if (StrUtil.isNotBlank(contentLengthStr)) {
-                try {
-                    long contentLength = Long.parseLong(contentLengthStr);
-                    final long ONE_M = 1024 * 1024;
-                    ThrowUtils.throwIf(contentLength > 2 * ONE_M, ErrorCode.PARAMS_ERROR, "文件大小不能超过 2MB");
-                } catch (NumberFormatException e) {
-                    throw new BusinessException(ErrorCode.PARAMS_ERROR, "文件大小格式异常");
-                }
-            }
-        } finally {
-            // 记得释放资源
-            if (httpResponse != null) {
-                httpResponse.close();
-            }
-        }
     }
 
     @Override
@@ -83,9 +51,44 @@ public class UrlPictureUpload extends PictureUploadTemplate {
     }
 
     @Override
-    protected void processFile(Object inputSource, File file) throws Exception {
+    protected void processFile(Object inputSource, File file, long maxPictureSize) {
         String fileUrl = (String) inputSource;
         // 下载文件到临时目录
-        HttpUtil.downloadFile(fileUrl, file);
+        FileUtil.writeBytes(download(fileUrl, maxPictureSize), file);
+    }
+
+    @Override
+    protected PictureStream openPictureStream(Object inputSource, long maxPictureSize) {
+        String fileUrl = (String) inputSource;
+        byte[] bytes = download(fileUrl, maxPictureSize);
+        return new PictureStream(new ByteArrayInputStream(bytes), bytes.length, null);
+    }
+
+    /**
+     * 异步下载图片（不占用调用方线程，批量导入使用）
+     *
+     * @param fileUrl        图片地址
+     * @param maxPictureSize 图片大小上限
+     * @return 失败时以 BusinessException 结束
+     */
+    public CompletableFuture<byte[]> downloadAsync(String fileUrl, long maxPictureSize) {
+        return pictureUrlFetcher.fetch(fileUrl, maxPictureSize);
+    }
+
+    /**
+     * 下载图片，等待时间受下载的总超时时间限制
+     */
+    private byte[] download(String fileUrl, long maxPictureSize) {
+        try {
+            return downloadAsync(fileUrl, maxPictureSize).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "文件下载被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BusinessException) {
+                throw (BusinessException) e.getCause();
+            }
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "文件下载失败");
+        }
     }
 }
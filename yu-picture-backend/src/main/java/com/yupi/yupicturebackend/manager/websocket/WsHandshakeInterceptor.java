@@ -79,7 +79,7 @@ public class WsHandshakeInterceptor implements HandshakeInterceptor {
             Long spaceId = picture.getSpaceId();
             Space space = null;
             if (spaceId != null) {
-                space = spaceService.getById(spaceId);
+                space = spaceService.getCachedSpaceMetaById(spaceId);
                 if (ObjUtil.isEmpty(space)) {
                     log.error("图片所在空间不存在，拒绝握手");
                     return false;
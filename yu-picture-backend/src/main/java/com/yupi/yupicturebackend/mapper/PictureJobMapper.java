@@ -0,0 +1,51 @@
+package com.yupi.yupicturebackend.mapper;
+
+import com.yupi.yupicturebackend.model.entity.PictureJob;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+* @description 针对表【picture_job(图片后台任务)】的数据库操作Mapper
+* @Entity com.yupi.yupicturebackend.model.entity.PictureJob
+*/
+public interface PictureJobMapper extends BaseMapper<PictureJob> {
+
+    /**
+     * 插入任务，同一图片的同类任务已存在时重置为待执行
+     *
+     * @param pictureJob
+     * @return
+     */
+    int insertOrReset(PictureJob pictureJob);
+
+    /**
+     * 领取到期的待执行任务
+     *
+     * @param leaseOwner   租约持有者
+     * @param leaseSeconds 租约时长
+     * @param limit        最多领取的条数
+     * @return 领取的条数
+     */
+    int claimPending(@Param("leaseOwner") String leaseOwner, @Param("leaseSeconds") int leaseSeconds,
+                     @Param("limit") int limit);
+
+    /**
+     * 重新领取租约已过期、执行次数未达上限的执行中任务
+     *
+     * @param leaseOwner   租约持有者
+     * @param leaseSeconds 租约时长
+     * @param maxAttempts  最多执行次数
+     * @param limit        最多领取的条数
+     * @return 领取的条数
+     */
+    int claimExpired(@Param("leaseOwner") String leaseOwner, @Param("leaseSeconds") int leaseSeconds,
+                     @Param("maxAttempts") int maxAttempts, @Param("limit") int limit);
+
+    /**
+     * 将租约已过期且执行次数达到上限的任务标记为失败
+     *
+     * @param maxAttempts 最多执行次数
+     * @return 标记的条数
+     */
+    int failExpired(@Param("maxAttempts") int maxAttempts);
+}
@@ -2,6 +2,10 @@ package com.yupi.yupicturebackend.mapper;
 
 import com.yupi.yupicturebackend.model.entity.Picture;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+import java.util.List;
 
 /**
 * @author 李鱼皮
@@ -11,6 +15,16 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface PictureMapper extends BaseMapper<Picture> {
 
+    /**
+     * 按 (updateTime, id) 顺序查询在 (updateTime, lastId) 之后更新过的图片，包括已逻辑删除的图片
+     *
+     * @param updateTime 起始更新时间
+     * @param lastId     上一批最后一条的 id（首批为 0）
+     * @param limit      最多返回条数
+     * @return
+     */
+    List<Picture> listUpdatedAfter(@Param("updateTime") Date updateTime, @Param("lastId") long lastId,
+                                   @Param("limit") int limit);
 }
 
 
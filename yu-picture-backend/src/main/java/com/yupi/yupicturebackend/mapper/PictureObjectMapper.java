@@ -0,0 +1,19 @@
+package com.yupi.yupicturebackend.mapper;
+
+import com.yupi.yupicturebackend.model.entity.PictureObject;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+* @description 针对表【picture_object(图片存储对象)】的数据库操作Mapper
+* @Entity com.yupi.yupicturebackend.model.entity.PictureObject
+*/
+public interface PictureObjectMapper extends BaseMapper<PictureObject> {
+
+    /**
+     * 插入存储对象，内容哈希已存在时只增加引用数
+     *
+     * @param pictureObject
+     * @return
+     */
+    int insertOrIncrement(PictureObject pictureObject);
+}
@@ -0,0 +1,14 @@
+package com.yupi.yupicturebackend.mapper;
+
+import com.yupi.yupicturebackend.model.entity.PictureTag;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+* @author 李鱼皮
+* @description 针对表【picture_tag(图片标签关联)】的数据库操作Mapper
+* @createDate 2025-02-10 21:12:36
+* @Entity com.yupi.yupicturebackend.model.entity.PictureTag
+*/
+public interface PictureTagMapper extends BaseMapper<PictureTag> {
+
+}
@@ -0,0 +1,28 @@
+package com.yupi.yupicturebackend.model.dto.file;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 图片调色板中的一种颜色
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaletteColor implements Serializable {
+
+    /**
+     * 颜色，格式 0xRRGGBB
+     */
+    private String color;
+
+    /**
+     * 占比（0-1）
+     */
+    private Double weight;
+
+    private static final long serialVersionUID = 1L;
+}
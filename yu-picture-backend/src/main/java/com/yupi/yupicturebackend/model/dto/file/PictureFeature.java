@@ -0,0 +1,22 @@
+package com.yupi.yupicturebackend.model.dto.file;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 上传时在本地提取的图片特征
+ */
+@Data
+public class PictureFeature {
+
+    /**
+     * 调色板
+     */
+    private List<PaletteColor> palette;
+
+    /**
+     * 感知哈希（dHash）
+     */
+    private Long hash;
+}
@@ -0,0 +1,43 @@
+package com.yupi.yupicturebackend.model.dto.file;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 图片的一种尺寸和格式的副本（用于响应式图片 srcset）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PictureRendition implements Serializable {
+
+    /**
+     * 宽度
+     */
+    private Integer width;
+
+    /**
+     * 高度
+     */
+    private Integer height;
+
+    /**
+     * 格式，如 webp、avif
+     */
+    private String format;
+
+    /**
+     * 访问地址
+     */
+    private String url;
+
+    /**
+     * 文件体积
+     */
+    private Long size;
+
+    private static final long serialVersionUID = 1L;
+}
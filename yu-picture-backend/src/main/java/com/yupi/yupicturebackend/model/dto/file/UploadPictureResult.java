@@ -52,4 +52,24 @@ public class UploadPictureResult {
      * 图片主色调
      */
     private String picColor;
+
+    /**
+     * 图片调色板（JSON 数组）
+     */
+    private String picPalette;
+
+    /**
+     * 图片感知哈希
+     */
+    private Long picHash;
+
+    /**
+     * 图片内容哈希（SHA-256）
+     */
+    private String contentHash;
+
+    /**
+     * 响应式副本（JSON 数组，复用已存储的对象时才有值）
+     */
+    private String renditions;
 }
\ No newline at end of file
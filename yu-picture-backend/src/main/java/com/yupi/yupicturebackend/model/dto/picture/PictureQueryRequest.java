@@ -40,6 +40,11 @@ public class PictureQueryRequest extends PageRequest implements Serializable {
      */
     private List<String> tags;
 
+    /**
+     * 多个标签的匹配方式：and-同时包含所有标签（默认）; or-包含任一标签
+     */
+    private String tagMatchMode;
+
     /**
      * 文件体积
      */
@@ -115,5 +120,15 @@ public class PictureQueryRequest extends PageRequest implements Serializable {
      */
     private Date endEditTime;
 
+    /**
+     * 游标（游标分页时使用，首页不传）
+     */
+    private String cursor;
+
+    /**
+     * 游标分页时是否需要查询总条数
+     */
+    private boolean needTotal;
+
     private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
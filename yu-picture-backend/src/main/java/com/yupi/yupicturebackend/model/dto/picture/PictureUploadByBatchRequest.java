@@ -25,5 +25,10 @@ public class PictureUploadByBatchRequest implements Serializable {
      */
     private String namePrefix;
 
+    /**
+     * 空间 id（为空表示导入到公共图库）
+     */
+    private Long spaceId;
+
     private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.yupi.yupicturebackend.model.dto.picture;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 完成预签名直传请求
+ */
+@Data
+public class PictureUploadCompleteRequest implements Serializable {
+
+    /**
+     * 上传 id
+     */
+    private String uploadId;
+
+    private static final long serialVersionUID = 1L;
+}
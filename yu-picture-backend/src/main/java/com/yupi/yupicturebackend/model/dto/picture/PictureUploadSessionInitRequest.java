@@ -0,0 +1,49 @@
+package com.yupi.yupicturebackend.model.dto.picture;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 创建分片上传会话请求
+ */
+@Data
+public class PictureUploadSessionInitRequest implements Serializable {
+
+    /**
+     * 图片 id（用于修改）
+     */
+    private Long id;
+
+    /**
+     * 图片名称
+     */
+    private String picName;
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+
+    /**
+     * 原始文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件总大小
+     */
+    private Long fileSize;
+
+    /**
+     * 分片大小（可选）
+     */
+    private Integer chunkSize;
+
+    /**
+     * 整个文件的 SHA-256（可选）
+     */
+    private String fileSha256;
+
+    private static final long serialVersionUID = 1L;
+}
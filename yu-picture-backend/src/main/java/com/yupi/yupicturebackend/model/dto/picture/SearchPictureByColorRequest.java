@@ -20,5 +20,15 @@ public class SearchPictureByColorRequest implements Serializable {
      */
     private Long spaceId;
 
+    /**
+     * 色差算法：de76 / de2000（默认）
+     */
+    private String colorDistanceMode;
+
+    /**
+     * 匹配方式：main（主色调） / palette（调色板，默认）
+     */
+    private String colorMatchMode;
+
     private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
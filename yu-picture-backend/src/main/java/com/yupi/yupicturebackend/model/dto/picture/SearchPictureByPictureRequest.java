@@ -15,5 +15,10 @@ public class SearchPictureByPictureRequest implements Serializable {
      */
     private Long pictureId;
 
+    /**
+     * 是否搜索互联网图片（调用外部识图接口），默认在图片所在空间（或公共图库）中查找相似图片
+     */
+    private Boolean external;
+
     private static final long serialVersionUID = 1L;
 }
@@ -29,4 +29,9 @@ public class SpaceLevel {
      * 最大容量
      */
     private long maxSize;
+
+    /**
+     * 单张图片大小上限
+     */
+    private long maxPictureSize;
 }
\ No newline at end of file
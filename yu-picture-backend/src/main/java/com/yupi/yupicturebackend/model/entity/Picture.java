@@ -79,6 +79,26 @@ public class Picture implements Serializable {
      */
     private String picColor;
 
+    /**
+     * 图片调色板（JSON 数组，包含颜色和占比）
+     */
+    private String picPalette;
+
+    /**
+     * 图片感知哈希（64 位 dHash，用于以图搜图）
+     */
+    private Long picHash;
+
+    /**
+     * 图片内容哈希（SHA-256，对应 picture_object）
+     */
+    private String contentHash;
+
+    /**
+     * 响应式副本（JSON 数组，为空表示还未生成）
+     */
+    private String renditions;
+
     /**
      * 创建用户 id
      */
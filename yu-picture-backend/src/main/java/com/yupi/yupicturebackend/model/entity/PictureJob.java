@@ -0,0 +1,81 @@
+package com.yupi.yupicturebackend.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.io.Serializable;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 图片后台任务
+ * @TableName picture_job
+ */
+@TableName(value ="picture_job")
+@Data
+public class PictureJob implements Serializable {
+    /**
+     * id
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 图片 id
+     */
+    private Long pictureId;
+
+    /**
+     * 空间 id（为空表示公共图库）
+     */
+    private Long spaceId;
+
+    /**
+     * 任务类型：feature/rendition
+     */
+    private String jobType;
+
+    /**
+     * 状态：0-待执行 1-执行中 2-失败
+     */
+    private Integer status;
+
+    /**
+     * 已执行次数
+     */
+    private Integer attempts;
+
+    /**
+     * 下次可执行时间
+     */
+    private Date nextRunTime;
+
+    /**
+     * 租约持有者（执行中的节点和批次）
+     */
+    private String leaseOwner;
+
+    /**
+     * 租约到期时间，到期未完成的任务可被其他节点重新领取
+     */
+    private Date leaseExpireTime;
+
+    /**
+     * 最近一次失败的原因
+     */
+    private String lastError;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+}
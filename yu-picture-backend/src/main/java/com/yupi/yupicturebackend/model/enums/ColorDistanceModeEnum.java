@@ -0,0 +1,41 @@
+package com.yupi.yupicturebackend.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 颜色距离算法枚举类
+ */
+@Getter
+public enum ColorDistanceModeEnum {
+
+    DE76("CIE76（Lab 欧氏距离，速度快）", "de76"),
+    DE2000("CIEDE2000（更符合人眼感知）", "de2000");
+
+    private final String text;
+
+    private final String value;
+
+    ColorDistanceModeEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的 value
+     * @return 枚举值
+     */
+    public static ColorDistanceModeEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (ColorDistanceModeEnum anEnum : ColorDistanceModeEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
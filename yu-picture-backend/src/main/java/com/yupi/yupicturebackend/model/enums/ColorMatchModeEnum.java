@@ -0,0 +1,41 @@
+package com.yupi.yupicturebackend.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 以色搜图匹配方式枚举类
+ */
+@Getter
+public enum ColorMatchModeEnum {
+
+    MAIN("主色调", "main"),
+    PALETTE("调色板（按占比加权）", "palette");
+
+    private final String text;
+
+    private final String value;
+
+    ColorMatchModeEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的 value
+     * @return 枚举值
+     */
+    public static ColorMatchModeEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (ColorMatchModeEnum anEnum : ColorMatchModeEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,42 @@
+package com.yupi.yupicturebackend.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 图片后台任务状态枚举类（成功的任务直接删除）
+ */
+@Getter
+public enum PictureJobStatusEnum {
+
+    PENDING("待执行", 0),
+    RUNNING("执行中", 1),
+    FAILED("失败", 2);
+
+    private final String text;
+
+    private final int value;
+
+    PictureJobStatusEnum(String text, int value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的 value
+     * @return 枚举值
+     */
+    public static PictureJobStatusEnum getEnumByValue(Integer value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (PictureJobStatusEnum pictureJobStatusEnum : PictureJobStatusEnum.values()) {
+            if (pictureJobStatusEnum.value == value) {
+                return pictureJobStatusEnum;
+            }
+        }
+        return null;
+    }
+}
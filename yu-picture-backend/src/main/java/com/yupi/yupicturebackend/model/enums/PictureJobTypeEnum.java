@@ -0,0 +1,41 @@
+package com.yupi.yupicturebackend.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 图片后台任务类型枚举类
+ */
+@Getter
+public enum PictureJobTypeEnum {
+
+    FEATURE("提取调色板和感知哈希", "feature"),
+    RENDITION("生成响应式副本", "rendition");
+
+    private final String text;
+
+    private final String value;
+
+    PictureJobTypeEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的 value
+     * @return 枚举值
+     */
+    public static PictureJobTypeEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (PictureJobTypeEnum pictureJobTypeEnum : PictureJobTypeEnum.values()) {
+            if (pictureJobTypeEnum.value.equals(value)) {
+                return pictureJobTypeEnum;
+            }
+        }
+        return null;
+    }
+}
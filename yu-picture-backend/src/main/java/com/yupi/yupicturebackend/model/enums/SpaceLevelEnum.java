@@ -9,9 +9,14 @@ import lombok.Getter;
 @Getter
 public enum SpaceLevelEnum {
 
-    COMMON("普通版", 0, 100, 100L * 1024 * 1024),
-    PROFESSIONAL("专业版", 1, 1000, 1000L * 1024 * 1024),
-    FLAGSHIP("旗舰版", 2, 10000, 10000L * 1024 * 1024);
+    COMMON("普通版", 0, 100, 100L * 1024 * 1024, 2L * 1024 * 1024),
+    PROFESSIONAL("专业版", 1, 1000, 1000L * 1024 * 1024, 5L * 1024 * 1024),
+    FLAGSHIP("旗舰版", 2, 10000, 10000L * 1024 * 1024, 20L * 1024 * 1024);
+
+    /**
+     * 公共图库（不属于任何空间）的单张图片大小上限
+     */
+    public static final long DEFAULT_MAX_PICTURE_SIZE = 2L * 1024 * 1024;
 
     private final String text;
 
@@ -21,18 +26,31 @@ public enum SpaceLevelEnum {
 
     private final long maxSize;
 
+    private final long maxPictureSize;
 
     /**
      * @param text 文本
      * @param value 值
      * @param maxSize 最大图片总大小
      * @param maxCount 最大图片总数量
+     * @param maxPictureSize 单张图片大小上限
      */
-    SpaceLevelEnum(String text, int value, long maxCount, long maxSize) {
+    SpaceLevelEnum(String text, int value, long maxCount, long maxSize, long maxPictureSize) {
         this.text = text;
         this.value = value;
         this.maxCount = maxCount;
         this.maxSize = maxSize;
+        this.maxPictureSize = maxPictureSize;
+    }
+
+    /**
+     * 获取单张图片大小上限
+     *
+     * @param value 空间级别，为空（公共图库）时使用默认上限
+     */
+    public static long getMaxPictureSize(Integer value) {
+        SpaceLevelEnum spaceLevelEnum = getEnumByValue(value);
+        return spaceLevelEnum == null ? DEFAULT_MAX_PICTURE_SIZE : spaceLevelEnum.maxPictureSize;
     }
 
     /**
@@ -1,5 +1,6 @@
 package com.yupi.yupicturebackend.model.vo;
 
+import com.yupi.yupicturebackend.model.entity.User;
 import lombok.Data;
 
 import java.io.Serializable;
@@ -57,4 +58,24 @@ public class LoginUserVO implements Serializable {
     private Date updateTime;
 
     private static final long serialVersionUID = 1L;
+
+    /**
+     * 对象转封装类（逐个字段赋值，不使用反射）
+     */
+    public static LoginUserVO objToVo(User user) {
+        if (user == null) {
+            return null;
+        }
+        LoginUserVO loginUserVO = new LoginUserVO();
+        loginUserVO.setId(user.getId());
+        loginUserVO.setUserAccount(user.getUserAccount());
+        loginUserVO.setUserName(user.getUserName());
+        loginUserVO.setUserAvatar(user.getUserAvatar());
+        loginUserVO.setUserProfile(user.getUserProfile());
+        loginUserVO.setUserRole(user.getUserRole());
+        loginUserVO.setEditTime(user.getEditTime());
+        loginUserVO.setCreateTime(user.getCreateTime());
+        loginUserVO.setUpdateTime(user.getUpdateTime());
+        return loginUserVO;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.yupi.yupicturebackend.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 批量导入图片进度
+ */
+@Data
+public class PictureUploadBatchProgressVO implements Serializable {
+
+    /**
+     * 事件类型：item 单张图片处理完成 / done 全部完成 / error 导入失败
+     */
+    private String type;
+
+    /**
+     * 图片在抓取结果中的序号（item）
+     */
+    private Integer index;
+
+    /**
+     * 图片来源地址（item）
+     */
+    private String sourceUrl;
+
+    /**
+     * 处理结果：success / failed / skipped（item）
+     */
+    private String status;
+
+    /**
+     * 失败或跳过的原因
+     */
+    private String message;
+
+    /**
+     * 当前已成功的数量
+     */
+    private Integer successCount;
+
+    /**
+     * 入库的图片 id 列表（done）
+     */
+    private List<Long> pictureIdList;
+
+    private static final long serialVersionUID = 1L;
+
+    public static PictureUploadBatchProgressVO item(int index, String sourceUrl, String status, String message,
+                                                    int successCount) {
+        PictureUploadBatchProgressVO progressVO = new PictureUploadBatchProgressVO();
+        progressVO.setType("item");
+        progressVO.setIndex(index);
+        progressVO.setSourceUrl(sourceUrl);
+        progressVO.setStatus(status);
+        progressVO.setMessage(message);
+        progressVO.setSuccessCount(successCount);
+        return progressVO;
+    }
+
+    public static PictureUploadBatchProgressVO done(List<Long> pictureIdList) {
+        PictureUploadBatchProgressVO progressVO = new PictureUploadBatchProgressVO();
+        progressVO.setType("done");
+        progressVO.setSuccessCount(pictureIdList.size());
+        progressVO.setPictureIdList(pictureIdList);
+        return progressVO;
+    }
+
+    public static PictureUploadBatchProgressVO error(String message) {
+        PictureUploadBatchProgressVO progressVO = new PictureUploadBatchProgressVO();
+        progressVO.setType("error");
+        progressVO.setMessage(message);
+        return progressVO;
+    }
+}
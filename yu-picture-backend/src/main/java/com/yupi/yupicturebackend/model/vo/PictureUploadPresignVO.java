@@ -0,0 +1,29 @@
+package com.yupi.yupicturebackend.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 预签名直传地址
+ */
+@Data
+public class PictureUploadPresignVO implements Serializable {
+
+    /**
+     * 上传 id（完成上传时使用）
+     */
+    private String uploadId;
+
+    /**
+     * 预签名上传地址，使用 PUT 方法上传文件内容
+     */
+    private String uploadUrl;
+
+    /**
+     * 完成上传的截止时间（毫秒）
+     */
+    private Long expireTime;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,45 @@
+package com.yupi.yupicturebackend.model.vo;
+
+import com.yupi.yupicturebackend.manager.upload.PictureUploadSession;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 分片上传会话
+ */
+@Data
+public class PictureUploadSessionVO implements Serializable {
+
+    /**
+     * 上传 id
+     */
+    private String uploadId;
+
+    /**
+     * 分片大小
+     */
+    private Integer chunkSize;
+
+    /**
+     * 分片数量
+     */
+    private Integer chunkCount;
+
+    /**
+     * 已上传的分片序号（断点续传时只需上传缺少的分片）
+     */
+    private List<Integer> uploadedChunkList;
+
+    private static final long serialVersionUID = 1L;
+
+    public static PictureUploadSessionVO objToVo(PictureUploadSession session, List<Integer> uploadedChunkList) {
+        PictureUploadSessionVO sessionVO = new PictureUploadSessionVO();
+        sessionVO.setUploadId(session.getUploadId());
+        sessionVO.setChunkSize(session.getChunkSize());
+        sessionVO.setChunkCount(session.getChunkCount());
+        sessionVO.setUploadedChunkList(uploadedChunkList);
+        return sessionVO;
+    }
+}
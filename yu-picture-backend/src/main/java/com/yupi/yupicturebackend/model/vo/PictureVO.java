@@ -1,14 +1,20 @@
 package com.yupi.yupicturebackend.model.vo;
 
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
+import com.yupi.yupicturebackend.model.dto.file.PaletteColor;
+import com.yupi.yupicturebackend.model.dto.file.PictureRendition;
 import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.utils.PictureTagUtils;
 import lombok.Data;
-import org.springframework.beans.BeanUtils;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 public class PictureVO implements Serializable {
@@ -78,6 +84,21 @@ public class PictureVO implements Serializable {
      */
     private String picColor;
 
+    /**
+     * 图片调色板
+     */
+    private List<PaletteColor> picPalette;
+
+    /**
+     * 响应式副本
+     */
+    private List<PictureRendition> renditions;
+
+    /**
+     * 按格式分组的 srcset，如 webp -> "url1 320w, url2 640w"
+     */
+    private Map<String, String> srcset;
+
     /**
      * 用户 id
      */
@@ -123,23 +144,82 @@ public class PictureVO implements Serializable {
             return null;
         }
         Picture picture = new Picture();
-        BeanUtils.copyProperties(pictureVO, picture);
+        picture.setId(pictureVO.getId());
+        picture.setUrl(pictureVO.getUrl());
+        picture.setThumbnailUrl(pictureVO.getThumbnailUrl());
+        picture.setName(pictureVO.getName());
+        picture.setIntroduction(pictureVO.getIntroduction());
+        picture.setCategory(pictureVO.getCategory());
+        picture.setPicSize(pictureVO.getPicSize());
+        picture.setPicWidth(pictureVO.getPicWidth());
+        picture.setPicHeight(pictureVO.getPicHeight());
+        picture.setPicScale(pictureVO.getPicScale());
+        picture.setPicFormat(pictureVO.getPicFormat());
+        picture.setPicColor(pictureVO.getPicColor());
+        picture.setUserId(pictureVO.getUserId());
+        picture.setSpaceId(pictureVO.getSpaceId());
+        picture.setCreateTime(pictureVO.getCreateTime());
+        picture.setEditTime(pictureVO.getEditTime());
+        picture.setUpdateTime(pictureVO.getUpdateTime());
         // 类型不同，需要转换
         picture.setTags(JSONUtil.toJsonStr(pictureVO.getTags()));
+        if (pictureVO.getPicPalette() != null) {
+            picture.setPicPalette(JSONUtil.toJsonStr(pictureVO.getPicPalette()));
+        }
+        if (pictureVO.getRenditions() != null) {
+            picture.setRenditions(JSONUtil.toJsonStr(pictureVO.getRenditions()));
+        }
         return picture;
     }
 
     /**
-     * 对象转封装类
+     * 对象转封装类（列表页的每条记录都会调用，逐个字段赋值，不使用反射）
      */
     public static PictureVO objToVo(Picture picture) {
         if (picture == null) {
             return null;
         }
         PictureVO pictureVO = new PictureVO();
-        BeanUtils.copyProperties(picture, pictureVO);
-        // 类型不同，需要转换
-        pictureVO.setTags(JSONUtil.toList(picture.getTags(), String.class));
+        pictureVO.setId(picture.getId());
+        pictureVO.setUrl(picture.getUrl());
+        pictureVO.setThumbnailUrl(picture.getThumbnailUrl());
+        pictureVO.setName(picture.getName());
+        pictureVO.setIntroduction(picture.getIntroduction());
+        pictureVO.setCategory(picture.getCategory());
+        pictureVO.setPicSize(picture.getPicSize());
+        pictureVO.setPicWidth(picture.getPicWidth());
+        pictureVO.setPicHeight(picture.getPicHeight());
+        pictureVO.setPicScale(picture.getPicScale());
+        pictureVO.setPicFormat(picture.getPicFormat());
+        pictureVO.setPicColor(picture.getPicColor());
+        pictureVO.setUserId(picture.getUserId());
+        pictureVO.setSpaceId(picture.getSpaceId());
+        pictureVO.setCreateTime(picture.getCreateTime());
+        pictureVO.setEditTime(picture.getEditTime());
+        pictureVO.setUpdateTime(picture.getUpdateTime());
+        // 类型不同，需要转换（标签解析结果有缓存）
+        pictureVO.setTags(PictureTagUtils.parseTags(picture.getTags()));
+        if (StrUtil.isNotBlank(picture.getPicPalette())) {
+            pictureVO.setPicPalette(JSONUtil.toList(picture.getPicPalette(), PaletteColor.class));
+        }
+        if (StrUtil.isNotBlank(picture.getRenditions())) {
+            List<PictureRendition> renditionList = JSONUtil.toList(picture.getRenditions(), PictureRendition.class);
+            pictureVO.setRenditions(renditionList);
+            pictureVO.setSrcset(buildSrcset(renditionList));
+        }
         return pictureVO;
     }
+
+    /**
+     * 按格式拼接 srcset（副本按宽度升序）
+     */
+    private static Map<String, String> buildSrcset(List<PictureRendition> renditionList) {
+        Map<String, String> srcset = new LinkedHashMap<>();
+        renditionList.stream()
+                .sorted(Comparator.comparing(PictureRendition::getWidth))
+                .forEach(rendition -> srcset.merge(rendition.getFormat(),
+                        rendition.getUrl() + " " + rendition.getWidth() + "w",
+                        (previous, current) -> previous + ", " + current));
+        return srcset;
+    }
 }
\ No newline at end of file
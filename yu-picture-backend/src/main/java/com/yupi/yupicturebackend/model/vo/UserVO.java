@@ -1,5 +1,6 @@
 package com.yupi.yupicturebackend.model.vo;
 
+import com.yupi.yupicturebackend.model.entity.User;
 import lombok.Data;
 
 import java.io.Serializable;
@@ -47,4 +48,22 @@ public class UserVO implements Serializable {
     private Date createTime;
 
     private static final long serialVersionUID = 1L;
+
+    /**
+     * 对象转封装类（逐个字段赋值，不使用反射）
+     */
+    public static UserVO objToVo(User user) {
+        if (user == null) {
+            return null;
+        }
+        UserVO userVO = new UserVO();
+        userVO.setId(user.getId());
+        userVO.setUserAccount(user.getUserAccount());
+        userVO.setUserName(user.getUserName());
+        userVO.setUserAvatar(user.getUserAvatar());
+        userVO.setUserProfile(user.getUserProfile());
+        userVO.setUserRole(user.getUserRole());
+        userVO.setCreateTime(user.getCreateTime());
+        return userVO;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.yupi.yupicturebackend.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.entity.PictureJob;
+
+import java.util.List;
+
+/**
+ * @description 针对表【picture_job(图片后台任务)】的数据库操作Service
+ */
+public interface PictureJobService extends IService<PictureJob> {
+
+    /**
+     * 为新入库的图片登记后台任务（需在图片入库的事务内执行，与图片一起提交）
+     * <p>
+     * 上传时没有提取到特征的图片登记特征提取任务，没有响应式副本的图片登记生成副本任务。
+     *
+     * @param pictureList 需要包含 id、spaceId、picHash、renditions
+     */
+    void enqueue(List<Picture> pictureList);
+
+    /**
+     * 领取可执行的任务
+     *
+     * @param workerId     执行节点标识
+     * @param limit        最多领取的条数
+     * @param leaseSeconds 租约时长，到期未完成的任务可被重新领取
+     * @return
+     */
+    List<PictureJob> claim(String workerId, int limit, int leaseSeconds);
+
+    /**
+     * 任务执行成功（删除任务）
+     *
+     * @param pictureJob 领取到的任务
+     */
+    void complete(PictureJob pictureJob);
+
+    /**
+     * 任务执行失败，未超过最大次数时退避后重试
+     *
+     * @param pictureJob   领取到的任务
+     * @param errorMessage 失败原因
+     */
+    void fail(PictureJob pictureJob, String errorMessage);
+}
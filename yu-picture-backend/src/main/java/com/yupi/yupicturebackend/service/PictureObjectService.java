@@ -0,0 +1,57 @@
+package com.yupi.yupicturebackend.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.yupi.yupicturebackend.model.dto.file.UploadPictureResult;
+import com.yupi.yupicturebackend.model.entity.PictureObject;
+
+import java.util.List;
+
+/**
+ * @description 针对表【picture_object(图片存储对象)】的数据库操作Service
+ */
+public interface PictureObjectService extends IService<PictureObject> {
+
+    /**
+     * 根据内容哈希查询已存储的对象
+     *
+     * @param contentHash 内容哈希（SHA-256）
+     * @return 不存在时返回 null
+     */
+    PictureObject getByContentHash(String contentHash);
+
+    /**
+     * 根据内容哈希查询可以在上传前直接复用的对象
+     * <p>
+     * 只返回仍被引用或刚释放不久的对象，保证在入库引用之前不会被定时清理删除文件。
+     *
+     * @param contentHash 内容哈希（SHA-256）
+     * @return 不存在或即将被清理时返回 null
+     */
+    PictureObject getReusableByContentHash(String contentHash);
+
+    /**
+     * 图片入库时引用存储对象（需在调用方事务内执行）
+     * <p>
+     * 内容哈希不存在时登记本次上传的对象，已存在时只增加引用数；
+     * 并发上传相同内容时，返回的对象可能不是本次上传的，调用方应改用返回对象的地址并清理本次上传的文件。
+     *
+     * @param uploadPictureResult 上传结果，需要包含 contentHash
+     * @return 实际引用的存储对象
+     */
+    PictureObject acquire(UploadPictureResult uploadPictureResult);
+
+    /**
+     * 释放一次引用（引用数归零后不立即删除，由 {@link #removeUnreferenced} 在宽限期后清理）
+     *
+     * @param contentHash 内容哈希
+     */
+    void release(String contentHash);
+
+    /**
+     * 删除引用数归零超过宽限期的对象记录
+     *
+     * @param limit 最多删除的条数
+     * @return 已删除的对象（由调用方删除文件）
+     */
+    List<PictureObject> removeUnreferenced(int limit);
+}
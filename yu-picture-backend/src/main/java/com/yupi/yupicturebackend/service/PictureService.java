@@ -4,14 +4,20 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.yupi.yupicturebackend.api.aliyunai.model.CreateOutPaintingTaskResponse;
+import com.yupi.yupicturebackend.api.imagesearch.model.ImageSearchResult;
+import com.yupi.yupicturebackend.common.CursorPage;
 import com.yupi.yupicturebackend.model.dto.picture.*;
 import com.yupi.yupicturebackend.model.entity.Picture;
 import com.yupi.yupicturebackend.model.entity.User;
+import com.yupi.yupicturebackend.model.vo.PictureUploadBatchProgressVO;
+import com.yupi.yupicturebackend.model.vo.PictureUploadPresignVO;
 import com.yupi.yupicturebackend.model.vo.PictureVO;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * @author 李鱼皮
@@ -39,6 +45,25 @@ public interface PictureService extends IService<Picture> {
                             PictureUploadRequest pictureUploadRequest,
                             User loginUser);
 
+    /**
+     * 获取预签名直传地址（客户端直接上传到对象存储）
+     *
+     * @param pictureUploadPresignRequest
+     * @param loginUser
+     * @return
+     */
+    PictureUploadPresignVO createPresignedUpload(PictureUploadPresignRequest pictureUploadPresignRequest,
+                                                 User loginUser);
+
+    /**
+     * 完成预签名直传，处理已上传的对象并入库
+     *
+     * @param pictureUploadCompleteRequest
+     * @param loginUser
+     * @return
+     */
+    PictureVO completePresignedUpload(PictureUploadCompleteRequest pictureUploadCompleteRequest, User loginUser);
+
     /**
      * 获取图片包装类（单条）
      *
@@ -57,6 +82,23 @@ public interface PictureService extends IService<Picture> {
      */
     Page<PictureVO> getPictureVOPage(Page<Picture> picturePage, HttpServletRequest request);
 
+    /**
+     * 游标分页获取图片包装类
+     *
+     * @param pictureQueryRequest
+     * @param request
+     * @return
+     */
+    CursorPage<PictureVO> listPictureVOByCursor(PictureQueryRequest pictureQueryRequest, HttpServletRequest request);
+
+    /**
+     * 分页查询图片（有搜索词时优先在全文索引中过滤、排序和分页）
+     *
+     * @param pictureQueryRequest
+     * @return
+     */
+    Page<Picture> listPictureByPage(PictureQueryRequest pictureQueryRequest);
+
     /**
      * 获取查询对象
      *
@@ -92,6 +134,18 @@ public interface PictureService extends IService<Picture> {
     Integer uploadPictureByBatch(PictureUploadByBatchRequest pictureUploadByBatchRequest,
                                  User loginUser);
 
+    /**
+     * 批量抓取和创建图片，并通知每张图片的处理进度
+     *
+     * @param pictureUploadByBatchRequest
+     * @param loginUser
+     * @param progressListener 进度回调，可以为空
+     * @return 成功创建的图片数
+     */
+    Integer uploadPictureByBatch(PictureUploadByBatchRequest pictureUploadByBatchRequest,
+                                 User loginUser,
+                                 Consumer<PictureUploadBatchProgressVO> progressListener);
+
     /**
      * 清理图片文件
      *
@@ -123,15 +177,27 @@ public interface PictureService extends IService<Picture> {
      */
     void checkPictureAuth(User loginUser, Picture picture);
 
+    /**
+     * 以图搜图
+     *
+     * @param picture  作为搜索条件的图片
+     * @param external 是否调用外部接口搜索互联网图片，否则在图片所在空间（或公共图库）中按感知哈希查找相似图片
+     * @return 外部搜索异步完成，站内搜索返回已完成的结果
+     */
+    CompletableFuture<List<ImageSearchResult>> searchPictureByPicture(Picture picture, boolean external);
+
     /**
      * 根据颜色搜索图片
      *
      * @param spaceId
      * @param picColor
+     * @param colorDistanceMode 色差算法，为空时使用 ΔE2000
+     * @param colorMatchMode    匹配方式，为空时按调色板匹配
      * @param loginUser
      * @return
      */
-    List<PictureVO> searchPictureByColor(Long spaceId, String picColor, User loginUser);
+    List<PictureVO> searchPictureByColor(Long spaceId, String picColor, String colorDistanceMode,
+                                         String colorMatchMode, User loginUser);
 
     /**
      * 批量编辑图片
@@ -0,0 +1,35 @@
+package com.yupi.yupicturebackend.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.entity.PictureTag;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author 李鱼皮
+ * @description 针对表【picture_tag(图片标签关联)】的数据库操作Service
+ * @createDate 2025-02-10 21:12:36
+ */
+public interface PictureTagService extends IService<PictureTag> {
+
+    /**
+     * 按图片当前的 tags 字段覆盖写入标签关联（需在调用方事务内执行）
+     *
+     * @param pictureList 需要包含 id、spaceId、tags
+     */
+    void syncPictureTags(List<Picture> pictureList);
+
+    /**
+     * 删除图片的全部标签关联
+     *
+     * @param pictureIdList
+     */
+    void removeByPictureIds(Collection<Long> pictureIdList);
+
+    /**
+     * 根据图片表的 tags 字段全量回填标签关联（异步执行）
+     */
+    void backfillPictureTags();
+}
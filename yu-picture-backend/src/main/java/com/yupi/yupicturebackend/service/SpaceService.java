@@ -75,4 +75,28 @@ public interface SpaceService extends IService<Space> {
      * @param space
      */
     void checkSpaceAuth(User loginUser, Space space);
+
+    /**
+     * 根据 id 获取空间（走缓存，已用额度与数据库同步更新）
+     *
+     * @param spaceId
+     * @return 空间不存在时返回 null
+     */
+    Space getCachedSpaceById(Long spaceId);
+
+    /**
+     * 根据 id 获取空间基本信息（走缓存，不含已用额度），用于鉴权等不读取额度的场景
+     *
+     * @param spaceId
+     * @return 空间不存在时返回 null
+     */
+    Space getCachedSpaceMetaById(Long spaceId);
+
+    /**
+     * 获取空间的单张图片大小上限（按空间级别）
+     *
+     * @param spaceId 空间 id，为空表示公共图库
+     * @return
+     */
+    long getMaxPictureSize(Long spaceId);
 }
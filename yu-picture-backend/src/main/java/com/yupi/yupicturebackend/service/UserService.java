@@ -8,7 +8,9 @@ import com.yupi.yupicturebackend.model.vo.LoginUserVO;
 import com.yupi.yupicturebackend.model.vo.UserVO;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author 李鱼皮
@@ -77,6 +79,22 @@ public interface UserService extends IService<User> {
      */
     List<UserVO> getUserVOList(List<User> userList);
 
+    /**
+     * 根据 id 获得脱敏后的用户信息（走缓存，返回的对象只读）
+     *
+     * @param userId
+     * @return 用户不存在时返回 null
+     */
+    UserVO getUserVOById(Long userId);
+
+    /**
+     * 根据 id 批量获得脱敏后的用户信息（走缓存，未命中的用户只查询一次数据库，返回的对象只读）
+     *
+     * @param userIds
+     * @return 用户 id => 用户信息，不存在的用户不在结果中
+     */
+    Map<Long, UserVO> getUserVOMap(Collection<Long> userIds);
+
     /**
      * 用户注销
      *
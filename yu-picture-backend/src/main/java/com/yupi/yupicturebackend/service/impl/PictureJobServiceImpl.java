@@ -0,0 +1,120 @@
+package com.yupi.yupicturebackend.service.impl;
+
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.yupi.yupicturebackend.mapper.PictureJobMapper;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.entity.PictureJob;
+import com.yupi.yupicturebackend.model.enums.PictureJobStatusEnum;
+import com.yupi.yupicturebackend.model.enums.PictureJobTypeEnum;
+import com.yupi.yupicturebackend.service.PictureJobService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @description 针对表【picture_job(图片后台任务)】的数据库操作Service实现
+ */
+@Slf4j
+@Service
+public class PictureJobServiceImpl extends ServiceImpl<PictureJobMapper, PictureJob>
+        implements PictureJobService {
+
+    /**
+     * 最多执行次数
+     */
+    static final int MAX_ATTEMPTS = 5;
+
+    /**
+     * 首次重试的等待时间，之后每次翻倍
+     */
+    private static final long BASE_BACKOFF_SECONDS = 10;
+
+    /**
+     * 重试等待时间上限
+     */
+    private static final long MAX_BACKOFF_SECONDS = 3600;
+
+    @Override
+    public void enqueue(List<Picture> pictureList) {
+        for (Picture picture : pictureList) {
+            if (picture.getPicHash() == null) {
+                this.baseMapper.insertOrReset(buildJob(picture, PictureJobTypeEnum.FEATURE));
+            }
+            if (picture.getRenditions() == null) {
+                this.baseMapper.insertOrReset(buildJob(picture, PictureJobTypeEnum.RENDITION));
+            }
+        }
+    }
+
+    @Override
+    public List<PictureJob> claim(String workerId, int limit, int leaseSeconds) {
+        // 每次领取使用新的租约标识，用来查询本次领取到的任务
+        String leaseOwner = workerId + ":" + IdUtil.fastSimpleUUID().substring(0, 8);
+        // 执行中节点宕机时任务不会走 fail，租约过期后在这里按执行次数决定重试还是放弃
+        int failedCount = this.baseMapper.failExpired(MAX_ATTEMPTS);
+        if (failedCount > 0) {
+            log.error("图片后台任务租约多次过期，不再重试，共 {} 条", failedCount);
+        }
+        int count = this.baseMapper.claimExpired(leaseOwner, leaseSeconds, MAX_ATTEMPTS, limit);
+        if (count < limit) {
+            count += this.baseMapper.claimPending(leaseOwner, leaseSeconds, limit - count);
+        }
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        return this.lambdaQuery()
+                .eq(PictureJob::getLeaseOwner, leaseOwner)
+                .eq(PictureJob::getStatus, PictureJobStatusEnum.RUNNING.getValue())
+                .list();
+    }
+
+    @Override
+    public void complete(PictureJob pictureJob) {
+        // 租约已被重新领取或任务已被重置时，不删除
+        this.lambdaUpdate()
+                .eq(PictureJob::getId, pictureJob.getId())
+                .eq(PictureJob::getLeaseOwner, pictureJob.getLeaseOwner())
+                .remove();
+    }
+
+    @Override
+    public void fail(PictureJob pictureJob, String errorMessage) {
+        int attempts = pictureJob.getAttempts();
+        boolean exhausted = attempts >= MAX_ATTEMPTS;
+        if (exhausted) {
+            log.error("图片后台任务多次失败，不再重试，jobId = {}，pictureId = {}，jobType = {}",
+                    pictureJob.getId(), pictureJob.getPictureId(), pictureJob.getJobType());
+        }
+        this.lambdaUpdate()
+                .eq(PictureJob::getId, pictureJob.getId())
+                .eq(PictureJob::getLeaseOwner, pictureJob.getLeaseOwner())
+                .set(PictureJob::getStatus, exhausted
+                        ? PictureJobStatusEnum.FAILED.getValue() : PictureJobStatusEnum.PENDING.getValue())
+                .set(PictureJob::getNextRunTime, DateUtil.offsetSecond(DateUtil.date(), (int) backoffSeconds(attempts)))
+                .set(PictureJob::getLeaseOwner, null)
+                .set(PictureJob::getLeaseExpireTime, null)
+                .set(PictureJob::getLastError, StrUtil.maxLength(errorMessage, 500))
+                .update();
+    }
+
+    /**
+     * 第 attempts 次失败后的等待时间（指数退避）
+     */
+    static long backoffSeconds(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        return Math.min(BASE_BACKOFF_SECONDS << exponent, MAX_BACKOFF_SECONDS);
+    }
+
+    private static PictureJob buildJob(Picture picture, PictureJobTypeEnum pictureJobTypeEnum) {
+        PictureJob pictureJob = new PictureJob();
+        pictureJob.setPictureId(picture.getId());
+        pictureJob.setSpaceId(picture.getSpaceId());
+        pictureJob.setJobType(pictureJobTypeEnum.getValue());
+        return pictureJob;
+    }
+}
@@ -0,0 +1,95 @@
+package com.yupi.yupicturebackend.service.impl;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.mapper.PictureObjectMapper;
+import com.yupi.yupicturebackend.model.dto.file.UploadPictureResult;
+import com.yupi.yupicturebackend.model.entity.PictureObject;
+import com.yupi.yupicturebackend.service.PictureObjectService;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @description 针对表【picture_object(图片存储对象)】的数据库操作Service实现
+ */
+@Service
+public class PictureObjectServiceImpl extends ServiceImpl<PictureObjectMapper, PictureObject>
+        implements PictureObjectService {
+
+    /**
+     * 引用数归零后保留记录和文件的时间
+     */
+    private static final long RELEASE_GRACE_SECONDS = TimeUnit.HOURS.toSeconds(1);
+
+    /**
+     * 引用数归零的对象在这段时间内仍可复用，必须明显小于宽限期，
+     * 留出从查询到入库引用的时间（上传最长不会超过这个差值）
+     */
+    private static final long REUSE_WINDOW_SECONDS = TimeUnit.MINUTES.toSeconds(30);
+
+    @Override
+    public PictureObject getByContentHash(String contentHash) {
+        return this.lambdaQuery()
+                .eq(PictureObject::getContentHash, contentHash)
+                .one();
+    }
+
+    @Override
+    public PictureObject getReusableByContentHash(String contentHash) {
+        return this.lambdaQuery()
+                .eq(PictureObject::getContentHash, contentHash)
+                .and(qw -> qw.gt(PictureObject::getRefCount, 0)
+                        .or()
+                        .apply("updateTime > date_sub(now(), interval {0} second)", REUSE_WINDOW_SECONDS))
+                .one();
+    }
+
+    @Override
+    public PictureObject acquire(UploadPictureResult uploadPictureResult) {
+        String contentHash = uploadPictureResult.getContentHash();
+        ThrowUtils.throwIf(contentHash == null, ErrorCode.PARAMS_ERROR, "缺少图片内容哈希");
+        PictureObject pictureObject = BeanUtil.copyProperties(uploadPictureResult, PictureObject.class);
+        this.baseMapper.insertOrIncrement(pictureObject);
+        // 在同一事务内重新读取，得到实际生效的记录
+        PictureObject currentObject = this.getByContentHash(contentHash);
+        ThrowUtils.throwIf(currentObject == null, ErrorCode.OPERATION_ERROR, "图片存储对象登记失败");
+        return currentObject;
+    }
+
+    @Override
+    public void release(String contentHash) {
+        // 引用数变化会刷新 updateTime，宽限期从最后一次释放开始计算
+        this.lambdaUpdate()
+                .eq(PictureObject::getContentHash, contentHash)
+                .gt(PictureObject::getRefCount, 0)
+                .setSql("refCount = refCount - 1")
+                .update();
+    }
+
+    @Override
+    public List<PictureObject> removeUnreferenced(int limit) {
+        List<PictureObject> candidateList = this.lambdaQuery()
+                .le(PictureObject::getRefCount, 0)
+                .apply("updateTime < date_sub(now(), interval {0} second)", RELEASE_GRACE_SECONDS)
+                .last("limit " + limit)
+                .list();
+        List<PictureObject> removedList = new ArrayList<>();
+        for (PictureObject pictureObject : candidateList) {
+            // 条件删除：期间被重新引用的对象不删除
+            boolean removed = this.lambdaUpdate()
+                    .eq(PictureObject::getId, pictureObject.getId())
+                    .le(PictureObject::getRefCount, 0)
+                    .apply("updateTime < date_sub(now(), interval {0} second)", RELEASE_GRACE_SECONDS)
+                    .remove();
+            if (removed) {
+                removedList.add(pictureObject);
+            }
+        }
+        return removedList;
+    }
+}
@@ -1,9 +1,11 @@
 package com.yupi.yupicturebackend.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.codec.Base64;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
@@ -11,46 +13,71 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.yupi.yupicturebackend.api.aliyunai.AliYunAiApi;
 import com.yupi.yupicturebackend.api.aliyunai.model.CreateOutPaintingTaskRequest;
 import com.yupi.yupicturebackend.api.aliyunai.model.CreateOutPaintingTaskResponse;
+import com.yupi.yupicturebackend.api.imagesearch.ImageSearchApiFacade;
+import com.yupi.yupicturebackend.api.imagesearch.model.ImageSearchResult;
+import com.yupi.yupicturebackend.common.CursorPage;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
 import com.yupi.yupicturebackend.exception.ThrowUtils;
-import com.yupi.yupicturebackend.manager.CosManager;
 import com.yupi.yupicturebackend.manager.FileManager;
+import com.yupi.yupicturebackend.manager.cache.PictureFeedCacheManager;
+import com.yupi.yupicturebackend.manager.color.PictureColorIndexManager;
+import com.yupi.yupicturebackend.manager.hash.HammingBkTree;
+import com.yupi.yupicturebackend.manager.hash.PictureHashIndexManager;
+import com.yupi.yupicturebackend.manager.quota.SpaceQuotaManager;
+import com.yupi.yupicturebackend.manager.quota.SpaceQuotaReservation;
+import com.yupi.yupicturebackend.manager.search.PictureSearchIndex;
+import com.yupi.yupicturebackend.manager.storage.ObjectStorage;
+import com.yupi.yupicturebackend.manager.search.PictureSearchIndexSyncer;
+import com.yupi.yupicturebackend.manager.search.PictureSearchResult;
+import com.yupi.yupicturebackend.manager.job.PictureJobWorker;
+import com.yupi.yupicturebackend.manager.upload.BatchPictureUploader;
+import com.yupi.yupicturebackend.manager.upload.ChunkedPictureUpload;
 import com.yupi.yupicturebackend.manager.upload.FilePictureUpload;
+import com.yupi.yupicturebackend.manager.upload.PictureUploadSession;
 import com.yupi.yupicturebackend.manager.upload.PictureUploadTemplate;
+import com.yupi.yupicturebackend.manager.upload.PictureUploadTicket;
+import com.yupi.yupicturebackend.manager.upload.PictureUploadTicketManager;
+import com.yupi.yupicturebackend.manager.upload.PresignedPictureUpload;
 import com.yupi.yupicturebackend.manager.upload.UrlPictureUpload;
 import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.model.dto.file.PictureRendition;
 import com.yupi.yupicturebackend.model.dto.file.UploadPictureResult;
 import com.yupi.yupicturebackend.model.dto.picture.*;
 import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.entity.PictureObject;
 import com.yupi.yupicturebackend.model.entity.Space;
 import com.yupi.yupicturebackend.model.entity.User;
+import com.yupi.yupicturebackend.model.enums.ColorDistanceModeEnum;
+import com.yupi.yupicturebackend.model.enums.ColorMatchModeEnum;
 import com.yupi.yupicturebackend.model.enums.PictureReviewStatusEnum;
+import com.yupi.yupicturebackend.model.enums.SpaceLevelEnum;
+import com.yupi.yupicturebackend.model.vo.PictureUploadBatchProgressVO;
+import com.yupi.yupicturebackend.model.vo.PictureUploadPresignVO;
 import com.yupi.yupicturebackend.model.vo.PictureVO;
 import com.yupi.yupicturebackend.model.vo.UserVO;
+import com.yupi.yupicturebackend.service.PictureJobService;
+import com.yupi.yupicturebackend.service.PictureObjectService;
 import com.yupi.yupicturebackend.service.PictureService;
+import com.yupi.yupicturebackend.service.PictureTagService;
 import com.yupi.yupicturebackend.service.SpaceService;
 import com.yupi.yupicturebackend.service.UserService;
-import com.yupi.yupicturebackend.utils.ColorSimilarUtils;
 import com.yupi.yupicturebackend.utils.ColorTransformUtils;
+import com.yupi.yupicturebackend.utils.PictureTagUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.checkerframework.checker.units.qual.C;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-import org.springframework.beans.BeanUtils;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
-import java.awt.*;
-import java.io.IOException;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
 /**
@@ -63,6 +90,21 @@ import java.util.stream.Collectors;
 public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         implements PictureService {
 
+    /**
+     * 游标分页支持的排序字段
+     */
+    private static final List<String> CURSOR_SORT_FIELD_LIST = Arrays.asList("id", "createTime", "editTime", "updateTime");
+
+    /**
+     * 以图搜图：相似图片的最大汉明距离（64 位 dHash）
+     */
+    private static final int SIMILAR_MAX_DISTANCE = 10;
+
+    /**
+     * 以图搜图：最多返回的相似图片数
+     */
+    private static final int SIMILAR_LIMIT = 20;
+
     @Resource
     private FileManager fileManager;
 
@@ -78,8 +120,20 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
     @Resource
     private UrlPictureUpload urlPictureUpload;
 
-    @Autowired
-    private CosManager cosManager;
+    @Resource
+    private ChunkedPictureUpload chunkedPictureUpload;
+
+    @Resource
+    private PresignedPictureUpload presignedPictureUpload;
+
+    @Resource
+    private PictureUploadTicketManager pictureUploadTicketManager;
+
+    @Resource
+    private BatchPictureUploader batchPictureUploader;
+
+    @Resource
+    private ObjectStorage objectStorage;
 
     @Resource
     private TransactionTemplate transactionTemplate;
@@ -87,6 +141,39 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
     @Resource
     private AliYunAiApi aliYunAiApi;
 
+    @Resource
+    private PictureFeedCacheManager pictureFeedCacheManager;
+
+    @Resource
+    private SpaceQuotaManager spaceQuotaManager;
+
+    @Resource
+    private PictureSearchIndex pictureSearchIndex;
+
+    @Resource
+    private PictureSearchIndexSyncer pictureSearchIndexSyncer;
+
+    @Resource
+    private PictureTagService pictureTagService;
+
+    @Resource
+    private PictureColorIndexManager pictureColorIndexManager;
+
+    @Resource
+    private PictureHashIndexManager pictureHashIndexManager;
+
+    @Resource
+    private ImageSearchApiFacade imageSearchApiFacade;
+
+    @Resource
+    private PictureObjectService pictureObjectService;
+
+    @Resource
+    private PictureJobService pictureJobService;
+
+    @Resource
+    private PictureJobWorker pictureJobWorker;
+
     @Override
     public void validPicture(Picture picture) {
         ThrowUtils.throwIf(picture == null, ErrorCode.PARAMS_ERROR);
@@ -109,32 +196,16 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
     public PictureVO uploadPicture(Object inputSource, PictureUploadRequest pictureUploadRequest, User loginUser) {
         // 校验参数
         ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
-        // 校验空间是否存在
         Long spaceId = pictureUploadRequest.getSpaceId();
-        if (spaceId != null) {
-            Space space = spaceService.getById(spaceId);
-            ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
-            // 改为使用统一的权限校验
-//            // 校验是否有空间的权限，仅空间管理员才能上传
-//            if (!loginUser.getId().equals(space.getUserId())) {
-//                throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间权限");
-//            }
-            // 校验额度
-            if (space.getTotalCount() >= space.getMaxCount()) {
-                throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间条数不足");
-            }
-            if (space.getTotalSize() >= space.getMaxSize()) {
-                throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间大小不足");
-            }
-        }
         // 判断是新增还是删除
         Long pictureId = null;
         if (pictureUploadRequest != null) {
             pictureId = pictureUploadRequest.getId();
         }
         // 如果是更新，判断图片是否存在
+        Picture oldPicture = null;
         if (pictureId != null) {
-            Picture oldPicture = this.getById(pictureId);
+            oldPicture = this.getById(pictureId);
             ThrowUtils.throwIf(oldPicture == null, ErrorCode.NOT_FOUND_ERROR, "图片不存在");
             // 改为使用统一的权限校验
 //            // 仅本人或管理员可编辑图片
@@ -154,32 +225,185 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
                 }
             }
         }
-        // 上传图片，得到图片信息
-        // 按照用户 id 划分目录 => 按照空间划分目录
-        String uploadPathPrefix;
+        // 预占空间额度（更新已有图片不占用条数），并发上传也不会超出额度
+        SpaceQuotaReservation reservation = null;
+        long maxPictureSize = SpaceLevelEnum.DEFAULT_MAX_PICTURE_SIZE;
+        LongConsumer sizeListener = null;
+        if (spaceId != null) {
+            Space space = spaceService.getCachedSpaceMetaById(spaceId);
+            ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
+            maxPictureSize = SpaceLevelEnum.getMaxPictureSize(space.getSpaceLevel());
+            // 更新已有图片时只需要预占比原图大的部分
+            long oldPicSize = oldPicture == null ? 0 : oldPicture.getPicSize();
+            long pictureSize = estimatePictureSize(inputSource, maxPictureSize);
+            reservation = spaceQuotaManager.reserve(space, oldPicture == null ? 1 : 0,
+                    Math.max(pictureSize - oldPicSize, 0), false, SpaceQuotaManager.SINGLE_RESERVATION_MILLIS);
+            if (pictureSize < 0) {
+                // 上传前无法确定大小（URL），下载完成后按实际大小追加预占
+                SpaceQuotaReservation finalReservation = reservation;
+                sizeListener = size -> spaceQuotaManager.extend(space, finalReservation, size - oldPicSize);
+            }
+        }
+        Picture picture;
+        Long finalSpaceId = spaceId;
+        List<String> orphanUrlList = new ArrayList<>();
+        try {
+            // 上传图片，得到图片信息
+            String uploadPathPrefix = this.getUploadPathPrefix(spaceId, loginUser);
+            // 根据 inputSource 的类型区分上传方式
+            PictureUploadTemplate pictureUploadTemplate = filePictureUpload;
+            if (inputSource instanceof String) {
+                pictureUploadTemplate = urlPictureUpload;
+            } else if (inputSource instanceof PictureUploadSession) {
+                pictureUploadTemplate = chunkedPictureUpload;
+            } else if (inputSource instanceof PictureUploadTicket) {
+                pictureUploadTemplate = presignedPictureUpload;
+            }
+            UploadPictureResult uploadPictureResult = pictureUploadTemplate.uploadPicture(inputSource, uploadPathPrefix,
+                    maxPictureSize, sizeListener);
+            // 构造要入库的图片信息
+            // 支持外层传递图片名称
+            String picName = uploadPictureResult.getPicName();
+            if (pictureUploadRequest != null && StrUtil.isNotBlank(pictureUploadRequest.getPicName())) {
+                picName = pictureUploadRequest.getPicName();
+            }
+            picture = this.buildPicture(uploadPictureResult, spaceId, picName, loginUser);
+            // 操作数据库
+            // 如果 pictureId 不为空，表示更新，否则是新增
+            if (pictureId != null) {
+                // 如果是更新，需要补充 id 和编辑时间
+                picture.setId(pictureId);
+                picture.setEditTime(new Date());
+            }
+            // 开启事务
+            Picture finalPicture = picture;
+            spaceQuotaManager.prepare(reservation);
+            transactionTemplate.execute(status -> {
+                // 引用存储对象
+                orphanUrlList.addAll(this.acquirePictureObject(finalPicture, uploadPictureResult));
+                // 插入数据
+                boolean result = this.saveOrUpdate(finalPicture);
+                ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "图片上传失败，数据库操作失败");
+                // 特征提取、生成副本等后续处理与图片一起提交，由后台任务执行
+                pictureJobService.enqueue(Collections.singletonList(finalPicture));
+                return finalPicture;
+            });
+        } catch (RuntimeException e) {
+            spaceQuotaManager.release(reservation);
+            throw e;
+        }
+        // 按实际大小确认预占
+        spaceQuotaManager.commit(reservation, oldPicture == null ? 1 : 0,
+                picture.getPicSize() - (oldPicture == null ? 0 : oldPicture.getPicSize()));
+        // 公共图库的图片发生变化，清理首页列表缓存
+        if (finalSpaceId == null) {
+            pictureFeedCacheManager.invalidate();
+        }
+        pictureSearchIndexSyncer.syncPicture(picture.getId());
+        pictureColorIndexManager.upsert(finalSpaceId, picture.getId(), picture.getPicColor(), picture.getPicPalette());
+        this.syncPictureHashIndex(finalSpaceId, picture.getId(), picture.getReviewStatus(), picture.getPicHash());
+        orphanUrlList.forEach(this::deleteObjectByUrl);
+        pictureJobWorker.wakeUp();
+        // 如果是更新，释放原图片引用的存储对象
+        if (oldPicture != null) {
+            this.clearPictureFile(oldPicture);
+        }
+        return PictureVO.objToVo(picture);
+    }
+
+    /**
+     * 上传前预占额度使用的图片大小，确认预占时按实际大小记入
+     *
+     * @return 可能的最大值，上传前无法确定时（URL）返回 -1
+     */
+    private long estimatePictureSize(Object inputSource, long maxPictureSize) {
+        long size = -1;
+        if (inputSource instanceof MultipartFile) {
+            size = ((MultipartFile) inputSource).getSize();
+        } else if (inputSource instanceof PictureUploadSession
+                && ((PictureUploadSession) inputSource).getFileSize() != null) {
+            size = ((PictureUploadSession) inputSource).getFileSize();
+        } else if (inputSource instanceof PictureUploadTicket) {
+            // 客户端已经直传完成，以对象存储中的实际大小为准
+            size = objectStorage.getObjectSize(((PictureUploadTicket) inputSource).getKey());
+        }
+        // 超过上限的文件会在上传时被拒绝，预占时不需要按更大的值计算
+        return size < 0 ? -1 : Math.min(size, maxPictureSize);
+    }
+
+    @Override
+    public PictureUploadPresignVO createPresignedUpload(PictureUploadPresignRequest pictureUploadPresignRequest,
+                                                        User loginUser) {
+        ThrowUtils.throwIf(pictureUploadPresignRequest == null, ErrorCode.PARAMS_ERROR);
+        ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
+        // 提前做与上传时相同的校验，避免上传完成后才发现无法入库，完成时还会再校验一次
+        Long spaceId = pictureUploadPresignRequest.getSpaceId();
+        Long pictureId = pictureUploadPresignRequest.getId();
+        if (pictureId != null) {
+            Picture oldPicture = this.getById(pictureId);
+            ThrowUtils.throwIf(oldPicture == null, ErrorCode.NOT_FOUND_ERROR, "图片不存在");
+            if (spaceId == null) {
+                spaceId = oldPicture.getSpaceId();
+            } else if (ObjUtil.notEqual(spaceId, oldPicture.getSpaceId())) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "空间 id 不一致");
+            }
+        }
+        long maxPictureSize = SpaceLevelEnum.DEFAULT_MAX_PICTURE_SIZE;
+        if (spaceId != null) {
+            Space space = spaceService.getCachedSpaceById(spaceId);
+            ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
+            ThrowUtils.throwIf(space.getTotalCount() >= space.getMaxCount(), ErrorCode.OPERATION_ERROR, "空间条数不足");
+            ThrowUtils.throwIf(space.getTotalSize() >= space.getMaxSize(), ErrorCode.OPERATION_ERROR, "空间大小不足");
+            maxPictureSize = SpaceLevelEnum.getMaxPictureSize(space.getSpaceLevel());
+        }
+        PictureUploadTicket ticket = new PictureUploadTicket();
+        ticket.setFileName(pictureUploadPresignRequest.getFileName());
+        ticket.setPictureId(pictureId);
+        ticket.setPicName(pictureUploadPresignRequest.getPicName());
+        ticket.setSpaceId(pictureUploadPresignRequest.getSpaceId());
+        String uploadUrl = pictureUploadTicketManager.createTicket(ticket, pictureUploadPresignRequest.getFileSize(),
+                this.getUploadPathPrefix(spaceId, loginUser), loginUser.getId(), maxPictureSize);
+        PictureUploadPresignVO pictureUploadPresignVO = new PictureUploadPresignVO();
+        pictureUploadPresignVO.setUploadId(ticket.getUploadId());
+        pictureUploadPresignVO.setUploadUrl(uploadUrl);
+        pictureUploadPresignVO.setExpireTime(ticket.getExpireTime());
+        return pictureUploadPresignVO;
+    }
+
+    @Override
+    public PictureVO completePresignedUpload(PictureUploadCompleteRequest pictureUploadCompleteRequest, User loginUser) {
+        ThrowUtils.throwIf(pictureUploadCompleteRequest == null, ErrorCode.PARAMS_ERROR);
+        ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
+        PictureUploadTicket ticket = pictureUploadTicketManager.getTicket(pictureUploadCompleteRequest.getUploadId(),
+                loginUser.getId());
+        PictureUploadRequest pictureUploadRequest = new PictureUploadRequest();
+        pictureUploadRequest.setId(ticket.getPictureId());
+        pictureUploadRequest.setPicName(ticket.getPicName());
+        pictureUploadRequest.setSpaceId(ticket.getSpaceId());
+        return pictureUploadTicketManager.complete(ticket,
+                () -> this.uploadPicture(ticket, pictureUploadRequest, loginUser));
+    }
+
+    /**
+     * 上传路径前缀：按照用户 id 划分目录 => 按照空间划分目录
+     */
+    private String getUploadPathPrefix(Long spaceId, User loginUser) {
         if (spaceId == null) {
             // 公共图库
-            uploadPathPrefix = String.format("public/%s", loginUser.getId());
-        } else {
-            // 空间
-            uploadPathPrefix = String.format("space/%s", spaceId);
+            return String.format("public/%s", loginUser.getId());
         }
-        // 根据 inputSource 的类型区分上传方式
-        PictureUploadTemplate pictureUploadTemplate = filePictureUpload;
-        if (inputSource instanceof String) {
-            pictureUploadTemplate = urlPictureUpload;
-        }
-        UploadPictureResult uploadPictureResult = pictureUploadTemplate.uploadPicture(inputSource, uploadPathPrefix);
-        // 构造要入库的图片信息
+        // 空间
+        return String.format("space/%s", spaceId);
+    }
+
+    /**
+     * 根据上传结果构造要入库的图片信息（包括审核参数）
+     */
+    private Picture buildPicture(UploadPictureResult uploadPictureResult, Long spaceId, String picName, User loginUser) {
         Picture picture = new Picture();
         picture.setSpaceId(spaceId); // 指定空间 id
         picture.setUrl(uploadPictureResult.getUrl());
         picture.setThumbnailUrl(uploadPictureResult.getThumbnailUrl());
-        // 支持外层传递图片名称
-        String picName = uploadPictureResult.getPicName();
-        if (pictureUploadRequest != null && StrUtil.isNotBlank(pictureUploadRequest.getPicName())) {
-            picName = pictureUploadRequest.getPicName();
-        }
         picture.setName(picName);
         picture.setPicSize(uploadPictureResult.getPicSize());
         picture.setPicWidth(uploadPictureResult.getPicWidth());
@@ -189,36 +413,39 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
 //        picture.setPicColor(uploadPictureResult.getPicColor());
         // 转换为标准颜色
         picture.setPicColor(ColorTransformUtils.getStandardColor(uploadPictureResult.getPicColor()));
+        picture.setPicPalette(uploadPictureResult.getPicPalette());
+        picture.setPicHash(uploadPictureResult.getPicHash());
+        picture.setContentHash(uploadPictureResult.getContentHash());
+        picture.setRenditions(uploadPictureResult.getRenditions());
         picture.setUserId(loginUser.getId());
         // 补充审核参数
         this.fillReviewParams(picture, loginUser);
-        // 操作数据库
-        // 如果 pictureId 不为空，表示更新，否则是新增
-        if (pictureId != null) {
-            // 如果是更新，需要补充 id 和编辑时间
-            picture.setId(pictureId);
-            picture.setEditTime(new Date());
+        return picture;
+    }
+
+    /**
+     * 引用上传结果对应的存储对象（需在事务内执行）
+     * <p>
+     * 并发上传了相同内容时，改用已经登记的对象，本次上传的文件不再被引用。
+     *
+     * @return 需要在事务提交后删除的文件地址
+     */
+    private List<String> acquirePictureObject(Picture picture, UploadPictureResult uploadPictureResult) {
+        if (StrUtil.isBlank(uploadPictureResult.getContentHash())) {
+            return Collections.emptyList();
         }
-        // 开启事务
-        Long finalSpaceId = spaceId;
-        transactionTemplate.execute(status -> {
-            // 插入数据
-            boolean result = this.saveOrUpdate(picture);
-            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "图片上传失败，数据库操作失败");
-            if (finalSpaceId != null) {
-                // 更新空间的使用额度
-                boolean update = spaceService.lambdaUpdate()
-                        .eq(Space::getId, finalSpaceId)
-                        .setSql("totalSize = totalSize + " + picture.getPicSize())
-                        .setSql("totalCount = totalCount + 1")
-                        .update();
-                ThrowUtils.throwIf(!update, ErrorCode.OPERATION_ERROR, "额度更新失败");
-            }
-            return picture;
-        });
-        // 可自行实现，如果是更新，可以清理图片资源
-        // this.clearPictureFile(oldPicture);
-        return PictureVO.objToVo(picture);
+        PictureObject pictureObject = pictureObjectService.acquire(uploadPictureResult);
+        if (pictureObject.getUrl().equals(picture.getUrl())) {
+            return Collections.emptyList();
+        }
+        List<String> orphanUrlList = new ArrayList<>();
+        orphanUrlList.add(picture.getUrl());
+        if (StrUtil.isNotBlank(picture.getThumbnailUrl()) && !picture.getThumbnailUrl().equals(picture.getUrl())) {
+            orphanUrlList.add(picture.getThumbnailUrl());
+        }
+        picture.setUrl(pictureObject.getUrl());
+        picture.setThumbnailUrl(pictureObject.getThumbnailUrl());
+        return orphanUrlList;
     }
 
     @Override
@@ -228,9 +455,7 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         // 关联查询用户信息
         Long userId = picture.getUserId();
         if (userId != null && userId > 0) {
-            User user = userService.getById(userId);
-            UserVO userVO = userService.getUserVO(user);
-            pictureVO.setUser(userVO);
+            pictureVO.setUser(userService.getUserVOById(userId));
         }
         return pictureVO;
     }
@@ -245,31 +470,202 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         if (CollUtil.isEmpty(pictureList)) {
             return pictureVOPage;
         }
+        pictureVOPage.setRecords(getPictureVOList(pictureList));
+        return pictureVOPage;
+    }
+
+    /**
+     * 图片列表转封装对象列表（批量关联查询用户信息）
+     */
+    private List<PictureVO> getPictureVOList(List<Picture> pictureList) {
         // 对象列表 => 封装对象列表
         List<PictureVO> pictureVOList = pictureList.stream()
                 .map(PictureVO::objToVo)
                 .collect(Collectors.toList());
-        // 1. 关联查询用户信息
-        // 1,2,3,4
+        // 1. 关联查询用户信息（缓存未命中的用户一次批量查询）
         Set<Long> userIdSet = pictureList.stream().map(Picture::getUserId).collect(Collectors.toSet());
-        // 1 => user1, 2 => user2
-        Map<Long, List<User>> userIdUserListMap = userService.listByIds(userIdSet).stream()
-                .collect(Collectors.groupingBy(User::getId));
+        Map<Long, UserVO> userVOMap = userService.getUserVOMap(userIdSet);
         // 2. 填充信息
-        pictureVOList.forEach(pictureVO -> {
-            Long userId = pictureVO.getUserId();
-            User user = null;
-            if (userIdUserListMap.containsKey(userId)) {
-                user = userIdUserListMap.get(userId).get(0);
+        pictureVOList.forEach(pictureVO -> pictureVO.setUser(userVOMap.get(pictureVO.getUserId())));
+        return pictureVOList;
+    }
+
+    @Override
+    public CursorPage<PictureVO> listPictureVOByCursor(PictureQueryRequest pictureQueryRequest, HttpServletRequest request) {
+        ThrowUtils.throwIf(pictureQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        int size = pictureQueryRequest.getPageSize();
+        ThrowUtils.throwIf(size <= 0, ErrorCode.PARAMS_ERROR);
+        // 排序字段只允许白名单中的字段，默认按 id 倒序
+        String sortField = StrUtil.blankToDefault(pictureQueryRequest.getSortField(), "id");
+        ThrowUtils.throwIf(!CURSOR_SORT_FIELD_LIST.contains(sortField), ErrorCode.PARAMS_ERROR, "不支持的排序字段");
+        boolean isAsc = "ascend".equals(pictureQueryRequest.getSortOrder());
+        // 解析游标：上一页最后一条的 id 和排序字段值
+        Long lastId = null;
+        Long lastValue = null;
+        String cursor = pictureQueryRequest.getCursor();
+        if (StrUtil.isNotBlank(cursor)) {
+            JSONObject cursorObj = decodeCursor(cursor);
+            ThrowUtils.throwIf(!sortField.equals(cursorObj.getStr("f")), ErrorCode.PARAMS_ERROR, "游标与排序字段不一致");
+            lastId = cursorObj.getLong("id");
+            ThrowUtils.throwIf(lastId == null, ErrorCode.PARAMS_ERROR, "游标不合法");
+            lastValue = "id".equals(sortField) ? lastId : cursorObj.getLong("v");
+        }
+        CursorPage<PictureVO> cursorPage = new CursorPage<>();
+        List<Picture> pictureList;
+        boolean hasMore;
+        if (useSearchIndex(pictureQueryRequest, sortField)) {
+            // 过滤、排序和游标定位都在索引中完成
+            if (pictureQueryRequest.isNeedTotal()) {
+                cursorPage.setTotal(pictureSearchIndex.count(pictureQueryRequest));
             }
-            pictureVO.setUser(userService.getUserVO(user));
-        });
-        pictureVOPage.setRecords(pictureVOList);
-        return pictureVOPage;
+            List<Long> idList = pictureSearchIndex.searchAfter(pictureQueryRequest, sortField, isAsc,
+                    lastValue, lastId, size + 1);
+            hasMore = idList.size() > size;
+            pictureList = listByIdsInOrder(hasMore ? idList.subList(0, size) : idList);
+        } else {
+            // 只有显式要求时才查询总数
+            if (pictureQueryRequest.isNeedTotal()) {
+                cursorPage.setTotal(this.count(getQueryConditionWrapper(pictureQueryRequest)));
+            }
+            QueryWrapper<Picture> queryWrapper = getQueryConditionWrapper(pictureQueryRequest);
+            // 根据游标定位起始位置：(sortField, id) 严格大于 / 小于上一页最后一条
+            if (lastId != null) {
+                Long finalLastId = lastId;
+                if ("id".equals(sortField)) {
+                    if (isAsc) {
+                        queryWrapper.gt("id", lastId);
+                    } else {
+                        queryWrapper.lt("id", lastId);
+                    }
+                } else if (isAsc) {
+                    Date lastDate = new Date(lastValue);
+                    queryWrapper.and(qw -> qw.gt(sortField, lastDate)
+                            .or(q -> q.eq(sortField, lastDate).gt("id", finalLastId)));
+                } else {
+                    Date lastDate = new Date(lastValue);
+                    queryWrapper.and(qw -> qw.lt(sortField, lastDate)
+                            .or(q -> q.eq(sortField, lastDate).lt("id", finalLastId)));
+                }
+            }
+            queryWrapper.orderBy(!"id".equals(sortField), isAsc, sortField);
+            queryWrapper.orderBy(true, isAsc, "id");
+            // 多查一条用于判断是否还有下一页
+            queryWrapper.last("limit " + (size + 1));
+            pictureList = this.list(queryWrapper);
+            hasMore = pictureList.size() > size;
+            if (hasMore) {
+                pictureList = pictureList.subList(0, size);
+            }
+        }
+        cursorPage.setHasMore(hasMore);
+        if (CollUtil.isEmpty(pictureList)) {
+            return cursorPage;
+        }
+        if (hasMore) {
+            cursorPage.setNextCursor(encodeCursor(sortField, pictureList.get(pictureList.size() - 1)));
+        }
+        cursorPage.setRecords(getPictureVOList(pictureList));
+        return cursorPage;
+    }
+
+    /**
+     * 生成游标（对前端不透明）
+     */
+    private String encodeCursor(String sortField, Picture lastPicture) {
+        JSONObject cursorObj = JSONUtil.createObj()
+                .set("f", sortField)
+                .set("id", lastPicture.getId());
+        switch (sortField) {
+            case "createTime":
+                cursorObj.set("v", lastPicture.getCreateTime().getTime());
+                break;
+            case "editTime":
+                cursorObj.set("v", lastPicture.getEditTime().getTime());
+                break;
+            case "updateTime":
+                cursorObj.set("v", lastPicture.getUpdateTime().getTime());
+                break;
+            default:
+                break;
+        }
+        return Base64.encodeUrlSafe(cursorObj.toString());
+    }
+
+    /**
+     * 解析游标
+     */
+    private JSONObject decodeCursor(String cursor) {
+        try {
+            JSONObject cursorObj = JSONUtil.parseObj(Base64.decodeStr(cursor));
+            if (!"id".equals(cursorObj.getStr("f"))) {
+                ThrowUtils.throwIf(cursorObj.getLong("v") == null, ErrorCode.PARAMS_ERROR, "游标不合法");
+            }
+            return cursorObj;
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "游标不合法");
+        }
+    }
+
+    @Override
+    public Page<Picture> listPictureByPage(PictureQueryRequest pictureQueryRequest) {
+        long current = Math.max(pictureQueryRequest.getCurrent(), 1);
+        long size = pictureQueryRequest.getPageSize();
+        String sortField = pictureQueryRequest.getSortField();
+        if (!useSearchIndex(pictureQueryRequest, sortField)) {
+            return this.page(new Page<>(current, size), getQueryWrapper(pictureQueryRequest));
+        }
+        // 过滤、排序、分页都在索引中完成，数据库只按 id 取当前页
+        boolean isAsc = "ascend".equals(pictureQueryRequest.getSortOrder());
+        PictureSearchResult searchResult = pictureSearchIndex.search(pictureQueryRequest, sortField, isAsc,
+                (current - 1) * size, (int) size);
+        Page<Picture> picturePage = new Page<>(current, size, searchResult.getTotal());
+        picturePage.setRecords(listByIdsInOrder(searchResult.getIdList()));
+        return picturePage;
+    }
+
+    /**
+     * 有搜索词、索引可用且所有条件都能在索引中完成时，走全文索引
+     */
+    private boolean useSearchIndex(PictureQueryRequest pictureQueryRequest, String sortField) {
+        return StrUtil.isNotBlank(pictureQueryRequest.getSearchText())
+                && pictureSearchIndex.isReady()
+                && pictureSearchIndex.supports(pictureQueryRequest, sortField);
+    }
+
+    /**
+     * 按 id 查询图片并保持 id 的顺序（索引与数据库之间短暂不一致时，已删除的图片会被跳过）
+     */
+    private List<Picture> listByIdsInOrder(List<Long> idList) {
+        if (CollUtil.isEmpty(idList)) {
+            return new ArrayList<>();
+        }
+        Map<Long, Picture> pictureMap = this.listByIds(idList).stream()
+                .collect(Collectors.toMap(Picture::getId, picture -> picture));
+        return idList.stream()
+                .map(pictureMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     @Override
     public QueryWrapper<Picture> getQueryWrapper(PictureQueryRequest pictureQueryRequest) {
+        QueryWrapper<Picture> queryWrapper = getQueryConditionWrapper(pictureQueryRequest);
+        if (pictureQueryRequest == null) {
+            return queryWrapper;
+        }
+        String sortField = pictureQueryRequest.getSortField();
+        String sortOrder = pictureQueryRequest.getSortOrder();
+        // 排序
+        queryWrapper.orderBy(StrUtil.isNotEmpty(sortField), sortOrder.equals("ascend"), sortField);
+        return queryWrapper;
+    }
+
+    /**
+     * 获取查询对象（仅包含过滤条件，不包含排序）
+     */
+    private QueryWrapper<Picture> getQueryConditionWrapper(PictureQueryRequest pictureQueryRequest) {
         QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
         if (pictureQueryRequest == null) {
             return queryWrapper;
@@ -294,11 +690,8 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         Date startEditTime = pictureQueryRequest.getStartEditTime();
         Date endEditTime = pictureQueryRequest.getEndEditTime();
         boolean nullSpaceId = pictureQueryRequest.isNullSpaceId();
-        String sortField = pictureQueryRequest.getSortField();
-        String sortOrder = pictureQueryRequest.getSortOrder();
-        // 从多字段中搜索
+        // 从多字段中搜索（能走全文索引的查询不会用到这里，见 useSearchIndex）
         if (StrUtil.isNotBlank(searchText)) {
-            // 需要拼接查询条件
             // and (name like "%xxx%" or introduction like "%xxx%")
             queryWrapper.and(
                     qw -> qw.like("name", searchText)
@@ -325,18 +718,45 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         queryWrapper.ge(ObjUtil.isNotEmpty(startEditTime), "editTime", startEditTime);
         // < endEditTime
         queryWrapper.lt(ObjUtil.isNotEmpty(endEditTime), "editTime", endEditTime);
-        // JSON 数组查询
+        // 标签查询，走 picture_tag 表的索引
         if (CollUtil.isNotEmpty(tags)) {
-            /* and (tag like "%\"Java\"%" and like "%\"Python\"%") */
-            for (String tag : tags) {
-                queryWrapper.like("tags", "\"" + tag + "\"");
-            }
+            fillTagCondition(queryWrapper, pictureQueryRequest);
         }
-        // 排序
-        queryWrapper.orderBy(StrUtil.isNotEmpty(sortField), sortOrder.equals("ascend"), sortField);
         return queryWrapper;
     }
 
+    /**
+     * 补充标签查询条件
+     * and: id in (select pictureId from picture_tag where tag in (...) group by pictureId having count(*) = 标签数)
+     * or:  id in (select pictureId from picture_tag where tag in (...))
+     */
+    private void fillTagCondition(QueryWrapper<Picture> queryWrapper, PictureQueryRequest pictureQueryRequest) {
+        // 与写入 picture_tag 时的规范化规则一致
+        List<String> tagList = PictureTagUtils.normalizeTags(pictureQueryRequest.getTags());
+        if (tagList.isEmpty()) {
+            return;
+        }
+        List<Object> paramList = new ArrayList<>(tagList);
+        StringBuilder subSql = new StringBuilder("id in (select pictureId from picture_tag where tag in (");
+        for (int i = 0; i < tagList.size(); i++) {
+            subSql.append(i == 0 ? "" : ",").append("{").append(i).append("}");
+        }
+        subSql.append(")");
+        // 缩小子查询的范围
+        Long spaceId = pictureQueryRequest.getSpaceId();
+        if (spaceId != null) {
+            subSql.append(" and spaceId = {").append(paramList.size()).append("}");
+            paramList.add(spaceId);
+        } else if (pictureQueryRequest.isNullSpaceId()) {
+            subSql.append(" and spaceId is null");
+        }
+        if (!"or".equals(pictureQueryRequest.getTagMatchMode())) {
+            subSql.append(" group by pictureId having count(*) = ").append(tagList.size());
+        }
+        subSql.append(")");
+        queryWrapper.apply(subSql.toString(), paramList.toArray());
+    }
+
     @Override
     public void doPictureReview(PictureReviewRequest pictureReviewRequest, User loginUser) {
         // 1. 校验参数
@@ -362,6 +782,27 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         updatePicture.setReviewTime(new Date());
         boolean result = this.updateById(updatePicture);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        if (oldPicture.getSpaceId() == null) {
+            pictureFeedCacheManager.invalidate();
+        }
+        pictureSearchIndexSyncer.syncPicture(id);
+        this.syncPictureHashIndex(oldPicture.getSpaceId(), id, reviewStatus, oldPicture.getPicHash());
+    }
+
+    /**
+     * 同步图片哈希索引（公共图库只收录审核通过的图片）
+     *
+     * @param spaceId
+     * @param pictureId
+     * @param reviewStatus
+     * @param picHash
+     */
+    private void syncPictureHashIndex(Long spaceId, Long pictureId, Integer reviewStatus, Long picHash) {
+        if (spaceId == null && !Objects.equals(PictureReviewStatusEnum.PASS.getValue(), reviewStatus)) {
+            pictureHashIndexManager.remove(null, pictureId);
+            return;
+        }
+        pictureHashIndexManager.upsert(spaceId, pictureId, picHash);
     }
 
     /**
@@ -386,84 +827,145 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
 
     @Override
     public Integer uploadPictureByBatch(PictureUploadByBatchRequest pictureUploadByBatchRequest, User loginUser) {
+        return this.uploadPictureByBatch(pictureUploadByBatchRequest, loginUser, null);
+    }
+
+    @Override
+    public Integer uploadPictureByBatch(PictureUploadByBatchRequest pictureUploadByBatchRequest, User loginUser,
+                                        Consumer<PictureUploadBatchProgressVO> progressListener) {
         // 校验参数
         String searchText = pictureUploadByBatchRequest.getSearchText();
         Integer count = pictureUploadByBatchRequest.getCount();
+        ThrowUtils.throwIf(StrUtil.isBlank(searchText), ErrorCode.PARAMS_ERROR, "搜索词为空");
+        ThrowUtils.throwIf(count == null || count <= 0, ErrorCode.PARAMS_ERROR, "数量错误");
         ThrowUtils.throwIf(count > 30, ErrorCode.PARAMS_ERROR, "最多 30 条");
         // 名称前缀默认等于搜索关键词
         String namePrefix = pictureUploadByBatchRequest.getNamePrefix();
         if (StrUtil.isBlank(namePrefix)) {
             namePrefix = searchText;
         }
-        // 抓取内容
-        String fetchUrl = String.format("https://cn.bing.com/images/async?q=%s&mmasync=1", searchText);
-        Document document;
+        // 校验空间并预占额度，条数额度不足时只导入剩余的条数
+        Long spaceId = pictureUploadByBatchRequest.getSpaceId();
+        String uploadPathPrefix;
+        SpaceQuotaReservation reservation = null;
+        long maxPictureSize = SpaceLevelEnum.DEFAULT_MAX_PICTURE_SIZE;
+        LongConsumer sizeListener = null;
+        if (spaceId == null) {
+            uploadPathPrefix = String.format("public/%s", loginUser.getId());
+        } else {
+            Space space = spaceService.getCachedSpaceMetaById(spaceId);
+            ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
+            maxPictureSize = SpaceLevelEnum.getMaxPictureSize(space.getSpaceLevel());
+            // 先只预占条数，每张图片下载完成后再按实际大小追加，大小额度不足的图片导入失败
+            reservation = spaceQuotaManager.reserve(space, count, 0, true,
+                    SpaceQuotaManager.BATCH_RESERVATION_MILLIS);
+            count = (int) reservation.getCount();
+            uploadPathPrefix = String.format("space/%s", spaceId);
+            SpaceQuotaReservation finalReservation = reservation;
+            sizeListener = size -> spaceQuotaManager.extend(space, finalReservation, size);
+        }
+        List<Picture> pictureList = new ArrayList<>();
+        List<String> orphanUrlList = new ArrayList<>();
         try {
-            document = Jsoup.connect(fetchUrl).get();
-        } catch (IOException e) {
-            log.error("获取页面失败", e);
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取页面失败");
-        }
-        // 解析内容
-        Element div = document.getElementsByClass("dgControl").first();
-        if (ObjUtil.isEmpty(div)) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取元素失败");
-        }
-        Elements imgElementList = div.select("img.mimg");
-        // 遍历元素，依次处理上传图片
-        int uploadCount = 0;
-        for (Element imgElement : imgElementList) {
-            String fileUrl = imgElement.attr("src");
-            if (StrUtil.isBlank(fileUrl)) {
-                log.info("当前链接为空，已跳过：{}", fileUrl);
-                continue;
+            // 抓取图片地址，并行下载、上传到对象存储
+            List<String> sourceUrlList = batchPictureUploader.fetchImageUrlList(searchText);
+            List<UploadPictureResult> uploadPictureResultList = batchPictureUploader.upload(
+                    sourceUrlList, count, uploadPathPrefix, maxPictureSize, sizeListener, progressListener);
+            // 构造要入库的图片信息
+            for (UploadPictureResult uploadPictureResult : uploadPictureResultList) {
+                String picName = namePrefix + (pictureList.size() + 1);
+                pictureList.add(this.buildPicture(uploadPictureResult, spaceId, picName, loginUser));
             }
-            // 处理图片的地址，防止转义或者和对象存储冲突的问题
-            // codefather.cn?yupi=dog，应该只保留 codefather.cn
-            int questionMarkIndex = fileUrl.indexOf("?");
-            if (questionMarkIndex > -1) {
-                fileUrl = fileUrl.substring(0, questionMarkIndex);
+            if (!pictureList.isEmpty()) {
+                // 一次批量插入
+                spaceQuotaManager.prepare(reservation);
+                transactionTemplate.execute(status -> {
+                    // 同一批次中相同内容的图片只保留一份文件
+                    for (int i = 0; i < pictureList.size(); i++) {
+                        orphanUrlList.addAll(this.acquirePictureObject(pictureList.get(i), uploadPictureResultList.get(i)));
+                    }
+                    boolean result = this.saveBatch(pictureList);
+                    ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "图片上传失败，数据库操作失败");
+                    // 特征提取、生成副本等后续处理与图片一起提交，由后台任务执行
+                    pictureJobService.enqueue(pictureList);
+                    return true;
+                });
             }
-            // 上传图片
-            PictureUploadRequest pictureUploadRequest = new PictureUploadRequest();
-            pictureUploadRequest.setFileUrl(fileUrl);
-            pictureUploadRequest.setPicName(namePrefix + (uploadCount + 1));
-            try {
-                PictureVO pictureVO = this.uploadPicture(fileUrl, pictureUploadRequest, loginUser);
-                log.info("图片上传成功，id = {}", pictureVO.getId());
-                uploadCount++;
-            } catch (Exception e) {
-                log.error("图片上传失败", e);
-                continue;
+        } catch (RuntimeException e) {
+            spaceQuotaManager.release(reservation);
+            throw e;
+        }
+        if (pictureList.isEmpty()) {
+            spaceQuotaManager.release(reservation);
+        } else {
+            // 按实际导入的条数和大小确认预占，多占的部分一并释放
+            long totalSize = pictureList.stream().mapToLong(Picture::getPicSize).sum();
+            spaceQuotaManager.commit(reservation, pictureList.size(), totalSize);
+            orphanUrlList.forEach(this::deleteObjectByUrl);
+            pictureJobWorker.wakeUp();
+            // 公共图库的图片发生变化，清理首页列表缓存
+            if (spaceId == null) {
+                pictureFeedCacheManager.invalidate();
             }
-            if (uploadCount >= count) {
-                break;
+            List<Long> pictureIdList = pictureList.stream().map(Picture::getId).collect(Collectors.toList());
+            pictureSearchIndexSyncer.syncPictures(pictureIdList);
+            for (Picture picture : pictureList) {
+                pictureColorIndexManager.upsert(spaceId, picture.getId(), picture.getPicColor(), picture.getPicPalette());
+                this.syncPictureHashIndex(spaceId, picture.getId(), picture.getReviewStatus(), picture.getPicHash());
             }
         }
-        return uploadCount;
+        log.info("批量导入图片完成，搜索词 = {}，成功 {} 张", searchText, pictureList.size());
+        if (progressListener != null) {
+            progressListener.accept(PictureUploadBatchProgressVO.done(
+                    pictureList.stream().map(Picture::getId).collect(Collectors.toList())));
+        }
+        return pictureList.size();
     }
 
     @Async
     @Override
     public void clearPictureFile(Picture oldPicture) {
-        // 判断改图片是否被多条记录使用
         String pictureUrl = oldPicture.getUrl();
+        String thumbnailUrl = oldPicture.getThumbnailUrl();
+        String renditions = oldPicture.getRenditions();
+        String contentHash = oldPicture.getContentHash();
+        if (StrUtil.isNotBlank(contentHash)) {
+            // 释放存储对象的引用，引用数归零的对象过了宽限期后由 PictureObjectCleaner 删除文件
+            pictureObjectService.release(contentHash);
+            return;
+        }
+        // 历史图片没有内容哈希，判断该图片是否还被其他记录使用（调用方的记录已经删除或更新）
         long count = this.lambdaQuery()
                 .eq(Picture::getUrl, pictureUrl)
                 .count();
-        // 有不止一条记录用到了该图片，不清理
-        if (count > 1) {
+        if (count > 0) {
             return;
         }
         // 删除图片
-        cosManager.deleteObject(pictureUrl);
+        this.deleteObjectByUrl(pictureUrl);
         // 删除缩略图
-        String thumbnailUrl = oldPicture.getThumbnailUrl();
-        if (StrUtil.isNotBlank(thumbnailUrl)) {
-            cosManager.deleteObject(thumbnailUrl);
+        if (StrUtil.isNotBlank(thumbnailUrl) && !thumbnailUrl.equals(pictureUrl)) {
+            this.deleteObjectByUrl(thumbnailUrl);
+        }
+        // 删除响应式副本
+        if (StrUtil.isNotBlank(renditions)) {
+            JSONUtil.toList(renditions, PictureRendition.class)
+                    .forEach(rendition -> this.deleteObjectByUrl(rendition.getUrl()));
         }
     }
 
+    /**
+     * 根据访问地址删除对象存储中的文件
+     */
+    private void deleteObjectByUrl(String url) {
+        String key = objectStorage.getKeyByUrl(url);
+        if (key == null) {
+            log.warn("不是当前对象存储的地址，跳过删除：{}", url);
+            return;
+        }
+        objectStorage.deleteObject(key);
+    }
+
     @Override
     public void deletePicture(long pictureId, User loginUser) {
         ThrowUtils.throwIf(pictureId <= 0, ErrorCode.PARAMS_ERROR);
@@ -474,19 +976,27 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         // 校验权限，已经改为使用注解鉴权
 //        checkPictureAuth(loginUser, oldPicture);
         // 开启事务
-        transactionTemplate.execute(status -> {
-            // 操作数据库
-            boolean result = this.removeById(pictureId);
-            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
-            // 更新空间的使用额度，释放额度
-            boolean update = spaceService.lambdaUpdate()
-                    .eq(Space::getId, oldPicture.getSpaceId())
-                    .setSql("totalSize = totalSize - " + oldPicture.getPicSize())
-                    .setSql("totalCount = totalCount - 1")
-                    .update();
-            ThrowUtils.throwIf(!update, ErrorCode.OPERATION_ERROR, "额度更新失败");
-            return true;
-        });
+        SpaceQuotaReservation reservation = spaceQuotaManager.prepareDelta(oldPicture.getSpaceId());
+        try {
+            transactionTemplate.execute(status -> {
+                // 操作数据库
+                boolean result = this.removeById(pictureId);
+                ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+                pictureTagService.removeByPictureIds(Collections.singletonList(pictureId));
+                return true;
+            });
+        } catch (RuntimeException e) {
+            spaceQuotaManager.release(reservation);
+            throw e;
+        }
+        // 释放空间额度
+        spaceQuotaManager.commit(reservation, -1, -oldPicture.getPicSize());
+        if (oldPicture.getSpaceId() == null) {
+            pictureFeedCacheManager.invalidate();
+        }
+        pictureSearchIndexSyncer.syncPicture(pictureId);
+        pictureColorIndexManager.remove(oldPicture.getSpaceId(), pictureId);
+        pictureHashIndexManager.remove(oldPicture.getSpaceId(), pictureId);
         // 异步清理文件
         this.clearPictureFile(oldPicture);
     }
@@ -495,7 +1005,10 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
     public void editPicture(PictureEditRequest pictureEditRequest, User loginUser) {
         // 在此处将实体类和 DTO 进行转换
         Picture picture = new Picture();
-        BeanUtils.copyProperties(pictureEditRequest, picture);
+        picture.setId(pictureEditRequest.getId());
+        picture.setName(pictureEditRequest.getName());
+        picture.setIntroduction(pictureEditRequest.getIntroduction());
+        picture.setCategory(pictureEditRequest.getCategory());
         // 注意将 list 转为 string
         picture.setTags(JSONUtil.toJsonStr(pictureEditRequest.getTags()));
         // 设置编辑时间
@@ -510,9 +1023,22 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
 //        checkPictureAuth(loginUser, oldPicture);
         // 补充审核参数
         this.fillReviewParams(picture, loginUser);
-        // 操作数据库
-        boolean result = this.updateById(picture);
-        ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 操作数据库，同步更新标签关联
+        transactionTemplate.execute(status -> {
+            boolean result = this.updateById(picture);
+            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+            if (pictureEditRequest.getTags() != null) {
+                picture.setSpaceId(oldPicture.getSpaceId());
+                pictureTagService.syncPictureTags(Collections.singletonList(picture));
+            }
+            return true;
+        });
+        if (oldPicture.getSpaceId() == null) {
+            pictureFeedCacheManager.invalidate();
+        }
+        pictureSearchIndexSyncer.syncPicture(id);
+        // 编辑后公共图库的图片需要重新审核
+        this.syncPictureHashIndex(oldPicture.getSpaceId(), id, picture.getReviewStatus(), oldPicture.getPicHash());
     }
 
     @Override
@@ -533,48 +1059,93 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
     }
 
     @Override
-    public List<PictureVO> searchPictureByColor(Long spaceId, String picColor, User loginUser) {
+    public List<PictureVO> searchPictureByColor(Long spaceId, String picColor, String colorDistanceMode,
+                                                String colorMatchMode, User loginUser) {
         // 1. 校验参数
         ThrowUtils.throwIf(spaceId == null || StrUtil.isBlank(picColor), ErrorCode.PARAMS_ERROR);
         ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
         // 2. 校验空间权限
-        Space space = spaceService.getById(spaceId);
+        Space space = spaceService.getCachedSpaceMetaById(spaceId);
         ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
         if (!space.getUserId().equals(loginUser.getId())) {
             throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间访问权限");
         }
-        // 3. 查询该空间下的所有图片（必须要有主色调）
-        List<Picture> pictureList = this.lambdaQuery()
-                .eq(Picture::getSpaceId, spaceId)
-                .isNotNull(Picture::getPicColor)
-                .list();
+        // 将颜色字符串转换为主色调
+        Integer targetRgb = PictureColorIndexManager.parseColor(picColor);
+        ThrowUtils.throwIf(targetRgb == null, ErrorCode.PARAMS_ERROR, "颜色格式错误");
+        ColorDistanceModeEnum modeEnum = ColorDistanceModeEnum.DE2000;
+        if (StrUtil.isNotBlank(colorDistanceMode)) {
+            modeEnum = ColorDistanceModeEnum.getEnumByValue(colorDistanceMode);
+            ThrowUtils.throwIf(modeEnum == null, ErrorCode.PARAMS_ERROR, "不支持的色差算法");
+        }
+        ColorMatchModeEnum matchModeEnum = ColorMatchModeEnum.PALETTE;
+        if (StrUtil.isNotBlank(colorMatchMode)) {
+            matchModeEnum = ColorMatchModeEnum.getEnumByValue(colorMatchMode);
+            ThrowUtils.throwIf(matchModeEnum == null, ErrorCode.PARAMS_ERROR, "不支持的匹配方式");
+        }
+        // 3. 从空间颜色索引中取最相似的前 12 个
+        long[] topIds = pictureColorIndexManager.searchTopK(spaceId, targetRgb, 12, modeEnum, matchModeEnum);
         // 如果没有图片，直接返回空列表
-        if (CollUtil.isEmpty(pictureList)) {
+        if (topIds.length == 0) {
             return new ArrayList<>();
         }
-        // 将颜色字符串转换为主色调
-        Color targetColor = Color.decode(picColor);
-        // 4. 计算相似度并排序
-        List<Picture> sortedPictureList = pictureList.stream()
-                .sorted(Comparator.comparingDouble(picture -> {
-                    String hexColor = picture.getPicColor();
-                    // 没有主色调的图片会默认排序到最后
-                    if (StrUtil.isBlank(hexColor)) {
-                        return Double.MAX_VALUE;
-                    }
-                    Color pictureColor = Color.decode(hexColor);
-                    // 计算相似度
-                    // 越大越相似
-                    return -ColorSimilarUtils.calculateSimilarity(targetColor, pictureColor);
-                }))
-                .limit(12) // 取前 12 个
-                .collect(Collectors.toList());
-        // 5. 返回结果
-        return sortedPictureList.stream()
+        // 4. 只查询命中的图片，并按相似度顺序返回
+        List<Long> topIdList = Arrays.stream(topIds).boxed().collect(Collectors.toList());
+        Map<Long, Picture> pictureMap = this.listByIds(topIdList).stream()
+                .collect(Collectors.toMap(Picture::getId, picture -> picture));
+        return topIdList.stream()
+                .map(pictureMap::get)
+                .filter(Objects::nonNull)
                 .map(PictureVO::objToVo)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public CompletableFuture<List<ImageSearchResult>> searchPictureByPicture(Picture picture, boolean external) {
+        ThrowUtils.throwIf(picture == null, ErrorCode.PARAMS_ERROR);
+        // 外部搜索（百度识图），结果来自互联网，在独立的线程池中异步执行
+        if (external) {
+            return imageSearchApiFacade.searchImage(picture.getUrl());
+        }
+        // 1. 获取图片哈希，历史图片没有哈希时现场计算并保存
+        Long picHash = picture.getPicHash();
+        if (picHash == null) {
+            picHash = pictureHashIndexManager.computeRemoteHash(picture.getUrl());
+            ThrowUtils.throwIf(picHash == null, ErrorCode.OPERATION_ERROR, "无法计算图片特征");
+            this.lambdaUpdate()
+                    .set(Picture::getPicHash, picHash)
+                    .eq(Picture::getId, picture.getId())
+                    .update();
+            this.syncPictureHashIndex(picture.getSpaceId(), picture.getId(), picture.getReviewStatus(), picHash);
+        }
+        // 2. 在同一空间（或公共图库）中查找哈希相近的图片，排除自己
+        List<Long> similarIdList = pictureHashIndexManager
+                .searchSimilar(picture.getSpaceId(), picHash, SIMILAR_MAX_DISTANCE, SIMILAR_LIMIT + 1)
+                .stream()
+                .map(HammingBkTree.Match::getPictureId)
+                .filter(id -> !id.equals(picture.getId()))
+                .limit(SIMILAR_LIMIT)
+                .collect(Collectors.toList());
+        if (similarIdList.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        // 3. 按相似度顺序封装结果
+        Map<Long, Picture> pictureMap = this.listByIds(similarIdList).stream()
+                .collect(Collectors.toMap(Picture::getId, similarPicture -> similarPicture));
+        List<ImageSearchResult> resultList = similarIdList.stream()
+                .map(pictureMap::get)
+                .filter(Objects::nonNull)
+                .map(similarPicture -> {
+                    ImageSearchResult imageSearchResult = new ImageSearchResult();
+                    imageSearchResult.setThumbUrl(StrUtil.blankToDefault(similarPicture.getThumbnailUrl(), similarPicture.getUrl()));
+                    imageSearchResult.setFromUrl(similarPicture.getUrl());
+                    imageSearchResult.setPictureId(similarPicture.getId());
+                    return imageSearchResult;
+                })
+                .collect(Collectors.toList());
+        return CompletableFuture.completedFuture(resultList);
+    }
+
     @Override
     public void editPictureByBatch(PictureEditByBatchRequest pictureEditByBatchRequest, User loginUser) {
         // 1. 获取和校验参数
@@ -586,7 +1157,7 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         ThrowUtils.throwIf(spaceId == null, ErrorCode.PARAMS_ERROR);
         ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
         // 2. 校验空间权限
-        Space space = spaceService.getById(spaceId);
+        Space space = spaceService.getCachedSpaceMetaById(spaceId);
         ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
         if (!space.getUserId().equals(loginUser.getId())) {
             throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间访问权限");
@@ -612,9 +1183,16 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         // 批量重命名
         String nameRule = pictureEditByBatchRequest.getNameRule();
         fillPictureWithNameRule(pictureList, nameRule);
-        // 5. 操作数据库进行批量更新
-        boolean result = this.updateBatchById(pictureList);
-        ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "批量编辑失败");
+        // 5. 操作数据库进行批量更新，同步更新标签关联
+        transactionTemplate.execute(status -> {
+            boolean result = this.updateBatchById(pictureList);
+            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "批量编辑失败");
+            if (CollUtil.isNotEmpty(tags)) {
+                pictureTagService.syncPictureTags(pictureList);
+            }
+            return true;
+        });
+        pictureSearchIndexSyncer.syncPictures(pictureList.stream().map(Picture::getId).collect(Collectors.toList()));
     }
 
     @Override
@@ -0,0 +1,113 @@
+package com.yupi.yupicturebackend.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.mapper.PictureTagMapper;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.entity.PictureTag;
+import com.yupi.yupicturebackend.service.PictureTagService;
+import com.yupi.yupicturebackend.utils.PictureTagUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @author 李鱼皮
+ * @description 针对表【picture_tag(图片标签关联)】的数据库操作Service实现
+ * @createDate 2025-02-10 21:12:36
+ */
+@Slf4j
+@Service
+public class PictureTagServiceImpl extends ServiceImpl<PictureTagMapper, PictureTag>
+        implements PictureTagService {
+
+    /**
+     * 回填时每批处理的图片数
+     */
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Override
+    public void syncPictureTags(List<Picture> pictureList) {
+        if (CollUtil.isEmpty(pictureList)) {
+            return;
+        }
+        List<Long> pictureIdList = pictureList.stream().map(Picture::getId).collect(Collectors.toList());
+        this.removeByPictureIds(pictureIdList);
+        List<PictureTag> pictureTagList = new ArrayList<>();
+        for (Picture picture : pictureList) {
+            for (String tag : parseTags(picture.getTags())) {
+                ThrowUtils.throwIf(tag.length() > 64, ErrorCode.PARAMS_ERROR, "标签过长");
+                PictureTag pictureTag = new PictureTag();
+                pictureTag.setPictureId(picture.getId());
+                pictureTag.setSpaceId(picture.getSpaceId());
+                pictureTag.setTag(tag);
+                pictureTagList.add(pictureTag);
+            }
+        }
+        if (!pictureTagList.isEmpty()) {
+            boolean result = this.saveBatch(pictureTagList);
+            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "标签保存失败");
+        }
+    }
+
+    @Override
+    public void removeByPictureIds(Collection<Long> pictureIdList) {
+        if (CollUtil.isEmpty(pictureIdList)) {
+            return;
+        }
+        this.lambdaUpdate().in(PictureTag::getPictureId, pictureIdList).remove();
+    }
+
+    @Async
+    @Override
+    public void backfillPictureTags() {
+        long lastId = 0;
+        long total = 0;
+        while (true) {
+            List<Picture> pictureList = pictureMapper.selectList(new LambdaQueryWrapper<Picture>()
+                    .select(Picture::getId, Picture::getSpaceId, Picture::getTags)
+                    .gt(Picture::getId, lastId)
+                    .orderByAsc(Picture::getId)
+                    .last("limit " + BACKFILL_BATCH_SIZE));
+            if (pictureList.isEmpty()) {
+                break;
+            }
+            // 过长的脏数据跳过，不影响整批
+            List<Picture> validPictureList = pictureList.stream()
+                    .filter(picture -> parseTags(picture.getTags()).stream().allMatch(tag -> tag.length() <= 64))
+                    .collect(Collectors.toList());
+            transactionTemplate.execute(status -> {
+                this.removeByPictureIds(pictureList.stream().map(Picture::getId).collect(Collectors.toList()));
+                this.syncPictureTags(validPictureList);
+                return true;
+            });
+            total += pictureList.size();
+            lastId = pictureList.get(pictureList.size() - 1).getId();
+        }
+        log.info("图片标签回填完成，共处理 {} 张图片", total);
+    }
+
+    /**
+     * 解析 JSON 数组形式的标签，去掉空值和重复值
+     */
+    private List<String> parseTags(String tags) {
+        return PictureTagUtils.normalizeTags(PictureTagUtils.parseTags(tags));
+    }
+}
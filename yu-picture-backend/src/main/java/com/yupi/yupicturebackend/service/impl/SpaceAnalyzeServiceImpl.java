@@ -3,7 +3,6 @@ package com.yupi.yupicturebackend.service.impl;
 import cn.hutool.core.util.NumberUtil;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.ObjectUtil;
-import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.yupi.yupicturebackend.exception.BusinessException;
@@ -13,10 +12,12 @@ import com.yupi.yupicturebackend.mapper.PictureMapper;
 import com.yupi.yupicturebackend.mapper.SpaceMapper;
 import com.yupi.yupicturebackend.model.dto.space.analyze.*;
 import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.entity.PictureTag;
 import com.yupi.yupicturebackend.model.entity.Space;
 import com.yupi.yupicturebackend.model.entity.User;
 import com.yupi.yupicturebackend.model.vo.space.analyze.*;
 import com.yupi.yupicturebackend.service.PictureService;
+import com.yupi.yupicturebackend.service.PictureTagService;
 import com.yupi.yupicturebackend.service.SpaceAnalyzeService;
 import com.yupi.yupicturebackend.service.SpaceService;
 import com.yupi.yupicturebackend.service.UserService;
@@ -47,6 +48,9 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
     @Resource
     private PictureService pictureService;
 
+    @Resource
+    private PictureTagService pictureTagService;
+
     @Override
     public SpaceUsageAnalyzeResponse getSpaceUsageAnalyze(SpaceUsageAnalyzeRequest spaceUsageAnalyzeRequest, User loginUser) {
         // 校验参数
@@ -77,7 +81,7 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
             Long spaceId = spaceUsageAnalyzeRequest.getSpaceId();
             ThrowUtils.throwIf(spaceId == null || spaceId <= 0, ErrorCode.PARAMS_ERROR);
             // 获取空间信息
-            Space space = spaceService.getById(spaceId);
+            Space space = spaceService.getCachedSpaceById(spaceId);
             ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
             // 权限校验，仅管理员可以访问
             checkSpaceAnalyzeAuth(spaceUsageAnalyzeRequest, loginUser);
@@ -128,27 +132,18 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
         // 检查权限
         checkSpaceAnalyzeAuth(spaceTagAnalyzeRequest, loginUser);
 
-        // 构造查询条件
-        QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
+        // 构造查询条件，直接在标签关联表上分组统计
+        QueryWrapper<PictureTag> queryWrapper = new QueryWrapper<>();
         fillAnalyzeQueryWrapper(spaceTagAnalyzeRequest, queryWrapper);
-        // 查询所有符合条件的标签
-        queryWrapper.select("tags");
-        List<String> tagsJsonList = pictureService.getBaseMapper().selectObjs(queryWrapper)
-                .stream()
-                .filter(ObjUtil::isNotNull)
-                .map(Object::toString)
-                .collect(Collectors.toList());
+        queryWrapper.select("tag", "count(*) as count")
+                .groupBy("tag")
+                .orderByDesc("count");
 
-        // 解析标签并统计
-        Map<String, Long> tagCountMap = tagsJsonList.stream()
-                // ["Java", "Python"], ["Java", "PHP"] => "Java", "Python", "Java", "PHP"
-                .flatMap(tagsJson -> JSONUtil.toList(tagsJson, String.class).stream())
-                .collect(Collectors.groupingBy(tag -> tag, Collectors.counting()));
-
-        // 转换为响应对象，按照使用次数进行排序
-        return tagCountMap.entrySet().stream()
-                .sorted((e1, e2) -> Long.compare(e2.getValue(), e1.getValue())) // 降序排序
-                .map(entry -> new SpaceTagAnalyzeResponse(entry.getKey(), entry.getValue()))
+        // 转换为响应对象，已按照使用次数降序排序
+        return pictureTagService.getBaseMapper().selectMaps(queryWrapper)
+                .stream()
+                .map(result -> new SpaceTagAnalyzeResponse(result.get("tag").toString(),
+                        ((Number) result.get("count")).longValue()))
                 .collect(Collectors.toList());
     }
 
@@ -260,7 +255,7 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
             // 分析特定空间，仅本人或管理员可以访问
             Long spaceId = spaceAnalyzeRequest.getSpaceId();
             ThrowUtils.throwIf(spaceId == null, ErrorCode.PARAMS_ERROR);
-            Space space = spaceService.getById(spaceId);
+            Space space = spaceService.getCachedSpaceMetaById(spaceId);
             ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
             spaceService.checkSpaceAuth(loginUser, space);
         }
@@ -272,7 +267,7 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space>
      * @param spaceAnalyzeRequest
      * @param queryWrapper
      */
-    private void fillAnalyzeQueryWrapper(SpaceAnalyzeRequest spaceAnalyzeRequest, QueryWrapper<Picture> queryWrapper) {
+    private <T> void fillAnalyzeQueryWrapper(SpaceAnalyzeRequest spaceAnalyzeRequest, QueryWrapper<T> queryWrapper) {
         // 全空间分析
         boolean queryAll = spaceAnalyzeRequest.isQueryAll();
         if (queryAll) {
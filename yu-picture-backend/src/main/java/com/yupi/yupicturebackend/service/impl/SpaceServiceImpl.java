@@ -9,6 +9,7 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
 import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.manager.cache.SpaceCacheManager;
 import com.yupi.yupicturebackend.manager.sharding.DynamicShardingManager;
 import com.yupi.yupicturebackend.model.dto.space.SpaceAddRequest;
 import com.yupi.yupicturebackend.model.dto.space.SpaceQueryRequest;
@@ -52,6 +53,9 @@ public class SpaceServiceImpl extends ServiceImpl<SpaceMapper, Space>
     @Resource
     private TransactionTemplate transactionTemplate;
 
+    @Resource
+    private SpaceCacheManager spaceCacheManager;
+
     // 为了方便部署，注释掉分表
 //    @Resource
 //    @Lazy
@@ -163,9 +167,7 @@ public class SpaceServiceImpl extends ServiceImpl<SpaceMapper, Space>
         // 关联查询用户信息
         Long userId = space.getUserId();
         if (userId != null && userId > 0) {
-            User user = userService.getById(userId);
-            UserVO userVO = userService.getUserVO(user);
-            spaceVO.setUser(userVO);
+            spaceVO.setUser(userService.getUserVOById(userId));
         }
         return spaceVO;
     }
@@ -181,21 +183,11 @@ public class SpaceServiceImpl extends ServiceImpl<SpaceMapper, Space>
         List<SpaceVO> spaceVOList = spaceList.stream()
                 .map(SpaceVO::objToVo)
                 .collect(Collectors.toList());
-        // 1. 关联查询用户信息
-        // 1,2,3,4
+        // 1. 关联查询用户信息（缓存未命中的用户一次批量查询）
         Set<Long> userIdSet = spaceList.stream().map(Space::getUserId).collect(Collectors.toSet());
-        // 1 => user1, 2 => user2
-        Map<Long, List<User>> userIdUserListMap = userService.listByIds(userIdSet).stream()
-                .collect(Collectors.groupingBy(User::getId));
+        Map<Long, UserVO> userVOMap = userService.getUserVOMap(userIdSet);
         // 2. 填充信息
-        spaceVOList.forEach(spaceVO -> {
-            Long userId = spaceVO.getUserId();
-            User user = null;
-            if (userIdUserListMap.containsKey(userId)) {
-                user = userIdUserListMap.get(userId).get(0);
-            }
-            spaceVO.setUser(userService.getUserVO(user));
-        });
+        spaceVOList.forEach(spaceVO -> spaceVO.setUser(userVOMap.get(spaceVO.getUserId())));
         spaceVOPage.setRecords(spaceVOList);
         return spaceVOPage;
     }
@@ -247,6 +239,30 @@ public class SpaceServiceImpl extends ServiceImpl<SpaceMapper, Space>
             throw new BusinessException(ErrorCode.NO_AUTH_ERROR);
         }
     }
-}
 
+    @Override
+    public Space getCachedSpaceById(Long spaceId) {
+        if (spaceId == null || spaceId <= 0) {
+            return null;
+        }
+        return spaceCacheManager.getSpace(spaceId, this::getById);
+    }
 
+    @Override
+    public Space getCachedSpaceMetaById(Long spaceId) {
+        if (spaceId == null || spaceId <= 0) {
+            return null;
+        }
+        return spaceCacheManager.getSpaceMeta(spaceId, this::getById);
+    }
+
+    @Override
+    public long getMaxPictureSize(Long spaceId) {
+        if (spaceId == null) {
+            return SpaceLevelEnum.DEFAULT_MAX_PICTURE_SIZE;
+        }
+        Space space = getCachedSpaceMetaById(spaceId);
+        ThrowUtils.throwIf(space == null, ErrorCode.NOT_FOUND_ERROR, "空间不存在");
+        return SpaceLevelEnum.getMaxPictureSize(space.getSpaceLevel());
+    }
+}
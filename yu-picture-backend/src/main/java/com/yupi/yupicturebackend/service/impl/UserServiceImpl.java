@@ -1,6 +1,5 @@
 package com.yupi.yupicturebackend.service.impl;
 
-import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.StrUtil;
@@ -11,6 +10,7 @@ import com.yupi.yupicturebackend.constant.UserConstant;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
 import com.yupi.yupicturebackend.manager.auth.StpKit;
+import com.yupi.yupicturebackend.manager.cache.UserCacheManager;
 import com.yupi.yupicturebackend.model.dto.user.UserQueryRequest;
 import com.yupi.yupicturebackend.model.entity.User;
 import com.yupi.yupicturebackend.model.enums.UserRoleEnum;
@@ -23,9 +23,13 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.util.DigestUtils;
 
+import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -38,6 +42,14 @@ import java.util.stream.Collectors;
 public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         implements UserService {
 
+    /**
+     * 当前请求已解析的登录用户
+     */
+    private static final String LOGIN_USER_ATTRIBUTE = UserServiceImpl.class.getName() + ".loginUser";
+
+    @Resource
+    private UserCacheManager userCacheManager;
+
     /**
      * 用户注册
      *
@@ -130,18 +142,24 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
 
     @Override
     public User getLoginUser(HttpServletRequest request) {
+        // 同一个请求中多次获取（如权限切面和接口）只解析一次
+        Object requestUserObj = request.getAttribute(LOGIN_USER_ATTRIBUTE);
+        if (requestUserObj != null) {
+            return (User) requestUserObj;
+        }
         // 判断是否已经登录
         Object userObj = request.getSession().getAttribute(UserConstant.USER_LOGIN_STATE);
         User currentUser = (User) userObj;
         if (currentUser == null || currentUser.getId() == null) {
             throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
         }
-        // 从数据库中查询（追求性能的话可以注释，直接返回上述结果）
+        // 从缓存或数据库中查询最新的用户信息（修改、删除用户时清除缓存）
         Long userId = currentUser.getId();
-        currentUser = this.getById(userId);
+        currentUser = userCacheManager.getUser(userId, this::getById);
         if (currentUser == null) {
             throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
         }
+        request.setAttribute(LOGIN_USER_ATTRIBUTE, currentUser);
         return currentUser;
     }
 
@@ -153,12 +171,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
      */
     @Override
     public LoginUserVO getLoginUserVO(User user) {
-        if (user == null) {
-            return null;
-        }
-        LoginUserVO loginUserVO = new LoginUserVO();
-        BeanUtil.copyProperties(user, loginUserVO);
-        return loginUserVO;
+        return LoginUserVO.objToVo(user);
     }
 
     /**
@@ -169,12 +182,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
      */
     @Override
     public UserVO getUserVO(User user) {
-        if (user == null) {
-            return null;
-        }
-        UserVO userVO = new UserVO();
-        BeanUtil.copyProperties(user, userVO);
-        return userVO;
+        return UserVO.objToVo(user);
     }
 
     /**
@@ -193,6 +201,20 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public UserVO getUserVOById(Long userId) {
+        if (userId == null || userId <= 0) {
+            return null;
+        }
+        return getUserVOMap(Collections.singleton(userId)).get(userId);
+    }
+
+    @Override
+    public Map<Long, UserVO> getUserVOMap(Collection<Long> userIds) {
+        return userCacheManager.getUserVOMap(userIds, missingUserIds -> this.listByIds(missingUserIds).stream()
+                .collect(Collectors.toMap(User::getId, this::getUserVO, (a, b) -> a)));
+    }
+
     @Override
     public boolean userLogout(HttpServletRequest request) {
         // 判断是否已经登录
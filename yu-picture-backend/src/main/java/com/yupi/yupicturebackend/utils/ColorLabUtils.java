@@ -0,0 +1,245 @@
+package com.yupi.yupicturebackend.utils;
+
+/**
+ * 工具类：sRGB 转 CIELAB 以及 ΔE76 / ΔE2000 色差计算
+ * <p>
+ * 批量方法直接操作 float 数组，循环内不创建对象，适合对整个空间的颜色一次性打分。
+ */
+public class ColorLabUtils {
+
+    /**
+     * sRGB 分量（0-255）线性化的查找表
+     */
+    private static final double[] SRGB_TO_LINEAR = new double[256];
+
+    /**
+     * D65 白点
+     */
+    private static final double XN = 0.95047;
+
+    private static final double YN = 1.0;
+
+    private static final double ZN = 1.08883;
+
+    /**
+     * 25 的 7 次方，ΔE2000 公式中的常量
+     */
+    private static final double POW25_7 = 6103515625.0;
+
+    private static final double COS_30 = Math.cos(Math.toRadians(30));
+
+    private static final double SIN_30 = Math.sin(Math.toRadians(30));
+
+    private static final double COS_6 = Math.cos(Math.toRadians(6));
+
+    private static final double SIN_6 = Math.sin(Math.toRadians(6));
+
+    private static final double COS_63 = Math.cos(Math.toRadians(63));
+
+    private static final double SIN_63 = Math.sin(Math.toRadians(63));
+
+    private static final double COS_275 = Math.cos(Math.toRadians(275));
+
+    private static final double SIN_275 = Math.sin(Math.toRadians(275));
+
+    private static final double COS_100 = Math.cos(Math.toRadians(100));
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            SRGB_TO_LINEAR[i] = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+        }
+    }
+
+    private ColorLabUtils() {
+        // 工具类不需要实例化
+    }
+
+    /**
+     * sRGB 转 CIELAB
+     *
+     * @param rgb 0xRRGGBB
+     * @param out 输出 L、a、b 三个值
+     */
+    public static void rgbToLab(int rgb, float[] out) {
+        double r = SRGB_TO_LINEAR[(rgb >> 16) & 0xFF];
+        double g = SRGB_TO_LINEAR[(rgb >> 8) & 0xFF];
+        double b = SRGB_TO_LINEAR[rgb & 0xFF];
+        double x = (0.4124564 * r + 0.3575761 * g + 0.1804375 * b) / XN;
+        double y = (0.2126729 * r + 0.7151522 * g + 0.0721750 * b) / YN;
+        double z = (0.0193339 * r + 0.1191920 * g + 0.9503041 * b) / ZN;
+        double fx = labF(x);
+        double fy = labF(y);
+        double fz = labF(z);
+        out[0] = (float) (116 * fy - 16);
+        out[1] = (float) (500 * (fx - fy));
+        out[2] = (float) (200 * (fy - fz));
+    }
+
+    /**
+     * 计算 ΔE76 的平方（只用于排序时无需开方）
+     */
+    public static float deltaE76Squared(float l1, float a1, float b1, float l2, float a2, float b2) {
+        float dl = l1 - l2;
+        float da = a1 - a2;
+        float db = b1 - b2;
+        return dl * dl + da * da + db * db;
+    }
+
+    /**
+     * 计算 ΔE2000
+     */
+    public static float deltaE2000(float l1, float a1, float b1, float l2, float a2, float b2) {
+        return deltaE2000(l1, a1, b1, (float) Math.sqrt(a1 * a1 + b1 * b1), l2, a2, b2);
+    }
+
+    /**
+     * 批量计算目标颜色与所有颜色的 ΔE76 平方
+     *
+     * @param lArray 已预计算的 L
+     * @param aArray 已预计算的 a
+     * @param bArray 已预计算的 b
+     * @param size   有效长度
+     * @param lab    目标颜色的 L、a、b
+     * @param out    输出的距离
+     */
+    public static void batchDeltaE76Squared(float[] lArray, float[] aArray, float[] bArray, int size,
+                                            float[] lab, float[] out) {
+        float l = lab[0];
+        float a = lab[1];
+        float b = lab[2];
+        for (int i = 0; i < size; i++) {
+            float dl = lArray[i] - l;
+            float da = aArray[i] - a;
+            float db = bArray[i] - b;
+            out[i] = dl * dl + da * da + db * db;
+        }
+    }
+
+    /**
+     * 批量计算目标颜色与所有颜色的 ΔE2000
+     *
+     * @param lArray      已预计算的 L
+     * @param aArray      已预计算的 a
+     * @param bArray      已预计算的 b
+     * @param chromaArray 已预计算的彩度 sqrt(a² + b²)
+     * @param size        有效长度
+     * @param lab         目标颜色的 L、a、b
+     * @param out         输出的距离
+     */
+    public static void batchDeltaE2000(float[] lArray, float[] aArray, float[] bArray, float[] chromaArray, int size,
+                                       float[] lab, float[] out) {
+        float l = lab[0];
+        float a = lab[1];
+        float b = lab[2];
+        for (int i = 0; i < size; i++) {
+            out[i] = deltaE2000(lArray[i], aArray[i], bArray[i], chromaArray[i], l, a, b);
+        }
+    }
+
+    /**
+     * ΔE2000（参考 Sharma 等人的实现说明），第一个颜色的彩度由调用方预先计算
+     * <p>
+     * 色相差和平均色相用向量运算代替，T 项用倍角公式展开，大部分颜色对不需要任何三角函数。
+     */
+    private static float deltaE2000(float l1, float a1, float b1, float c1, float l2, float a2, float b2) {
+        double c2 = Math.sqrt(a2 * a2 + b2 * b2);
+        double cBar = (c1 + c2) / 2;
+        double cBar7 = pow7(cBar);
+        double g = 0.5 * (1 - Math.sqrt(cBar7 / (cBar7 + POW25_7)));
+        double a1p = (1 + g) * a1;
+        double a2p = (1 + g) * a2;
+        double c1p = Math.sqrt(a1p * a1p + b1 * b1);
+        double c2p = Math.sqrt(a2p * a2p + b2 * b2);
+
+        double dLp = l2 - l1;
+        double dCp = c2p - c1p;
+        double cProduct = c1p * c2p;
+        // ΔH'² = 2(C1'C2' - a1'a2' - b1b2)，符号与色相从颜色 1 转到颜色 2 的方向一致
+        double dHp = 0;
+        // 平均色相方向：两个色相单位向量之和（即较小夹角的角平分线）
+        double hx;
+        double hy;
+        if (cProduct == 0) {
+            hx = a1p + a2p;
+            hy = b1 + b2;
+        } else {
+            double dHp2 = 2 * (cProduct - a1p * a2p - b1 * b2);
+            dHp = Math.sqrt(Math.max(dHp2, 0));
+            if (a1p * b2 - b1 * a2p < 0) {
+                dHp = -dHp;
+            }
+            hx = a1p / c1p + a2p / c2p;
+            hy = b1 / c1p + b2 / c2p;
+        }
+        // 平均色相的角度只在需要时才计算
+        double hBarP = Double.NaN;
+        double cosH;
+        double sinH;
+        double hNorm = Math.sqrt(hx * hx + hy * hy);
+        if (hNorm > 1e-12) {
+            cosH = hx / hNorm;
+            sinH = hy / hNorm;
+        } else {
+            // 两个色相正好相反（或都是无彩色），按公式的约定取两个色相的算术平均
+            hBarP = cProduct == 0 ? 0 : (hueDegrees(b1, a1p) + hueDegrees(b2, a2p)) / 2;
+            double hr = Math.toRadians(hBarP);
+            cosH = Math.cos(hr);
+            sinH = Math.sin(hr);
+        }
+        double cos2H = 2 * cosH * cosH - 1;
+        double sin2H = 2 * sinH * cosH;
+        double cos3H = cosH * (4 * cosH * cosH - 3);
+        double sin3H = sinH * (3 - 4 * sinH * sinH);
+        double cos4H = 2 * cos2H * cos2H - 1;
+        double sin4H = 2 * sin2H * cos2H;
+        // T = 1 - 0.17cos(h - 30°) + 0.24cos(2h) + 0.32cos(3h + 6°) - 0.20cos(4h - 63°)
+        double t = 1
+                - 0.17 * (cosH * COS_30 + sinH * SIN_30)
+                + 0.24 * cos2H
+                + 0.32 * (cos3H * COS_6 - sin3H * SIN_6)
+                - 0.20 * (cos4H * COS_63 + sin4H * SIN_63);
+
+        double lBarP = (l1 + l2) / 2.0;
+        double cBarP = (c1p + c2p) / 2;
+        double cBarP7 = pow7(cBarP);
+        double rt = 0;
+        // 平均色相与 275° 相差超过 100° 时旋转项小于 1e-6，直接忽略，省去 atan2、exp、sin
+        if (cosH * COS_275 + sinH * SIN_275 > COS_100) {
+            if (Double.isNaN(hBarP)) {
+                hBarP = hueDegrees(sinH, cosH);
+            }
+            double hueOffset = (hBarP - 275) / 25;
+            double dTheta = 30 * Math.exp(-hueOffset * hueOffset);
+            double rc = 2 * Math.sqrt(cBarP7 / (cBarP7 + POW25_7));
+            rt = -Math.sin(Math.toRadians(2 * dTheta)) * rc;
+        }
+        double lOffset = (lBarP - 50) * (lBarP - 50);
+        double sl = 1 + 0.015 * lOffset / Math.sqrt(20 + lOffset);
+        double sc = 1 + 0.045 * cBarP;
+        double sh = 1 + 0.015 * cBarP * t;
+
+        double lTerm = dLp / sl;
+        double cTerm = dCp / sc;
+        double hTerm = dHp / sh;
+        return (float) Math.sqrt(lTerm * lTerm + cTerm * cTerm + hTerm * hTerm + rt * cTerm * hTerm);
+    }
+
+    private static double hueDegrees(double b, double ap) {
+        if (b == 0 && ap == 0) {
+            return 0;
+        }
+        double h = Math.toDegrees(Math.atan2(b, ap));
+        return h < 0 ? h + 360 : h;
+    }
+
+    private static double pow7(double x) {
+        double x2 = x * x;
+        double x3 = x2 * x;
+        return x3 * x3 * x;
+    }
+
+    private static double labF(double t) {
+        return t > 0.008856 ? Math.cbrt(t) : 7.787 * t + 16.0 / 116;
+    }
+}
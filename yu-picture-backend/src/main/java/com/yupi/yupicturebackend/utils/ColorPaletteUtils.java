@@ -0,0 +1,249 @@
+package com.yupi.yupicturebackend.utils;
+
+import com.yupi.yupicturebackend.model.dto.file.PaletteColor;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 工具类：提取图片的调色板（多个主色及其占比）
+ * <p>
+ * 在降采样后的图片上最多取 {@link #MAX_SAMPLES} 个像素，在 CIELAB 空间做 k-means 聚类，耗时与原图尺寸基本无关。
+ */
+public class ColorPaletteUtils {
+
+    /**
+     * 默认调色板颜色数
+     */
+    public static final int DEFAULT_PALETTE_SIZE = 5;
+
+    /**
+     * 参与聚类的最大像素数
+     */
+    private static final int MAX_SAMPLES = 4096;
+
+    /**
+     * k-means 最大迭代次数
+     */
+    private static final int MAX_ITERATIONS = 10;
+
+    /**
+     * 透明度低于该值的像素不参与聚类
+     */
+    private static final int MIN_ALPHA = 128;
+
+    private ColorPaletteUtils() {
+        // 工具类不需要实例化
+    }
+
+    /**
+     * 提取图片调色板
+     *
+     * @param file        图片文件
+     * @param paletteSize 颜色数
+     * @return 按占比从高到低排列，无法解码时返回空列表
+     */
+    public static List<PaletteColor> extractPalette(File file, int paletteSize) throws IOException {
+        BufferedImage image = ImageSampleUtils.readSubsampled(file, ImageSampleUtils.DEFAULT_MAX_EDGE);
+        if (image == null) {
+            return new ArrayList<>();
+        }
+        return extractPalette(image, paletteSize);
+    }
+
+    /**
+     * 提取图片调色板
+     *
+     * @param image       已降采样的图片
+     * @param paletteSize 颜色数
+     * @return 按占比从高到低排列
+     */
+    public static List<PaletteColor> extractPalette(BufferedImage image, int paletteSize) {
+        int[] samples = samplePixels(image);
+        int sampleCount = samples.length;
+        if (sampleCount == 0 || paletteSize <= 0) {
+            return new ArrayList<>();
+        }
+        // 1. 转换到 CIELAB，聚类的距离更接近人眼感知
+        float[] l = new float[sampleCount];
+        float[] a = new float[sampleCount];
+        float[] b = new float[sampleCount];
+        float[] lab = new float[3];
+        for (int i = 0; i < sampleCount; i++) {
+            ColorLabUtils.rgbToLab(samples[i], lab);
+            l[i] = lab[0];
+            a[i] = lab[1];
+            b[i] = lab[2];
+        }
+        // 2. k-means 聚类
+        int k = Math.min(paletteSize, sampleCount);
+        float[][] centers = initCenters(l, a, b, sampleCount, k);
+        int[] assignment = new int[sampleCount];
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            boolean changed = assign(l, a, b, sampleCount, centers, assignment) || iteration == 0;
+            if (!changed) {
+                break;
+            }
+            updateCenters(l, a, b, sampleCount, centers, assignment);
+        }
+        // 3. 以每一簇像素的 sRGB 平均值作为代表色，簇大小作为占比
+        long[] sumR = new long[k];
+        long[] sumG = new long[k];
+        long[] sumB = new long[k];
+        int[] count = new int[k];
+        for (int i = 0; i < sampleCount; i++) {
+            int cluster = assignment[i];
+            int rgb = samples[i];
+            sumR[cluster] += (rgb >> 16) & 0xFF;
+            sumG[cluster] += (rgb >> 8) & 0xFF;
+            sumB[cluster] += rgb & 0xFF;
+            count[cluster]++;
+        }
+        List<PaletteColor> palette = new ArrayList<>(k);
+        for (int cluster = 0; cluster < k; cluster++) {
+            if (count[cluster] == 0) {
+                continue;
+            }
+            int r = (int) Math.round((double) sumR[cluster] / count[cluster]);
+            int g = (int) Math.round((double) sumG[cluster] / count[cluster]);
+            int bl = (int) Math.round((double) sumB[cluster] / count[cluster]);
+            double weight = Math.round(count[cluster] * 1000.0 / sampleCount) / 1000.0;
+            palette.add(new PaletteColor(toColorString((r << 16) | (g << 8) | bl), weight));
+        }
+        palette.sort(Collections.reverseOrder((o1, o2) -> Double.compare(o1.getWeight(), o2.getWeight())));
+        return palette;
+    }
+
+    /**
+     * 颜色转为 0xRRGGBB 格式的字符串
+     */
+    public static String toColorString(int rgb) {
+        return String.format("0x%06x", rgb & 0xFFFFFF);
+    }
+
+    /**
+     * 按固定步长取样，跳过透明像素
+     */
+    private static int[] samplePixels(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        int stride = Math.max(1, (pixels.length + MAX_SAMPLES - 1) / MAX_SAMPLES);
+        boolean hasAlpha = image.getColorModel().hasAlpha();
+        int[] samples = new int[(pixels.length + stride - 1) / stride];
+        int count = 0;
+        for (int i = 0; i < pixels.length; i += stride) {
+            int argb = pixels[i];
+            if (hasAlpha && (argb >>> 24) < MIN_ALPHA) {
+                continue;
+            }
+            samples[count++] = argb & 0xFFFFFF;
+        }
+        int[] result = new int[count];
+        System.arraycopy(samples, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * k-means++ 初始化（固定随机种子，保证同一张图片结果稳定）
+     */
+    private static float[][] initCenters(float[] l, float[] a, float[] b, int size, int k) {
+        Random random = new Random(42);
+        float[][] centers = new float[k][3];
+        int first = random.nextInt(size);
+        centers[0][0] = l[first];
+        centers[0][1] = a[first];
+        centers[0][2] = b[first];
+        // 每个样本到最近中心的距离平方
+        float[] minDistance = new float[size];
+        for (int i = 0; i < size; i++) {
+            minDistance[i] = Float.MAX_VALUE;
+        }
+        for (int c = 1; c < k; c++) {
+            double total = 0;
+            for (int i = 0; i < size; i++) {
+                float distance = distanceSquared(l[i], a[i], b[i], centers[c - 1]);
+                if (distance < minDistance[i]) {
+                    minDistance[i] = distance;
+                }
+                total += minDistance[i];
+            }
+            int chosen = size - 1;
+            if (total > 0) {
+                double target = random.nextDouble() * total;
+                for (int i = 0; i < size; i++) {
+                    target -= minDistance[i];
+                    if (target <= 0) {
+                        chosen = i;
+                        break;
+                    }
+                }
+            }
+            centers[c][0] = l[chosen];
+            centers[c][1] = a[chosen];
+            centers[c][2] = b[chosen];
+        }
+        return centers;
+    }
+
+    /**
+     * 将每个样本分配到最近的中心
+     *
+     * @return 是否有样本的归属发生变化
+     */
+    private static boolean assign(float[] l, float[] a, float[] b, int size, float[][] centers, int[] assignment) {
+        boolean changed = false;
+        for (int i = 0; i < size; i++) {
+            int nearest = 0;
+            float nearestDistance = Float.MAX_VALUE;
+            for (int c = 0; c < centers.length; c++) {
+                float distance = distanceSquared(l[i], a[i], b[i], centers[c]);
+                if (distance < nearestDistance) {
+                    nearestDistance = distance;
+                    nearest = c;
+                }
+            }
+            if (assignment[i] != nearest) {
+                assignment[i] = nearest;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 重新计算每一簇的中心（空簇保持原中心）
+     */
+    private static void updateCenters(float[] l, float[] a, float[] b, int size, float[][] centers, int[] assignment) {
+        int k = centers.length;
+        double[][] sum = new double[k][3];
+        int[] count = new int[k];
+        for (int i = 0; i < size; i++) {
+            int cluster = assignment[i];
+            sum[cluster][0] += l[i];
+            sum[cluster][1] += a[i];
+            sum[cluster][2] += b[i];
+            count[cluster]++;
+        }
+        for (int c = 0; c < k; c++) {
+            if (count[c] == 0) {
+                continue;
+            }
+            centers[c][0] = (float) (sum[c][0] / count[c]);
+            centers[c][1] = (float) (sum[c][1] / count[c]);
+            centers[c][2] = (float) (sum[c][2] / count[c]);
+        }
+    }
+
+    private static float distanceSquared(float l, float a, float b, float[] center) {
+        float dl = l - center[0];
+        float da = a - center[1];
+        float db = b - center[2];
+        return dl * dl + da * da + db * db;
+    }
+}
@@ -0,0 +1,74 @@
+package com.yupi.yupicturebackend.utils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 工具类：图片感知哈希（dHash）
+ * <p>
+ * 把图片缩放为 9 x 8 的灰度图，每行相邻像素比较亮度得到 64 位哈希，
+ * 对缩放、压缩、轻微调色不敏感，两张图片哈希的汉明距离越小越相似。
+ */
+public class ImageHashUtils {
+
+    private static final int HASH_WIDTH = 9;
+
+    private static final int HASH_HEIGHT = 8;
+
+    private ImageHashUtils() {
+        // 工具类不需要实例化
+    }
+
+    /**
+     * 计算 dHash
+     *
+     * @param image 图片（建议先降采样）
+     * @return 64 位哈希
+     */
+    public static long dHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        // 1. 按区域取平均亮度缩放到 9 x 8，比最近邻采样更稳定
+        double[] gray = new double[HASH_WIDTH * HASH_HEIGHT];
+        for (int row = 0; row < HASH_HEIGHT; row++) {
+            int y0 = row * height / HASH_HEIGHT;
+            int y1 = Math.max(y0 + 1, (row + 1) * height / HASH_HEIGHT);
+            for (int col = 0; col < HASH_WIDTH; col++) {
+                int x0 = col * width / HASH_WIDTH;
+                int x1 = Math.max(x0 + 1, (col + 1) * width / HASH_WIDTH);
+                double sum = 0;
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        sum += luminance(pixels[y * width + x]);
+                    }
+                }
+                gray[row * HASH_WIDTH + col] = sum / ((y1 - y0) * (x1 - x0));
+            }
+        }
+        // 2. 左边比右边亮则该位为 1
+        long hash = 0;
+        for (int row = 0; row < HASH_HEIGHT; row++) {
+            for (int col = 0; col < HASH_WIDTH - 1; col++) {
+                hash <<= 1;
+                if (gray[row * HASH_WIDTH + col] > gray[row * HASH_WIDTH + col + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 汉明距离
+     */
+    public static int hammingDistance(long hash1, long hash2) {
+        return Long.bitCount(hash1 ^ hash2);
+    }
+
+    private static double luminance(int rgb) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        return 0.299 * r + 0.587 * g + 0.114 * b;
+    }
+}
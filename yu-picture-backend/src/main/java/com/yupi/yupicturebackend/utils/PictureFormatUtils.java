@@ -0,0 +1,43 @@
+package com.yupi.yupicturebackend.utils;
+
+/**
+ * 工具类：根据文件头（魔数）识别图片格式
+ * <p>
+ * 不依赖文件后缀和请求头中的 Content-Type，流式上传时只需要读取开头的 {@link #HEADER_LENGTH} 个字节。
+ */
+public class PictureFormatUtils {
+
+    /**
+     * 识别格式需要的文件头长度
+     */
+    public static final int HEADER_LENGTH = 12;
+
+    private PictureFormatUtils() {
+        // 工具类不需要实例化
+    }
+
+    /**
+     * 识别图片格式
+     *
+     * @param header 文件开头的字节
+     * @param length 有效长度
+     * @return 文件后缀（jpg / png / webp），不支持的格式返回 null
+     */
+    public static String sniffFormat(byte[] header, int length) {
+        // JPEG：FF D8 FF
+        if (length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        // PNG：89 50 4E 47 0D 0A 1A 0A
+        if (length >= 8 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G'
+                && header[4] == 0x0D && header[5] == 0x0A && header[6] == 0x1A && header[7] == 0x0A) {
+            return "png";
+        }
+        // WEBP：RIFF <4 字节长度> WEBP
+        if (length >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "webp";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,69 @@
+package com.yupi.yupicturebackend.utils;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 工具类：解析图片标签（数据库中以 JSON 数组字符串保存）
+ * <p>
+ * 同样的标签组合在大量图片中重复出现，解析结果按原始字符串缓存，列表页不必每条记录都解析一次 JSON。
+ * 返回的列表在多个请求之间共享，不可修改。
+ */
+public class PictureTagUtils {
+
+    private static final Cache<String, List<String>> TAG_LIST_CACHE = Caffeine.newBuilder()
+            .maximumSize(10_000L)
+            .build();
+
+    private PictureTagUtils() {
+        // 工具类不需要实例化
+    }
+
+    /**
+     * 解析标签
+     *
+     * @param tags JSON 数组形式的标签
+     * @return 不可修改的标签列表，为空或格式错误时返回空列表
+     */
+    public static List<String> parseTags(String tags) {
+        if (StrUtil.isBlank(tags)) {
+            return Collections.emptyList();
+        }
+        return TAG_LIST_CACHE.get(tags, PictureTagUtils::doParseTags);
+    }
+
+    /**
+     * 规范化标签：去掉首尾空白、空值和重复值，写入和查询使用同样的规则
+     *
+     * @param tags 原始标签
+     * @return 新的列表，保持原有顺序
+     */
+    public static List<String> normalizeTags(Collection<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<String> tagSet = new LinkedHashSet<>();
+        for (String tag : tags) {
+            if (StrUtil.isNotBlank(tag)) {
+                tagSet.add(tag.trim());
+            }
+        }
+        return new ArrayList<>(tagSet);
+    }
+
+    private static List<String> doParseTags(String tags) {
+        if (!JSONUtil.isTypeJSONArray(tags)) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(JSONUtil.toList(tags, String.class));
+    }
+}
@@ -0,0 +1,125 @@
+package com.yupi.yupicturebackend.api.imagesearch;
+
+import com.yupi.yupicturebackend.api.imagesearch.model.ImageSearchResult;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 以图搜图门面：缓存、每一步超时、熔断（上游使用本地桩实现）
+ */
+class ImageSearchApiFacadeTest {
+
+    private ImageSearchApiFacade imageSearchApiFacade;
+
+    @AfterEach
+    void tearDown() {
+        if (imageSearchApiFacade != null) {
+            imageSearchApiFacade.destroy();
+        }
+    }
+
+    @Test
+    void cachesResultByImageUrl() throws Exception {
+        StubUpstream stubUpstream = new StubUpstream();
+        imageSearchApiFacade = new ImageSearchApiFacade(stubUpstream, 200, 3, 60_000);
+
+        List<ImageSearchResult> first = imageSearchApiFacade.searchImage("a.png").get(1, TimeUnit.SECONDS);
+        List<ImageSearchResult> second = imageSearchApiFacade.searchImage("a.png").get(1, TimeUnit.SECONDS);
+        imageSearchApiFacade.searchImage("b.png").get(1, TimeUnit.SECONDS);
+
+        assertEquals("thumb-a.png", first.get(0).getThumbUrl());
+        assertEquals(first, second);
+        assertEquals(2, stubUpstream.calls.get());
+    }
+
+    @Test
+    void stageTimeoutFailsFastAndOpensCircuit() throws Exception {
+        StubUpstream stubUpstream = new StubUpstream();
+        stubUpstream.firstUrlDelayMillis = 2000;
+        imageSearchApiFacade = new ImageSearchApiFacade(stubUpstream, 100, 2, 60_000);
+
+        // 第二步超时，远早于桩实现返回
+        long start = System.currentTimeMillis();
+        assertBusinessError(imageSearchApiFacade, "1.png", "搜索超时");
+        assertEquals(true, System.currentTimeMillis() - start < 1000);
+        assertBusinessError(imageSearchApiFacade, "2.png", "搜索超时");
+
+        // 连续失败 2 次后熔断，不再请求上游
+        int callsBeforeOpen = stubUpstream.calls.get();
+        assertBusinessError(imageSearchApiFacade, "3.png", "以图搜图服务暂不可用，请稍后重试");
+        assertEquals(callsBeforeOpen, stubUpstream.calls.get());
+    }
+
+    @Test
+    void halfOpenProbeClosesCircuit() throws Exception {
+        StubUpstream stubUpstream = new StubUpstream();
+        stubUpstream.fail = true;
+        imageSearchApiFacade = new ImageSearchApiFacade(stubUpstream, 200, 1, 100);
+
+        assertBusinessError(imageSearchApiFacade, "1.png", "上游错误");
+        assertBusinessError(imageSearchApiFacade, "2.png", "以图搜图服务暂不可用，请稍后重试");
+
+        // 熔断时间过后，试探请求成功则恢复
+        Thread.sleep(150);
+        stubUpstream.fail = false;
+        assertEquals(1, imageSearchApiFacade.searchImage("3.png").get(1, TimeUnit.SECONDS).size());
+        assertEquals(1, imageSearchApiFacade.searchImage("4.png").get(1, TimeUnit.SECONDS).size());
+    }
+
+    private static void assertBusinessError(ImageSearchApiFacade facade, String imageUrl, String message) {
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> facade.searchImage(imageUrl).get(1, TimeUnit.SECONDS));
+        BusinessException businessException = assertInstanceOf(BusinessException.class, exception.getCause());
+        assertEquals(message, businessException.getMessage());
+    }
+
+    private static class StubUpstream implements ImageSearchUpstream {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private volatile long firstUrlDelayMillis;
+
+        private volatile boolean fail;
+
+        @Override
+        public String getImagePageUrl(String imageUrl, int timeoutMillis) {
+            calls.incrementAndGet();
+            if (fail) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "上游错误");
+            }
+            return "page-" + imageUrl;
+        }
+
+        @Override
+        public String getImageFirstUrl(String imagePageUrl, int timeoutMillis) {
+            if (firstUrlDelayMillis > 0) {
+                try {
+                    Thread.sleep(firstUrlDelayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return imagePageUrl.replace("page-", "first-");
+        }
+
+        @Override
+        public List<ImageSearchResult> getImageList(String imageFirstUrl, int timeoutMillis) {
+            ImageSearchResult imageSearchResult = new ImageSearchResult();
+            imageSearchResult.setThumbUrl(imageFirstUrl.replace("first-", "thumb-"));
+            imageSearchResult.setFromUrl(imageFirstUrl);
+            return Collections.singletonList(imageSearchResult);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.yupi.yupicturebackend.benchmark;
+
+import com.yupi.yupicturebackend.utils.ColorLabUtils;
+import com.yupi.yupicturebackend.utils.ColorSimilarUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 颜色打分基准测试：原有 RGB 工具类逐个计算 vs Lab 数组批量计算
+ * <p>
+ * 运行方式：mvn test-compile 后直接执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColorSimilarityBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    private String[] hexColors;
+
+    private float[] lArray;
+
+    private float[] aArray;
+
+    private float[] bArray;
+
+    private float[] chromaArray;
+
+    private float[] out;
+
+    private final float[] targetLab = new float[3];
+
+    private final String targetHex = "0x3C8DBC";
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        hexColors = new String[size];
+        lArray = new float[size];
+        aArray = new float[size];
+        bArray = new float[size];
+        chromaArray = new float[size];
+        out = new float[size];
+        float[] lab = new float[3];
+        for (int i = 0; i < size; i++) {
+            int rgb = random.nextInt(0x1000000);
+            hexColors[i] = String.format("0x%06X", rgb);
+            ColorLabUtils.rgbToLab(rgb, lab);
+            lArray[i] = lab[0];
+            aArray[i] = lab[1];
+            bArray[i] = lab[2];
+            chromaArray[i] = (float) Math.sqrt(lab[1] * lab[1] + lab[2] * lab[2]);
+        }
+        ColorLabUtils.rgbToLab(Integer.decode(targetHex), targetLab);
+    }
+
+    /**
+     * 原有实现：每次比较都要解析颜色字符串
+     */
+    @Benchmark
+    public double rgbSimilarityUtils() {
+        Color target = Color.decode(targetHex);
+        double sum = 0;
+        for (String hexColor : hexColors) {
+            sum += ColorSimilarUtils.calculateSimilarity(target, Color.decode(hexColor));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float[] batchDeltaE76() {
+        ColorLabUtils.batchDeltaE76Squared(lArray, aArray, bArray, size, targetLab, out);
+        return out;
+    }
+
+    @Benchmark
+    public float[] batchDeltaE2000() {
+        ColorLabUtils.batchDeltaE2000(lArray, aArray, bArray, chromaArray, size, targetLab, out);
+        return out;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ColorSimilarityBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,123 @@
+package com.yupi.yupicturebackend.benchmark;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.json.JSONUtil;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.entity.User;
+import com.yupi.yupicturebackend.model.vo.PictureVO;
+import com.yupi.yupicturebackend.model.vo.UserVO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.BeanUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片列表页对象转换基准测试（一页 20 条）：反射复制属性 + 每条解析标签 JSON vs 逐个字段赋值 + 标签解析缓存
+ * <p>
+ * 运行方式：mvn test-compile 后直接执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PictureVOMappingBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    private static final String[] TAGS = {"[\"风景\",\"自然\"]", "[\"人像\"]", "[\"动漫\",\"壁纸\",\"高清\"]", "[]"};
+
+    private final List<Picture> pictureList = new ArrayList<>();
+
+    private final List<User> userList = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        Date now = new Date();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Picture picture = new Picture();
+            picture.setId((long) i);
+            picture.setUrl("https://example.com/public/" + i + ".webp");
+            picture.setThumbnailUrl("https://example.com/public/" + i + "_thumbnail.webp");
+            picture.setName("picture" + i);
+            picture.setIntroduction("introduction" + i);
+            picture.setCategory("素材");
+            picture.setTags(TAGS[i % TAGS.length]);
+            picture.setPicSize(102400L);
+            picture.setPicWidth(1920);
+            picture.setPicHeight(1080);
+            picture.setPicScale(1.78);
+            picture.setPicFormat("webp");
+            picture.setPicColor("0x3C8DBC");
+            picture.setUserId((long) (i % 5));
+            picture.setCreateTime(now);
+            picture.setEditTime(now);
+            picture.setUpdateTime(now);
+            pictureList.add(picture);
+
+            User user = new User();
+            user.setId((long) i);
+            user.setUserAccount("account" + i);
+            user.setUserPassword("password");
+            user.setUserName("user" + i);
+            user.setUserAvatar("https://example.com/avatar/" + i + ".png");
+            user.setUserRole("user");
+            user.setCreateTime(now);
+            userList.add(user);
+        }
+    }
+
+    /**
+     * 原有实现：反射复制属性，每条记录都解析一次标签 JSON
+     */
+    @Benchmark
+    public List<PictureVO> reflectionMapping() {
+        List<PictureVO> pictureVOList = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Picture picture = pictureList.get(i);
+            PictureVO pictureVO = new PictureVO();
+            BeanUtils.copyProperties(picture, pictureVO);
+            pictureVO.setTags(JSONUtil.toList(picture.getTags(), String.class));
+            UserVO userVO = new UserVO();
+            BeanUtil.copyProperties(userList.get(i), userVO);
+            pictureVO.setUser(userVO);
+            pictureVOList.add(pictureVO);
+        }
+        return pictureVOList;
+    }
+
+    @Benchmark
+    public List<PictureVO> explicitMapping() {
+        List<PictureVO> pictureVOList = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            PictureVO pictureVO = PictureVO.objToVo(pictureList.get(i));
+            pictureVO.setUser(UserVO.objToVo(userList.get(i)));
+            pictureVOList.add(pictureVO);
+        }
+        return pictureVOList;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PictureVOMappingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,75 @@
+package com.yupi.yupicturebackend.manager.cache;
+
+import com.yupi.yupicturebackend.model.vo.UserVO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 批量获取用户信息：去重后只查询一次未命中的用户，缓存命中时不再查询
+ */
+class UserCacheManagerTest {
+
+    @Test
+    void getUserVOMapLoadsMissingUsersInOneBatch() {
+        UserCacheManager userCacheManager = new UserCacheManager();
+        List<Set<Long>> loadedBatchList = new ArrayList<>();
+        // 用户 3 不存在
+        Map<Long, UserVO> storedUserMap = new HashMap<>();
+        for (long id : new long[]{1, 2, 4}) {
+            storedUserMap.put(id, userVO(id));
+        }
+
+        Map<Long, UserVO> firstMap = userCacheManager.getUserVOMap(Arrays.asList(1L, 2L, 1L, null, 3L), missingUserIds -> {
+            loadedBatchList.add(missingUserIds);
+            Map<Long, UserVO> resultMap = new HashMap<>();
+            missingUserIds.stream().filter(storedUserMap::containsKey)
+                    .forEach(id -> resultMap.put(id, storedUserMap.get(id)));
+            return resultMap;
+        });
+        assertEquals(1, loadedBatchList.size());
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L)), loadedBatchList.get(0));
+        assertEquals(2, firstMap.size());
+        assertFalse(firstMap.containsKey(3L));
+
+        // 已缓存的用户不再查询，只查询新出现的用户和之前不存在的用户
+        Map<Long, UserVO> secondMap = userCacheManager.getUserVOMap(Arrays.asList(1L, 2L, 3L, 4L), missingUserIds -> {
+            loadedBatchList.add(missingUserIds);
+            Map<Long, UserVO> resultMap = new HashMap<>();
+            missingUserIds.stream().filter(storedUserMap::containsKey)
+                    .forEach(id -> resultMap.put(id, storedUserMap.get(id)));
+            return resultMap;
+        });
+        assertEquals(2, loadedBatchList.size());
+        assertEquals(new HashSet<>(Arrays.asList(3L, 4L)), loadedBatchList.get(1));
+        assertSame(firstMap.get(1L), secondMap.get(1L));
+        assertEquals(3, secondMap.size());
+
+        // 全部命中时不调用 loader
+        Map<Long, UserVO> thirdMap = userCacheManager.getUserVOMap(Arrays.asList(4L, 2L), missingUserIds -> {
+            throw new AssertionError("不应查询数据库");
+        });
+        assertEquals(2, thirdMap.size());
+        assertTrue(userCacheManager.getUserVOMap(null, missingUserIds -> {
+            throw new AssertionError("不应查询数据库");
+        }).isEmpty());
+    }
+
+    private static UserVO userVO(long id) {
+        UserVO userVO = new UserVO();
+        userVO.setId(id);
+        userVO.setUserName("user" + id);
+        return userVO;
+    }
+}
@@ -0,0 +1,66 @@
+package com.yupi.yupicturebackend.manager.hash;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * BK 树查询结果与线性扫描一致（包含更新、删除和删除后重建）
+ */
+class HammingBkTreeTest {
+
+    @Test
+    void searchMatchesLinearScan() {
+        Random random = new Random(7);
+        HammingBkTree bkTree = new HammingBkTree();
+        Map<Long, Long> hashMap = new HashMap<>();
+        long base = random.nextLong();
+        for (long id = 1; id <= 2000; id++) {
+            // 一半是 base 的近似哈希，保证有足够多的命中
+            long hash = id % 2 == 0 ? flipBits(base, random.nextInt(16), random) : random.nextLong();
+            bkTree.upsert(id, hash);
+            hashMap.put(id, hash);
+        }
+        for (long id = 1; id <= 1500; id += 3) {
+            bkTree.remove(id);
+            hashMap.remove(id);
+        }
+        for (long id = 2; id <= 200; id += 2) {
+            long hash = flipBits(base, random.nextInt(4), random);
+            bkTree.upsert(id, hash);
+            hashMap.put(id, hash);
+        }
+        assertEquals(hashMap.size(), bkTree.size());
+
+        for (int maxDistance : new int[]{0, 3, 8, 12}) {
+            long query = flipBits(base, 2, random);
+            List<Long> expected = new ArrayList<>();
+            hashMap.entrySet().stream()
+                    .filter(entry -> Long.bitCount(entry.getValue() ^ query) <= maxDistance)
+                    .sorted((o1, o2) -> {
+                        int d1 = Long.bitCount(o1.getValue() ^ query);
+                        int d2 = Long.bitCount(o2.getValue() ^ query);
+                        return d1 != d2 ? Integer.compare(d1, d2) : Long.compare(o2.getKey(), o1.getKey());
+                    })
+                    .forEach(entry -> expected.add(entry.getKey()));
+            List<Long> actual = bkTree.search(query, maxDistance, Integer.MAX_VALUE).stream()
+                    .map(HammingBkTree.Match::getPictureId)
+                    .collect(Collectors.toList());
+            assertEquals(expected, actual);
+        }
+    }
+
+    private static long flipBits(long hash, int count, Random random) {
+        for (int i = 0; i < count; i++) {
+            hash ^= 1L << random.nextInt(64);
+        }
+        return hash;
+    }
+}
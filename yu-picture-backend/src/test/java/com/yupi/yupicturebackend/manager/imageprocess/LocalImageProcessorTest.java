@@ -0,0 +1,75 @@
+package com.yupi.yupicturebackend.manager.imageprocess;
+
+import com.yupi.yupicturebackend.exception.BusinessException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 本地图片处理：一次解码得到压缩图、缩略图和图片信息
+ */
+class LocalImageProcessorTest {
+
+    private final LocalImageProcessor localImageProcessor = new LocalImageProcessor(1);
+
+    @AfterEach
+    void tearDown() {
+        localImageProcessor.destroy();
+    }
+
+    @Test
+    void largePictureIsCompressedAndThumbnailed() throws Exception {
+        // 带噪点的 PNG 体积较大，重新编码后应当变小
+        BufferedImage image = new BufferedImage(800, 400, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(1);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, new Color(100 + random.nextInt(20), 150, 200).getRGB());
+            }
+        }
+        byte[] bytes = encode(image, "png");
+        ProcessedPicture processedPicture = localImageProcessor.process(bytes);
+        assertEquals(800, processedPicture.getWidth());
+        assertEquals(400, processedPicture.getHeight());
+        assertEquals("png", processedPicture.getFormat());
+        assertNotNull(processedPicture.getCompressedBytes());
+        assertTrue(processedPicture.getCompressedBytes().length < bytes.length);
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(processedPicture.getThumbnailBytes()));
+        assertEquals(256, thumbnail.getWidth());
+        assertEquals(128, thumbnail.getHeight());
+        assertTrue(processedPicture.getColor().matches("0x[0-9a-f]{2}96c8"));
+    }
+
+    @Test
+    void smallPictureKeepsOriginal() throws Exception {
+        BufferedImage image = new BufferedImage(40, 30, BufferedImage.TYPE_INT_ARGB);
+        byte[] bytes = encode(image, "png");
+        ProcessedPicture processedPicture = localImageProcessor.process(bytes);
+        assertNull(processedPicture.getCompressedBytes());
+        assertNull(processedPicture.getThumbnailBytes());
+        assertEquals(40, processedPicture.getWidth());
+    }
+
+    @Test
+    void rejectsUnknownFormat() {
+        assertThrows(BusinessException.class, () -> localImageProcessor.process(new byte[]{1, 2, 3}));
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, format, outputStream);
+        return outputStream.toByteArray();
+    }
+}
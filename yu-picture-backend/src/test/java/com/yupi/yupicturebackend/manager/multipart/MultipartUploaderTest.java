@@ -0,0 +1,164 @@
+package com.yupi.yupicturebackend.manager.multipart;
+
+import com.qcloud.cos.model.PartETag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 分块上传：并行上传后内容一致，失败的分块单独重试，重试耗尽后续传，彻底失败时取消上传
+ */
+class MultipartUploaderTest {
+
+    private static final int PART_SIZE = 64 * 1024;
+
+    private static final int MAX_RETRIES = 2;
+
+    @TempDir
+    File tempDir;
+
+    private ExecutorService executor;
+
+    private MultipartUploader multipartUploader;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        multipartUploader = new MultipartUploader(PART_SIZE, 3, MAX_RETRIES, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void uploadFileRetriesFailedParts() throws Exception {
+        byte[] data = randomBytes(PART_SIZE * 5 + 123);
+        File source = writeSource(data);
+        // 第 2 块失败 1 次，在分块重试内恢复
+        FlakyClient client = new FlakyClient(new LocalMultipartUploadClient(new File(tempDir, "bucket")), 2, 1);
+        File result = multipartUploader.upload(client, "/public/1/a.png", source);
+        assertArrayEquals(data, Files.readAllBytes(result.toPath()));
+        assertEquals(2, client.attempts(2));
+        assertEquals(1, client.attempts(1));
+    }
+
+    @Test
+    void uploadFileResumesMissingParts() throws Exception {
+        byte[] data = randomBytes(PART_SIZE * 4);
+        File source = writeSource(data);
+        // 第 3 块连续失败超过重试次数，续传时成功；已成功的分块不会重新上传
+        FlakyClient client = new FlakyClient(new LocalMultipartUploadClient(new File(tempDir, "bucket")), 3,
+                MAX_RETRIES + 1);
+        File result = multipartUploader.upload(client, "public/1/b.png", source);
+        assertArrayEquals(data, Files.readAllBytes(result.toPath()));
+        assertEquals(MAX_RETRIES + 2, client.attempts(3));
+        assertEquals(1, client.attempts(1));
+        assertEquals(1, client.attempts(4));
+    }
+
+    @Test
+    void uploadStreamAbortsWhenPartKeepsFailing() {
+        byte[] data = randomBytes(PART_SIZE * 3 + 1);
+        File bucket = new File(tempDir, "bucket");
+        FlakyClient client = new FlakyClient(new LocalMultipartUploadClient(bucket), 4, Integer.MAX_VALUE);
+        assertThrows(IllegalStateException.class, () -> multipartUploader.upload(client, "public/1/c.png",
+                new ByteArrayInputStream(data), data.length));
+        assertFalse(new File(bucket, "public/1/c.png").exists());
+        String[] pendingUploads = new File(bucket, ".multipart").list();
+        assertEquals(0, pendingUploads == null ? 0 : pendingUploads.length);
+    }
+
+    @Test
+    void uploadStream() throws Exception {
+        byte[] data = randomBytes(PART_SIZE * 2 + 7);
+        LocalMultipartUploadClient client = new LocalMultipartUploadClient(new File(tempDir, "bucket"));
+        File result = multipartUploader.upload(client, "public/1/d.png", new ByteArrayInputStream(data), data.length);
+        assertArrayEquals(data, Files.readAllBytes(result.toPath()));
+    }
+
+    private File writeSource(byte[] data) throws Exception {
+        File source = new File(tempDir, "source.bin");
+        Files.write(source.toPath(), data);
+        return source;
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * 指定分块的前若干次上传失败
+     */
+    private static class FlakyClient implements MultipartUploadClient<File> {
+
+        private final MultipartUploadClient<File> delegate;
+
+        private final int failingPartNumber;
+
+        private final int failures;
+
+        private final Map<Integer, AtomicInteger> attemptMap = new ConcurrentHashMap<>();
+
+        private FlakyClient(MultipartUploadClient<File> delegate, int failingPartNumber, int failures) {
+            this.delegate = delegate;
+            this.failingPartNumber = failingPartNumber;
+            this.failures = failures;
+        }
+
+        private int attempts(int partNumber) {
+            AtomicInteger attempts = attemptMap.get(partNumber);
+            return attempts == null ? 0 : attempts.get();
+        }
+
+        @Override
+        public String initiateMultipartUpload(String key) {
+            return delegate.initiateMultipartUpload(key);
+        }
+
+        @Override
+        public PartETag uploadPart(String key, String uploadId, int partNumber, InputStream inputStream, long partSize) {
+            int attempt = attemptMap.computeIfAbsent(partNumber, k -> new AtomicInteger()).incrementAndGet();
+            if (partNumber == failingPartNumber && attempt <= failures) {
+                throw new IllegalStateException("模拟分块上传失败");
+            }
+            return delegate.uploadPart(key, uploadId, partNumber, inputStream, partSize);
+        }
+
+        @Override
+        public List<PartETag> listParts(String key, String uploadId) {
+            return delegate.listParts(key, uploadId);
+        }
+
+        @Override
+        public File completeMultipartUpload(String key, String uploadId, List<PartETag> partETags) {
+            return delegate.completeMultipartUpload(key, uploadId, partETags);
+        }
+
+        @Override
+        public void abortMultipartUpload(String key, String uploadId) {
+            delegate.abortMultipartUpload(key, uploadId);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.yupi.yupicturebackend.manager.search;
+
+import com.yupi.yupicturebackend.model.dto.picture.PictureQueryRequest;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 图片索引：过滤、排序和分页都在索引中完成，命中数不受上限截断
+ */
+class LucenePictureSearchIndexTest {
+
+    private static final int PICTURE_COUNT = 1500;
+
+    @TempDir
+    File tempDir;
+
+    private LucenePictureSearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        searchIndex = new LucenePictureSearchIndex();
+        ReflectionTestUtils.setField(searchIndex, "indexDir", tempDir.getAbsolutePath());
+        searchIndex.init();
+        List<Picture> pictureList = new ArrayList<>();
+        for (long id = 1; id <= PICTURE_COUNT; id++) {
+            // 每 3 张图片的编辑时间相同，用于校验游标在相同排序值之间的定位
+            pictureList.add(createPicture(id, 1_700_000_000_000L + (id / 3) * 1000));
+        }
+        searchIndex.rebuild(lastId -> lastId == 0 ? pictureList : Collections.emptyList());
+    }
+
+    private static Picture createPicture(long id, long time) {
+        Picture picture = new Picture();
+        picture.setId(id);
+        picture.setName("风景 " + id);
+        picture.setTags("[\"自然\"]");
+        // 奇数 id 属于用户 1，偶数 id 属于用户 2
+        picture.setUserId(id % 2 == 1 ? 1L : 2L);
+        picture.setReviewStatus(1);
+        picture.setCreateTime(new Date(time));
+        picture.setEditTime(new Date(time));
+        picture.setUpdateTime(new Date(time));
+        return picture;
+    }
+
+    @AfterEach
+    void tearDown() {
+        searchIndex.destroy();
+    }
+
+    @Test
+    void filtersAndPagesBeyondFormerHitLimit() {
+        PictureQueryRequest request = new PictureQueryRequest();
+        request.setSearchText("风景");
+        request.setUserId(2L);
+        assertTrue(searchIndex.supports(request, "id"));
+        // 第 70 页（offset 690）在按相关度截断前 1000 条时是空的
+        PictureSearchResult result = searchIndex.search(request, "id", false, 690, 10);
+        assertEquals(PICTURE_COUNT / 2, result.getTotal());
+        assertEquals(10, result.getIdList().size());
+        assertEquals(1500L - 2 * 690, result.getIdList().get(0));
+        for (int i = 1; i < result.getIdList().size(); i++) {
+            assertEquals(result.getIdList().get(i - 1) - 2, result.getIdList().get(i));
+        }
+    }
+
+    @Test
+    void searchAfterVisitsEveryHitOnce() {
+        PictureQueryRequest request = new PictureQueryRequest();
+        request.setSearchText("风景");
+        request.setUserId(1L);
+        Set<Long> visited = new HashSet<>();
+        Long lastId = null;
+        Long lastValue = null;
+        long previousValue = Long.MAX_VALUE;
+        while (true) {
+            List<Long> idList = searchIndex.searchAfter(request, "editTime", false, lastValue, lastId, 7);
+            if (idList.isEmpty()) {
+                break;
+            }
+            for (Long id : idList) {
+                assertTrue(visited.add(id), "重复返回 " + id);
+                assertEquals(1, id % 2);
+                long value = 1_700_000_000_000L + (id / 3) * 1000;
+                assertTrue(value <= previousValue);
+                previousValue = value;
+            }
+            lastId = idList.get(idList.size() - 1);
+            lastValue = 1_700_000_000_000L + (lastId / 3) * 1000;
+        }
+        assertEquals(PICTURE_COUNT / 2, visited.size());
+        assertEquals(PICTURE_COUNT / 2, searchIndex.count(request));
+    }
+
+    @Test
+    void rebuildReplacesDocumentsAndDropsMissingPictures() {
+        PictureQueryRequest request = new PictureQueryRequest();
+        request.setSearchText("风景");
+        // 重建时数据库中只剩 id <= 100 的图片，其中一张在重建前被实时更新过
+        searchIndex.upsert(createPicture(1L, 1_700_000_000_000L));
+        List<Picture> remaining = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            remaining.add(createPicture(id, 1_700_000_000_000L));
+        }
+        searchIndex.rebuild(lastId -> lastId == 0 ? remaining : Collections.emptyList());
+        assertEquals(100, searchIndex.count(request));
+        assertEquals(100, searchIndex.count());
+    }
+
+    @Test
+    void reopenedIndexWaitsForCatchUp() {
+        searchIndex.upsert(createPicture(PICTURE_COUNT + 1L, 1_800_000_000_000L));
+        searchIndex.destroy();
+        searchIndex = new LucenePictureSearchIndex();
+        ReflectionTestUtils.setField(searchIndex, "indexDir", tempDir.getAbsolutePath());
+        searchIndex.init();
+        // 重启后需要先从记录的时间点追赶，追赶完成前不可用
+        assertFalse(searchIndex.isReady());
+        assertEquals(new Date(1_800_000_000_000L), searchIndex.getHighWaterMark());
+        searchIndex.markReady();
+        PictureQueryRequest request = new PictureQueryRequest();
+        request.setSearchText("风景");
+        assertEquals(PICTURE_COUNT + 1, searchIndex.count(request));
+    }
+
+    @Test
+    void singleCjkCharacterMatchesLikeSubstring() {
+        Picture picture = createPicture(PICTURE_COUNT + 1, 1_800_000_000_000L);
+        picture.setName("小猫咪");
+        searchIndex.upsert(picture);
+        PictureQueryRequest request = new PictureQueryRequest();
+        for (String searchText : new String[]{"猫", "咪", "小猫", "猫咪", "小猫咪"}) {
+            request.setSearchText(searchText);
+            PictureSearchResult result = searchIndex.search(request, null, false, 0, 10);
+            assertEquals(Collections.singletonList(PICTURE_COUNT + 1L), result.getIdList(), searchText);
+        }
+        // 二元组按短语匹配，不会因为单字分别出现而误命中
+        request.setSearchText("咪猫");
+        assertEquals(0, searchIndex.search(request, null, false, 0, 10).getTotal());
+    }
+
+    @Test
+    void fuzzyConditionsAreLeftToDatabase() {
+        PictureQueryRequest request = new PictureQueryRequest();
+        request.setSearchText("风景");
+        request.setName("风");
+        assertFalse(searchIndex.supports(request, null));
+        request.setName(null);
+        assertFalse(searchIndex.supports(request, "picSize"));
+        assertTrue(searchIndex.supports(request, null));
+    }
+}
@@ -0,0 +1,155 @@
+package com.yupi.yupicturebackend.manager.storage;
+
+import cn.hutool.core.io.IoUtil;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.manager.imageprocess.LocalImageProcessor;
+import com.yupi.yupicturebackend.model.dto.file.PictureRendition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 本地对象存储：相同内容只存一份，最后一个引用删除后才删除内容
+ */
+class LocalObjectStorageTest {
+
+    @TempDir
+    File tempDir;
+
+    private LocalImageProcessor localImageProcessor;
+
+    private LocalObjectStorage objectStorage;
+
+    @BeforeEach
+    void setUp() {
+        localImageProcessor = new LocalImageProcessor(1);
+        objectStorage = new LocalObjectStorage(tempDir.getAbsolutePath(), "http://localhost/api/storage",
+                localImageProcessor);
+        objectStorage.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        localImageProcessor.destroy();
+    }
+
+    @Test
+    void sameContentIsStoredOnce() throws Exception {
+        byte[] bytes = createPng(Color.RED);
+        File file = new File(tempDir, "a.png");
+        Files.write(file.toPath(), bytes);
+        objectStorage.putObject("/public/1/a.png", file);
+        objectStorage.putObject("public/1/b.png", new ByteArrayInputStream(bytes));
+        assertEquals(1, countBlobs());
+        try (InputStream inputStream = objectStorage.getObject("public/1/b.png")) {
+            assertArrayEquals(bytes, IoUtil.readBytes(inputStream));
+        }
+        objectStorage.deleteObject("public/1/a.png");
+        assertEquals(1, countBlobs());
+        objectStorage.deleteObject("public/1/b.png");
+        assertEquals(0, countBlobs());
+        assertThrows(BusinessException.class, () -> objectStorage.getObject("public/1/b.png"));
+    }
+
+    @Test
+    void overwriteReleasesOldContent() throws Exception {
+        objectStorage.putObject("public/1/c.png", new ByteArrayInputStream(createPng(Color.RED)));
+        objectStorage.putObject("public/1/c.png", new ByteArrayInputStream(createPng(Color.BLUE)));
+        assertEquals(1, countBlobs());
+    }
+
+    @Test
+    void putPictureReadsPictureInfo() throws Exception {
+        byte[] bytes = createPng(new Color(0x33, 0x66, 0x99));
+        StoredPicture storedPicture = objectStorage.putPicture("/space/2/d.png", new ByteArrayInputStream(bytes),
+                bytes.length);
+        assertEquals("http://localhost/api/storage/space/2/d.png", storedPicture.getUrl());
+        assertEquals("space/2/d.png", objectStorage.getKeyByUrl(storedPicture.getUrl()));
+        assertEquals(40, storedPicture.getPicWidth());
+        assertEquals(30, storedPicture.getPicHeight());
+        assertEquals("png", storedPicture.getPicFormat());
+        assertEquals("0x336699", storedPicture.getPicColor());
+        assertEquals(bytes.length, storedPicture.getPicSize());
+    }
+
+    @Test
+    void putRenditionsScalesToEachWidth() throws Exception {
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        objectStorage.putObject("space/3/e.png", new ByteArrayInputStream(outputStream.toByteArray()));
+        List<PictureRendition> renditionList = objectStorage.putRenditions("space/3/e.png", Arrays.asList(320, 640));
+        assertEquals(2, renditionList.size());
+        PictureRendition rendition = renditionList.get(0);
+        assertEquals(320, rendition.getWidth());
+        assertEquals(240, rendition.getHeight());
+        String key = objectStorage.getKeyByUrl(rendition.getUrl());
+        assertTrue(key.startsWith("space/3/e_w320."));
+        try (InputStream inputStream = objectStorage.getObject(key)) {
+            assertEquals(320, ImageIO.read(inputStream).getWidth());
+        }
+    }
+
+    @Test
+    void presignedPutIsCheckedAndProcessedInPlace() throws Exception {
+        long expires = System.currentTimeMillis() + 60_000;
+        String url = objectStorage.generatePresignedPutUrl("/space/4/f.png", new Date(expires));
+        assertTrue(url.startsWith("http://localhost/api/storage/space/4/f.png?expires=" + expires + "&signature="));
+        String signature = url.substring(url.indexOf("signature=") + "signature=".length());
+        objectStorage.checkPresignedPut("space/4/f.png", expires, signature);
+        assertThrows(BusinessException.class, () -> objectStorage.checkPresignedPut("space/4/g.png", expires, signature));
+        assertThrows(BusinessException.class, () -> objectStorage.checkPresignedPut("space/4/f.png", 1L, signature));
+        // 客户端直传后处理，不再重复写入原图
+        assertEquals(-1, objectStorage.getObjectSize("space/4/f.png"));
+        byte[] bytes = createPng(Color.GREEN);
+        objectStorage.putObject("space/4/f.png", new ByteArrayInputStream(bytes));
+        assertEquals(bytes.length, objectStorage.getObjectSize("space/4/f.png"));
+        StoredPicture storedPicture = objectStorage.processPicture("space/4/f.png");
+        assertEquals(40, storedPicture.getPicWidth());
+        assertEquals(1, countBlobs());
+    }
+
+    @Test
+    void rejectsKeysOutsideStorage() {
+        assertThrows(BusinessException.class,
+                () -> objectStorage.putObject("../outside.png", new ByteArrayInputStream(new byte[1])));
+    }
+
+    private long countBlobs() throws Exception {
+        try (Stream<Path> paths = Files.walk(tempDir.toPath().resolve("blobs"))) {
+            return paths.filter(Files::isRegularFile).filter(path -> !path.toString().endsWith(".ref")).count();
+        }
+    }
+
+    private static byte[] createPng(Color color) throws Exception {
+        BufferedImage image = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, 40, 30);
+        graphics.dispose();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,100 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.model.enums.SpaceLevelEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 分片上传会话：乱序上传、校验失败只影响当前分片、合并后内容一致
+ */
+class PictureUploadSessionManagerTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @TempDir
+    File tempDir;
+
+    private PictureUploadSessionManager sessionManager;
+
+    @BeforeEach
+    void setUp() {
+        sessionManager = new PictureUploadSessionManager(new File(tempDir, "session"));
+    }
+
+    @Test
+    void assemblesChunksUploadedOutOfOrder() throws Exception {
+        byte[] bytes = RandomUtil.randomBytes(CHUNK_SIZE * 2 + 100);
+        PictureUploadSession session = createSession(bytes, DigestUtil.sha256Hex(bytes));
+        assertEquals(3, session.getChunkCount());
+        putChunk(session, bytes, 2);
+        putChunk(session, bytes, 0);
+        assertEquals(Arrays.asList(0, 2), sessionManager.listUploadedChunks(session));
+        // 分片不齐时不能合并
+        assertThrows(BusinessException.class, () -> sessionManager.checkComplete(session));
+        putChunk(session, bytes, 1);
+        // 重复上传同一分片
+        putChunk(session, bytes, 1);
+        File target = new File(tempDir, "target.png");
+        sessionManager.assemble(session, target);
+        assertArrayEquals(bytes, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    void rejectsCorruptedChunkAndKeepsOthers() {
+        byte[] bytes = RandomUtil.randomBytes(CHUNK_SIZE + 100);
+        PictureUploadSession session = createSession(bytes, null);
+        putChunk(session, bytes, 0);
+        byte[] chunk = Arrays.copyOfRange(bytes, CHUNK_SIZE, bytes.length);
+        String checksum = DigestUtil.md5Hex(chunk);
+        chunk[0]++;
+        assertThrows(BusinessException.class,
+                () -> sessionManager.putChunk(session, 1, checksum, new ByteArrayInputStream(chunk)));
+        // 长度不对的分片同样拒绝
+        byte[] shortChunk = Arrays.copyOf(chunk, 10);
+        assertThrows(BusinessException.class, () -> sessionManager.putChunk(session, 1,
+                DigestUtil.md5Hex(shortChunk), new ByteArrayInputStream(shortChunk)));
+        assertEquals(Collections.singletonList(0), sessionManager.listUploadedChunks(session));
+    }
+
+    @Test
+    void checksWholeFileHashAndOwner() {
+        byte[] bytes = RandomUtil.randomBytes(100);
+        PictureUploadSession session = createSession(bytes, DigestUtil.sha256Hex("other"));
+        putChunk(session, bytes, 0);
+        assertThrows(BusinessException.class,
+                () -> sessionManager.assemble(session, new File(tempDir, "target.png")));
+        assertEquals(session.getFileSize(), sessionManager.getSession(session.getUploadId(), 1L).getFileSize());
+        assertThrows(BusinessException.class, () -> sessionManager.getSession(session.getUploadId(), 2L));
+        sessionManager.removeSession(session);
+        assertThrows(BusinessException.class, () -> sessionManager.getSession(session.getUploadId(), 1L));
+    }
+
+    private PictureUploadSession createSession(byte[] bytes, String fileSha256) {
+        PictureUploadSession session = new PictureUploadSession();
+        session.setFileName("test.png");
+        session.setFileSize((long) bytes.length);
+        session.setChunkSize(CHUNK_SIZE);
+        session.setFileSha256(fileSha256);
+        return sessionManager.createSession(session, 1L, SpaceLevelEnum.DEFAULT_MAX_PICTURE_SIZE);
+    }
+
+    private void putChunk(PictureUploadSession session, byte[] bytes, int index) {
+        int from = index * CHUNK_SIZE;
+        byte[] chunk = Arrays.copyOfRange(bytes, from, Math.min(bytes.length, from + CHUNK_SIZE));
+        sessionManager.putChunk(session, index, DigestUtil.md5Hex(chunk), new ByteArrayInputStream(chunk));
+    }
+}
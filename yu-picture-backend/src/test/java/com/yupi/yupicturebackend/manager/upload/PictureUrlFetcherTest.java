@@ -0,0 +1,119 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import com.sun.net.httpserver.HttpServer;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 网络图片下载：只发一次 GET，响应头不合法或内容超过上限时立即中止，整个下载有超时时间
+ */
+class PictureUrlFetcherTest {
+
+    private static final int MAX_SIZE = 1024;
+
+    private HttpServer server;
+
+    private PictureUrlFetcher fetcher;
+
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/ok.png", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, 100);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(new byte[100]);
+            }
+        });
+        server.createContext("/large.png", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, MAX_SIZE + 1);
+            exchange.close();
+        });
+        server.createContext("/chunked.png", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            // 长度为 0 表示 chunked 传输
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                for (int i = 0; i < 10; i++) {
+                    outputStream.write(new byte[MAX_SIZE / 2]);
+                    outputStream.flush();
+                }
+            } catch (Exception e) {
+                // 客户端中止
+            }
+        });
+        server.createContext("/page.html", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, 10);
+            exchange.getResponseBody().write(new byte[10]);
+            exchange.close();
+        });
+        server.createContext("/missing.png", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.createContext("/slow.png", exchange -> {
+            try {
+                Thread.sleep(3000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        fetcher = new PictureUrlFetcher(1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fetcher.destroy();
+        server.stop(0);
+    }
+
+    @Test
+    void fetchesPicture() throws Exception {
+        assertArrayEquals(new byte[100], fetcher.fetch(baseUrl + "/ok.png", MAX_SIZE).get());
+    }
+
+    @Test
+    void rejectsByResponseHeaders() {
+        assertEquals(PictureUploadTemplate.sizeLimitMessage(MAX_SIZE), fetchError("/large.png").getMessage());
+        assertEquals("文件类型错误", fetchError("/page.html").getMessage());
+        assertEquals("文件下载失败", fetchError("/missing.png").getMessage());
+    }
+
+    @Test
+    void abortsOversizedChunkedBody() {
+        assertEquals(PictureUploadTemplate.sizeLimitMessage(MAX_SIZE), fetchError("/chunked.png").getMessage());
+    }
+
+    @Test
+    void failsAfterDeadline() {
+        long start = System.currentTimeMillis();
+        assertEquals("文件下载超时", fetchError("/slow.png").getMessage());
+        assertTrue(System.currentTimeMillis() - start < 2500);
+    }
+
+    private BusinessException fetchError(String path) {
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> fetcher.fetch(baseUrl + path, MAX_SIZE).get());
+        return (BusinessException) e.getCause();
+    }
+}
@@ -0,0 +1,38 @@
+package com.yupi.yupicturebackend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ΔE2000 使用 Sharma 等人论文中的测试数据校验
+ */
+class ColorLabUtilsTest {
+
+    @Test
+    void deltaE2000() {
+        float[][] pairs = {
+                {50.0000f, 2.6772f, -79.7751f, 50.0000f, 0.0000f, -82.7485f, 2.0425f},
+                {50.0000f, 3.1571f, -77.2803f, 50.0000f, 0.0000f, -82.7485f, 2.8615f},
+                {50.0000f, 0.0000f, 0.0000f, 50.0000f, -1.0000f, 2.0000f, 2.3669f},
+                {50.0000f, 2.4900f, -0.0010f, 50.0000f, -2.4900f, 0.0009f, 7.1792f},
+                {50.0000f, 2.5000f, 0.0000f, 73.0000f, 25.0000f, -18.0000f, 27.1492f},
+                {60.2574f, -34.0099f, 36.2677f, 60.4626f, -34.1751f, 39.4387f, 1.2644f},
+                {2.0776f, 0.0795f, -1.1350f, 0.9033f, -0.0636f, -0.5514f, 0.9082f},
+        };
+        for (float[] pair : pairs) {
+            float deltaE = ColorLabUtils.deltaE2000(pair[0], pair[1], pair[2], pair[3], pair[4], pair[5]);
+            assertEquals(pair[6], deltaE, 1e-3);
+        }
+    }
+
+    @Test
+    void rgbToLab() {
+        float[] lab = new float[3];
+        ColorLabUtils.rgbToLab(0xFFFFFF, lab);
+        assertArrayEquals(new float[]{100f, 0f, 0f}, lab, 0.01f);
+        ColorLabUtils.rgbToLab(0xFF0000, lab);
+        assertArrayEquals(new float[]{53.24f, 80.09f, 67.20f}, lab, 0.05f);
+    }
+}
@@ -0,0 +1,35 @@
+package com.yupi.yupicturebackend.utils;
+
+import com.yupi.yupicturebackend.model.dto.file.PaletteColor;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 调色板提取：颜色和占比
+ */
+class ColorPaletteUtilsTest {
+
+    @Test
+    void extractPalette() {
+        // 左边 70% 红色，右边 30% 蓝色
+        BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(0xFF0000));
+        graphics.fillRect(0, 0, 70, 100);
+        graphics.setColor(new Color(0x0000FF));
+        graphics.fillRect(70, 0, 30, 100);
+        graphics.dispose();
+
+        List<PaletteColor> palette = ColorPaletteUtils.extractPalette(image, 2);
+        assertEquals(2, palette.size());
+        assertEquals("0xff0000", palette.get(0).getColor());
+        assertEquals(0.7, palette.get(0).getWeight(), 0.01);
+        assertEquals("0x0000ff", palette.get(1).getColor());
+        assertEquals(0.3, palette.get(1).getWeight(), 0.01);
+    }
+}